@@ -19,34 +19,51 @@
 
 package uk.ac.standrews.cs.shabdiz;
 
-import java.io.IOException;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NoRouteToHostException;
+import java.net.SocketTimeoutException;
 import java.net.UnknownHostException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import net.schmizz.sshj.SSHClient;
 import net.schmizz.sshj.transport.TransportException;
 import net.schmizz.sshj.userauth.UserAuthException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import uk.ac.standrews.cs.shabdiz.host.Host;
+import uk.ac.standrews.cs.shabdiz.host.SSHHost;
 import uk.ac.standrews.cs.shabdiz.host.exec.Commands;
 import uk.ac.standrews.cs.shabdiz.util.Duration;
 import uk.ac.standrews.cs.shabdiz.util.ProcessUtil;
+import uk.ac.standrews.cs.shabdiz.util.ReachabilityProber;
 import uk.ac.standrews.cs.shabdiz.util.TimeoutExecutorService;
 
 /**
  * Implements common state probe and termination functionality.
  * This class probes the state of a given {@link ApplicationDescriptor descriptor} by attempting an application-specific call.
  * If the call fails, attempts to probe the state of the descriptor's {@link ApplicationDescriptor#getHost() host} by executing a {@code change directory} command.
+ * Remote hosts are first checked for reachability by a {@link ReachabilityProber TCP connection attempt} to their SSH port.
+ * A {@link #probeState(ApplicationDescriptor) synchronous probe} waits for the outcome of the reachability check, for up to {@code 5} seconds if the host does not respond.
+ * An {@link #probeStateAsync(ApplicationDescriptor, Executor) asynchronous probe}, which the {@link StatusScanner status scanner} uses, holds no thread while the reachability of a host is checked.
+ * The host-level checks are coalesced across the descriptors that share a host; see {@link #setHostStateCoalescingWindow(Duration)} and {@link #setHostStateStaleWindow(Duration)}.
  *
  * @author Masih Hajiarabderkani (mh638@st-andrews.ac.uk)
  */
 public abstract class AbstractApplicationManager implements ApplicationManager {
 
-    private static final int REACHABILITY_CHECK_TIMEOUT = 5000;
+    /** The default duration within which the state of a host is shared among the descriptors on that host. */
+    public static final Duration DEFAULT_HOST_STATE_COALESCING_WINDOW = new Duration(1, TimeUnit.SECONDS);
+    private static final Duration REACHABILITY_CHECK_TIMEOUT = new Duration(5, TimeUnit.SECONDS);
     private static final Logger LOGGER = LoggerFactory.getLogger(AbstractApplicationManager.class);
     private static final Duration DEFAULT_COMMAND_EXECUTION_TIMEOUT = new Duration(15, TimeUnit.SECONDS);
     private final Duration command_execution_timeout;
+    private final HostStateCoalescer host_state_coalescer;
 
     /** Instantiates a new application manager with the default command execution timeout of {@code 15} seconds. */
     protected AbstractApplicationManager() {
@@ -62,6 +79,53 @@ public abstract class AbstractApplicationManager implements ApplicationManager {
     protected AbstractApplicationManager(final Duration command_execution_timeout) {
 
         this.command_execution_timeout = command_execution_timeout;
+        host_state_coalescer = new HostStateCoalescer(DEFAULT_HOST_STATE_COALESCING_WINDOW);
+    }
+
+    /**
+     * Sets the duration within which the state of a {@link Host host} is shared among the descriptors on that host.
+     * Descriptors that share a host are probed concurrently by the {@link StatusScanner status scanner}; the host-level checks of reachability and authority are performed once for such descriptors and their result is shared.
+     * A window of zero only shares the result of the checks that are in progress.
+     *
+     * @param window the duration within which the state of a host is shared among the descriptors on that host
+     */
+    public void setHostStateCoalescingWindow(final Duration window) {
+
+        host_state_coalescer.setWindow(window);
+    }
+
+    /**
+     * Gets the duration within which the state of a {@link Host host} is shared among the descriptors on that host.
+     *
+     * @return the duration within which the state of a host is shared among the descriptors on that host
+     * @see #setHostStateCoalescingWindow(Duration)
+     */
+    public Duration getHostStateCoalescingWindow() {
+
+        return host_state_coalescer.getWindow();
+    }
+
+    /**
+     * Sets the duration after the {@link #setHostStateCoalescingWindow(Duration) coalescing window} within which the last state of a {@link Host host} is still shared, while a single background check refreshes it.
+     * This allows bursts of probes to be answered immediately without each of them checking the host.
+     * A stale window of zero, which is the default, disables background refreshes.
+     *
+     * @param stale_window the duration within which a stale state of a host is shared while being refreshed
+     */
+    public void setHostStateStaleWindow(final Duration stale_window) {
+
+        host_state_coalescer.setStaleWindow(stale_window);
+    }
+
+    /**
+     * Gets the duration after the coalescing window within which the last state of a {@link Host host} is still shared while being refreshed.
+     *
+     * @return the duration within which a stale state of a host is shared while being refreshed
+     * @see #setHostStateStaleWindow(Duration)
+     */
+    public Duration getHostStateStaleWindow() {
+
+        return host_state_coalescer.getStaleWindow();
     }
 
     @Override
@@ -78,6 +142,46 @@ public abstract class AbstractApplicationManager implements ApplicationManager {
 
     }
 
+    /**
+     * Asynchronously probes the state of the given {@code descriptor} in the same way as {@link #probeState(ApplicationDescriptor)}.
+     * The application call is attempted on the given {@code executor}; if it fails, the state of the descriptor's host is {@link #probeHostStateAsync(Host, Executor) probed asynchronously}.
+     * The {@link StatusScanner status scanner} probes the descriptors that are managed by this class using this method; subclasses that override {@link #probeState(ApplicationDescriptor)} must override this method accordingly.
+     *
+     * @param descriptor the descriptor to probe
+     * @param executor the executor on which to perform the blocking parts of the probe
+     * @return a future that completes with the state of the given {@code descriptor}
+     */
+    public CompletableFuture<ApplicationState> probeStateAsync(final ApplicationDescriptor descriptor, final Executor executor) {
+
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return probeApplicationState(descriptor);
+            }
+            catch (final Exception e) {
+                throw new CompletionException(e);
+            }
+        }, executor).handle((state, error) -> {
+            if (error == null) { return CompletableFuture.completedFuture(state); }
+
+            LOGGER.debug("state probe using application call failed", error);
+            return probeHostStateAsync(descriptor.getHost(), executor);
+        }).thenCompose(Function.identity());
+    }
+
+    /**
+     * Asynchronously probes the state of the given {@code host}; the probe is coalesced with the other probes of the host.
+     * The reachability of a remote host is checked by the shared {@link ReachabilityProber} without holding a thread.
+     * The resolution of the host name, if the address of the host is not known, and the authority check by command execution are blocking, and are performed on the given {@code executor}.
+     *
+     * @param host the host to probe
+     * @param executor the executor on which to perform the blocking parts of the probe
+     * @return a future that completes with the state of the given {@code host}, or {@link ApplicationState#UNKNOWN} if the given {@code host} is {@code null}
+     */
+    public CompletableFuture<ApplicationState> probeHostStateAsync(final Host host, final Executor executor) {
+
+        return host == null ? CompletableFuture.completedFuture(ApplicationState.UNKNOWN) : host_state_coalescer.probeAsync(host, target -> checkHostStateAsync(target, executor));
+    }
+
     protected ApplicationState probeApplicationState(final ApplicationDescriptor descriptor) throws Exception {
 
         attemptApplicationCall(descriptor);
@@ -88,25 +192,44 @@ public abstract class AbstractApplicationManager implements ApplicationManager {
 
     private ApplicationState probeHostState(final Host host) {
 
-        ApplicationState state;
-        if (host == null) {
-            state = ApplicationState.UNKNOWN;
-        }
-        else {
+        return host == null ? ApplicationState.UNKNOWN : host_state_coalescer.probe(host, this::checkHostState);
+    }
+
+    private CompletableFuture<ApplicationState> checkHostStateAsync(final Host host, final Executor executor) {
+
+        final CompletableFuture<Boolean> reachable = host.isLocal() ? CompletableFuture.completedFuture(true) : isReachableAsync(host, executor);
+        return reachable.thenApplyAsync(is_reachable -> {
+            if (!is_reachable) { return ApplicationState.UNREACHABLE; }
             try {
-                if (host.isLocal() || isReachable(host.getName())) {
-                    checkAuthorityByCommandExecution(host);
-                    state = ApplicationState.AUTH;
-                }
-                else {
-                    state = ApplicationState.UNREACHABLE;
-                }
+                checkAuthorityByCommandExecution(host);
+                return ApplicationState.AUTH;
             }
             catch (final Throwable e) {
-                LOGGER.debug("attempting to resolve state by exception", e);
-                state = resolveStateFromThrowable(e);
+                throw new CompletionException(e);
+            }
+        }, executor).exceptionally(error -> {
+            final Throwable cause = unwrap(error);
+            LOGGER.debug("attempting to resolve state by exception", cause);
+            return resolveStateFromThrowable(cause);
+        });
+    }
+
+    private ApplicationState checkHostState(final Host host) {
+
+        ApplicationState state;
+        try {
+            if (host.isLocal() || isReachable(host)) {
+                checkAuthorityByCommandExecution(host);
+                state = ApplicationState.AUTH;
+            }
+            else {
+                state = ApplicationState.UNREACHABLE;
             }
         }
+        catch (final Throwable e) {
+            LOGGER.debug("attempting to resolve state by exception", e);
+            state = resolveStateFromThrowable(e);
+        }
         assert state != null;
         return state;
     }
@@ -154,9 +277,49 @@ public abstract class AbstractApplicationManager implements ApplicationManager {
         }, command_execution_timeout);
     }
 
-    private static boolean isReachable(final String host_name) throws IOException {
+    private static boolean isReachable(final Host host) throws Throwable {
+
+        try {
+            // resolves the host name on the calling thread
+            return isReachableAsync(host, Runnable::run).get();
+        }
+        catch (final ExecutionException e) {
+            throw unwrap(e.getCause());
+        }
+    }
+
+    private static CompletableFuture<Boolean> isReachableAsync(final Host host, final Executor executor) {
+
+        final int port = host instanceof SSHHost ? ((SSHHost) host).getSSHPort() : SSHClient.DEFAULT_PORT;
+        final CompletableFuture<InetAddress> address = host.getAddress() != null ? CompletableFuture.completedFuture(host.getAddress()) : CompletableFuture.supplyAsync(() -> {
+            try {
+                return InetAddress.getByName(host.getName());
+            }
+            catch (final UnknownHostException e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+
+        return address.thenCompose(resolved_address -> {
+            LOGGER.debug("attempting to reach {} on port {}", host.getName(), port);
+            return ReachabilityProber.getSharedInstance().probe(new InetSocketAddress(resolved_address, port), REACHABILITY_CHECK_TIMEOUT);
+        }).handle((round_trip_time, error) -> {
+            if (error == null) {
+                LOGGER.debug("reached {} in {}", host.getName(), round_trip_time);
+                return true;
+            }
+
+            final Throwable cause = unwrap(error);
+            if (cause instanceof SocketTimeoutException || cause instanceof NoRouteToHostException) {
+                LOGGER.debug("failed to reach {}: {}", host.getName(), cause.getMessage());
+                return false;
+            }
+            throw new CompletionException(cause);
+        });
+    }
+
+    private static Throwable unwrap(final Throwable error) {
 
-        LOGGER.debug("attempting to reach {}", host_name);
-        return InetAddress.getByName(host_name).isReachable(REACHABILITY_CHECK_TIMEOUT);
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
     }
 }
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2013 University of St Andrews School of Computer Science
+ *
+ * This file is part of Shabdiz.
+ *
+ * Shabdiz is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Shabdiz is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Shabdiz.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.standrews.cs.shabdiz;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Implements the synchronous operations of an {@link AsyncApplicationManager} by awaiting the completion of their asynchronous counterparts.
+ *
+ * @author Masih Hajiarabderkani (mh638@st-andrews.ac.uk)
+ */
+public abstract class AbstractAsyncApplicationManager implements AsyncApplicationManager {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AbstractAsyncApplicationManager.class);
+
+    @Override
+    public ApplicationState probeState(final ApplicationDescriptor descriptor) {
+
+        try {
+            return await(probeStateAsync(descriptor));
+        }
+        catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return ApplicationState.UNKNOWN;
+        }
+        catch (final Exception e) {
+            LOGGER.debug("asynchronous state probe failed", e);
+            return ApplicationState.UNKNOWN;
+        }
+    }
+
+    @Override
+    public Object deploy(final ApplicationDescriptor descriptor) throws Exception {
+
+        return await(deployAsync(descriptor));
+    }
+
+    @Override
+    public void kill(final ApplicationDescriptor descriptor) throws Exception {
+
+        await(killAsync(descriptor));
+    }
+
+    static <Result> Result await(final CompletableFuture<Result> future) throws Exception {
+
+        try {
+            return future.get();
+        }
+        catch (final ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof Exception) { throw (Exception) cause; }
+            if (cause instanceof Error) { throw (Error) cause; }
+            throw e;
+        }
+    }
+}
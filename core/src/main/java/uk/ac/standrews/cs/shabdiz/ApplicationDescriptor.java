@@ -19,12 +19,11 @@
 
 package uk.ac.standrews.cs.shabdiz;
 
+import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
-import java.beans.PropertyChangeSupport;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.Arrays;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 import uk.ac.standrews.cs.shabdiz.host.Host;
 import uk.ac.standrews.cs.shabdiz.util.ArrayUtil;
 import uk.ac.standrews.cs.shabdiz.util.AttributeKey;
@@ -36,6 +35,9 @@ import uk.ac.standrews.cs.shabdiz.util.LatchedStateChangeListener;
  * However, a {@link Host} and/or an {@link ApplicationManager} may be associated to multiple {@link ApplicationDescriptor application descriptors}.
  * The {@link #getHost() host} of an application descriptor may be {@code null}.
  * However, the {@link #getApplicationManager() manager} must not be {@code null}.
+ * <p>
+ * Descriptors are laid out compactly, so that networks of many instances fit in a small heap: the state, application reference, attributes and listeners are held in plain volatile fields that are updated atomically by field updaters.
+ * Attributes are stored as a flat copy-on-write array of key-value pairs, which is only allocated once an attribute is set; the typical handful of attributes per descriptor is looked up by a linear scan.
  *
  * @author Masih Hajiarabderkani (mh638@st-andrews.ac.uk)
  */
@@ -43,13 +45,17 @@ public class ApplicationDescriptor implements Comparable<ApplicationDescriptor>
 
     private static final AtomicLong NEXT_ID = new AtomicLong();
     private static final String STATE_PROPERTY_NAME = "state";
-    protected final PropertyChangeSupport property_change_support;
-    private final Long id; // used to define ordering on descriptors
+    private static final StateTransitionListener[] NO_LISTENERS = {};
+    private static final AtomicReferenceFieldUpdater<ApplicationDescriptor, ApplicationState> STATE_UPDATER = AtomicReferenceFieldUpdater.newUpdater(ApplicationDescriptor.class, ApplicationState.class, "state");
+    private static final AtomicReferenceFieldUpdater<ApplicationDescriptor, Object[]> ATTRIBUTES_UPDATER = AtomicReferenceFieldUpdater.newUpdater(ApplicationDescriptor.class, Object[].class, "attributes");
+    private static final AtomicReferenceFieldUpdater<ApplicationDescriptor, StateTransitionListener[]> LISTENERS_UPDATER = AtomicReferenceFieldUpdater.newUpdater(ApplicationDescriptor.class, StateTransitionListener[].class, "transition_listeners");
+    private final long id; // used to define ordering on descriptors
     private final Host host;
-    private final AtomicReference<ApplicationState> state;
-    private final AtomicReference<Object> application_reference;
     private final ApplicationManager application_manager;
-    private final ConcurrentHashMap<AttributeKey<?>, Object> attributes;
+    private volatile ApplicationState state;
+    private volatile Object application_reference;
+    private volatile Object[] attributes; // copy-on-write key-value pairs, null if there are no attributes
+    private volatile StateTransitionListener[] transition_listeners; // copy-on-write
 
     /**
      * Instantiates a new application descriptor with the given {@link ApplicationManager manager} and {@code null} as {@link #getHost() host}.
@@ -74,10 +80,8 @@ public class ApplicationDescriptor implements Comparable<ApplicationDescriptor>
         this.application_manager = application_manager;
         this.host = host;
         id = generateId();
-        state = new AtomicReference<ApplicationState>(ApplicationState.UNKNOWN);
-        application_reference = new AtomicReference<Object>();
-        property_change_support = new PropertyChangeSupport(this);
-        attributes = new ConcurrentHashMap<AttributeKey<?>, Object>();
+        state = ApplicationState.UNKNOWN;
+        transition_listeners = NO_LISTENERS;
     }
 
     /**
@@ -86,12 +90,13 @@ public class ApplicationDescriptor implements Comparable<ApplicationDescriptor>
      * @param <Value> the type of the value
      * @param key the key whose associated value is to be returned
      * @return Returns the value to which the specified key is mapped, or {@code null} if this map contains no mapping for the key.
-     * @see ConcurrentSkipListMap#get(Object)
      */
     @SuppressWarnings("unchecked")
     public <Value> Value getAttribute(final AttributeKey<Value> key) {
 
-        return (Value) attributes.get(key);
+        final Object[] current = attributes;
+        final int index = indexOfAttribute(current, key);
+        return index < 0 ? null : (Value) current[index + 1];
     }
 
     /**
@@ -102,12 +107,56 @@ public class ApplicationDescriptor implements Comparable<ApplicationDescriptor>
      * @param key the key with which the specified value is to be associated
      * @param value the value to be associated with the specified key
      * @return the previous value associated with the specified key, or {@code null} if there was no mapping for the key
-     * @see ConcurrentSkipListMap#put(Object, Object)
      */
     @SuppressWarnings("unchecked")
     public <Value> Value setAttribute(final AttributeKey<Value> key, final Value value) {
 
-        return value == null ? (Value) attributes.remove(key) : (Value) attributes.put(key, value);
+        Object[] current;
+        Object[] updated;
+        Object previous;
+        do {
+            current = attributes;
+            final int index = indexOfAttribute(current, key);
+            if (index < 0) {
+                if (value == null) { return null; }
+
+                previous = null;
+                final int length = current == null ? 0 : current.length;
+                updated = current == null ? new Object[2] : Arrays.copyOf(current, length + 2);
+                updated[length] = key;
+                updated[length + 1] = value;
+            }
+            else {
+                previous = current[index + 1];
+                if (value == null) {
+                    if (current.length == 2) {
+                        updated = null;
+                    }
+                    else {
+                        updated = new Object[current.length - 2];
+                        System.arraycopy(current, 0, updated, 0, index);
+                        System.arraycopy(current, index + 2, updated, index, updated.length - index);
+                    }
+                }
+                else {
+                    updated = current.clone();
+                    updated[index + 1] = value;
+                }
+            }
+        }
+        while (!ATTRIBUTES_UPDATER.compareAndSet(this, current, updated));
+        return (Value) previous;
+    }
+
+    /**
+     * Gets the identifier of this descriptor, which is unique among the descriptors that are instantiated within the current JVM.
+     * Descriptors are ordered by their identifiers.
+     *
+     * @return the identifier of this descriptor
+     */
+    public long getId() {
+
+        return id;
     }
 
     /**
@@ -142,7 +191,7 @@ public class ApplicationDescriptor implements Comparable<ApplicationDescriptor>
     @SuppressWarnings("unchecked")
     public <ApplicationReference> ApplicationReference getApplicationReference() {
 
-        return (ApplicationReference) application_reference.get();
+        return (ApplicationReference) application_reference;
     }
 
     /**
@@ -153,34 +202,86 @@ public class ApplicationDescriptor implements Comparable<ApplicationDescriptor>
      */
     public void awaitAnyOfStates(final ApplicationState... states) throws InterruptedException {
 
-        LatchedStateChangeListener latched_listener = null;
-        synchronized (this) { // lock on this to prevent the state from changing between checking the current state and adding the listener
-            if (!isInAnyOfStates(states)) {
-                latched_listener = new LatchedStateChangeListener(states);
-                addStateChangeListener(latched_listener);
+        if (isInAnyOfStates(states)) { return; }
+
+        final LatchedStateChangeListener latched_listener = new LatchedStateChangeListener(states);
+        addStateTransitionListener(latched_listener);
+        try {
+            if (!isInAnyOfStates(states)) { // check again in case the state has changed before the listener was added
+                latched_listener.await();
             }
         }
+        finally {
+            removeStateTransitionListener(latched_listener);
+        }
+    }
 
-        if (latched_listener != null) {
-            try {
-                latched_listener.await();
+    /**
+     * Adds a {@link StateTransitionListener} that is notified whenever the {@link #getApplicationState() state} of this descriptor changes.
+     * If listener is {@code null} no exception is thrown and no action is taken.
+     * A listener that is added more than once is notified once per addition.
+     * Transitions are delivered on the thread that makes them and are not serialised, so concurrent transitions may reach a listener out of order.
+     * Listeners that track the current state should therefore re-read {@link #getApplicationState()} rather than rely on the {@code new_state} of a notification.
+     *
+     * @param listener the listener to be added
+     */
+    public void addStateTransitionListener(final StateTransitionListener listener) {
+
+        if (listener == null) { return; }
+
+        StateTransitionListener[] current;
+        StateTransitionListener[] updated;
+        do {
+            current = transition_listeners;
+            updated = Arrays.copyOf(current, current.length + 1);
+            updated[current.length] = listener;
+        }
+        while (!LISTENERS_UPDATER.compareAndSet(this, current, updated));
+    }
+
+    /**
+     * Removes a {@link StateTransitionListener} from the listeners of this descriptor.
+     * If listener is {@code null} or was never added, no exception is thrown and no action is taken.
+     *
+     * @param listener the listener to be removed
+     */
+    public void removeStateTransitionListener(final StateTransitionListener listener) {
+
+        if (listener == null) { return; }
+
+        StateTransitionListener[] current;
+        StateTransitionListener[] updated;
+        do {
+            current = transition_listeners;
+            final int index = Arrays.asList(current).indexOf(listener);
+            if (index < 0) { return; }
+
+            if (current.length == 1) {
+                updated = NO_LISTENERS;
             }
-            finally {
-                removeStateChangeListener(latched_listener);
+            else {
+                updated = new StateTransitionListener[current.length - 1];
+                System.arraycopy(current, 0, updated, 0, index);
+                System.arraycopy(current, index + 1, updated, index, updated.length - index);
             }
         }
+        while (!LISTENERS_UPDATER.compareAndSet(this, current, updated));
     }
 
     /**
      * Adds a {@link PropertyChangeListener} for the {@link #getApplicationState() cached state} property.
      * If listener is {@code null} no exception is thrown and no action is taken.
+     * Unlike {@link StateTransitionListener state transition listeners}, a {@link PropertyChangeEvent} is allocated per notification of a property change listener.
+     * As with state transition listeners, events of concurrent transitions may arrive out of order; listeners that track the current state should re-read {@link #getApplicationState()}.
      *
      * @param listener the listener to be added
-     * @see PropertyChangeSupport#addPropertyChangeListener(String, PropertyChangeListener)
+     * @see #addStateTransitionListener(StateTransitionListener)
      */
     public void addStateChangeListener(final PropertyChangeListener listener) {
 
-        property_change_support.addPropertyChangeListener(STATE_PROPERTY_NAME, listener);
+        if (listener != null) {
+            addStateTransitionListener(new PropertyChangeListenerAdapter(listener));
+        }
     }
 
     /**
@@ -188,11 +289,12 @@ public class ApplicationDescriptor implements Comparable<ApplicationDescriptor>
      * If listener is {@code null} or was never added for the specified property, no exception is thrown and no action is taken.
      *
      * @param listener the listener to be removed
-     * @see PropertyChangeSupport#removePropertyChangeListener(String, PropertyChangeListener)
      */
     public void removeStateChangeListener(final PropertyChangeListener listener) {
 
-        property_change_support.removePropertyChangeListener(STATE_PROPERTY_NAME, listener);
+        if (listener != null) {
+            removeStateTransitionListener(new PropertyChangeListenerAdapter(listener));
+        }
     }
 
     /**
@@ -211,9 +313,9 @@ public class ApplicationDescriptor implements Comparable<ApplicationDescriptor>
      *
      * @return the cached state of the application instance that is described by this descriptor
      */
-    public synchronized ApplicationState getApplicationState() {
+    public ApplicationState getApplicationState() {
 
-        return state.get();
+        return state;
     }
 
     /**
@@ -221,10 +323,10 @@ public class ApplicationDescriptor implements Comparable<ApplicationDescriptor>
      *
      * @param new_state the new state
      */
-    public synchronized void setApplicationState(final ApplicationState new_state) {
+    public void setApplicationState(final ApplicationState new_state) {
 
-        final ApplicationState old_state = state.getAndSet(new_state);
-        property_change_support.firePropertyChange(STATE_PROPERTY_NAME, old_state, new_state);
+        final ApplicationState old_state = STATE_UPDATER.getAndSet(this, new_state);
+        fireStateTransition(old_state, new_state);
     }
 
     /**
@@ -236,9 +338,9 @@ public class ApplicationDescriptor implements Comparable<ApplicationDescriptor>
      */
     public boolean compareAndSetApplicationState(final ApplicationState expect, final ApplicationState new_state) {
 
-        final boolean successfully_set = state.compareAndSet(expect, new_state);
+        final boolean successfully_set = STATE_UPDATER.compareAndSet(this, expect, new_state);
         if (successfully_set) {
-            property_change_support.firePropertyChange(STATE_PROPERTY_NAME, expect, new_state);
+            fireStateTransition(expect, new_state);
         }
         return successfully_set;
     }
@@ -246,13 +348,13 @@ public class ApplicationDescriptor implements Comparable<ApplicationDescriptor>
     @Override
     public int compareTo(final ApplicationDescriptor other) {
 
-        return id.compareTo(other.id);
+        return Long.compare(id, other.id);
     }
 
     @Override
     public int hashCode() {
 
-        return id.hashCode();
+        return Long.hashCode(id);
     }
 
     @Override
@@ -262,7 +364,7 @@ public class ApplicationDescriptor implements Comparable<ApplicationDescriptor>
         if (!(other instanceof ApplicationDescriptor)) { return false; }
 
         final ApplicationDescriptor that = (ApplicationDescriptor) other;
-        return id.equals(that.id);
+        return id == that.id;
     }
 
     @Override
@@ -274,19 +376,81 @@ public class ApplicationDescriptor implements Comparable<ApplicationDescriptor>
         sb.append(", state=").append(state);
         sb.append(", application_reference=").append(application_reference);
         sb.append(", application_manager=").append(application_manager);
-        sb.append(", attributes=").append(attributes);
+        sb.append(", attributes=");
+        appendAttributes(sb, attributes);
         sb.append('}');
         return sb.toString();
     }
 
-    private static Long generateId() {
+    private static long generateId() {
 
         return NEXT_ID.getAndIncrement();
     }
 
+    private static int indexOfAttribute(final Object[] attributes, final AttributeKey<?> key) {
+
+        if (attributes != null) {
+            for (int index = 0; index < attributes.length; index += 2) {
+                if (attributes[index].equals(key)) { return index; }
+            }
+        }
+        return -1;
+    }
+
+    private static void appendAttributes(final StringBuilder sb, final Object[] attributes) {
+
+        sb.append('{');
+        if (attributes != null) {
+            for (int index = 0; index < attributes.length; index += 2) {
+                if (index > 0) {
+                    sb.append(", ");
+                }
+                sb.append(attributes[index]).append('=').append(attributes[index + 1]);
+            }
+        }
+        sb.append('}');
+    }
+
     protected void setApplicationReference(final Object reference) {
 
-        application_reference.set(reference);
+        application_reference = reference;
+    }
+
+    private void fireStateTransition(final ApplicationState old_state, final ApplicationState new_state) {
+
+        if (old_state != new_state) {
+            for (final StateTransitionListener listener : transition_listeners) {
+                listener.onStateTransition(this, old_state, new_state);
+            }
+        }
+    }
+
+    private static final class PropertyChangeListenerAdapter implements StateTransitionListener {
+
+        private final PropertyChangeListener listener;
+
+        private PropertyChangeListenerAdapter(final PropertyChangeListener listener) {
+
+            this.listener = listener;
+        }
+
+        @Override
+        public void onStateTransition(final ApplicationDescriptor descriptor, final ApplicationState old_state, final ApplicationState new_state) {
+
+            listener.propertyChange(new PropertyChangeEvent(descriptor, STATE_PROPERTY_NAME, old_state, new_state));
+        }
+
+        @Override
+        public int hashCode() {
+
+            return listener.hashCode();
+        }
+
+        @Override
+        public boolean equals(final Object other) {
+
+            return other instanceof PropertyChangeListenerAdapter && listener.equals(((PropertyChangeListenerAdapter) other).listener);
+        }
     }
 
 }
@@ -23,12 +23,18 @@ import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.ExecutionException;
@@ -39,12 +45,18 @@ import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import uk.ac.standrews.cs.shabdiz.host.Host;
 import uk.ac.standrews.cs.shabdiz.util.Duration;
 import uk.ac.standrews.cs.shabdiz.util.FormattedNameThreadFactory;
 import uk.ac.standrews.cs.shabdiz.util.HashCodeUtil;
+import uk.ac.standrews.cs.shabdiz.util.HostConcurrencyLimiter;
+import uk.ac.standrews.cs.shabdiz.util.VirtualThreadUtil;
 
 /**
  * Maintains a set of {@link ApplicationDescriptor application descriptors}.
@@ -66,11 +78,23 @@ public class ApplicationNetwork implements Iterable<ApplicationDescriptor> {
     protected final AutoDeployScanner auto_deploy_scanner;
     protected final AutoRemoveScanner auto_remove_scanner;
     protected final StatusScanner status_scanner;
+    protected final FusedScanner fused_scanner;
     private final String application_name;
     private final ScheduledExecutorService scanner_scheduler;
     private final ExecutorService concurrent_scanner_executor;
     private final ExecutorService network_executor_service;
+    private final boolean virtual_threads_enabled;
+    private final HostConcurrencyLimiter host_concurrency_limiter;
     private final ScannerEnabledPropertyChangeListener enabled_change_listener = new ScannerEnabledPropertyChangeListener();
+    private final ConcurrentHashMap<Scanner, DeadlineScanScheduler> deadline_schedulers;
+    private volatile boolean deadline_scheduling_enabled;
+    private volatile boolean fused_scanning_enabled;
+    private final ApplicationStateIndex state_index;
+    private final InFlightOperations in_flight_operations;
+    private final AtomicLong modification_epoch;
+    private final Object snapshot_lock = new Object(); // guards snapshot rebuilds and all modifications, including their add and remove callbacks
+    private volatile DescriptorSnapshot snapshot;
+    private volatile HeartbeatReceiver heartbeat_receiver;
 
     /**
      * Instantiates a new application network with default scanner interval, scanner timeout and scanner thread pool size.
@@ -93,17 +117,43 @@ public class ApplicationNetwork implements Iterable<ApplicationDescriptor> {
      */
     public ApplicationNetwork(final String application_name, final Duration scanner_interval, final Duration scanner_timeout, final int scanner_thread_pool_size, final int concurrent_scanner_thread_pool_size) {
 
+        this(application_name, scanner_interval, scanner_timeout, scanner_thread_pool_size, concurrent_scanner_thread_pool_size, false);
+    }
+
+    /**
+     * Instantiates a new Application network, which optionally performs concurrent scans, deployments, terminations and host closures on virtual threads.
+     * Virtual threads make blocking probes and deployments cheap, which allows a network of many thousands of descriptors to be managed without thousands of platform threads.
+     * If virtual threads are requested but not supported by the current JVM, platform threads are used instead.
+     *
+     * @param application_name the application name
+     * @param scanner_interval the scanner interval for all defaults scanners
+     * @param scanner_timeout the scanner timeout for all defaults scanners
+     * @param scanner_thread_pool_size the scanner scheduler thread pool size
+     * @param concurrent_scanner_thread_pool_size the size of the thread pool used by {@link ConcurrentScanner concurrent scans}
+     * @param virtual_threads_enabled whether to use virtual threads to perform concurrent scans and network-wide operations
+     * @see #setMaxConcurrentOperationsPerHost(int)
+     */
+    public ApplicationNetwork(final String application_name, final Duration scanner_interval, final Duration scanner_timeout, final int scanner_thread_pool_size, final int concurrent_scanner_thread_pool_size, final boolean virtual_threads_enabled) {
+
         this.application_name = application_name;
+        this.virtual_threads_enabled = virtual_threads_enabled && isVirtualThreadsSupported(application_name);
+        host_concurrency_limiter = new HostConcurrencyLimiter(HostConcurrencyLimiter.UNLIMITED);
         application_descriptors = new ConcurrentSkipListSet<>();
+        modification_epoch = new AtomicLong();
+        snapshot = DescriptorSnapshot.EMPTY;
+        state_index = new ApplicationStateIndex();
         scheduled_scanners = new HashMap<>();
+        deadline_schedulers = new ConcurrentHashMap<>();
         scanner_scheduler = createScannerScheduledExecutorService(scanner_thread_pool_size);
         concurrent_scanner_executor = createScannerExecutorService(concurrent_scanner_thread_pool_size);
         network_executor_service = createNetworkExecutorService();
+        in_flight_operations = new InFlightOperations(network_executor_service);
 
         auto_kill_scanner = new AutoKillScanner(scanner_interval, scanner_timeout);
         auto_deploy_scanner = new AutoDeployScanner(scanner_interval, scanner_timeout);
         auto_remove_scanner = new AutoRemoveScanner(scanner_interval, scanner_timeout);
         status_scanner = new StatusScanner(scanner_interval);
+        fused_scanner = new FusedScanner(status_scanner, auto_kill_scanner, auto_deploy_scanner, auto_remove_scanner);
 
         addScanner(auto_kill_scanner);
         addScanner(auto_deploy_scanner);
@@ -124,16 +174,96 @@ public class ApplicationNetwork implements Iterable<ApplicationDescriptor> {
     /**
      * Attempts to deploy an application instance and sets the {@link ApplicationDescriptor#getApplicationReference() application reference} of the given application descriptor.
      * In the case where the descriptor is not added to this network, this method does not add the given descriptor to this network.
+     * If a deployment of the given descriptor is already in flight, this method awaits the in-flight deployment instead of starting a new one.
      *
      * @param descriptor the application descriptor to deploy
      * @throws Exception if deployment fails
+     * @see #isOperationInFlight(ApplicationDescriptor)
      */
     public void deploy(final ApplicationDescriptor descriptor) throws Exception {
 
         final ApplicationManager manager = descriptor.getApplicationManager();
-        final Object application_reference = manager.deploy(descriptor);
-        descriptor.setApplicationReference(application_reference);
-        descriptor.setApplicationState(ApplicationState.DEPLOYED);
+        if (manager instanceof AsyncApplicationManager) {
+            AbstractAsyncApplicationManager.await(deployAsync(descriptor));
+            return;
+        }
+
+        AbstractAsyncApplicationManager.await(in_flight_operations.perform(descriptor, InFlightOperations.Kind.DEPLOYMENT, () -> {
+
+            final CompletableFuture<Void> deployment = new CompletableFuture<>();
+            try {
+                final Object application_reference;
+                final HostConcurrencyLimiter.Permit permit = host_concurrency_limiter.acquire(descriptor.getHost());
+                try {
+                    application_reference = manager.deploy(descriptor);
+                }
+                finally {
+                    permit.close();
+                }
+                descriptor.setApplicationReference(application_reference);
+                descriptor.setApplicationState(ApplicationState.DEPLOYED);
+                deployment.complete(null);
+            }
+            catch (final Exception e) {
+                deployment.completeExceptionally(e);
+            }
+            return deployment;
+        }));
+    }
+
+    /**
+     * Asynchronously {@link #deploy(ApplicationDescriptor) deploys} an application instance.
+     * If the {@link ApplicationDescriptor#getApplicationManager() manager} of the given {@code descriptor} is an {@link AsyncApplicationManager}, no thread is occupied while the deployment is in progress.
+     * Otherwise, the deployment is performed on the network executor of this network.
+     *
+     * @param descriptor the application descriptor to deploy
+     * @return a future that completes once the application is deployed, or completes exceptionally if the deployment fails
+     */
+    public CompletableFuture<Void> deployAsync(final ApplicationDescriptor descriptor) {
+
+        return in_flight_operations.perform(descriptor, InFlightOperations.Kind.DEPLOYMENT, () -> startDeployment(descriptor));
+    }
+
+    /**
+     * Asynchronously deploys the given {@code descriptor} once the deployment is admitted by the given {@code admission_controller}.
+     * No thread is blocked while the admission is awaited; once admitted, the deployment is started on the network executor of this network.
+     * The awaited admission counts as an in-flight deployment of the descriptor; therefore, the descriptor is never queued for admission twice.
+     * Once admitted, the deployment is skipped if the descriptor no longer satisfies the given {@code condition}.
+     *
+     * @param descriptor the application descriptor to deploy
+     * @param admission_controller the controller that admits the deployment
+     * @param condition the condition that the descriptor must still satisfy once the deployment is admitted
+     * @return a future that completes once the application is deployed or the deployment is skipped, or completes exceptionally if the deployment fails
+     */
+    CompletableFuture<Void> deployAsync(final ApplicationDescriptor descriptor, final DeploymentAdmissionController admission_controller, final Predicate<ApplicationDescriptor> condition) {
+
+        // The admission is completed on the thread that frees a slot, hence the deployment is started on the network executor
+        return in_flight_operations.perform(descriptor, InFlightOperations.Kind.DEPLOYMENT, () -> admission_controller.acquireAsync(descriptor.getHost()).thenComposeAsync(permit -> {
+            if (!condition.test(descriptor)) {
+                LOGGER.debug("skipping the admitted deployment of descriptor {}", descriptor);
+                permit.close();
+                return CompletableFuture.completedFuture(null);
+            }
+
+            final CompletableFuture<Void> deployment;
+            try {
+                deployment = startDeployment(descriptor);
+            }
+            catch (final RuntimeException e) {
+                permit.close();
+                throw e;
+            }
+            return deployment.whenComplete((result, error) -> permit.close());
+        }, network_executor_service));
+    }
+
+    private CompletableFuture<Void> startDeployment(final ApplicationDescriptor descriptor) {
+
+        final AsyncApplicationManager manager = AsyncApplicationManagerAdapter.adapt(descriptor.getApplicationManager(), network_executor_service);
+        return withHostPermit(descriptor.getHost(), () -> manager.deployAsync(descriptor)).thenAccept(application_reference -> {
+            descriptor.setApplicationReference(application_reference);
+            descriptor.setApplicationState(ApplicationState.DEPLOYED);
+        });
     }
 
     /**
@@ -145,17 +275,8 @@ public class ApplicationNetwork implements Iterable<ApplicationDescriptor> {
     public void deployAll() throws Exception {
 
         final List<CompletableFuture<Void>> deployments = new ArrayList<>();
-        for (final ApplicationDescriptor application_descriptor : application_descriptors) {
-            final CompletableFuture<Void> deployment = CompletableFuture.runAsync(() -> {
-
-                try {
-                    deploy(application_descriptor);
-                }
-                catch (Exception e) {
-                    throw new RuntimeException(e);
-                }
-            }, network_executor_service);
-            deployments.add(deployment);
+        for (final ApplicationDescriptor application_descriptor : getApplicationDescriptorsSnapshot()) {
+            deployments.add(deployAsync(application_descriptor));
         }
 
         awaitCompletion(deployments);
@@ -163,14 +284,65 @@ public class ApplicationNetwork implements Iterable<ApplicationDescriptor> {
 
     /**
      * Attempts to terminate the application instance that is described by the given {@code application_descriptor} as defined by its {@link ApplicationDescriptor#getApplicationManager()  manager}.
+     * If a termination of the given descriptor is already in flight, this method awaits the in-flight termination instead of starting a new one.
      *
      * @param descriptor the application descriptor to kill
      * @throws Exception the exception
+     * @see #isOperationInFlight(ApplicationDescriptor)
      */
     public void kill(final ApplicationDescriptor descriptor) throws Exception {
 
-        descriptor.getApplicationManager().kill(descriptor);
-        descriptor.setApplicationState(ApplicationState.KILLED);
+        final ApplicationManager manager = descriptor.getApplicationManager();
+        if (manager instanceof AsyncApplicationManager) {
+            AbstractAsyncApplicationManager.await(killAsync(descriptor));
+            return;
+        }
+
+        AbstractAsyncApplicationManager.await(in_flight_operations.perform(descriptor, InFlightOperations.Kind.TERMINATION, () -> {
+
+            final CompletableFuture<Void> termination = new CompletableFuture<>();
+            try {
+                final HostConcurrencyLimiter.Permit permit = host_concurrency_limiter.acquire(descriptor.getHost());
+                try {
+                    manager.kill(descriptor);
+                }
+                finally {
+                    permit.close();
+                }
+                descriptor.setApplicationState(ApplicationState.KILLED);
+                termination.complete(null);
+            }
+            catch (final Exception e) {
+                termination.completeExceptionally(e);
+            }
+            return termination;
+        }));
+    }
+
+    /**
+     * Asynchronously {@link #kill(ApplicationDescriptor) terminates} an application instance.
+     * If the {@link ApplicationDescriptor#getApplicationManager() manager} of the given {@code descriptor} is an {@link AsyncApplicationManager}, no thread is occupied while the termination is in progress.
+     * Otherwise, the termination is performed on the network executor of this network.
+     *
+     * @param descriptor the application descriptor to kill
+     * @return a future that completes once the application is killed, or completes exceptionally if the termination fails
+     */
+    public CompletableFuture<Void> killAsync(final ApplicationDescriptor descriptor) {
+
+        final AsyncApplicationManager manager = AsyncApplicationManagerAdapter.adapt(descriptor.getApplicationManager(), network_executor_service);
+        return in_flight_operations.perform(descriptor, InFlightOperations.Kind.TERMINATION, () -> withHostPermit(descriptor.getHost(), () -> manager.killAsync(descriptor)).thenRun(() -> descriptor.setApplicationState(ApplicationState.KILLED)));
+    }
+
+    /**
+     * Checks whether a deployment or a termination of the given {@code descriptor} is in flight.
+     * At most one operation is performed on a descriptor at a time: a deployment or termination that is requested while one of the same kind is in flight joins the in-flight operation, and one of a different kind is started once the in-flight operation is complete.
+     *
+     * @param descriptor the descriptor to check
+     * @return {@code true} if a deployment or a termination of the given {@code descriptor} is in flight
+     */
+    public boolean isOperationInFlight(final ApplicationDescriptor descriptor) {
+
+        return in_flight_operations.isInFlight(descriptor);
     }
 
     /**
@@ -182,17 +354,8 @@ public class ApplicationNetwork implements Iterable<ApplicationDescriptor> {
     public void killAll() throws Exception {
 
         final List<CompletableFuture<Void>> terminations = new ArrayList<>();
-        for (final ApplicationDescriptor application_descriptor : application_descriptors) {
-            final CompletableFuture<Void> termination = CompletableFuture.runAsync(() -> {
-
-                try {
-                    kill(application_descriptor);
-                }
-                catch (Exception e) {
-                    throw new RuntimeException(e);
-                }
-            }, network_executor_service);
-            terminations.add(termination);
+        for (final ApplicationDescriptor application_descriptor : getApplicationDescriptorsSnapshot()) {
+            terminations.add(killAsync(application_descriptor));
         }
 
         awaitCompletion(terminations);
@@ -207,17 +370,8 @@ public class ApplicationNetwork implements Iterable<ApplicationDescriptor> {
     public void killAllOnHost(final Host host) throws Exception {
 
         final List<CompletableFuture<Void>> terminations = new ArrayList<>();
-        application_descriptors.stream().filter(application_descriptor -> host.equals(application_descriptor.getHost())).forEach(application_descriptor -> {
-            final CompletableFuture<Void> termination = CompletableFuture.runAsync(() -> {
-
-                try {
-                    kill(application_descriptor);
-                }
-                catch (Exception e) {
-                    throw new RuntimeException(e);
-                }
-            }, network_executor_service);
-            terminations.add(termination);
+        getApplicationDescriptorsSnapshot().stream().filter(application_descriptor -> host.equals(application_descriptor.getHost())).forEach(application_descriptor -> {
+            terminations.add(killAsync(application_descriptor));
         });
         awaitCompletion(terminations);
     }
@@ -227,30 +381,55 @@ public class ApplicationNetwork implements Iterable<ApplicationDescriptor> {
      *
      * @param states the states which application instances must reach at least once
      * @throws InterruptedException if the current thread is {@link Thread#interrupt() interrupted} while waiting
+     * @see #awaitAnyOfStatesAsync(ApplicationState...)
      */
     public void awaitAnyOfStates(final ApplicationState... states) throws InterruptedException {
 
-        final List<CompletableFuture<Void>> awaiting_state_futures = new ArrayList<>();
-        for (final ApplicationDescriptor descriptor : application_descriptors) {
-            final CompletableFuture<Void> awaiting_state = CompletableFuture.runAsync(() -> {
-
-                try {
-                    descriptor.awaitAnyOfStates(states);
-                }
-                catch (InterruptedException e) {
-                    throw new RuntimeException(e);
-                }
-            }, network_executor_service);
-            awaiting_state_futures.add(awaiting_state);
-        }
-
+        final CompletableFuture<Void> awaiting_states = awaitAnyOfStatesAsync(states);
         try {
-            awaitCompletion(awaiting_state_futures);
+            awaiting_states.get();
         }
-        catch (ExecutionException e) {
+        catch (final ExecutionException e) {
             LOGGER.error("failure occurred while awaiting uniform state", e);
             throw new InterruptedException("failure occurred while awaiting uniform state");
         }
+        finally {
+            awaiting_states.cancel(true);
+        }
+    }
+
+    /**
+     * Asynchronously awaits all the {@link ApplicationDescriptor instances} that are currently managed by this network to reach one of the given {@code states} at least once.
+     * No thread is blocked while awaiting; the returned future is completed from the state transitions of the descriptors.
+     * Cancelling the returned future stops the wait.
+     *
+     * @param states the states which application instances must reach at least once
+     * @return a future that is completed once all the application instances have reached one of the given {@code states} at least once
+     */
+    public CompletableFuture<Void> awaitAnyOfStatesAsync(final ApplicationState... states) {
+
+        final EnumSet<ApplicationState> target_states = EnumSet.noneOf(ApplicationState.class);
+        Collections.addAll(target_states, states);
+        return new NetworkStateWaiter(getApplicationDescriptorsSnapshot(), target_states).start();
+    }
+
+    /**
+     * Asynchronously awaits all the {@link ApplicationDescriptor instances} that are currently managed by this network to reach one of the given {@code states} at least once, within the given {@code timeout}.
+     * If the given {@code timeout} elapses before all the application instances have reached one of the given {@code states}, the returned future is completed exceptionally with a {@link TimeoutException}.
+     *
+     * @param timeout the maximum duration to wait
+     * @param states the states which application instances must reach at least once
+     * @return a future that is completed once all the application instances have reached one of the given {@code states} at least once
+     * @see #awaitAnyOfStatesAsync(ApplicationState...)
+     */
+    public CompletableFuture<Void> awaitAnyOfStatesAsync(final Duration timeout, final ApplicationState... states) {
+
+        final CompletableFuture<Void> awaiting_states = awaitAnyOfStatesAsync(states);
+        if (!awaiting_states.isDone()) {
+            final ScheduledFuture<?> expiry = scanner_scheduler.schedule(() -> awaiting_states.completeExceptionally(new TimeoutException("timed out while awaiting states " + Arrays.toString(states))), timeout.getLength(), timeout.getTimeUnit());
+            awaiting_states.whenComplete((result, error) -> expiry.cancel(false));
+        }
+        return awaiting_states;
     }
 
     /**
@@ -302,6 +481,7 @@ public class ApplicationNetwork implements Iterable<ApplicationDescriptor> {
         }
         if (removable) {
             scanner.removeEnabledPropertyChangeListener(enabled_change_listener);
+            deadline_schedulers.remove(scanner);
         }
         return removable;
     }
@@ -320,6 +500,120 @@ public class ApplicationNetwork implements Iterable<ApplicationDescriptor> {
         }
     }
 
+    /**
+     * Sets whether the {@link ConcurrentScanner concurrent scanners} of this network should schedule their scans per {@link ApplicationDescriptor descriptor}.
+     * When enabled, each descriptor has its own deadline at which it is next scanned, and the deadlines are spread evenly across the {@link Scanner#getCycleDelay() cycle delay} of each scanner.
+     * This smooths the load of scans on large networks, and prevents a slow descriptor from delaying the scan of other descriptors.
+     * When disabled, concurrent scanners scan the whole network once per cycle.
+     * Any scanner that is currently scheduled is rescheduled according to the new policy.
+     *
+     * @param enabled whether to schedule the scans of concurrent scanners per descriptor
+     * @see DeadlineScanScheduler
+     */
+    public void setDeadlineSchedulingEnabled(final boolean enabled) {
+
+        synchronized (scheduled_scanners) {
+            if (deadline_scheduling_enabled != enabled) {
+                deadline_scheduling_enabled = enabled;
+                if (!enabled) {
+                    deadline_schedulers.clear();
+                }
+                rescheduleActiveScanners();
+            }
+        }
+    }
+
+    /**
+     * Checks whether the {@link ConcurrentScanner concurrent scanners} of this network schedule their scans per {@link ApplicationDescriptor descriptor}.
+     *
+     * @return whether the concurrent scanners of this network schedule their scans per descriptor
+     * @see #setDeadlineSchedulingEnabled(boolean)
+     */
+    public boolean isDeadlineSchedulingEnabled() {
+
+        return deadline_scheduling_enabled;
+    }
+
+    /**
+     * Sets whether the {@link StatusScanner status}, {@link AutoKillScanner auto kill}, {@link AutoDeployScanner auto deploy} and {@link AutoRemoveScanner auto remove} scanners of this network should be fused into a single {@link FusedScanner pipeline}.
+     * When enabled, the state of each descriptor is probed and acted upon in the same task, and the fused scanners are no longer scheduled independently.
+     * The stages of the pipeline are still enabled and disabled via their corresponding scanners, e.g. {@link #setAutoDeployEnabled(boolean)}.
+     * When disabled, each scanner is scheduled independently.
+     *
+     * @param enabled whether to fuse the status and policy scanners of this network into a single pipeline
+     */
+    public void setFusedScanningEnabled(final boolean enabled) {
+
+        synchronized (scheduled_scanners) {
+            if (fused_scanning_enabled != enabled) {
+                fused_scanning_enabled = enabled;
+                for (final Scanner stage : fused_scanner.getStages()) {
+                    if (isAdded(stage)) {
+                        final ScheduledFuture<?> scheduled_stage = scheduled_scanners.get(stage);
+                        if (scheduled_stage != null) {
+                            scheduled_stage.cancel(true);
+                        }
+                        scheduled_scanners.put(stage, stage.isEnabled() ? scheduleScanner(stage) : null);
+                    }
+                }
+
+                if (enabled) {
+                    fused_scanner.setEnabled(true);
+                    addScanner(fused_scanner);
+                }
+                else {
+                    removeScanner(fused_scanner);
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks whether the status and policy scanners of this network are fused into a single pipeline.
+     *
+     * @return whether the status and policy scanners of this network are fused into a single pipeline
+     * @see #setFusedScanningEnabled(boolean)
+     */
+    public boolean isFusedScanningEnabled() {
+
+        return fused_scanning_enabled;
+    }
+
+    /**
+     * Checks whether this network performs concurrent scans, deployments, terminations and host closures on virtual threads.
+     *
+     * @return whether this network uses virtual threads
+     */
+    public boolean isVirtualThreadsEnabled() {
+
+        return virtual_threads_enabled;
+    }
+
+    /**
+     * Sets the maximum number of operations that may concurrently be performed on a single {@link Host host}.
+     * The limit applies to state probes performed by the {@link StatusScanner status scanner}, and to deployments and terminations performed by this network.
+     * Operations that exceed the limit wait for a permit in the order in which they were requested.
+     * By default the number of concurrent operations per host is unlimited.
+     *
+     * @param max_concurrent_operations the maximum number of concurrent operations per host, or {@link HostConcurrencyLimiter#UNLIMITED}
+     * @throws IllegalArgumentException if the given limit is less than {@code 1}
+     */
+    public void setMaxConcurrentOperationsPerHost(final int max_concurrent_operations) {
+
+        host_concurrency_limiter.setMaxConcurrencyPerHost(max_concurrent_operations);
+    }
+
+    /**
+     * Gets the maximum number of operations that may concurrently be performed on a single {@link Host host}.
+     *
+     * @return the maximum number of concurrent operations per host
+     * @see #setMaxConcurrentOperationsPerHost(int)
+     */
+    public int getMaxConcurrentOperationsPerHost() {
+
+        return host_concurrency_limiter.getMaxConcurrencyPerHost();
+    }
+
     /**
      * Sets the auto kill enabled.
      *
@@ -360,6 +654,65 @@ public class ApplicationNetwork implements Iterable<ApplicationDescriptor> {
         status_scanner.setEnabled(enabled);
     }
 
+    /**
+     * Sets the maximum delay between the probes of a descriptor that is {@link ApplicationState#UNREACHABLE unreachable}, {@link ApplicationState#INVALID invalid} or {@link ApplicationState#NO_AUTH not authorised}.
+     * A maximum delay of zero disables the backoff.
+     *
+     * @param max_backoff the maximum delay between the probes of a descriptor that is in a failure state
+     * @see StatusScanner#setMaxProbeBackoff(Duration)
+     */
+    public void setMaxProbeBackoff(final Duration max_backoff) {
+
+        status_scanner.setMaxProbeBackoff(max_backoff);
+    }
+
+    /**
+     * Gets the controller that admits the deployments performed by the {@link AutoDeployScanner auto deploy scanner} of this network.
+     * The controller may be configured to bound the number of in-flight deployments, globally and per host, and the rate at which deployments start.
+     *
+     * @return the controller that admits the automatic deployments of this network
+     */
+    public DeploymentAdmissionController getAutoDeployAdmissionController() {
+
+        return auto_deploy_scanner.getAdmissionController();
+    }
+
+    /**
+     * Sets the receiver of the heartbeats that are pushed by the application instances of this network.
+     * The descriptors of this network are registered with the given {@code receiver}, and unregistered from any previously set receiver.
+     * The swap is made under the same lock as the additions and removals of descriptors, so a descriptor that is added concurrently is registered with exactly the receiver that is set once the swap completes.
+     * The {@link StatusScanner status scanner} of this network skips probing the descriptors of which the heartbeats are {@link HeartbeatReceiver#isFresh(ApplicationDescriptor) fresh}; once a descriptor goes quiet it is probed as usual.
+     * This network does not close the receiver, which may be shared among networks.
+     *
+     * @param receiver the heartbeat receiver, or {@code null} to probe all descriptors actively
+     */
+    public void setHeartbeatReceiver(final HeartbeatReceiver receiver) {
+
+        synchronized (snapshot_lock) {
+            final HeartbeatReceiver previous = heartbeat_receiver;
+            heartbeat_receiver = receiver;
+            for (final ApplicationDescriptor descriptor : application_descriptors) {
+                if (previous != null) {
+                    previous.unregister(descriptor);
+                }
+                if (receiver != null) {
+                    receiver.register(descriptor);
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the receiver of the heartbeats that are pushed by the application instances of this network.
+     *
+     * @return the heartbeat receiver of this network, or {@code null} if no receiver is set
+     * @see #setHeartbeatReceiver(HeartbeatReceiver)
+     */
+    public HeartbeatReceiver getHeartbeatReceiver() {
+
+        return heartbeat_receiver;
+    }
+
     /**
      * Attempts to kill all application processes and {@link Host#close() close} the hosts of application instances.
      * Removes all the hooks that are maintained by this network.
@@ -371,10 +724,15 @@ public class ApplicationNetwork implements Iterable<ApplicationDescriptor> {
         cancelScheduledScanners();
         killAllSilently();
         closeHosts();
+        setHeartbeatReceiver(null);
         scanner_scheduler.shutdownNow();
         network_executor_service.shutdownNow();
         concurrent_scanner_executor.shutdownNow();
-        application_descriptors.clear();
+        synchronized (snapshot_lock) {
+            application_descriptors.clear();
+            modification_epoch.incrementAndGet();
+            state_index.clear();
+        }
     }
 
     /**
@@ -385,7 +743,39 @@ public class ApplicationNetwork implements Iterable<ApplicationDescriptor> {
      */
     public boolean add(final ApplicationDescriptor descriptor) {
 
-        return application_descriptors.add(descriptor);
+        synchronized (snapshot_lock) {
+            final boolean added = application_descriptors.add(descriptor);
+            if (added) {
+                modification_epoch.incrementAndGet();
+                onAdded(descriptor);
+            }
+            return added;
+        }
+    }
+
+    /**
+     * Adds the given application descriptors to this network as a single modification.
+     * The {@link #getApplicationDescriptorsSnapshot() snapshot} of this network observes either none or all of the given descriptors.
+     *
+     * @param descriptors the descriptors to be added
+     * @return {@code true} if the set of descriptors belonging to this network has changed
+     */
+    public boolean addAll(final Collection<? extends ApplicationDescriptor> descriptors) {
+
+        final List<ApplicationDescriptor> added = new ArrayList<>(descriptors.size());
+        synchronized (snapshot_lock) {
+            for (final ApplicationDescriptor descriptor : descriptors) {
+                if (application_descriptors.add(descriptor)) {
+                    added.add(descriptor);
+                }
+            }
+            if (!added.isEmpty()) {
+                modification_epoch.incrementAndGet();
+            }
+            added.forEach(this::onAdded);
+        }
+
+        return !added.isEmpty();
     }
 
     /**
@@ -396,7 +786,89 @@ public class ApplicationNetwork implements Iterable<ApplicationDescriptor> {
      */
     public boolean remove(final ApplicationDescriptor descriptor) {
 
-        return application_descriptors.remove(descriptor);
+        synchronized (snapshot_lock) {
+            final boolean removed = application_descriptors.remove(descriptor);
+            if (removed) {
+                modification_epoch.incrementAndGet();
+                onRemoved(descriptor);
+            }
+            return removed;
+        }
+    }
+
+    /**
+     * Removes the given application descriptors from this network as a single modification.
+     * The {@link #getApplicationDescriptorsSnapshot() snapshot} of this network observes the removal of either none or all of the given descriptors.
+     *
+     * @param descriptors the descriptors to be removed
+     * @return {@code true} if the set of descriptors belonging to this network has changed
+     */
+    public boolean removeAll(final Collection<? extends ApplicationDescriptor> descriptors) {
+
+        final List<ApplicationDescriptor> removed = new ArrayList<>(descriptors.size());
+        synchronized (snapshot_lock) {
+            for (final ApplicationDescriptor descriptor : descriptors) {
+                if (application_descriptors.remove(descriptor)) {
+                    removed.add(descriptor);
+                }
+            }
+            if (!removed.isEmpty()) {
+                modification_epoch.incrementAndGet();
+            }
+            removed.forEach(this::onRemoved);
+        }
+
+        return !removed.isEmpty();
+    }
+
+    /**
+     * Removes the application descriptors of this network that satisfy the given {@code filter} as a single modification.
+     * The {@link #getApplicationDescriptorsSnapshot() snapshot} of this network observes the removal of either none or all of the matching descriptors.
+     *
+     * @param filter the predicate that returns {@code true} for the descriptors to be removed
+     * @return {@code true} if any descriptor was removed
+     */
+    public boolean removeIf(final Predicate<? super ApplicationDescriptor> filter) {
+
+        final List<ApplicationDescriptor> removed = new ArrayList<>();
+        synchronized (snapshot_lock) {
+            for (final ApplicationDescriptor descriptor : application_descriptors) {
+                if (filter.test(descriptor) && application_descriptors.remove(descriptor)) {
+                    removed.add(descriptor);
+                }
+            }
+            if (!removed.isEmpty()) {
+                modification_epoch.incrementAndGet();
+            }
+            removed.forEach(this::onRemoved);
+        }
+
+        return !removed.isEmpty();
+    }
+
+    /**
+     * Atomically replaces the given {@code existing} descriptor with the given {@code replacement}.
+     * The {@link #getApplicationDescriptorsSnapshot() snapshot} of this network never observes both or neither of the two descriptors, and no other modification of this network is interleaved with the replacement.
+     * Note that {@link #contains(ApplicationDescriptor)} and {@link #size()} do not wait for modifications in progress, and may briefly observe neither of the two descriptors.
+     * This method has no effect if the {@code existing} descriptor is not present in this network.
+     *
+     * @param existing the descriptor to be replaced
+     * @param replacement the descriptor to replace the existing one
+     * @return {@code true} if the {@code existing} descriptor was present and has been replaced
+     */
+    public boolean replace(final ApplicationDescriptor existing, final ApplicationDescriptor replacement) {
+
+        synchronized (snapshot_lock) {
+            if (!application_descriptors.remove(existing)) { return false; }
+
+            final boolean added = application_descriptors.add(replacement);
+            modification_epoch.incrementAndGet();
+            onRemoved(existing);
+            if (added) {
+                onAdded(replacement);
+            }
+            return true;
+        }
     }
 
     /**
@@ -416,16 +888,86 @@ public class ApplicationNetwork implements Iterable<ApplicationDescriptor> {
 
     /**
      * Gets a copy of this network's application descriptors.
+     * The returned set is a thread-safe {@link CopyOnWriteArraySet}; modifying it does not affect this network.
+     * Populating a {@link CopyOnWriteArraySet} checks every descriptor against those already added, which costs time quadratic in the size of this network per call.
+     * Callers that only need to read the descriptors should use {@link #getApplicationDescriptorsSnapshot()} instead.
      *
      * @return a copy of this network's application descriptors
+     * @see #getApplicationDescriptorsSnapshot()
      */
     public Set<ApplicationDescriptor> getApplicationDescriptors() {
 
-        return new CopyOnWriteArraySet<>(application_descriptors);
+        return new CopyOnWriteArraySet<>(getApplicationDescriptorsSnapshot());
+    }
+
+    /**
+     * Gets an immutable snapshot of this network's application descriptors, in their natural order.
+     * The snapshot is taken lazily upon the first call after the descriptors of this network are modified, and is shared among the callers until the next modification.
+     * Therefore, retrieving the snapshot of a network that has not been modified since the last call costs no allocation.
+     * The returned list is not affected by subsequent modifications to this network.
+     *
+     * @return an immutable snapshot of this network's application descriptors
+     */
+    public List<ApplicationDescriptor> getApplicationDescriptorsSnapshot() {
+
+        final DescriptorSnapshot current = snapshot;
+        final long epoch = modification_epoch.get();
+        if (current.getEpoch() == epoch) { return current; }
+
+        synchronized (snapshot_lock) {
+            if (snapshot.getEpoch() < epoch) {
+                // The epoch is read before copying, so a snapshot may include modifications of later epochs but never misses those of its own
+                snapshot = new DescriptorSnapshot(epoch, application_descriptors.toArray(new ApplicationDescriptor[0]));
+            }
+            return snapshot;
+        }
+    }
+
+    /**
+     * Gets the number of application descriptors in this network that are in the given {@code state}.
+     * The count is maintained incrementally as the descriptors change state, and is retrieved in constant time.
+     *
+     * @param state the state
+     * @return the number of application descriptors in this network that are in the given {@code state}
+     */
+    public int countInState(final ApplicationState state) {
+
+        return state_index.count(state);
+    }
+
+    /**
+     * Gets an unmodifiable live view of the application descriptors in this network that are in the given {@code state}.
+     * The returned set reflects the state changes of descriptors as they happen, and its iterators are weakly consistent.
+     *
+     * @param state the state
+     * @return an unmodifiable live view of the application descriptors in this network that are in the given {@code state}
+     */
+    public Set<ApplicationDescriptor> getApplicationDescriptorsInState(final ApplicationState state) {
+
+        return state_index.get(state);
+    }
+
+    /**
+     * Gets a copy of the application descriptors in this network that are in any of the given {@code states}.
+     *
+     * @param states the states
+     * @return a copy of the application descriptors in this network that are in any of the given {@code states}
+     */
+    public List<ApplicationDescriptor> getApplicationDescriptorsInAnyOfStates(final ApplicationState... states) {
+
+        final EnumSet<ApplicationState> distinct_states = EnumSet.noneOf(ApplicationState.class);
+        Collections.addAll(distinct_states, states);
+
+        final List<ApplicationDescriptor> descriptors = new ArrayList<>();
+        for (final ApplicationState state : distinct_states) {
+            descriptors.addAll(state_index.get(state));
+        }
+        return descriptors;
     }
 
     /**
      * Checks whether this network contains the given {@code descriptor}.
+     * This method does not wait for any modification of this network that is in progress.
      *
      * @param descriptor the descriptor that its presence is checked
      * @return {@code true} if the given {@code descriptor} is present in this network
@@ -445,10 +987,17 @@ public class ApplicationNetwork implements Iterable<ApplicationDescriptor> {
         return application_descriptors.size();
     }
 
+    /**
+     * Returns an iterator over the {@link #getApplicationDescriptorsSnapshot() snapshot} of this network's application descriptors.
+     * The iterator is not affected by concurrent modifications to this network.
+     * Its {@link Iterator#remove() remove} operation {@link #remove(ApplicationDescriptor) removes} the last returned descriptor from this network.
+     *
+     * @return an iterator over the snapshot of this network's application descriptors
+     */
     @Override
     public Iterator<ApplicationDescriptor> iterator() {
 
-        return application_descriptors.iterator();
+        return new SnapshotIterator(getApplicationDescriptorsSnapshot().iterator());
     }
 
     @Override
@@ -484,6 +1033,37 @@ public class ApplicationNetwork implements Iterable<ApplicationDescriptor> {
         }
     }
 
+    /**
+     * Performs the given asynchronous {@code operation} while holding a permit of the given {@code host}.
+     * If the number of concurrent operations per host is limited, the permit is awaited on the network executor of this network.
+     */
+    <Result> CompletableFuture<Result> withHostPermit(final Host host, final Supplier<CompletableFuture<Result>> operation) {
+
+        if (host == null || host_concurrency_limiter.getMaxConcurrencyPerHost() == HostConcurrencyLimiter.UNLIMITED) {
+            return operation.get();
+        }
+
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return host_concurrency_limiter.acquire(host);
+            }
+            catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CompletionException(e);
+            }
+        }, network_executor_service).thenCompose(permit -> {
+            final CompletableFuture<Result> result;
+            try {
+                result = operation.get();
+            }
+            catch (final RuntimeException e) {
+                permit.close();
+                throw e;
+            }
+            return result.whenComplete((value, error) -> permit.close());
+        });
+    }
+
     protected ScheduledExecutorService createScannerScheduledExecutorService(final int thread_pool_size) {
 
         return new ScheduledThreadPoolExecutor(thread_pool_size, createThreadFactory(SCANNER_SCHEDULER_THREAD_NAME_FORMAT));
@@ -491,6 +1071,11 @@ public class ApplicationNetwork implements Iterable<ApplicationDescriptor> {
 
     protected ExecutorService createScannerExecutorService(final int pool_size) {
 
+        if (virtual_threads_enabled) {
+            final String name_format = application_name + SCANNER_EXECUTOR_THREAD_NAME_FORMAT;
+            return pool_size != Integer.MAX_VALUE ? VirtualThreadUtil.newBoundedThreadPerTaskExecutor(name_format, pool_size) : VirtualThreadUtil.newThreadPerTaskExecutor(name_format);
+        }
+
         final ThreadFactory thread_factory = createThreadFactory(SCANNER_EXECUTOR_THREAD_NAME_FORMAT);
         return pool_size != Integer.MAX_VALUE ? Executors.newFixedThreadPool(pool_size, thread_factory) : Executors.newCachedThreadPool(thread_factory);
     }
@@ -502,6 +1087,7 @@ public class ApplicationNetwork implements Iterable<ApplicationDescriptor> {
 
     protected ExecutorService createNetworkExecutorService() {
 
+        if (virtual_threads_enabled) { return VirtualThreadUtil.newThreadPerTaskExecutor(application_name + NETWORK_EXECUTOR_THREAD_NAME_FORMAT); }
         return Executors.newCachedThreadPool(createThreadFactory(NETWORK_EXECUTOR_THREAD_NAME_FORMAT));
     }
 
@@ -510,10 +1096,56 @@ public class ApplicationNetwork implements Iterable<ApplicationDescriptor> {
         return concurrent_scanner_executor;
     }
 
+    boolean isDeadlineScheduled(final Scanner scanner) {
+
+        return deadline_schedulers.containsKey(scanner);
+    }
+
+    HostConcurrencyLimiter getHostConcurrencyLimiter() {
+
+        return host_concurrency_limiter;
+    }
+
+    private static boolean isVirtualThreadsSupported(final String application_name) {
+
+        final boolean supported = VirtualThreadUtil.isSupported();
+        if (!supported) {
+            LOGGER.warn("virtual threads are not supported by the current JVM; network {} uses platform threads instead", application_name);
+        }
+        return supported;
+    }
+
+    private void onAdded(final ApplicationDescriptor descriptor) {
+
+        state_index.add(descriptor);
+        final HeartbeatReceiver receiver = heartbeat_receiver;
+        if (receiver != null) {
+            receiver.register(descriptor);
+        }
+        for (final DeadlineScanScheduler deadline_scheduler : deadline_schedulers.values()) {
+            deadline_scheduler.schedule(descriptor);
+        }
+    }
+
+    private void onRemoved(final ApplicationDescriptor descriptor) {
+
+        state_index.remove(descriptor);
+        final HeartbeatReceiver receiver = heartbeat_receiver;
+        if (receiver != null) {
+            receiver.unregister(descriptor);
+        }
+    }
+
+    boolean hasFreshHeartbeat(final ApplicationDescriptor descriptor) {
+
+        final HeartbeatReceiver receiver = heartbeat_receiver;
+        return receiver != null && receiver.isFresh(descriptor);
+    }
+
     private void closeHosts() {
 
         final List<CompletableFuture<Void>> host_closures = new ArrayList<>();
-        for (final ApplicationDescriptor application_descriptor : application_descriptors) {
+        for (final ApplicationDescriptor application_descriptor : getApplicationDescriptorsSnapshot()) {
             final CompletableFuture<Void> host_closure = CompletableFuture.runAsync(() -> {
 
                 final Host host = application_descriptor.getHost();
@@ -545,7 +1177,7 @@ public class ApplicationNetwork implements Iterable<ApplicationDescriptor> {
     private void killAllSilently() {
 
         final List<CompletableFuture<Void>> terminations = new ArrayList<>();
-        for (final ApplicationDescriptor application_descriptor : application_descriptors) {
+        for (final ApplicationDescriptor application_descriptor : getApplicationDescriptorsSnapshot()) {
             final CompletableFuture<Void> termination = CompletableFuture.runAsync(() -> {
                 try {
                     kill(application_descriptor);
@@ -566,6 +1198,7 @@ public class ApplicationNetwork implements Iterable<ApplicationDescriptor> {
             scheduled_scanners.values().stream().filter(scheduled_scanner -> scheduled_scanner != null).forEach(scheduled_scanner -> {
                 scheduled_scanner.cancel(true);
             });
+            deadline_schedulers.clear();
         }
     }
 
@@ -574,13 +1207,44 @@ public class ApplicationNetwork implements Iterable<ApplicationDescriptor> {
         return scheduled_scanners.containsKey(scanner);
     }
 
+    private void rescheduleActiveScanners() {
+
+        for (final Scanner scanner : new ArrayList<>(scheduled_scanners.keySet())) {
+            final ScheduledFuture<?> scheduled_scanner = scheduled_scanners.get(scanner);
+            if (scheduled_scanner != null && !scheduled_scanner.isDone()) {
+                scheduled_scanner.cancel(true);
+                scheduled_scanners.put(scanner, scheduleScanner(scanner));
+            }
+        }
+    }
+
     private ScheduledFuture<?> scheduleScanner(final Scanner scanner) {
 
+        if (fused_scanning_enabled && fused_scanner.isStage(scanner)) {
+            deadline_schedulers.remove(scanner);
+            return null; // performed as a stage of the fused scanner
+        }
+
+        if (deadline_scheduling_enabled && scanner instanceof ConcurrentScanner) {
+            return scheduleDeadlineScanner((ConcurrentScanner) scanner);
+        }
+
+        deadline_schedulers.remove(scanner);
         final Duration cycle_delay = scanner.getCycleDelay();
         final long cycle_delay_length = cycle_delay.getLength();
         return scanner_scheduler.scheduleWithFixedDelay(() -> scanner.scan(ApplicationNetwork.this), 0, cycle_delay_length, cycle_delay.getTimeUnit());
     }
 
+    private ScheduledFuture<?> scheduleDeadlineScanner(final ConcurrentScanner scanner) {
+
+        final DeadlineScanScheduler deadline_scheduler = new DeadlineScanScheduler(this, scanner);
+        deadline_schedulers.put(scanner, deadline_scheduler);
+        deadline_scheduler.start();
+
+        final Duration dispatch_interval = DeadlineScanScheduler.getDispatchInterval(scanner);
+        return scanner_scheduler.scheduleWithFixedDelay(deadline_scheduler, 0, dispatch_interval.getLength(), dispatch_interval.getTimeUnit());
+    }
+
     private class ScannerEnabledPropertyChangeListener implements PropertyChangeListener {
 
         @Override
@@ -608,6 +1272,7 @@ public class ApplicationNetwork implements Iterable<ApplicationDescriptor> {
                         if (future != null) {
                             future.cancel(true);
                         }
+                        deadline_schedulers.remove(scanner);
                     }
                 }
             }
@@ -616,4 +1281,37 @@ public class ApplicationNetwork implements Iterable<ApplicationDescriptor> {
             }
         }
     }
+
+    private final class SnapshotIterator implements Iterator<ApplicationDescriptor> {
+
+        private final Iterator<ApplicationDescriptor> snapshot_iterator;
+        private ApplicationDescriptor last_returned;
+
+        private SnapshotIterator(final Iterator<ApplicationDescriptor> snapshot_iterator) {
+
+            this.snapshot_iterator = snapshot_iterator;
+        }
+
+        @Override
+        public boolean hasNext() {
+
+            return snapshot_iterator.hasNext();
+        }
+
+        @Override
+        public ApplicationDescriptor next() {
+
+            last_returned = snapshot_iterator.next();
+            return last_returned;
+        }
+
+        @Override
+        public void remove() {
+
+            if (last_returned == null) { throw new IllegalStateException(); }
+
+            ApplicationNetwork.this.remove(last_returned);
+            last_returned = null;
+        }
+    }
 }
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2013 University of St Andrews School of Computer Science
+ *
+ * This file is part of Shabdiz.
+ *
+ * Shabdiz is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Shabdiz is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Shabdiz.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.standrews.cs.shabdiz;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Indexes a set of {@link ApplicationDescriptor descriptors} by their {@link ApplicationDescriptor#getApplicationState() state}.
+ * The index is kept up to date by listening to the state changes of the indexed descriptors.
+ * On each state change, the descriptor is re-indexed according to its current state; therefore, the index converges to the current state of descriptors regardless of the order in which state change events are delivered.
+ * The number of descriptors in a given state, and the set of descriptors in a given state, are retrieved in constant time.
+ * This class is thread-safe.
+ *
+ * @author Masih Hajiarabderkani (mh638@st-andrews.ac.uk)
+ */
+final class ApplicationStateIndex implements StateTransitionListener {
+
+    private final EnumMap<ApplicationState, Set<ApplicationDescriptor>> descriptors_by_state;
+    private final ConcurrentHashMap<ApplicationDescriptor, ApplicationState> indexed_states;
+
+    ApplicationStateIndex() {
+
+        descriptors_by_state = new EnumMap<>(ApplicationState.class);
+        for (final ApplicationState state : ApplicationState.values()) {
+            descriptors_by_state.put(state, ConcurrentHashMap.newKeySet());
+        }
+        indexed_states = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Starts indexing the given {@code descriptor}.
+     *
+     * @param descriptor the descriptor to index
+     */
+    void add(final ApplicationDescriptor descriptor) {
+
+        descriptor.addStateTransitionListener(this);
+        indexed_states.compute(descriptor, (key, indexed_state) -> reindex(descriptor, indexed_state));
+    }
+
+    /**
+     * Stops indexing the given {@code descriptor}.
+     *
+     * @param descriptor the descriptor to stop indexing
+     */
+    void remove(final ApplicationDescriptor descriptor) {
+
+        descriptor.removeStateTransitionListener(this);
+        indexed_states.computeIfPresent(descriptor, (key, indexed_state) -> {
+            descriptors_by_state.get(indexed_state).remove(descriptor);
+            return null;
+        });
+    }
+
+    /** Stops indexing all the indexed descriptors. */
+    void clear() {
+
+        for (final ApplicationDescriptor descriptor : indexed_states.keySet()) {
+            remove(descriptor);
+        }
+    }
+
+    /**
+     * Gets the number of indexed descriptors that are in the given {@code state}.
+     *
+     * @param state the state
+     * @return the number of indexed descriptors that are in the given {@code state}
+     */
+    int count(final ApplicationState state) {
+
+        return descriptors_by_state.get(state).size();
+    }
+
+    /**
+     * Gets an unmodifiable live view of the indexed descriptors that are in the given {@code state}.
+     * The iterators of the returned set are weakly consistent.
+     *
+     * @param state the state
+     * @return an unmodifiable live view of the indexed descriptors that are in the given {@code state}
+     */
+    Set<ApplicationDescriptor> get(final ApplicationState state) {
+
+        return Collections.unmodifiableSet(descriptors_by_state.get(state));
+    }
+
+    @Override
+    public void onStateTransition(final ApplicationDescriptor descriptor, final ApplicationState old_state, final ApplicationState new_state) {
+
+        indexed_states.computeIfPresent(descriptor, (key, indexed_state) -> reindex(descriptor, indexed_state));
+    }
+
+    private ApplicationState reindex(final ApplicationDescriptor descriptor, final ApplicationState indexed_state) {
+
+        final ApplicationState current_state = descriptor.getApplicationState();
+        if (current_state != indexed_state) {
+            if (indexed_state != null) {
+                descriptors_by_state.get(indexed_state).remove(descriptor);
+            }
+            descriptors_by_state.get(current_state).add(descriptor);
+        }
+        return current_state;
+    }
+}
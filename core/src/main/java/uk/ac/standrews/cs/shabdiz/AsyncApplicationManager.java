@@ -0,0 +1,60 @@
+/*
+ * Copyright 2013 University of St Andrews School of Computer Science
+ *
+ * This file is part of Shabdiz.
+ *
+ * Shabdiz is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Shabdiz is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Shabdiz.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.standrews.cs.shabdiz;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * An {@link ApplicationManager} that performs its status probe, deployment and termination asynchronously.
+ * Managers that are backed by non-blocking clients should implement this interface, so that the {@link StatusScanner status scanner} and {@link ApplicationNetwork network} do not occupy a thread for the duration of each operation.
+ * Any {@link ApplicationManager} may be {@link AsyncApplicationManagerAdapter#adapt(ApplicationManager, java.util.concurrent.Executor) adapted} to this interface.
+ *
+ * @author Masih Hajiarabderkani (mh638@st-andrews.ac.uk)
+ * @see AbstractAsyncApplicationManager
+ */
+public interface AsyncApplicationManager extends ApplicationManager {
+
+    /**
+     * Asynchronously investigates the {@link ApplicationState state} of the application instance that is described by the given {@code descriptor}.
+     *
+     * @param descriptor the descriptor of an application instance
+     * @return a future that completes with the state that the application instance is believed to be in
+     * @see #probeState(ApplicationDescriptor)
+     */
+    CompletableFuture<ApplicationState> probeStateAsync(ApplicationDescriptor descriptor);
+
+    /**
+     * Asynchronously deploys a new instance of the application that is described by the given {@code descriptor}.
+     *
+     * @param descriptor the descriptor of an application instance
+     * @return a future that completes with a reference to the deployed application, or completes exceptionally if the deployment fails
+     * @see #deploy(ApplicationDescriptor)
+     */
+    CompletableFuture<Object> deployAsync(ApplicationDescriptor descriptor);
+
+    /**
+     * Asynchronously kills the application instance that is described by the given {@code descriptor}.
+     *
+     * @param descriptor the descriptor of an application instance
+     * @return a future that completes once the application instance is killed, or completes exceptionally if the attempt to kill the application fails
+     * @see #kill(ApplicationDescriptor)
+     */
+    CompletableFuture<Void> killAsync(ApplicationDescriptor descriptor);
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2013 University of St Andrews School of Computer Science
+ *
+ * This file is part of Shabdiz.
+ *
+ * Shabdiz is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Shabdiz is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Shabdiz.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.standrews.cs.shabdiz;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Adapts a synchronous {@link ApplicationManager} to the {@link AsyncApplicationManager} interface by performing its operations on a given {@link Executor executor}.
+ *
+ * @author Masih Hajiarabderkani (mh638@st-andrews.ac.uk)
+ */
+public final class AsyncApplicationManagerAdapter implements AsyncApplicationManager {
+
+    private final ApplicationManager manager;
+    private final Executor executor;
+
+    private AsyncApplicationManagerAdapter(final ApplicationManager manager, final Executor executor) {
+
+        this.manager = manager;
+        this.executor = executor;
+    }
+
+    /**
+     * Adapts the given {@code manager} to the {@link AsyncApplicationManager} interface.
+     * If the given {@code manager} is already asynchronous, it is returned as is.
+     *
+     * @param manager the manager to adapt
+     * @param executor the executor on which to perform the operations of a synchronous manager
+     * @return an asynchronous view of the given {@code manager}
+     */
+    public static AsyncApplicationManager adapt(final ApplicationManager manager, final Executor executor) {
+
+        return manager instanceof AsyncApplicationManager ? (AsyncApplicationManager) manager : new AsyncApplicationManagerAdapter(manager, executor);
+    }
+
+    @Override
+    public CompletableFuture<ApplicationState> probeStateAsync(final ApplicationDescriptor descriptor) {
+
+        return CompletableFuture.supplyAsync(() -> manager.probeState(descriptor), executor);
+    }
+
+    @Override
+    public CompletableFuture<Object> deployAsync(final ApplicationDescriptor descriptor) {
+
+        final CompletableFuture<Object> deployment = new CompletableFuture<>();
+        executor.execute(() -> {
+            try {
+                deployment.complete(manager.deploy(descriptor));
+            }
+            catch (final Throwable e) {
+                deployment.completeExceptionally(e);
+            }
+        });
+        return deployment;
+    }
+
+    @Override
+    public CompletableFuture<Void> killAsync(final ApplicationDescriptor descriptor) {
+
+        final CompletableFuture<Void> termination = new CompletableFuture<>();
+        executor.execute(() -> {
+            try {
+                manager.kill(descriptor);
+                termination.complete(null);
+            }
+            catch (final Throwable e) {
+                termination.completeExceptionally(e);
+            }
+        });
+        return termination;
+    }
+
+    @Override
+    public ApplicationState probeState(final ApplicationDescriptor descriptor) {
+
+        return manager.probeState(descriptor);
+    }
+
+    @Override
+    public Object deploy(final ApplicationDescriptor descriptor) throws Exception {
+
+        return manager.deploy(descriptor);
+    }
+
+    @Override
+    public void kill(final ApplicationDescriptor descriptor) throws Exception {
+
+        manager.kill(descriptor);
+    }
+}
@@ -19,6 +19,10 @@
 
 package uk.ac.standrews.cs.shabdiz;
 
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import uk.ac.standrews.cs.shabdiz.util.Duration;
@@ -26,6 +30,9 @@ import uk.ac.standrews.cs.shabdiz.util.Duration;
 /**
  * Scanner that checks for machines that will accept an SSH connection but are not currently running the given application, i.e. that
  * are in state AUTH. For such machines an attempt is made to launch the application.
+ * The candidates of each scan cycle are looked up by their {@link #getDeployableStates() deployable states} in the state index of the network.
+ * Deployments are subject to the {@link #getAdmissionController() admission controller} of this scanner, which may bound the number of deployments in flight and the rate at which they start.
+ * The admission of a deployment is awaited on the network executor rather than on a scanner thread; a descriptor that awaits admission counts as {@link ApplicationNetwork#isOperationInFlight(ApplicationDescriptor) in flight}, and keeps its place in the admission queue across scan cycles.
  *
  * @author Graham Kirby (graham.kirby@st-andrews.ac.uk)
  * @author Masih Hajiarabderkani (mh638@st-andrews.ac.uk)
@@ -33,28 +40,71 @@ import uk.ac.standrews.cs.shabdiz.util.Duration;
 public class AutoDeployScanner extends ConcurrentScanner {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(AutoDeployScanner.class);
+    private static final Set<ApplicationState> DEPLOYABLE_STATES = Collections.unmodifiableSet(EnumSet.of(ApplicationState.AUTH));
+    private final DeploymentAdmissionController admission_controller;
 
     protected AutoDeployScanner(final Duration cycle_delay, final Duration timeout) {
 
         super(cycle_delay, timeout, false);
+        admission_controller = new DeploymentAdmissionController();
+    }
+
+    /**
+     * Gets the controller that admits the deployments performed by this scanner.
+     *
+     * @return the controller that admits the deployments performed by this scanner
+     */
+    public DeploymentAdmissionController getAdmissionController() {
+
+        return admission_controller;
     }
 
     @Override
     protected void scan(final ApplicationNetwork network, final ApplicationDescriptor descriptor) {
 
-        if (isDeployable(descriptor)) {
-            try {
-                network.deploy(descriptor);
-            }
-            catch (final Exception e) {
-                LOGGER.error("auto deployment failed", e);
-            }
+        if (isDeployable(descriptor) && !network.isOperationInFlight(descriptor)) {
+            // check again once admitted in case the state has changed while awaiting admission
+            network.deployAsync(descriptor, admission_controller, this::isDeployable).whenComplete((result, error) -> {
+                final Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                if (cause instanceof InterruptedException) {
+                    LOGGER.debug("interrupted while awaiting admission to deploy {}", descriptor);
+                }
+                else if (cause != null) {
+                    LOGGER.error("auto deployment failed", cause);
+                }
+            });
         }
     }
 
+    @Override
+    protected Iterable<ApplicationDescriptor> getScanCandidates(final ApplicationNetwork network) {
+
+        final Set<ApplicationState> deployable_states = getDeployableStates();
+        return network.getApplicationDescriptorsInAnyOfStates(deployable_states.toArray(new ApplicationState[deployable_states.size()]));
+    }
+
+    /**
+     * Gets the states in which a descriptor may be deployed by this scanner.
+     * By default, only the descriptors in {@link ApplicationState#AUTH} state are deployable.
+     * Only the descriptors in these states are offered to {@link #isDeployable(ApplicationDescriptor)}; subclasses that deploy from other states must override this method.
+     *
+     * @return the states in which a descriptor may be deployed
+     */
+    protected Set<ApplicationState> getDeployableStates() {
+
+        return DEPLOYABLE_STATES;
+    }
+
+    /**
+     * Checks whether the given descriptor should be deployed.
+     * This implementation checks whether the descriptor is in one of the {@link #getDeployableStates() deployable states}.
+     * Subclasses may override this method to narrow down the deployable descriptors, but must not accept a descriptor in a state that is not deployable, since such descriptors are never scanned.
+     *
+     * @param application_descriptor the descriptor to check
+     * @return whether the given descriptor should be deployed
+     */
     protected boolean isDeployable(final ApplicationDescriptor application_descriptor) {
 
-        final ApplicationState state = application_descriptor.getApplicationState();
-        return state == ApplicationState.AUTH;
+        return getDeployableStates().contains(application_descriptor.getApplicationState());
     }
 }
@@ -41,7 +41,7 @@ public class AutoKillScanner extends ConcurrentScanner {
     @Override
     protected void scan(final ApplicationNetwork network, final ApplicationDescriptor descriptor) {
 
-        if (isKillable(descriptor)) {
+        if (isKillable(descriptor) && !network.isOperationInFlight(descriptor)) {
             try {
                 network.kill(descriptor);
             }
@@ -51,6 +51,12 @@ public class AutoKillScanner extends ConcurrentScanner {
         }
     }
 
+    @Override
+    protected Iterable<ApplicationDescriptor> getScanCandidates(final ApplicationNetwork network) {
+
+        return network.getApplicationDescriptorsInAnyOfStates(ApplicationState.RUNNING, ApplicationState.DEPLOYED);
+    }
+
     private boolean isKillable(final ApplicationDescriptor application_descriptor) {
 
         final ApplicationState state = application_descriptor.getApplicationState();
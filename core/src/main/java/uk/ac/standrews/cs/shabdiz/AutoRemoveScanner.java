@@ -19,6 +19,9 @@
 
 package uk.ac.standrews.cs.shabdiz;
 
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
 import uk.ac.standrews.cs.shabdiz.util.Duration;
 
 import static uk.ac.standrews.cs.shabdiz.ApplicationState.INVALID;
@@ -26,20 +29,49 @@ import static uk.ac.standrews.cs.shabdiz.ApplicationState.UNREACHABLE;
 
 /**
  * Scanner that checks for unreachable or invalid hosts, and drops them from the host list.
+ * The candidates of each scan cycle are looked up by their {@link #getRemovableStates() removable states} in the state index of the network.
  *
  * @author Masih Hajiarabderkani (mh638@st-andrews.ac.uk)
  */
 public class AutoRemoveScanner extends ConcurrentScanner {
 
+    private static final Set<ApplicationState> REMOVABLE_STATES = Collections.unmodifiableSet(EnumSet.of(UNREACHABLE, INVALID));
+
     protected AutoRemoveScanner(final Duration cycle_delay, final Duration timeout) {
 
         super(cycle_delay, timeout, false);
     }
 
+    /**
+     * Gets the states in which a descriptor may be removed by this scanner.
+     * By default, the descriptors in {@link ApplicationState#UNREACHABLE} or {@link ApplicationState#INVALID} state are removable.
+     * Only the descriptors in these states are offered to {@link #isRemovable(ApplicationDescriptor)}; subclasses that remove from other states must override this method.
+     *
+     * @return the states in which a descriptor may be removed
+     */
+    protected Set<ApplicationState> getRemovableStates() {
+
+        return REMOVABLE_STATES;
+    }
+
+    /**
+     * Checks whether the given descriptor should be removed.
+     * This implementation checks whether the descriptor is in one of the {@link #getRemovableStates() removable states}.
+     * Subclasses may override this method to narrow down the removable descriptors, but must not accept a descriptor in a state that is not removable, since such descriptors are never scanned.
+     *
+     * @param application_descriptor the descriptor to check
+     * @return whether the given descriptor should be removed
+     */
     protected boolean isRemovable(final ApplicationDescriptor application_descriptor) {
 
-        final ApplicationState state = application_descriptor.getApplicationState();
-        return state == UNREACHABLE || state == INVALID;
+        return getRemovableStates().contains(application_descriptor.getApplicationState());
+    }
+
+    @Override
+    protected Iterable<ApplicationDescriptor> getScanCandidates(final ApplicationNetwork network) {
+
+        final Set<ApplicationState> removable_states = getRemovableStates();
+        return network.getApplicationDescriptorsInAnyOfStates(removable_states.toArray(new ApplicationState[removable_states.size()]));
     }
 
     @Override
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2013 University of St Andrews School of Computer Science
+ *
+ * This file is part of Shabdiz.
+ *
+ * Shabdiz is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Shabdiz is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Shabdiz.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.standrews.cs.shabdiz;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * An {@link ApplicationManager} that can probe the state of many application instances at once, e.g. by listing the processes of a host or by querying a cluster coordinator.
+ * The {@link StatusScanner status scanner} partitions the descriptors that are managed by a batch manager by their {@link ApplicationDescriptor#getHost() host}, and probes each partition in a single call per scan cycle.
+ *
+ * @author Masih Hajiarabderkani (mh638@st-andrews.ac.uk)
+ */
+public interface BatchApplicationManager extends ApplicationManager {
+
+    /**
+     * Attempts to investigate the {@link ApplicationState states} of the application instances that are described by the given {@code descriptors}.
+     * The given descriptors are all managed by this manager and share the same {@link ApplicationDescriptor#getHost() host}.
+     * Descriptors that are missing from the returned map are probed individually via {@link #probeState(ApplicationDescriptor)}.
+     *
+     * @param descriptors the descriptors of the application instances to probe
+     * @return the states that the application instances are believed to be in, mapped by their descriptors
+     * @see #probeState(ApplicationDescriptor)
+     */
+    Map<ApplicationDescriptor, ApplicationState> probeStates(Collection<ApplicationDescriptor> descriptors);
+}
@@ -20,12 +20,19 @@
 package uk.ac.standrews.cs.shabdiz;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
-import java.util.concurrent.TimeoutException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantLock;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -33,6 +40,10 @@ import uk.ac.standrews.cs.shabdiz.util.Duration;
 
 /**
  * A host scanner that concurrently scans each {@link ApplicationDescriptor descriptor} in a given {@link ApplicationNetwork application network}.
+ * The scans of a cycle are collected in the order in which they complete, until the {@link #getScanTimeout() scan timeout} of the cycle is elapsed.
+ * Only the scans that are still in progress when the timeout is elapsed are cancelled; the descriptors of such scans are reported as {@link #getTimedOutDescriptors() timed out}.
+ * The descriptors of the scans that completed in time, but took longer than the {@link #getSlowScanThreshold() slow scan threshold} are reported as {@link #getSlowDescriptors() slow}.
+ * The candidates of a cycle may be {@link #groupScanCandidates(ApplicationNetwork, Iterable) grouped}, in which case the descriptors of a group are scanned together in a single scan.
  *
  * @author Masih Hajiarabderkani (mh638@st-andrews.ac.uk)
  */
@@ -40,14 +51,21 @@ public abstract class ConcurrentScanner extends Scanner {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(ConcurrentScanner.class);
     private final ReentrantLock scan_lock;
-    private final List<Future<?>> scheduled_scans;
+    private final List<ScheduledScan> scheduled_scans;
+    private volatile BlockingQueue<ScheduledScan> completed_scans;
     private volatile long cycle_start_time;
+    private volatile Duration slow_scan_threshold;
+    private volatile Set<ApplicationDescriptor> timed_out_descriptors;
+    private volatile Set<ApplicationDescriptor> slow_descriptors;
 
     protected ConcurrentScanner(final Duration min_cycle_time, final Duration check_timeout, final boolean enabled) {
 
         super(min_cycle_time, check_timeout, enabled);
         scan_lock = new ReentrantLock();
-        scheduled_scans = new ArrayList<Future<?>>();
+        scheduled_scans = new ArrayList<ScheduledScan>();
+        slow_scan_threshold = check_timeout.dividedBy(2);
+        timed_out_descriptors = Collections.emptySet();
+        slow_descriptors = Collections.emptySet();
     }
 
     @Override
@@ -70,8 +88,113 @@ public abstract class ConcurrentScanner extends Scanner {
         }
     }
 
+    /**
+     * Gets the descriptors of which the scan did not complete within the timeout of the last scan cycle.
+     *
+     * @return the descriptors of which the scan timed out in the last scan cycle
+     */
+    public Set<ApplicationDescriptor> getTimedOutDescriptors() {
+
+        return timed_out_descriptors;
+    }
+
+    /**
+     * Gets the descriptors of which the scan completed within the timeout of the last scan cycle, but took longer than the {@link #getSlowScanThreshold() slow scan threshold}.
+     *
+     * @return the descriptors of which the scan was slow in the last scan cycle
+     */
+    public Set<ApplicationDescriptor> getSlowDescriptors() {
+
+        return slow_descriptors;
+    }
+
+    /**
+     * Gets the duration after which the scan of a descriptor is considered to be slow.
+     * By default, the threshold is half of the {@link #getScanTimeout() scan timeout}.
+     *
+     * @return the duration after which the scan of a descriptor is considered to be slow
+     */
+    public Duration getSlowScanThreshold() {
+
+        return slow_scan_threshold;
+    }
+
+    /**
+     * Sets the duration after which the scan of a descriptor is considered to be slow.
+     *
+     * @param slow_scan_threshold the duration after which the scan of a descriptor is considered to be slow
+     */
+    public void setSlowScanThreshold(final Duration slow_scan_threshold) {
+
+        this.slow_scan_threshold = slow_scan_threshold;
+    }
+
     protected abstract void scan(ApplicationNetwork network, ApplicationDescriptor descriptor);
 
+    /**
+     * Scans the given {@code group} of descriptors together in a single scan.
+     * This method is only called for the {@link #groupScanCandidates(ApplicationNetwork, Iterable) groups} of more than one descriptor.
+     * This implementation {@link #scan(ApplicationNetwork, ApplicationDescriptor) scans} each descriptor of the group in turn.
+     *
+     * @param network the network to which the descriptors belong
+     * @param group the descriptors to scan
+     */
+    protected void scan(final ApplicationNetwork network, final List<ApplicationDescriptor> group) {
+
+        for (final ApplicationDescriptor descriptor : group) {
+            if (Thread.currentThread().isInterrupted()) {
+                break;
+            }
+            scan(network, descriptor);
+        }
+    }
+
+    /**
+     * Groups the given scan {@code candidates} of a scan cycle into the descriptors that are scanned together.
+     * The groups are computed once per cycle and passed down to the {@link #scan(ApplicationNetwork, List) scan} of each group.
+     * By default, each candidate forms a group of its own.
+     * Note that the scans that are scheduled {@link ApplicationNetwork#setDeadlineSchedulingEnabled(boolean) per descriptor} are never grouped.
+     *
+     * @param network the network to be scanned
+     * @param candidates the {@link #getScanCandidates(ApplicationNetwork) candidates} of a scan cycle
+     * @return the groups of descriptors to be scanned together
+     */
+    protected List<List<ApplicationDescriptor>> groupScanCandidates(final ApplicationNetwork network, final Iterable<ApplicationDescriptor> candidates) {
+
+        final List<List<ApplicationDescriptor>> groups = new ArrayList<List<ApplicationDescriptor>>();
+        for (final ApplicationDescriptor candidate : candidates) {
+            groups.add(Collections.singletonList(candidate));
+        }
+        return groups;
+    }
+
+    /**
+     * Checks whether the given {@code descriptor} should be {@link #scanAsync(ApplicationNetwork, ApplicationDescriptor) scanned asynchronously}.
+     * This implementation returns {@code false}; subclasses that can scan a descriptor without occupying a thread, e.g. via an {@link AsyncApplicationManager}, may override this method.
+     *
+     * @param network the network to which the descriptor belongs
+     * @param descriptor the descriptor to scan
+     * @return whether the given {@code descriptor} should be scanned asynchronously
+     */
+    protected boolean isScannedAsynchronously(final ApplicationNetwork network, final ApplicationDescriptor descriptor) {
+
+        return false;
+    }
+
+    /**
+     * Asynchronously scans the given {@code descriptor}.
+     * This method is only called if the descriptor is {@link #isScannedAsynchronously(ApplicationNetwork, ApplicationDescriptor) scanned asynchronously}.
+     * This implementation performs the {@link #scan(ApplicationNetwork, ApplicationDescriptor) synchronous scan} on the concurrent scanner executor of the given {@code network}.
+     *
+     * @param network the network to which the descriptor belongs
+     * @param descriptor the descriptor to scan
+     * @return a future that completes once the scan is complete
+     */
+    protected CompletableFuture<Void> scanAsync(final ApplicationNetwork network, final ApplicationDescriptor descriptor) {
+
+        return CompletableFuture.runAsync(() -> scan(network, descriptor), network.getConcurrentScannerExecutor());
+    }
+
     /**
      * Method invoked prior to scanning the given network.
      * This implementation does nothing, but may be customised in subclasses.
@@ -98,58 +221,156 @@ public abstract class ConcurrentScanner extends Scanner {
 
         cycle_start_time = System.nanoTime();
         scheduled_scans.clear();
+        completed_scans = new LinkedBlockingQueue<ScheduledScan>();
     }
 
     private void scheduleConcurrentScans(final ApplicationNetwork network) {
 
-        for (final ApplicationDescriptor descriptor : network) {
-            final Future<?> future_scan = scheduleScan(network, descriptor);
-            scheduled_scans.add(future_scan);
+        final ExecutorService executor = network.getConcurrentScannerExecutor();
+        for (final List<ApplicationDescriptor> group : groupScanCandidates(network, getScanCandidates(network))) {
+            if (group.isEmpty()) {
+                continue;
+            }
+            final ScheduledScan scheduled_scan = new ScheduledScan(network, group, completed_scans);
+            scheduled_scans.add(scheduled_scan);
+            scheduled_scan.start(executor);
         }
     }
 
-    private Future<?> scheduleScan(final ApplicationNetwork network, final ApplicationDescriptor descriptor) {
+    /**
+     * Gets the descriptors of the given {@code network} that should be scanned in a scan cycle.
+     * By default, all the descriptors in the {@link ApplicationNetwork#getApplicationDescriptorsSnapshot() snapshot} of the given {@code network} are scanned.
+     * Subclasses that only act upon descriptors in certain states may override this method to narrow down the candidates using the network's {@link ApplicationNetwork#getApplicationDescriptorsInAnyOfStates(ApplicationState...) state index}.
+     *
+     * @param network the network to be scanned
+     * @return the descriptors to be scanned
+     */
+    protected Iterable<ApplicationDescriptor> getScanCandidates(final ApplicationNetwork network) {
 
-        final ExecutorService executor = network.getConcurrentScannerExecutor();
-        return executor.submit(new Runnable() {
+        return network.getApplicationDescriptorsSnapshot();
+    }
 
-            @Override
-            public void run() {
+    /**
+     * Scans the given {@code descriptor} if this scanner is {@link #isEnabled() enabled}.
+     * Any failure that occurs during the scan is logged.
+     *
+     * @param network the network to which the descriptor belongs
+     * @param descriptor the descriptor to scan
+     */
+    void scanDescriptor(final ApplicationNetwork network, final ApplicationDescriptor descriptor) {
 
-                if (isEnabled()) {
-                    try {
-                        scan(network, descriptor);
-                    }
-                    catch (Throwable e) {
-                        LOGGER.error("failed to scan descriptor {} of network {} in scanner {}", descriptor, network, this);
-                        LOGGER.error("failure occurred while scanning descriptor " + descriptor, e);
-                    }
-                }
+        if (isEnabled()) {
+            try {
+                scan(network, descriptor);
+            }
+            catch (Throwable e) {
+                LOGGER.error("failed to scan descriptor {} of network {} in scanner {}", descriptor, network, this);
+                LOGGER.error("failure occurred while scanning descriptor " + descriptor, e);
+            }
+        }
+    }
+
+    private void scanGroup(final ApplicationNetwork network, final List<ApplicationDescriptor> group) {
+
+        if (group.size() == 1) {
+            scanDescriptor(network, group.get(0));
+        }
+        else if (isEnabled()) {
+            try {
+                scan(network, group);
+            }
+            catch (Throwable e) {
+                LOGGER.error("failed to scan descriptors {} of network {} in scanner {}", group, network, this);
+                LOGGER.error("failure occurred while scanning descriptors " + group, e);
+            }
+        }
+    }
+
+    /**
+     * Asynchronously scans the given {@code descriptor} if this scanner is {@link #isEnabled() enabled}.
+     * Any failure that occurs during the scan is logged.
+     *
+     * @param network the network to which the descriptor belongs
+     * @param descriptor the descriptor to scan
+     * @return a future that completes once the scan is complete
+     */
+    CompletableFuture<Void> scanDescriptorAsync(final ApplicationNetwork network, final ApplicationDescriptor descriptor) {
+
+        if (!isEnabled()) { return CompletableFuture.completedFuture(null); }
+
+        final CompletableFuture<Void> scan = startAsyncScan(network, descriptor);
+        final CompletableFuture<Void> logged_scan = scan.handle((result, error) -> {
+            if (error != null) {
+                LOGGER.error("failure occurred while asynchronously scanning descriptor " + descriptor, error);
+            }
+            return null;
+        });
+        logged_scan.whenComplete((result, error) -> {
+            if (logged_scan.isCancelled()) {
+                scan.cancel(true);
             }
         });
+        return logged_scan;
+    }
+
+    private CompletableFuture<Void> startAsyncScan(final ApplicationNetwork network, final ApplicationDescriptor descriptor) {
+
+        try {
+            return scanAsync(network, descriptor);
+        }
+        catch (final Throwable e) {
+            final CompletableFuture<Void> failed_scan = new CompletableFuture<Void>();
+            failed_scan.completeExceptionally(e);
+            return failed_scan;
+        }
     }
 
     private void awaitScanCompletionUntilTimeoutIsElapsed() {
 
-        for (final Future<?> scheduled_scan : scheduled_scans) {
+        final long slow_scan_threshold_nanos = slow_scan_threshold.getLength(TimeUnit.NANOSECONDS);
+        final Set<ApplicationDescriptor> slow = new HashSet<ApplicationDescriptor>();
+        int remaining_scans = scheduled_scans.size();
+
+        while (remaining_scans > 0) {
 
             final Duration remaining_time = getRemainingTime();
+            final ScheduledScan completed_scan;
             try {
-                scheduled_scan.get(remaining_time.getLength(), remaining_time.getTimeUnit());
+                completed_scan = completed_scans.poll(remaining_time.getLength(), remaining_time.getTimeUnit());
             }
             catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
                 break;
             }
-            catch (final TimeoutException e) {
+
+            if (completed_scan == null) {
                 break;
             }
-            catch (final CancellationException e) {
-                LOGGER.warn("scheduled host check was cancelled", e);
-            }
-            catch (final ExecutionException e) {
-                LOGGER.warn("schedule host check failed", e.getCause());
+
+            remaining_scans--;
+            checkCompletedScan(completed_scan);
+            if (completed_scan.getElapsedNanos() > slow_scan_threshold_nanos) {
+                slow.addAll(completed_scan.group);
             }
         }
+
+        slow_descriptors = Collections.unmodifiableSet(slow);
+    }
+
+    private static void checkCompletedScan(final ScheduledScan completed_scan) {
+
+        try {
+            completed_scan.future.get();
+        }
+        catch (final CancellationException e) {
+            LOGGER.warn("scheduled host check was cancelled", e);
+        }
+        catch (final ExecutionException e) {
+            LOGGER.warn("schedule host check failed", e.getCause());
+        }
+        catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
     }
 
     private Duration getRemainingTime() {
@@ -159,8 +380,70 @@ public abstract class ConcurrentScanner extends Scanner {
 
     private void cancelLingeringScans() {
 
-        for (final Future<?> scheduled_scan : scheduled_scans) {
-            scheduled_scan.cancel(true);
+        final Set<ApplicationDescriptor> timed_out = new HashSet<ApplicationDescriptor>();
+        for (final ScheduledScan scheduled_scan : scheduled_scans) {
+            if (scheduled_scan.future.cancel(true)) {
+                timed_out.addAll(scheduled_scan.group);
+            }
+        }
+
+        timed_out_descriptors = Collections.unmodifiableSet(timed_out);
+        if (!timed_out.isEmpty()) {
+            LOGGER.warn("{} scans of scanner {} did not complete within the scan timeout", timed_out.size(), this);
+            LOGGER.debug("timed out descriptors: {}", timed_out);
+        }
+    }
+
+    private final class ScheduledScan {
+
+        private final ApplicationNetwork network;
+        private final List<ApplicationDescriptor> group;
+        private final BlockingQueue<ScheduledScan> completion_queue;
+        private volatile Future<?> future;
+        private volatile long start_time;
+        private volatile long end_time;
+
+        private ScheduledScan(final ApplicationNetwork network, final List<ApplicationDescriptor> group, final BlockingQueue<ScheduledScan> completion_queue) {
+
+            this.network = network;
+            this.group = group;
+            this.completion_queue = completion_queue;
+        }
+
+        private void start(final ExecutorService executor) {
+
+            if (group.size() == 1 && isScannedAsynchronously(network, group.get(0))) {
+                start_time = System.nanoTime();
+                final CompletableFuture<Void> scan = scanDescriptorAsync(network, group.get(0));
+                future = scan;
+                scan.whenComplete((result, error) -> done());
+            }
+            else {
+                final FutureTask<Void> scan = new FutureTask<Void>(() -> {
+                    start_time = System.nanoTime();
+                    scanGroup(network, group);
+                }, null) {
+
+                    @Override
+                    protected void done() {
+
+                        ScheduledScan.this.done();
+                    }
+                };
+                future = scan;
+                executor.execute(scan);
+            }
+        }
+
+        private void done() {
+
+            end_time = System.nanoTime();
+            completion_queue.add(this);
+        }
+
+        private long getElapsedNanos() {
+
+            return start_time == 0 ? 0 : end_time - start_time;
         }
     }
 }
@@ -0,0 +1,285 @@
+/*
+ * Copyright 2013 University of St Andrews School of Computer Science
+ *
+ * This file is part of Shabdiz.
+ *
+ * Shabdiz is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Shabdiz is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Shabdiz.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.standrews.cs.shabdiz;
+
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.ac.standrews.cs.shabdiz.util.Duration;
+
+/**
+ * Schedules the scans of a {@link ConcurrentScanner} per {@link ApplicationDescriptor descriptor} rather than per network sweep.
+ * Each descriptor has its own deadline, held in a priority queue, at which it is next due to be scanned.
+ * Once the scan of a descriptor completes, the descriptor is rescheduled to be scanned again after the {@link Scanner#getCycleDelay() cycle delay} of the scanner.
+ * The initial deadlines are spread evenly across the cycle delay, so that scans are performed continuously rather than in bursts, and a slow descriptor never holds up the others.
+ * Scans that exceed the {@link Scanner#getScanTimeout() scan timeout} of the scanner are cancelled.
+ * A descriptor is only rescheduled once its scan has actually returned, so that the scans of a descriptor never overlap even if an overdue scan does not respond to interruption.
+ * Overdue asynchronous scans are not cancelled, since cancelling a {@link CompletableFuture} does not stop the work that completes it; their descriptors are rescheduled once the scan completes.
+ * <p>
+ * This scheduler is {@link #run() run} periodically by the {@link ApplicationNetwork network}; each run dispatches the scans that are due to the network's concurrent scanner executor.
+ * Descriptors that are {@link ConcurrentScanner#isScannedAsynchronously(ApplicationNetwork, ApplicationDescriptor) scanned asynchronously} do not occupy a thread of the executor while their scan is in progress.
+ * Note that the {@link ConcurrentScanner#beforeScan()} and {@link ConcurrentScanner#afterScan()} hooks are not invoked, since there is no notion of a scan cycle.
+ *
+ * @author Masih Hajiarabderkani (mh638@st-andrews.ac.uk)
+ */
+final class DeadlineScanScheduler implements Runnable {
+
+    /** The maximum interval between two consecutive dispatches of due scans. */
+    static final Duration MAX_DISPATCH_INTERVAL = new Duration(100, TimeUnit.MILLISECONDS);
+    private static final Logger LOGGER = LoggerFactory.getLogger(DeadlineScanScheduler.class);
+    private final ApplicationNetwork network;
+    private final ConcurrentScanner scanner;
+    private final PriorityQueue<ScanDeadline> deadlines;
+    private final Set<ApplicationDescriptor> scheduled_descriptors;
+    private final Map<ApplicationDescriptor, ScheduledScan> in_flight_scans;
+    private final long cycle_delay_nanos;
+    private final long scan_timeout_nanos;
+
+    DeadlineScanScheduler(final ApplicationNetwork network, final ConcurrentScanner scanner) {
+
+        this.network = network;
+        this.scanner = scanner;
+        deadlines = new PriorityQueue<>();
+        scheduled_descriptors = ConcurrentHashMap.newKeySet();
+        in_flight_scans = new ConcurrentHashMap<>();
+        cycle_delay_nanos = scanner.getCycleDelay().getLength(TimeUnit.NANOSECONDS);
+        scan_timeout_nanos = scanner.getScanTimeout().getLength(TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Gets the interval at which a scheduler for the given {@code scanner} should be {@link #run() run}.
+     *
+     * @param scanner the scanner
+     * @return the interval at which a scheduler for the given {@code scanner} should be run
+     */
+    static Duration getDispatchInterval(final Scanner scanner) {
+
+        final Duration cycle_delay = scanner.getCycleDelay();
+        return MAX_DISPATCH_INTERVAL.exceeds(cycle_delay) && cycle_delay.getLength(TimeUnit.MILLISECONDS) > 0 ? cycle_delay : MAX_DISPATCH_INTERVAL;
+    }
+
+    /** Schedules the descriptors that are currently in the network, spreading their deadlines evenly across the cycle delay. */
+    void start() {
+
+        final long now = System.nanoTime();
+        final List<ApplicationDescriptor> descriptors = network.getApplicationDescriptorsSnapshot();
+        final int size = descriptors.size();
+        final long spacing = size > 0 ? cycle_delay_nanos / size : 0;
+
+        int index = 0;
+        for (final ApplicationDescriptor descriptor : descriptors) {
+            schedule(descriptor, now + spacing * index++);
+        }
+    }
+
+    /**
+     * Schedules the given {@code descriptor} to be scanned at a random point within the next cycle delay.
+     * This method has no effect if the given {@code descriptor} is already scheduled.
+     *
+     * @param descriptor the descriptor to schedule
+     */
+    void schedule(final ApplicationDescriptor descriptor) {
+
+        final long offset = cycle_delay_nanos > 0 ? ThreadLocalRandom.current().nextLong(cycle_delay_nanos) : 0;
+        schedule(descriptor, System.nanoTime() + offset);
+    }
+
+    /**
+     * Gets the number of descriptors that are either waiting for their deadline or being scanned.
+     *
+     * @return the number of scheduled descriptors
+     */
+    int getScheduledDescriptorsCount() {
+
+        return scheduled_descriptors.size();
+    }
+
+    @Override
+    public void run() {
+
+        try {
+            cancelOverdueScans();
+            dispatchDueScans();
+        }
+        catch (final Exception e) {
+            LOGGER.error("failed to dispatch due scans of scanner " + scanner, e);
+        }
+    }
+
+    private void schedule(final ApplicationDescriptor descriptor, final long deadline) {
+
+        if (scheduled_descriptors.add(descriptor)) {
+            enqueue(descriptor, deadline);
+        }
+    }
+
+    private void enqueue(final ApplicationDescriptor descriptor, final long deadline) {
+
+        synchronized (deadlines) {
+            deadlines.add(new ScanDeadline(descriptor, deadline));
+        }
+    }
+
+    private void dispatchDueScans() {
+
+        final long now = System.nanoTime();
+        ScanDeadline due;
+        while (scanner.isEnabled() && (due = pollDue(now)) != null) {
+            dispatch(due.descriptor);
+        }
+    }
+
+    private ScanDeadline pollDue(final long now) {
+
+        synchronized (deadlines) {
+            final ScanDeadline head = deadlines.peek();
+            return head != null && head.deadline - now <= 0 ? deadlines.poll() : null;
+        }
+    }
+
+    private void dispatch(final ApplicationDescriptor descriptor) {
+
+        if (!network.contains(descriptor)) {
+            scheduled_descriptors.remove(descriptor);
+            if (network.contains(descriptor)) { // re-added while being unscheduled
+                schedule(descriptor);
+            }
+            return;
+        }
+
+        final ScheduledScan scan = new ScheduledScan(descriptor);
+        in_flight_scans.put(descriptor, scan);
+        try {
+            scan.start();
+        }
+        catch (final RejectedExecutionException e) {
+            LOGGER.debug("scan of descriptor {} was rejected", descriptor);
+            in_flight_scans.remove(descriptor, scan);
+            scheduled_descriptors.remove(descriptor);
+        }
+    }
+
+    private void cancelOverdueScans() {
+
+        final long now = System.nanoTime();
+        for (final ScheduledScan scan : in_flight_scans.values()) {
+            if (now - scan.dispatch_time > scan_timeout_nanos && scan.overdue.compareAndSet(false, true)) {
+                LOGGER.debug("cancelling overdue scan of descriptor {}", scan.descriptor);
+                scan.cancel();
+            }
+        }
+    }
+
+    private final class ScheduledScan {
+
+        private final ApplicationDescriptor descriptor;
+        private final long dispatch_time;
+        private final AtomicBoolean claimed;
+        private final AtomicBoolean overdue;
+        private volatile Future<?> future;
+        private volatile boolean asynchronous;
+
+        private ScheduledScan(final ApplicationDescriptor descriptor) {
+
+            this.descriptor = descriptor;
+            dispatch_time = System.nanoTime();
+            claimed = new AtomicBoolean();
+            overdue = new AtomicBoolean();
+        }
+
+        private void start() {
+
+            if (scanner.isScannedAsynchronously(network, descriptor)) {
+                asynchronous = true;
+                final CompletableFuture<Void> scan = scanner.scanDescriptorAsync(network, descriptor);
+                future = scan;
+                scan.whenComplete((result, error) -> done());
+            }
+            else {
+                final FutureTask<Void> scan = new FutureTask<Void>(() -> {
+                    if (claimed.compareAndSet(false, true)) {
+                        try {
+                            scanner.scanDescriptor(network, descriptor);
+                        }
+                        finally {
+                            done();
+                        }
+                    }
+                }, null) {
+
+                    @Override
+                    protected void done() {
+
+                        // Cancelled before the scan started; otherwise the scan reschedules the descriptor once it returns
+                        if (claimed.compareAndSet(false, true)) {
+                            ScheduledScan.this.done();
+                        }
+                    }
+                };
+                future = scan;
+                network.getConcurrentScannerExecutor().execute(scan);
+            }
+        }
+
+        private void cancel() {
+
+            // Cancelling an asynchronous scan would complete its future, and so reschedule the descriptor, while the scan is still in progress
+            final Future<?> scan = future;
+            if (scan != null && !asynchronous) {
+                scan.cancel(true);
+            }
+        }
+
+        private void done() {
+
+            in_flight_scans.remove(descriptor, this);
+            enqueue(descriptor, System.nanoTime() + cycle_delay_nanos);
+        }
+    }
+
+    private static final class ScanDeadline implements Comparable<ScanDeadline> {
+
+        private final ApplicationDescriptor descriptor;
+        private final long deadline;
+
+        private ScanDeadline(final ApplicationDescriptor descriptor, final long deadline) {
+
+            this.descriptor = descriptor;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public int compareTo(final ScanDeadline other) {
+
+            return Long.signum(deadline - other.deadline);
+        }
+    }
+}
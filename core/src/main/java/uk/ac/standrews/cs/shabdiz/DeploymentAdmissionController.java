@@ -0,0 +1,304 @@
+/*
+ * Copyright 2013 University of St Andrews School of Computer Science
+ *
+ * This file is part of Shabdiz.
+ *
+ * Shabdiz is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Shabdiz is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Shabdiz.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.ac.standrews.cs.shabdiz;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import uk.ac.standrews.cs.shabdiz.host.Host;
+import uk.ac.standrews.cs.shabdiz.util.FormattedNameThreadFactory;
+import uk.ac.standrews.cs.shabdiz.util.HostConcurrencyLimiter;
+import uk.ac.standrews.cs.shabdiz.util.TokenBucket;
+
+/**
+ * Controls the admission of deployments, so that a burst of deployments does not saturate the network links of the manager or the remote resources that deployments depend on.
+ * A deployment is admitted once:
+ * <ol>
+ * <li>the number of in-flight deployments on its {@link Host host} is below the per-host limit,</li>
+ * <li>the number of in-flight deployments across all hosts is below the global limit, and</li>
+ * <li>a token is available from the deployment {@link TokenBucket rate limiter}.</li>
+ * </ol>
+ * Admission is non-blocking: {@link #acquireAsync(Host) requests} wait in a FIFO queue and are completed by the thread that frees a slot, or by a shared timer once the next rate token is due.
+ * Waiting deployments are admitted in the order in which they are requested, except that a deployment whose host is at its per-host limit does not hold back the deployments on other hosts.
+ * A token is only taken by a deployment that is otherwise admissible, so that no token is spent on a deployment that still waits for a slot.
+ * The limits may be changed at any time; deployments that are in flight at the time of the change count against the new limits.
+ * By default, deployments are admitted without any limit.
+ * This class is thread-safe.
+ *
+ * @author Masih Hajiarabderkani (mh638@st-andrews.ac.uk)
+ */
+public final class DeploymentAdmissionController {
+
+    /** The limit that indicates the number of in-flight deployments is unlimited. */
+    public static final int UNLIMITED = HostConcurrencyLimiter.UNLIMITED;
+    private final TokenBucket rate_limiter;
+    private final ArrayDeque<Waiter> waiters;
+    private final Map<Host, Integer> host_in_flight;
+    private int in_flight;
+    private boolean dispatch_scheduled;
+    private volatile int max_in_flight;
+    private volatile int max_in_flight_per_host;
+
+    /** Instantiates a new admission controller that admits deployments without any limit. */
+    public DeploymentAdmissionController() {
+
+        rate_limiter = new TokenBucket(TokenBucket.UNLIMITED, 1);
+        waiters = new ArrayDeque<>();
+        host_in_flight = new HashMap<>();
+        max_in_flight = UNLIMITED;
+        max_in_flight_per_host = UNLIMITED;
+    }
+
+    /**
+     * Blocks until a deployment on the given {@code host} is admitted.
+     * The returned permit must be {@link Permit#close() closed} once the deployment is complete.
+     *
+     * @param host the host on which to deploy, may be {@code null}
+     * @return the permit of the admitted deployment
+     * @throws InterruptedException if interrupted while waiting for admission
+     * @see #acquireAsync(Host)
+     */
+    public Permit acquire(final Host host) throws InterruptedException {
+
+        final CompletableFuture<Permit> admission = acquireAsync(host);
+        try {
+            return admission.get();
+        }
+        catch (final InterruptedException e) {
+            if (!admission.cancel(false)) { // admitted concurrently
+                admission.join().close();
+            }
+            throw e;
+        }
+        catch (final ExecutionException e) {
+            throw new IllegalStateException("admissions never complete exceptionally", e.getCause());
+        }
+    }
+
+    /**
+     * Requests the admission of a deployment on the given {@code host} without blocking.
+     * The returned future is completed with the permit of the deployment once it is admitted; no thread is occupied while the request waits.
+     * The future is completed on the thread that frees the awaited slot or on the timer thread of this class, and therefore its dependants must return promptly.
+     * Cancelling the returned future withdraws the request; the permit of a cancelled request is released on admission.
+     * The permit must be {@link Permit#close() closed} once the deployment is complete.
+     *
+     * @param host the host on which to deploy, may be {@code null}
+     * @return a future that is completed with the permit of the admitted deployment
+     */
+    public CompletableFuture<Permit> acquireAsync(final Host host) {
+
+        final CompletableFuture<Permit> admission = new CompletableFuture<>();
+        synchronized (this) {
+            waiters.add(new Waiter(host, admission));
+        }
+        dispatch();
+        return admission;
+    }
+
+    /**
+     * Sets the maximum number of deployments that may be in flight across all hosts.
+     * The deployments that are in flight at the time of the change count against the new limit.
+     *
+     * @param max_in_flight the maximum number of in-flight deployments, or {@link #UNLIMITED}
+     * @throws IllegalArgumentException if the given limit is less than {@code 1}
+     */
+    public void setMaxInFlight(final int max_in_flight) {
+
+        if (max_in_flight < 1) { throw new IllegalArgumentException("maximum in-flight deployments must be at least 1"); }
+        synchronized (this) {
+            this.max_in_flight = max_in_flight;
+        }
+        dispatch();
+    }
+
+    /**
+     * Gets the maximum number of deployments that may be in flight across all hosts.
+     *
+     * @return the maximum number of in-flight deployments, or {@link #UNLIMITED}
+     */
+    public int getMaxInFlight() {
+
+        return max_in_flight;
+    }
+
+    /**
+     * Sets the maximum number of deployments that may be in flight on a single host.
+     * The deployments that are in flight at the time of the change count against the new limit.
+     *
+     * @param max_in_flight_per_host the maximum number of in-flight deployments per host, or {@link #UNLIMITED}
+     * @throws IllegalArgumentException if the given limit is less than {@code 1}
+     */
+    public void setMaxInFlightPerHost(final int max_in_flight_per_host) {
+
+        if (max_in_flight_per_host < 1) { throw new IllegalArgumentException("maximum in-flight deployments per host must be at least 1"); }
+        synchronized (this) {
+            this.max_in_flight_per_host = max_in_flight_per_host;
+        }
+        dispatch();
+    }
+
+    /**
+     * Gets the maximum number of deployments that may be in flight on a single host.
+     *
+     * @return the maximum number of in-flight deployments per host, or {@link #UNLIMITED}
+     */
+    public int getMaxInFlightPerHost() {
+
+        return max_in_flight_per_host;
+    }
+
+    /**
+     * Sets the rate at which deployments are admitted.
+     *
+     * @param deployments_per_second the sustained number of deployments admitted per second, or {@link TokenBucket#UNLIMITED}
+     * @param burst the maximum number of deployments that may be admitted at once after a period of inactivity
+     * @throws IllegalArgumentException if the given rate is not positive or the given burst is less than {@code 1}
+     */
+    public void setRate(final double deployments_per_second, final int burst) {
+
+        rate_limiter.setRate(deployments_per_second, burst);
+        dispatch();
+    }
+
+    /**
+     * Gets the sustained number of deployments admitted per second.
+     *
+     * @return the sustained number of deployments admitted per second, or {@link TokenBucket#UNLIMITED}
+     */
+    public double getRate() {
+
+        return rate_limiter.getRate();
+    }
+
+    private void dispatch() {
+
+        final List<Waiter> admitted = new ArrayList<>();
+        synchronized (this) {
+            final Iterator<Waiter> iterator = waiters.iterator();
+            while (in_flight < max_in_flight && iterator.hasNext()) {
+                final Waiter waiter = iterator.next();
+                if (waiter.admission.isDone()) { // cancelled while waiting
+                    iterator.remove();
+                    continue;
+                }
+                if (isHostSaturated(waiter.host)) { continue; }
+
+                final long wait_nanos = rate_limiter.tryAcquire();
+                if (wait_nanos > 0) {
+                    scheduleDispatch(wait_nanos);
+                    break;
+                }
+
+                iterator.remove();
+                in_flight++;
+                if (waiter.host != null) {
+                    host_in_flight.merge(waiter.host, 1, Integer::sum);
+                }
+                admitted.add(waiter);
+            }
+        }
+
+        // Completed outside the lock, since the dependants of an admission may start the deployment on this thread
+        for (final Waiter waiter : admitted) {
+            final Permit permit = new Permit(this, waiter.host);
+            if (!waiter.admission.complete(permit)) { // cancelled after admission
+                permit.close();
+            }
+        }
+    }
+
+    private boolean isHostSaturated(final Host host) {
+
+        return host != null && host_in_flight.getOrDefault(host, 0) >= max_in_flight_per_host;
+    }
+
+    private void scheduleDispatch(final long delay_nanos) {
+
+        if (!dispatch_scheduled) {
+            dispatch_scheduled = true;
+            TimerHolder.TIMER.schedule(() -> {
+                synchronized (this) {
+                    dispatch_scheduled = false;
+                }
+                dispatch();
+            }, delay_nanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void release(final Host host) {
+
+        synchronized (this) {
+            in_flight--;
+            if (host != null) {
+                host_in_flight.computeIfPresent(host, (key, count) -> count == 1 ? null : count - 1);
+            }
+        }
+        dispatch();
+    }
+
+    /** The permit of an admitted deployment, which is released on {@link #close() closure}. */
+    public static final class Permit implements AutoCloseable {
+
+        private final DeploymentAdmissionController controller;
+        private final Host host;
+
+        private Permit(final DeploymentAdmissionController controller, final Host host) {
+
+            this.controller = controller;
+            this.host = host;
+        }
+
+        /** Releases this permit. */
+        @Override
+        public void close() {
+
+            controller.release(host);
+        }
+    }
+
+    private static final class Waiter {
+
+        private final Host host;
+        private final CompletableFuture<Permit> admission;
+
+        private Waiter(final Host host, final CompletableFuture<Permit> admission) {
+
+            this.host = host;
+            this.admission = admission;
+        }
+    }
+
+    private static final class TimerHolder {
+
+        private static final ScheduledExecutorService TIMER = new ScheduledThreadPoolExecutor(1, new FormattedNameThreadFactory("deployment_admission_timer_%d", task -> {
+
+            final Thread thread = new Thread(task);
+            thread.setDaemon(true);
+            return thread;
+        }));
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2013 University of St Andrews School of Computer Science
+ *
+ * This file is part of Shabdiz.
+ *
+ * Shabdiz is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Shabdiz is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Shabdiz.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.ac.standrews.cs.shabdiz;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * An immutable snapshot of the {@link ApplicationDescriptor descriptors} of an {@link ApplicationNetwork network}, backed by an array.
+ * Each snapshot is tagged with the modification epoch of the network at which it was taken; a snapshot is current as long as the epoch of the network has not moved on.
+ * Iterating a snapshot does not traverse the concurrent structure in which the network keeps its descriptors, and is not affected by concurrent additions or removals.
+ *
+ * @author Masih Hajiarabderkani (mh638@st-andrews.ac.uk)
+ */
+final class DescriptorSnapshot extends AbstractList<ApplicationDescriptor> implements RandomAccess {
+
+    static final DescriptorSnapshot EMPTY = new DescriptorSnapshot(0, new ApplicationDescriptor[0]);
+    private final long epoch;
+    private final ApplicationDescriptor[] descriptors;
+
+    DescriptorSnapshot(final long epoch, final ApplicationDescriptor[] descriptors) {
+
+        this.epoch = epoch;
+        this.descriptors = descriptors;
+    }
+
+    /**
+     * Gets the modification epoch of the network at which this snapshot was taken.
+     *
+     * @return the modification epoch of the network at which this snapshot was taken
+     */
+    long getEpoch() {
+
+        return epoch;
+    }
+
+    @Override
+    public ApplicationDescriptor get(final int index) {
+
+        return descriptors[index];
+    }
+
+    @Override
+    public int size() {
+
+        return descriptors.length;
+    }
+
+    @Override
+    public Object[] toArray() {
+
+        return descriptors.clone();
+    }
+}
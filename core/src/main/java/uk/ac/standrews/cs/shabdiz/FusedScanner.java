@@ -0,0 +1,137 @@
+/*
+ * Copyright 2013 University of St Andrews School of Computer Science
+ *
+ * This file is part of Shabdiz.
+ *
+ * Shabdiz is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Shabdiz is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Shabdiz.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.standrews.cs.shabdiz;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import uk.ac.standrews.cs.shabdiz.util.Duration;
+
+/**
+ * A scanner that probes the state of each {@link ApplicationDescriptor descriptor} and immediately acts upon the probed state in the same task.
+ * Each scan passes a descriptor through a pipeline of stages: the {@link StatusScanner status} stage, followed by the {@link AutoKillScanner kill}, {@link AutoDeployScanner deploy} and {@link AutoRemoveScanner remove} policy stages.
+ * A stage is performed only if its corresponding scanner is {@link #isEnabled() enabled}; therefore, the policies are controlled exactly as they are when the stages are scheduled independently.
+ * Compared to scheduling the stages independently, a descriptor is acted upon as soon as its state is probed rather than on the next cycle of the policy scanner, and each descriptor is submitted to the executor once per cycle rather than once per stage.
+ * The scan candidates of each cycle are {@link StatusScanner#groupScanCandidates(ApplicationNetwork, Iterable) grouped} as they are by the status stage, so that batch probes are preserved; the policy stages are then performed on each descriptor of a group.
+ *
+ * @author Masih Hajiarabderkani (mh638@st-andrews.ac.uk)
+ * @see ApplicationNetwork#setFusedScanningEnabled(boolean)
+ */
+public class FusedScanner extends ConcurrentScanner {
+
+    private final StatusScanner status_scanner;
+    private final List<ConcurrentScanner> policy_scanners;
+
+    protected FusedScanner(final StatusScanner status_scanner, final AutoKillScanner auto_kill_scanner, final AutoDeployScanner auto_deploy_scanner, final AutoRemoveScanner auto_remove_scanner) {
+
+        super(status_scanner.getCycleDelay(), getPipelineTimeout(status_scanner, auto_kill_scanner, auto_deploy_scanner, auto_remove_scanner), true);
+        this.status_scanner = status_scanner;
+        policy_scanners = Collections.unmodifiableList(Arrays.<ConcurrentScanner> asList(auto_kill_scanner, auto_deploy_scanner, auto_remove_scanner));
+    }
+
+    /**
+     * Checks whether the given {@code scanner} is a stage of this scanner's pipeline.
+     *
+     * @param scanner the scanner to check
+     * @return whether the given {@code scanner} is a stage of this scanner's pipeline
+     */
+    public boolean isStage(final Scanner scanner) {
+
+        return status_scanner.equals(scanner) || policy_scanners.contains(scanner);
+    }
+
+    /**
+     * Gets the stages of this scanner's pipeline in the order in which they are performed.
+     *
+     * @return the stages of this scanner's pipeline
+     */
+    public List<ConcurrentScanner> getStages() {
+
+        final List<ConcurrentScanner> stages = new ArrayList<ConcurrentScanner>();
+        stages.add(status_scanner);
+        stages.addAll(policy_scanners);
+        return stages;
+    }
+
+    @Override
+    protected void scan(final ApplicationNetwork network, final ApplicationDescriptor descriptor) {
+
+        if (status_scanner.isEnabled()) {
+            status_scanner.scan(network, descriptor);
+        }
+        performPolicyStages(network, descriptor);
+    }
+
+    @Override
+    protected List<List<ApplicationDescriptor>> groupScanCandidates(final ApplicationNetwork network, final Iterable<ApplicationDescriptor> candidates) {
+
+        return status_scanner.isEnabled() ? status_scanner.groupScanCandidates(network, candidates) : super.groupScanCandidates(network, candidates);
+    }
+
+    @Override
+    protected void scan(final ApplicationNetwork network, final List<ApplicationDescriptor> group) {
+
+        if (status_scanner.isEnabled()) {
+            status_scanner.scan(network, group);
+        }
+        for (final ApplicationDescriptor descriptor : group) {
+            performPolicyStages(network, descriptor);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * A descriptor is scanned asynchronously if its status stage is enabled and can be performed asynchronously; the policy stages are then performed on the concurrent scanner executor of the network once the state is probed.
+     */
+    @Override
+    protected boolean isScannedAsynchronously(final ApplicationNetwork network, final ApplicationDescriptor descriptor) {
+
+        return status_scanner.isEnabled() && status_scanner.isScannedAsynchronously(network, descriptor);
+    }
+
+    @Override
+    protected CompletableFuture<Void> scanAsync(final ApplicationNetwork network, final ApplicationDescriptor descriptor) {
+
+        return status_scanner.scanAsync(network, descriptor).thenRunAsync(() -> performPolicyStages(network, descriptor), network.getConcurrentScannerExecutor());
+    }
+
+    private void performPolicyStages(final ApplicationNetwork network, final ApplicationDescriptor descriptor) {
+
+        for (final ConcurrentScanner policy_scanner : policy_scanners) {
+            if (Thread.currentThread().isInterrupted() || !network.contains(descriptor)) {
+                break;
+            }
+            if (policy_scanner.isEnabled()) {
+                policy_scanner.scan(network, descriptor);
+            }
+        }
+    }
+
+    private static Duration getPipelineTimeout(final StatusScanner status_scanner, final ConcurrentScanner... policy_scanners) {
+
+        Duration max_policy_timeout = Duration.ZERO;
+        for (final ConcurrentScanner policy_scanner : policy_scanners) {
+            max_policy_timeout = Duration.max(max_policy_timeout, policy_scanner.getScanTimeout());
+        }
+        return max_policy_timeout.add(status_scanner.getScanTimeout());
+    }
+}
@@ -0,0 +1,247 @@
+/*
+ * Copyright 2013 University of St Andrews School of Computer Science
+ *
+ * This file is part of Shabdiz.
+ *
+ * Shabdiz is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Shabdiz is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Shabdiz.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.ac.standrews.cs.shabdiz;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.security.SecureRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.ac.standrews.cs.shabdiz.host.exec.AgentBasedJavaProcessBuilder;
+import uk.ac.standrews.cs.shabdiz.host.exec.Bootstrap;
+import uk.ac.standrews.cs.shabdiz.util.Duration;
+
+/**
+ * Receives the heartbeats that are pushed by deployed application instances over UDP, all of which are received on a single thread.
+ * A heartbeat is a datagram that consists of the {@link Bootstrap#HEARTBEAT_MAGIC heartbeat magic number}, the {@link #getToken() token} of this receiver and the {@link ApplicationDescriptor#getId() identifier} of the descriptor of the sending application instance.
+ * Processes that are started by an {@link AgentBasedJavaProcessBuilder} with a {@link AgentBasedJavaProcessBuilder#setHeartbeatTarget(InetSocketAddress, long, Duration) heartbeat target} send such heartbeats periodically.
+ * <p>
+ * The token is chosen at random by each receiver, and heartbeats that carry a different token are ignored.
+ * This stops any host that can reach the receiver from reviving descriptors by guessing their sequential identifiers, and stops processes that were started for an earlier receiver from feeding this one.
+ * The token is sent in the clear; it does not protect against an attacker who can observe the heartbeat traffic.
+ * <p>
+ * A heartbeat of a {@link #register(ApplicationDescriptor) registered} descriptor sets its state to {@link ApplicationState#RUNNING running}, unless the descriptor is {@link ApplicationState#KILLED killed}.
+ * The heartbeats of a descriptor are {@link #isFresh(ApplicationDescriptor) fresh} if the last one is received within the freshness timeout of this receiver.
+ * The {@link StatusScanner status scanner} of a network that {@link ApplicationNetwork#setHeartbeatReceiver(HeartbeatReceiver) uses} this receiver only probes the descriptors that have gone quiet.
+ * Heartbeats of unknown descriptors and malformed datagrams are ignored.
+ * Failures to receive a heartbeat are logged and the receiver carries on after a brief pause; the receiver stops only once it is {@link #close() closed}.
+ * This class is thread-safe.
+ *
+ * @author Masih Hajiarabderkani (mh638@st-andrews.ac.uk)
+ */
+public class HeartbeatReceiver implements Closeable {
+
+    /** The default duration after which the heartbeats of a descriptor are no longer fresh. */
+    public static final Duration DEFAULT_FRESHNESS_TIMEOUT = new Duration(15, TimeUnit.SECONDS);
+    static final int HEARTBEAT_LENGTH = Integer.SIZE / Byte.SIZE + 2 * Long.SIZE / Byte.SIZE;
+    private static final Logger LOGGER = LoggerFactory.getLogger(HeartbeatReceiver.class);
+    private static final long FAILURE_BACKOFF_MILLIS = 100;
+    private static final AtomicInteger NEXT_ID = new AtomicInteger();
+    private static final SecureRandom TOKEN_GENERATOR = new SecureRandom();
+    private final DatagramChannel channel;
+    private final ConcurrentHashMap<Long, HeartbeatRecord> records;
+    private final long freshness_timeout_nanos;
+    private final Duration freshness_timeout;
+    private final long token;
+    private final Thread receiver_thread;
+    private volatile boolean closed;
+
+    /**
+     * Instantiates a new heartbeat receiver on an ephemeral port of all local addresses with the {@link #DEFAULT_FRESHNESS_TIMEOUT default freshness timeout}.
+     *
+     * @throws IOException if the receiver channel cannot be opened or bound
+     */
+    public HeartbeatReceiver() throws IOException {
+
+        this(new InetSocketAddress(0), DEFAULT_FRESHNESS_TIMEOUT);
+    }
+
+    /**
+     * Instantiates a new heartbeat receiver that is bound to the given {@code address} and starts its receiver thread.
+     * The freshness timeout should be a few multiples of the interval at which heartbeats are sent, so that a lost datagram does not render a descriptor quiet.
+     *
+     * @param address the local address to which to bind the receiver
+     * @param freshness_timeout the duration after which the heartbeats of a descriptor are no longer fresh
+     * @throws IOException if the receiver channel cannot be opened or bound
+     */
+    public HeartbeatReceiver(final InetSocketAddress address, final Duration freshness_timeout) throws IOException {
+
+        this.freshness_timeout = freshness_timeout;
+        token = TOKEN_GENERATOR.nextLong();
+        freshness_timeout_nanos = freshness_timeout.getLength(TimeUnit.NANOSECONDS);
+        records = new ConcurrentHashMap<Long, HeartbeatRecord>();
+        channel = DatagramChannel.open();
+        try {
+            channel.bind(address);
+        }
+        catch (final IOException e) {
+            channel.close();
+            throw e;
+        }
+        receiver_thread = new Thread(this::receive, "heartbeat_receiver_" + NEXT_ID.getAndIncrement());
+        receiver_thread.setDaemon(true);
+        receiver_thread.start();
+    }
+
+    /**
+     * Gets the local address to which this receiver is bound.
+     *
+     * @return the local address to which this receiver is bound
+     * @throws IOException if this receiver is closed
+     */
+    public InetSocketAddress getLocalAddress() throws IOException {
+
+        return (InetSocketAddress) channel.getLocalAddress();
+    }
+
+    /**
+     * Gets the random token that the heartbeats must carry to be accepted by this receiver.
+     * The token must be passed to the {@link AgentBasedJavaProcessBuilder#setHeartbeatTarget(InetSocketAddress, long, Duration) heartbeat target} of the process builders that start the application instances.
+     *
+     * @return the token of this receiver
+     */
+    public long getToken() {
+
+        return token;
+    }
+
+    /**
+     * Gets the duration after which the heartbeats of a descriptor are no longer fresh.
+     *
+     * @return the duration after which the heartbeats of a descriptor are no longer fresh
+     */
+    public Duration getFreshnessTimeout() {
+
+        return freshness_timeout;
+    }
+
+    /**
+     * Registers the given {@code descriptor} to receive its heartbeats.
+     * This method has no effect if the given {@code descriptor} is already registered.
+     *
+     * @param descriptor the descriptor to register
+     */
+    public void register(final ApplicationDescriptor descriptor) {
+
+        records.putIfAbsent(descriptor.getId(), new HeartbeatRecord(descriptor, System.nanoTime() - freshness_timeout_nanos));
+    }
+
+    /**
+     * Unregisters the given {@code descriptor}; any subsequent heartbeat of the descriptor is ignored.
+     *
+     * @param descriptor the descriptor to unregister
+     */
+    public void unregister(final ApplicationDescriptor descriptor) {
+
+        records.remove(descriptor.getId());
+    }
+
+    /**
+     * Checks whether the last heartbeat of the given {@code descriptor} has been received within the freshness timeout of this receiver.
+     *
+     * @param descriptor the descriptor to check
+     * @return {@code true} if the given {@code descriptor} is registered and its last heartbeat is fresh, {@code false} otherwise
+     */
+    public boolean isFresh(final ApplicationDescriptor descriptor) {
+
+        final HeartbeatRecord record = records.get(descriptor.getId());
+        return record != null && record.descriptor == descriptor && System.nanoTime() - record.last_heartbeat < freshness_timeout_nanos;
+    }
+
+    @Override
+    public void close() throws IOException {
+
+        closed = true;
+        channel.close();
+        receiver_thread.interrupt();
+        records.clear();
+    }
+
+    private void receive() {
+
+        final ByteBuffer buffer = ByteBuffer.allocate(HEARTBEAT_LENGTH);
+        while (!closed) {
+            try {
+                buffer.clear();
+                channel.receive(buffer);
+                buffer.flip();
+                if (buffer.remaining() == HEARTBEAT_LENGTH && buffer.getInt() == Bootstrap.HEARTBEAT_MAGIC && buffer.getLong() == token) {
+                    onHeartbeat(buffer.getLong());
+                }
+            }
+            catch (final ClosedChannelException e) {
+                if (!closed) {
+                    LOGGER.error("heartbeat receiver channel is closed unexpectedly; no further heartbeats are received", e);
+                }
+                return;
+            }
+            catch (final IOException e) {
+                // Failures such as ICMP-induced errors are transient; the receiver must outlive them, since it is the only one
+                LOGGER.warn("heartbeat receiver failed to receive a heartbeat", e);
+                pauseAfterFailure();
+            }
+        }
+        LOGGER.debug("heartbeat receiver is closed");
+    }
+
+    private static void pauseAfterFailure() {
+
+        try {
+            TimeUnit.MILLISECONDS.sleep(FAILURE_BACKOFF_MILLIS);
+        }
+        catch (final InterruptedException e) {
+            LOGGER.debug("interrupted while pausing after a failure to receive a heartbeat");
+        }
+    }
+
+    private void onHeartbeat(final long id) {
+
+        final HeartbeatRecord record = records.get(id);
+        if (record == null) {
+            LOGGER.trace("ignoring heartbeat of unknown descriptor id {}", id);
+            return;
+        }
+
+        record.last_heartbeat = System.nanoTime();
+        final ApplicationDescriptor descriptor = record.descriptor;
+        final ApplicationState state = descriptor.getApplicationState();
+        if (state != ApplicationState.RUNNING && state != ApplicationState.KILLED && descriptor.compareAndSetApplicationState(state, ApplicationState.RUNNING)) {
+            LOGGER.debug("the state of descriptor {} is now {} as of its heartbeat", descriptor, ApplicationState.RUNNING);
+        }
+    }
+
+    private static final class HeartbeatRecord {
+
+        private final ApplicationDescriptor descriptor;
+        private volatile long last_heartbeat;
+
+        private HeartbeatRecord(final ApplicationDescriptor descriptor, final long last_heartbeat) {
+
+            this.descriptor = descriptor;
+            this.last_heartbeat = last_heartbeat;
+        }
+    }
+}
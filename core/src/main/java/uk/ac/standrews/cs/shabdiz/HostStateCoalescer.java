@@ -0,0 +1,131 @@
+/*
+ * Copyright 2013 University of St Andrews School of Computer Science
+ *
+ * This file is part of Shabdiz.
+ *
+ * Shabdiz is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Shabdiz is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Shabdiz.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.standrews.cs.shabdiz;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.ac.standrews.cs.shabdiz.host.Host;
+import uk.ac.standrews.cs.shabdiz.util.Duration;
+import uk.ac.standrews.cs.shabdiz.util.ProbeCache;
+
+/**
+ * Coalesces the state probes of co-located {@link ApplicationDescriptor descriptors} into a single probe per {@link Host host}.
+ * A probe of a host that is requested while another probe of the same host is in progress waits for the result of the in-progress probe.
+ * A probe of a host that is requested within the {@link #getWindow() coalescing window} after the completion of the last probe of the host reuses its result.
+ * A probe of a host that is requested within the {@link #getStaleWindow() stale window} after the coalescing window has elapsed reuses the last result while a single background probe refreshes it.
+ * Probes that result in {@link ApplicationState#UNKNOWN} are never reused once completed.
+ * This class is thread-safe.
+ *
+ * @author Masih Hajiarabderkani (mh638@st-andrews.ac.uk)
+ */
+final class HostStateCoalescer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(HostStateCoalescer.class);
+    private final ProbeCache<Host, ApplicationState> probes;
+
+    HostStateCoalescer(final Duration window) {
+
+        this(window, Duration.ZERO);
+    }
+
+    HostStateCoalescer(final Duration window, final Duration stale_window) {
+
+        probes = new ProbeCache<Host, ApplicationState>(window, stale_window, state -> state != ApplicationState.UNKNOWN);
+    }
+
+    /**
+     * Gets the state of the given {@code host}, either by joining an in-progress or a recently completed probe of the host, or by probing the host using the given {@code prober}.
+     *
+     * @param host the host to probe
+     * @param prober the function that probes the state of a host
+     * @return the state of the given {@code host}
+     */
+    ApplicationState probe(final Host host, final Function<Host, ApplicationState> prober) {
+
+        try {
+            return probes.get(host, prober::apply);
+        }
+        catch (final IOException e) {
+            LOGGER.debug("failed to join the state probe of host " + host, e);
+            return ApplicationState.UNKNOWN;
+        }
+    }
+
+    /**
+     * Asynchronously gets the state of the given {@code host}, either by joining an in-progress or a recently completed probe of the host, or by starting a probe of the host using the given {@code prober}.
+     * Probes that are started by this method and by {@link #probe(Host, Function)} are coalesced with each other.
+     *
+     * @param host the host to probe
+     * @param prober the function that starts an asynchronous probe of the state of a host
+     * @return a future that completes with the state of the given {@code host}, or with {@link ApplicationState#UNKNOWN} if the probe fails
+     */
+    CompletableFuture<ApplicationState> probeAsync(final Host host, final Function<Host, CompletableFuture<ApplicationState>> prober) {
+
+        return probes.getAsync(host, prober).exceptionally(error -> {
+            LOGGER.debug("failed to join the state probe of host " + host, error);
+            return ApplicationState.UNKNOWN;
+        });
+    }
+
+    /**
+     * Gets the duration within which the result of a completed probe is reused.
+     *
+     * @return the duration within which the result of a completed probe is reused
+     */
+    Duration getWindow() {
+
+        return probes.getTimeToLive();
+    }
+
+    /**
+     * Sets the duration within which the result of a completed probe is reused.
+     * A window of zero only coalesces concurrent probes, unless the stale window is non-zero.
+     *
+     * @param window the duration within which the result of a completed probe is reused
+     */
+    void setWindow(final Duration window) {
+
+        probes.setTimeToLive(window);
+    }
+
+    /**
+     * Gets the duration after the coalescing window within which the result of a completed probe is reused while being refreshed in the background.
+     *
+     * @return the duration within which a stale result is reused while being refreshed
+     */
+    Duration getStaleWindow() {
+
+        return probes.getStaleWindow();
+    }
+
+    /**
+     * Sets the duration after the coalescing window within which the result of a completed probe is reused while being refreshed in the background.
+     * A stale window of zero disables background refreshes.
+     *
+     * @param stale_window the duration within which a stale result is reused while being refreshed
+     */
+    void setStaleWindow(final Duration stale_window) {
+
+        probes.setStaleWindow(stale_window);
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2013 University of St Andrews School of Computer Science
+ *
+ * This file is part of Shabdiz.
+ *
+ * Shabdiz is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Shabdiz is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Shabdiz.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.ac.standrews.cs.shabdiz;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Tracks the deployments and terminations that are in flight per {@link ApplicationDescriptor descriptor}, so that at most one operation is performed on a descriptor at a time.
+ * An operation that is requested while an operation of the same {@link Kind kind} is in flight on the same descriptor joins the in-flight operation instead of starting a new one.
+ * An operation that is requested while an operation of a different kind is in flight on the same descriptor is started on the given executor once the in-flight operation is complete, rather than on the thread that completes the in-flight operation.
+ * This class is thread-safe.
+ *
+ * @author Masih Hajiarabderkani (mh638@st-andrews.ac.uk)
+ */
+final class InFlightOperations {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(InFlightOperations.class);
+    private final ConcurrentHashMap<ApplicationDescriptor, Operation> operations;
+    private final Executor executor;
+
+    /**
+     * Instantiates a new tracker of in-flight operations.
+     *
+     * @param executor the executor on which to start the operations that are queued behind an in-flight operation
+     */
+    InFlightOperations(final Executor executor) {
+
+        this.executor = executor;
+        operations = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Performs an operation of the given {@code kind} on the given {@code descriptor}, unless one is already in flight.
+     * If this call starts the operation, the given {@code operation} is invoked on the calling thread.
+     * If the operation is queued behind an in-flight operation of a different kind, the given {@code operation} is invoked on the executor of this tracker.
+     * Cancelling the returned future does not affect the operation.
+     *
+     * @param descriptor the descriptor on which to perform the operation
+     * @param kind the kind of the operation
+     * @param operation starts the operation and returns the future of its completion
+     * @return a future that completes once the started or joined operation is complete
+     */
+    CompletableFuture<Void> perform(final ApplicationDescriptor descriptor, final Kind kind, final Supplier<CompletableFuture<Void>> operation) {
+
+        final Operation in_flight = new Operation(kind);
+        final Operation existing = operations.putIfAbsent(descriptor, in_flight);
+        if (existing != null) {
+            if (existing.kind == kind) {
+                LOGGER.debug("joining in-flight {} of descriptor {}", kind, descriptor);
+                return existing.join();
+            }
+            return existing.result.handle((result, error) -> null).thenComposeAsync(ignored -> perform(descriptor, kind, operation), executor);
+        }
+
+        CompletableFuture<Void> started;
+        try {
+            started = operation.get();
+        }
+        catch (final RuntimeException | Error e) {
+            started = new CompletableFuture<>();
+            started.completeExceptionally(e);
+        }
+        started.whenComplete((result, error) -> {
+            operations.remove(descriptor, in_flight);
+            in_flight.complete(error);
+        });
+        return in_flight.join();
+    }
+
+    /**
+     * Checks whether an operation is in flight on the given {@code descriptor}.
+     *
+     * @param descriptor the descriptor to check
+     * @return {@code true} if an operation is in flight on the given {@code descriptor}
+     */
+    boolean isInFlight(final ApplicationDescriptor descriptor) {
+
+        return operations.containsKey(descriptor);
+    }
+
+    /** The kinds of operations that are tracked. */
+    enum Kind {
+        DEPLOYMENT, TERMINATION
+    }
+
+    private static final class Operation {
+
+        private final Kind kind;
+        private final CompletableFuture<Void> result = new CompletableFuture<>();
+
+        private Operation(final Kind kind) {
+
+            this.kind = kind;
+        }
+
+        private void complete(final Throwable error) {
+
+            if (error == null) {
+                result.complete(null);
+            }
+            else {
+                result.completeExceptionally(error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+            }
+        }
+
+        private CompletableFuture<Void> join() {
+
+            return result.thenApply(ignored -> null);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2013 University of St Andrews School of Computer Science
+ *
+ * This file is part of Shabdiz.
+ *
+ * Shabdiz is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Shabdiz is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Shabdiz.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.ac.standrews.cs.shabdiz;
+
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Awaits a set of {@link ApplicationDescriptor descriptors} to reach any of a given set of {@link ApplicationState states} at least once.
+ * Rather than blocking a thread per descriptor, the waiter listens to the {@link StateTransitionListener state transitions} of the descriptors and keeps a single count of the descriptors that are yet to reach any of the target states.
+ * The {@link #getFuture() future} of the waiter is completed once the count reaches zero.
+ * The waiter stops listening to the descriptors as soon as its future is done, whether it is completed, cancelled or completed exceptionally.
+ * This class is thread-safe.
+ *
+ * @author Masih Hajiarabderkani (mh638@st-andrews.ac.uk)
+ */
+final class NetworkStateWaiter implements StateTransitionListener {
+
+    private final EnumSet<ApplicationState> target_states;
+    private final Set<ApplicationDescriptor> pending_descriptors;
+    private final AtomicInteger pending_count;
+    private final CompletableFuture<Void> future;
+
+    /**
+     * Constructs a new waiter for the given {@code descriptors} to reach any of the given {@code target_states}.
+     * The waiter does not listen to the given descriptors until it is {@link #start() started}.
+     *
+     * @param descriptors the descriptors to await
+     * @param target_states the states which the descriptors must reach at least once
+     */
+    NetworkStateWaiter(final Collection<ApplicationDescriptor> descriptors, final EnumSet<ApplicationState> target_states) {
+
+        this.target_states = target_states;
+        pending_descriptors = ConcurrentHashMap.newKeySet(descriptors.size());
+        pending_descriptors.addAll(descriptors);
+        pending_count = new AtomicInteger(pending_descriptors.size());
+        future = new CompletableFuture<>();
+        future.whenComplete((result, error) -> stop());
+    }
+
+    /**
+     * Starts listening to the state transitions of the awaited descriptors.
+     * The descriptors that are already in any of the target states are counted as reached.
+     *
+     * @return the future that is completed once all the awaited descriptors have reached any of the target states
+     */
+    CompletableFuture<Void> start() {
+
+        if (pending_count.get() == 0) {
+            future.complete(null);
+        }
+        for (final ApplicationDescriptor descriptor : pending_descriptors) {
+            if (future.isDone()) {
+                break;
+            }
+            descriptor.addStateTransitionListener(this);
+            if (target_states.contains(descriptor.getApplicationState())) {
+                reached(descriptor);
+            }
+        }
+        if (future.isDone()) {
+            stop(); // listeners may have been added after the future was done
+        }
+        return future;
+    }
+
+    /**
+     * Gets the future that is completed once all the awaited descriptors have reached any of the target states.
+     *
+     * @return the future of this waiter
+     */
+    CompletableFuture<Void> getFuture() {
+
+        return future;
+    }
+
+    /**
+     * Gets the number of awaited descriptors that are yet to reach any of the target states.
+     *
+     * @return the number of awaited descriptors that are yet to reach any of the target states
+     */
+    int getPendingCount() {
+
+        return pending_count.get();
+    }
+
+    @Override
+    public void onStateTransition(final ApplicationDescriptor descriptor, final ApplicationState old_state, final ApplicationState new_state) {
+
+        if (target_states.contains(new_state)) {
+            reached(descriptor);
+        }
+    }
+
+    private void reached(final ApplicationDescriptor descriptor) {
+
+        if (pending_descriptors.remove(descriptor)) {
+            descriptor.removeStateTransitionListener(this);
+            if (pending_count.decrementAndGet() == 0) {
+                future.complete(null);
+            }
+        }
+    }
+
+    private void stop() {
+
+        for (final ApplicationDescriptor descriptor : pending_descriptors) {
+            descriptor.removeStateTransitionListener(this);
+        }
+    }
+}
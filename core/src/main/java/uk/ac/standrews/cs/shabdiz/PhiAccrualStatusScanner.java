@@ -0,0 +1,144 @@
+/*
+ * Copyright 2013 University of St Andrews School of Computer Science
+ *
+ * This file is part of Shabdiz.
+ *
+ * Shabdiz is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Shabdiz is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Shabdiz.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.ac.standrews.cs.shabdiz;
+
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.ac.standrews.cs.shabdiz.util.AttributeKey;
+import uk.ac.standrews.cs.shabdiz.util.Duration;
+import uk.ac.standrews.cs.shabdiz.util.PhiAccrualFailureDetector;
+
+/**
+ * A {@link StatusScanner} that decides whether a {@link ApplicationState#RUNNING running} application instance has failed using a {@link PhiAccrualFailureDetector phi accrual failure detector}.
+ * Each probe that finds a descriptor running counts as a heartbeat of the descriptor.
+ * When a probe of a running descriptor fails, the descriptor remains running as long as its suspicion level is below the {@link #getPhiThreshold() phi threshold}; once the threshold is reached, the descriptor transitions to the probed state.
+ * Therefore, a transient failure of a single probe does not cause a running instance to be redeployed or killed, and the suspicion of a failed instance accrues smoothly with the time since its last successful probe.
+ * Transitions that do not involve leaving the running state, and those of descriptors that were never found running by this scanner, are unaffected.
+ * <p>
+ * To use this scanner in place of the default status scanner of a network, {@link ApplicationNetwork#setStatusScannerEnabled(boolean) disable} the default one and {@link ApplicationNetwork#addScanner(Scanner) add} an instance of this scanner.
+ *
+ * @author Masih Hajiarabderkani (mh638@st-andrews.ac.uk)
+ */
+public class PhiAccrualStatusScanner extends StatusScanner {
+
+    /** The default suspicion level at which a running descriptor is considered failed. */
+    public static final double DEFAULT_PHI_THRESHOLD = 8;
+    /** The default number of most recent intervals between successful probes from which suspicion is calculated. */
+    public static final int DEFAULT_WINDOW_SIZE = 32;
+    private static final Duration MIN_STD_DEVIATION_FLOOR = new Duration(100, TimeUnit.MILLISECONDS);
+    private static final Logger LOGGER = LoggerFactory.getLogger(PhiAccrualStatusScanner.class);
+    private final AttributeKey<PhiAccrualFailureDetector> detector_key;
+    private final Duration min_std_deviation;
+    private volatile double phi_threshold;
+
+    /**
+     * Instantiates a new scanner with the {@link #DEFAULT_PHI_THRESHOLD default phi threshold} and the {@link #DEFAULT_STATUS_CHECK_TIMEOUT default status check timeout}.
+     *
+     * @param cycle_delay the delay between the scan cycles
+     */
+    public PhiAccrualStatusScanner(final Duration cycle_delay) {
+
+        this(cycle_delay, DEFAULT_STATUS_CHECK_TIMEOUT, DEFAULT_PHI_THRESHOLD);
+    }
+
+    /**
+     * Instantiates a new scanner.
+     *
+     * @param cycle_delay the delay between the scan cycles
+     * @param status_check_timeout the timeout of a scan cycle
+     * @param phi_threshold the suspicion level at which a running descriptor is considered failed
+     */
+    public PhiAccrualStatusScanner(final Duration cycle_delay, final Duration status_check_timeout, final double phi_threshold) {
+
+        super(cycle_delay, status_check_timeout, true);
+        detector_key = new AttributeKey<PhiAccrualFailureDetector>();
+        min_std_deviation = Duration.max(MIN_STD_DEVIATION_FLOOR, new Duration(cycle_delay.getLength(TimeUnit.MILLISECONDS) / 10, TimeUnit.MILLISECONDS));
+        setPhiThreshold(phi_threshold);
+    }
+
+    /**
+     * Sets the suspicion level at which a running descriptor is considered failed.
+     * Higher thresholds make fewer mistakes at the cost of detecting actual failures later.
+     *
+     * @param phi_threshold the suspicion level at which a running descriptor is considered failed
+     * @throws IllegalArgumentException if the given threshold is not positive
+     */
+    public void setPhiThreshold(final double phi_threshold) {
+
+        if (!(phi_threshold > 0)) { throw new IllegalArgumentException("phi threshold must be positive"); }
+        this.phi_threshold = phi_threshold;
+    }
+
+    /**
+     * Gets the suspicion level at which a running descriptor is considered failed.
+     *
+     * @return the suspicion level at which a running descriptor is considered failed
+     */
+    public double getPhiThreshold() {
+
+        return phi_threshold;
+    }
+
+    /**
+     * Gets the current suspicion level of the given {@code descriptor}, or zero if the descriptor has never been found running by this scanner.
+     *
+     * @param descriptor the descriptor
+     * @return the current suspicion level of the given {@code descriptor}
+     */
+    public double getPhi(final ApplicationDescriptor descriptor) {
+
+        final PhiAccrualFailureDetector detector = descriptor.getAttribute(detector_key);
+        return detector == null ? 0 : detector.phi(System.nanoTime());
+    }
+
+    @Override
+    protected ApplicationState resolveState(final ApplicationDescriptor descriptor, final ApplicationState old_state, final ApplicationState probed_state) {
+
+        final long now = System.nanoTime();
+        if (probed_state == ApplicationState.RUNNING) {
+            final PhiAccrualFailureDetector detector = getDetector(descriptor);
+            if (old_state == ApplicationState.RUNNING) {
+                detector.heartbeat(now);
+            }
+            else {
+                detector.resume(now);
+            }
+        }
+        else if (old_state == ApplicationState.RUNNING) {
+            final PhiAccrualFailureDetector detector = descriptor.getAttribute(detector_key);
+            final double phi = detector == null ? Double.POSITIVE_INFINITY : detector.phi(now); // never found running by this scanner
+            if (phi < phi_threshold) {
+                LOGGER.debug("descriptor {} is suspected with phi {} after probed as {}; remaining running", descriptor, phi, probed_state);
+                return old_state;
+            }
+        }
+        return probed_state;
+    }
+
+    private PhiAccrualFailureDetector getDetector(final ApplicationDescriptor descriptor) {
+
+        PhiAccrualFailureDetector detector = descriptor.getAttribute(detector_key);
+        if (detector == null) {
+            detector = new PhiAccrualFailureDetector(DEFAULT_WINDOW_SIZE, getCycleDelay(), min_std_deviation, Duration.ZERO);
+            descriptor.setAttribute(detector_key, detector);
+        }
+        return detector;
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2013 University of St Andrews School of Computer Science
+ *
+ * This file is part of Shabdiz.
+ *
+ * Shabdiz is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Shabdiz is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Shabdiz.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.standrews.cs.shabdiz;
+
+/**
+ * Listens to the transitions of the {@link ApplicationDescriptor#getApplicationState() state} of {@link ApplicationDescriptor descriptors}.
+ * Listeners are notified on the thread that changes the state, and must therefore return promptly.
+ * Notifications are not serialised: when the state of a descriptor changes concurrently, a listener may observe a later transition before an earlier one.
+ * The {@code new_state} of a notification is the state the transition set, which is not necessarily the current state of the descriptor by the time the listener runs;
+ * listeners that track the current state should re-read {@link ApplicationDescriptor#getApplicationState()}.
+ *
+ * @author Masih Hajiarabderkani (mh638@st-andrews.ac.uk)
+ * @see ApplicationDescriptor#addStateTransitionListener(StateTransitionListener)
+ */
+public interface StateTransitionListener {
+
+    /**
+     * Called when the state of the given {@code descriptor} changes from the given {@code old_state} to the given {@code new_state}.
+     *
+     * @param descriptor the descriptor of which the state has changed
+     * @param old_state the state of the descriptor prior to the transition
+     * @param new_state the state of the descriptor immediately after the transition, which may since have changed again
+     */
+    void onStateTransition(ApplicationDescriptor descriptor, ApplicationState old_state, ApplicationState new_state);
+}
@@ -19,15 +19,36 @@
 
 package uk.ac.standrews.cs.shabdiz;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import uk.ac.standrews.cs.shabdiz.host.Host;
+import uk.ac.standrews.cs.shabdiz.util.AttributeKey;
 import uk.ac.standrews.cs.shabdiz.util.Duration;
+import uk.ac.standrews.cs.shabdiz.util.ExponentialBackoff;
+import uk.ac.standrews.cs.shabdiz.util.HostConcurrencyLimiter;
 
 /**
  * Scanner that monitors machine status. Machines are probed for the presence of a particular application, and for their willingness to accept an SSH connection with specified credentials.
  * The results of these tests are recorded in the corresponding host descriptors.
  * This scanner publishes a new latch after every cycle through the host list. This enables other scanners to synchronize their own operation with this one.
+ * <p>
+ * Descriptors that are {@link ApplicationState#UNREACHABLE unreachable}, {@link ApplicationState#INVALID invalid} or {@link ApplicationState#NO_AUTH not authorised} are re-probed with a jittered {@link ExponentialBackoff exponential backoff}, starting from the cycle delay of this scanner and capped at the {@link #getMaxProbeBackoff() maximum probe backoff}.
+ * The backoff of a descriptor is reset as soon as its state changes.
+ * <p>
+ * If the network has a {@link ApplicationNetwork#setHeartbeatReceiver(HeartbeatReceiver) heartbeat receiver}, the descriptors of which the heartbeats are fresh are not probed; only the descriptors that have gone quiet are probed.
+ * <p>
+ * Descriptors that are managed by a {@link BatchApplicationManager} are partitioned by their manager and host at the start of each scan cycle, and each partition is probed in a single {@link BatchApplicationManager#probeStates(java.util.Collection) batch probe}.
+ * The partitions are also probed in batches when this scanner is a stage of a {@link FusedScanner}.
+ * When the scans are {@link ApplicationNetwork#setDeadlineSchedulingEnabled(boolean) scheduled per descriptor}, there is no scan cycle to partition; each descriptor is then probed on its own.
  *
  * @author Graham Kirby (graham.kirby@st-andrews.ac.uk)
  * @author Masih Hajiarabderkani (mh638@st-andrews.ac.uk)
@@ -36,8 +57,13 @@ public class StatusScanner extends ConcurrentScanner {
 
     /** The default timeout for attempted status checks. */
     public static final Duration DEFAULT_STATUS_CHECK_TIMEOUT = new Duration(5, TimeUnit.MINUTES);
+    /** The default maximum delay between the probes of a descriptor that is in a failure state. */
+    public static final Duration DEFAULT_MAX_PROBE_BACKOFF = new Duration(5, TimeUnit.MINUTES);
+    private static final Set<ApplicationState> BACKOFF_STATES = EnumSet.of(ApplicationState.UNREACHABLE, ApplicationState.INVALID, ApplicationState.NO_AUTH);
+    private static final AttributeKey<ProbeBackoff> PROBE_BACKOFF_KEY = new AttributeKey<ProbeBackoff>();
     private static final boolean ENABLED_BY_DEFAULT = true;
     private static final Logger LOGGER = LoggerFactory.getLogger(StatusScanner.class);
+    private volatile ExponentialBackoff probe_backoff;
 
     protected StatusScanner(final Duration cycle_delay) {
 
@@ -47,16 +73,241 @@ public class StatusScanner extends ConcurrentScanner {
     protected StatusScanner(final Duration cycle_delay, final Duration status_check_timeout, final boolean enabled) {
 
         super(cycle_delay, status_check_timeout, enabled);
+        probe_backoff = new ExponentialBackoff(cycle_delay, DEFAULT_MAX_PROBE_BACKOFF);
+    }
+
+    /**
+     * Sets the maximum delay between the probes of a descriptor that is {@link ApplicationState#UNREACHABLE unreachable}, {@link ApplicationState#INVALID invalid} or {@link ApplicationState#NO_AUTH not authorised}.
+     * A maximum delay of zero disables the backoff, i.e. such descriptors are probed on every cycle.
+     *
+     * @param max_backoff the maximum delay between the probes of a descriptor that is in a failure state
+     */
+    public void setMaxProbeBackoff(final Duration max_backoff) {
+
+        probe_backoff = new ExponentialBackoff(getCycleDelay(), max_backoff);
+    }
+
+    /**
+     * Gets the maximum delay between the probes of a descriptor that is in a failure state.
+     *
+     * @return the maximum delay between the probes of a descriptor that is in a failure state
+     * @see #setMaxProbeBackoff(Duration)
+     */
+    public Duration getMaxProbeBackoff() {
+
+        return probe_backoff.getCap();
+    }
+
+    /**
+     * {@inheritDoc}
+     * The descriptors that are managed by a {@link BatchApplicationManager} are partitioned by their manager and host; each partition is probed in a single batch probe.
+     */
+    @Override
+    protected List<List<ApplicationDescriptor>> groupScanCandidates(final ApplicationNetwork network, final Iterable<ApplicationDescriptor> candidates) {
+
+        final List<List<ApplicationDescriptor>> groups = new ArrayList<List<ApplicationDescriptor>>();
+        final Map<ApplicationManager, Map<Host, List<ApplicationDescriptor>>> partitions = new HashMap<ApplicationManager, Map<Host, List<ApplicationDescriptor>>>();
+        for (final ApplicationDescriptor descriptor : candidates) {
+            final ApplicationManager manager = descriptor.getApplicationManager();
+            if (manager instanceof BatchApplicationManager) {
+                partitions.computeIfAbsent(manager, key -> new HashMap<Host, List<ApplicationDescriptor>>()).computeIfAbsent(descriptor.getHost(), key -> new ArrayList<ApplicationDescriptor>()).add(descriptor);
+            }
+            else {
+                groups.add(Collections.singletonList(descriptor));
+            }
+        }
+
+        for (final Map<Host, List<ApplicationDescriptor>> host_partitions : partitions.values()) {
+            groups.addAll(host_partitions.values());
+        }
+        return groups;
+    }
+
+    /**
+     * {@inheritDoc}
+     * The given {@code group} is a partition of descriptors that share a {@link BatchApplicationManager} and a host, and is probed in a single batch probe.
+     */
+    @Override
+    protected void scan(final ApplicationNetwork network, final List<ApplicationDescriptor> group) {
+
+        final ApplicationManager manager = group.get(0).getApplicationManager();
+        if (manager instanceof BatchApplicationManager) {
+            scanBatch(network, (BatchApplicationManager) manager, group);
+        }
+        else {
+            super.scan(network, group);
+        }
     }
 
     @Override
     protected void scan(final ApplicationNetwork network, final ApplicationDescriptor descriptor) {
 
         final ApplicationState old_state = descriptor.getApplicationState();
-        final ApplicationState new_state = descriptor.getApplicationManager().probeState(descriptor);
+        if (isSkipped(network, descriptor, old_state)) { return; }
 
+        final HostConcurrencyLimiter.Permit permit;
+        try {
+            permit = network.getHostConcurrencyLimiter().acquire(descriptor.getHost());
+        }
+        catch (final InterruptedException e) {
+            LOGGER.debug("interrupted while waiting to probe the state of descriptor {}", descriptor);
+            Thread.currentThread().interrupt();
+            return;
+        }
+
+        final ApplicationState new_state;
+        try {
+            new_state = descriptor.getApplicationManager().probeState(descriptor);
+        }
+        finally {
+            permit.close();
+        }
+
+        updateState(descriptor, old_state, new_state);
+    }
+
+    /**
+     * {@inheritDoc}
+     * Descriptors that are managed by an {@link AsyncApplicationManager} or an {@link AbstractApplicationManager} are probed asynchronously; the latter are {@link AbstractApplicationManager#probeStateAsync(ApplicationDescriptor, java.util.concurrent.Executor) probed} without holding a thread while the reachability of their host is checked.
+     * If the number of concurrent operations per host is {@link ApplicationNetwork#setMaxConcurrentOperationsPerHost(int) limited}, the permit of an asynchronous probe is awaited on the network executor, not on the scanner thread.
+     */
+    @Override
+    protected boolean isScannedAsynchronously(final ApplicationNetwork network, final ApplicationDescriptor descriptor) {
+
+        final ApplicationManager manager = descriptor.getApplicationManager();
+        return manager instanceof AsyncApplicationManager || manager instanceof AbstractApplicationManager;
+    }
+
+    @Override
+    protected CompletableFuture<Void> scanAsync(final ApplicationNetwork network, final ApplicationDescriptor descriptor) {
+
+        final ApplicationState old_state = descriptor.getApplicationState();
+        if (isSkipped(network, descriptor, old_state)) { return CompletableFuture.completedFuture(null); }
+
+        return network.withHostPermit(descriptor.getHost(), () -> probeStateAsync(network, descriptor)).thenAccept(new_state -> updateState(descriptor, old_state, new_state));
+    }
+
+    private static CompletableFuture<ApplicationState> probeStateAsync(final ApplicationNetwork network, final ApplicationDescriptor descriptor) {
+
+        final ApplicationManager manager = descriptor.getApplicationManager();
+        if (manager instanceof AsyncApplicationManager) { return ((AsyncApplicationManager) manager).probeStateAsync(descriptor); }
+        return ((AbstractApplicationManager) manager).probeStateAsync(descriptor, network.getConcurrentScannerExecutor());
+    }
+
+    private void scanBatch(final ApplicationNetwork network, final BatchApplicationManager manager, final List<ApplicationDescriptor> batch) {
+
+        final Map<ApplicationDescriptor, ApplicationState> old_states = new HashMap<ApplicationDescriptor, ApplicationState>();
+        for (final ApplicationDescriptor descriptor : batch) {
+            final ApplicationState old_state = descriptor.getApplicationState();
+            if (!isSkipped(network, descriptor, old_state)) {
+                old_states.put(descriptor, old_state);
+            }
+        }
+        if (old_states.isEmpty()) {
+            LOGGER.trace("skipping the probe of batch {}", batch);
+            return;
+        }
+
+        final HostConcurrencyLimiter.Permit permit;
+        try {
+            permit = network.getHostConcurrencyLimiter().acquire(batch.get(0).getHost());
+        }
+        catch (final InterruptedException e) {
+            LOGGER.debug("interrupted while waiting to probe the state of batch {}", batch);
+            Thread.currentThread().interrupt();
+            return;
+        }
+
+        final Map<ApplicationDescriptor, ApplicationState> new_states = new HashMap<ApplicationDescriptor, ApplicationState>();
+        try {
+            final Map<ApplicationDescriptor, ApplicationState> probed_states = manager.probeStates(Collections.unmodifiableSet(old_states.keySet()));
+            for (final ApplicationDescriptor descriptor : old_states.keySet()) {
+                final ApplicationState probed_state = probed_states == null ? null : probed_states.get(descriptor);
+                new_states.put(descriptor, probed_state != null ? probed_state : manager.probeState(descriptor));
+            }
+        }
+        finally {
+            permit.close();
+        }
+
+        for (final Map.Entry<ApplicationDescriptor, ApplicationState> entry : new_states.entrySet()) {
+            final ApplicationDescriptor descriptor = entry.getKey();
+            updateState(descriptor, old_states.get(descriptor), entry.getValue());
+        }
+    }
+
+    /**
+     * Resolves the state to which the given {@code descriptor} transitions given the result of a probe.
+     * By default, the descriptor transitions to the probed state.
+     * Subclasses may override this method to decide transitions based on more than the outcome of a single probe.
+     *
+     * @param descriptor the probed descriptor
+     * @param old_state the state of the descriptor prior to the probe
+     * @param probed_state the state of the descriptor as probed by its manager
+     * @return the state to which the descriptor transitions
+     */
+    protected ApplicationState resolveState(final ApplicationDescriptor descriptor, final ApplicationState old_state, final ApplicationState probed_state) {
+
+        return probed_state;
+    }
+
+    private void updateState(final ApplicationDescriptor descriptor, final ApplicationState old_state, final ApplicationState probed_state) {
+
+        final ApplicationState new_state = resolveState(descriptor, old_state, probed_state);
         if (descriptor.compareAndSetApplicationState(old_state, new_state)) {
             LOGGER.debug("the state of descriptor {} is now {}", descriptor, new_state);
         }
+        updateBackoff(descriptor, new_state);
+    }
+
+    private boolean isSkipped(final ApplicationNetwork network, final ApplicationDescriptor descriptor, final ApplicationState current_state) {
+
+        if (network.hasFreshHeartbeat(descriptor)) {
+            LOGGER.trace("skipping the probe of descriptor {} due to its fresh heartbeat", descriptor);
+            return true;
+        }
+        if (isBackingOff(descriptor, current_state)) {
+            LOGGER.trace("skipping the probe of descriptor {} in state {} due to backoff", descriptor, current_state);
+            return true;
+        }
+        return false;
+    }
+
+    private boolean isBackingOff(final ApplicationDescriptor descriptor, final ApplicationState current_state) {
+
+        final ProbeBackoff backoff = descriptor.getAttribute(PROBE_BACKOFF_KEY);
+        if (backoff == null) { return false; }
+        if (backoff.state != current_state) {
+            descriptor.setAttribute(PROBE_BACKOFF_KEY, null);
+            return false;
+        }
+        return backoff.next_probe_time - System.nanoTime() > 0;
+    }
+
+    private void updateBackoff(final ApplicationDescriptor descriptor, final ApplicationState probed_state) {
+
+        if (BACKOFF_STATES.contains(probed_state)) {
+            final ProbeBackoff previous = descriptor.getAttribute(PROBE_BACKOFF_KEY);
+            final int failures = previous != null && previous.state == probed_state ? previous.failures + 1 : 1;
+            final long delay = probe_backoff.getDelayNanos(failures);
+            descriptor.setAttribute(PROBE_BACKOFF_KEY, delay > 0 ? new ProbeBackoff(probed_state, failures, System.nanoTime() + delay) : null);
+        }
+        else {
+            descriptor.setAttribute(PROBE_BACKOFF_KEY, null);
+        }
+    }
+
+    private static final class ProbeBackoff {
+
+        private final ApplicationState state;
+        private final int failures;
+        private final long next_probe_time;
+
+        private ProbeBackoff(final ApplicationState state, final int failures, final long next_probe_time) {
+
+            this.state = state;
+            this.failures = failures;
+            this.next_probe_time = next_probe_time;
+        }
     }
 }
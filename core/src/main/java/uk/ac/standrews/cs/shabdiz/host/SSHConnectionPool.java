@@ -0,0 +1,463 @@
+/*
+ * Copyright 2013 University of St Andrews School of Computer Science
+ *
+ * This file is part of Shabdiz.
+ *
+ * Shabdiz is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Shabdiz is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Shabdiz.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.ac.standrews.cs.shabdiz.host;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import net.schmizz.sshj.SSHClient;
+import net.schmizz.sshj.connection.channel.direct.Session;
+import net.schmizz.sshj.sftp.SFTPClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Multiplexes the channels of an {@link SSHHost} over a pool of SSH connections to the host.
+ * Each connection carries at most a {@link #setMaxSessionsPerConnection(int) bounded number} of concurrent channels, so that the server-side limit on the number of sessions per connection is never reached; additional connections are established on demand.
+ * Since an SSH session executes a single command, {@link #openSession() sessions} are not reused; their channels are reclaimed as soon as they are closed by either side.
+ * {@link #openSFTP() SFTP} subsystems, on the other hand, are returned to the pool once released and reused by subsequent transfers.
+ * Connections are health-checked before use; broken connections are discarded and transparently replaced.
+ * At most one connection is kept open while idle.
+ * This class is thread-safe.
+ *
+ * @author Masih Hajiarabderkani (mh638@st-andrews.ac.uk)
+ */
+final class SSHConnectionPool implements Closeable {
+
+    /** The default maximum number of concurrent channels per connection, which is below the default {@code MaxSessions} of OpenSSH. */
+    static final int DEFAULT_MAX_SESSIONS_PER_CONNECTION = 8;
+    private static final Logger LOGGER = LoggerFactory.getLogger(SSHConnectionPool.class);
+    private static final int MAX_OPEN_ATTEMPTS = 2;
+    private final Connector connector;
+    private final List<PooledConnection> connections;
+    private int max_sessions_per_connection;
+    private boolean closed;
+
+    /**
+     * Instantiates a new pool.
+     *
+     * @param connector the connector that establishes new connections to the host
+     * @param initial_connection an established connection to the host, or {@code null} if none is established
+     */
+    SSHConnectionPool(final Connector connector, final SSHClient initial_connection) {
+
+        this.connector = connector;
+        connections = new ArrayList<PooledConnection>();
+        max_sessions_per_connection = DEFAULT_MAX_SESSIONS_PER_CONNECTION;
+        if (initial_connection != null) {
+            connections.add(new PooledConnection(initial_connection));
+        }
+    }
+
+    /**
+     * Opens a session on a healthy connection to the host.
+     * The returned lease must be {@link SessionLease#close() closed} once the session is no longer needed.
+     *
+     * @return the lease of the opened session
+     * @throws IOException if no session can be opened
+     */
+    SessionLease openSession() throws IOException {
+
+        IOException failure = null;
+        for (int attempt = 0; attempt < MAX_OPEN_ATTEMPTS; attempt++) {
+            final PooledConnection connection = reserve();
+            final Session session;
+            try {
+                session = connection.client.startSession();
+            }
+            catch (final IOException e) {
+                failure = onOpenFailure(connection, e);
+                continue;
+            }
+            synchronized (this) {
+                connection.reserved--;
+                connection.sessions.add(session);
+            }
+            return new SessionLease(connection, session);
+        }
+        throw failure;
+    }
+
+    /**
+     * Borrows an idle SFTP client from the pool, or opens a new one on a healthy connection to the host.
+     * The returned lease must be {@link SFTPLease#close() closed} once the transfer is complete.
+     *
+     * @return the lease of the SFTP client
+     * @throws IOException if no SFTP client can be opened
+     */
+    SFTPLease openSFTP() throws IOException {
+
+        final SFTPLease idle = borrowIdleSFTP();
+        if (idle != null) { return idle; }
+
+        IOException failure = null;
+        for (int attempt = 0; attempt < MAX_OPEN_ATTEMPTS; attempt++) {
+            final PooledConnection connection = reserve();
+            final SFTPClient sftp;
+            try {
+                sftp = connection.client.newSFTPClient();
+            }
+            catch (final IOException e) {
+                failure = onOpenFailure(connection, e);
+                continue;
+            }
+            synchronized (this) {
+                connection.reserved--;
+                connection.sftp_in_use++;
+            }
+            return new SFTPLease(connection, sftp);
+        }
+        throw failure;
+    }
+
+    /**
+     * Sets the maximum number of concurrent channels per connection.
+     *
+     * @param max_sessions the maximum number of concurrent channels per connection
+     */
+    synchronized void setMaxSessionsPerConnection(final int max_sessions) {
+
+        if (max_sessions < 1) { throw new IllegalArgumentException("maximum sessions per connection must be at least 1"); }
+        max_sessions_per_connection = max_sessions;
+    }
+
+    /**
+     * Gets the maximum number of concurrent channels per connection.
+     *
+     * @return the maximum number of concurrent channels per connection
+     */
+    synchronized int getMaxSessionsPerConnection() {
+
+        return max_sessions_per_connection;
+    }
+
+    /**
+     * Gets the number of connections that are currently established by this pool.
+     *
+     * @return the number of connections that are currently established by this pool
+     */
+    synchronized int getConnectionCount() {
+
+        return connections.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+
+        final List<PooledConnection> to_disconnect;
+        synchronized (this) {
+            closed = true;
+            to_disconnect = new ArrayList<PooledConnection>(connections);
+            connections.clear();
+        }
+
+        IOException failure = null;
+        for (final PooledConnection connection : to_disconnect) {
+            try {
+                connection.client.disconnect();
+            }
+            catch (final IOException e) {
+                failure = e;
+            }
+        }
+        if (failure != null) { throw failure; }
+    }
+
+    private PooledConnection reserve() throws IOException {
+
+        final List<Closeable> to_close = new ArrayList<Closeable>();
+        try {
+            synchronized (this) {
+                if (closed) { throw new IOException("connection pool is closed"); }
+
+                pruneBrokenConnections(to_close);
+                PooledConnection evictable = null;
+                for (final PooledConnection connection : connections) {
+                    if (connection.getChannelCount() < max_sessions_per_connection) {
+                        connection.reserved++;
+                        return connection;
+                    }
+                    if (evictable == null && !connection.idle_sftp.isEmpty()) {
+                        evictable = connection;
+                    }
+                }
+                if (evictable != null) {
+                    to_close.add(evictable.idle_sftp.poll());
+                    evictable.reserved++;
+                    return evictable;
+                }
+            }
+        }
+        finally {
+            closeQuietly(to_close);
+        }
+
+        LOGGER.debug("establishing a new connection; all pooled connections are at capacity or broken");
+        final SSHClient client = connector.connect();
+        synchronized (this) {
+            if (!closed) {
+                final PooledConnection connection = new PooledConnection(client);
+                connection.reserved++;
+                connections.add(connection);
+                return connection;
+            }
+        }
+        client.disconnect();
+        throw new IOException("connection pool is closed");
+    }
+
+    private SFTPLease borrowIdleSFTP() {
+
+        final List<Closeable> to_close = new ArrayList<Closeable>();
+        try {
+            synchronized (this) {
+                if (closed) { return null; }
+
+                pruneBrokenConnections(to_close);
+                for (final PooledConnection connection : connections) {
+                    final SFTPClient sftp = connection.idle_sftp.poll();
+                    if (sftp != null) {
+                        connection.sftp_in_use++;
+                        return new SFTPLease(connection, sftp);
+                    }
+                }
+                return null;
+            }
+        }
+        finally {
+            closeQuietly(to_close);
+        }
+    }
+
+    private IOException onOpenFailure(final PooledConnection connection, final IOException failure) throws IOException {
+
+        final List<Closeable> to_close = new ArrayList<Closeable>();
+        try {
+            synchronized (this) {
+                connection.reserved--;
+                if (connection.isHealthy()) { throw failure; }
+
+                LOGGER.debug("discarding broken connection", failure);
+                pruneBrokenConnections(to_close);
+                return failure;
+            }
+        }
+        finally {
+            closeQuietly(to_close);
+        }
+    }
+
+    private void release(final PooledConnection connection, final Session session) {
+
+        final List<Closeable> to_close = new ArrayList<Closeable>();
+        to_close.add(session);
+        synchronized (this) {
+            connection.sessions.remove(session);
+            retireIfSurplus(connection, to_close);
+        }
+        closeQuietly(to_close);
+    }
+
+    private void release(final PooledConnection connection, final SFTPClient sftp, final boolean reusable) {
+
+        final List<Closeable> to_close = new ArrayList<Closeable>();
+        synchronized (this) {
+            connection.sftp_in_use--;
+            if (reusable && !closed && connection.isHealthy() && connections.contains(connection)) {
+                connection.idle_sftp.push(sftp);
+            }
+            else {
+                to_close.add(sftp);
+                retireIfSurplus(connection, to_close);
+            }
+        }
+        closeQuietly(to_close);
+    }
+
+    private void retireIfSurplus(final PooledConnection connection, final List<Closeable> to_close) {
+
+        if (!connection.isIdle() || !connections.contains(connection)) { return; }
+        for (final PooledConnection other : connections) {
+            if (other != connection && other.isIdle() && other.isHealthy()) {
+                LOGGER.debug("retiring surplus idle connection");
+                connections.remove(connection);
+                retire(connection, to_close);
+                return;
+            }
+        }
+    }
+
+    private void pruneBrokenConnections(final List<Closeable> to_close) {
+
+        final Iterator<PooledConnection> iterator = connections.iterator();
+        while (iterator.hasNext()) {
+            final PooledConnection connection = iterator.next();
+            if (!connection.isHealthy()) {
+                iterator.remove();
+                retire(connection, to_close);
+            }
+        }
+    }
+
+    private static void retire(final PooledConnection connection, final List<Closeable> to_close) {
+
+        to_close.addAll(connection.idle_sftp);
+        connection.idle_sftp.clear();
+        to_close.add(connection.client::disconnect);
+    }
+
+    private static void closeQuietly(final List<Closeable> closeables) {
+
+        for (final Closeable closeable : closeables) {
+            try {
+                closeable.close();
+            }
+            catch (final IOException e) {
+                LOGGER.trace("failed to close pooled channel", e);
+            }
+        }
+    }
+
+    /** Establishes new connections to a host. */
+    interface Connector {
+
+        /**
+         * Establishes a new authenticated connection to the host.
+         *
+         * @return the established connection
+         * @throws IOException if the connection cannot be established
+         */
+        SSHClient connect() throws IOException;
+    }
+
+    /** A session that is opened on a pooled connection. */
+    final class SessionLease implements Closeable {
+
+        private final PooledConnection connection;
+        private final Session session;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private SessionLease(final PooledConnection connection, final Session session) {
+
+            this.connection = connection;
+            this.session = session;
+        }
+
+        /**
+         * Gets the leased session.
+         *
+         * @return the leased session
+         */
+        Session getSession() {
+
+            return session;
+        }
+
+        /** Closes the leased session and reclaims its channel. */
+        @Override
+        public void close() {
+
+            if (released.compareAndSet(false, true)) {
+                release(connection, session);
+            }
+        }
+    }
+
+    /** An SFTP client that is borrowed from the pool. */
+    final class SFTPLease implements Closeable {
+
+        private final PooledConnection connection;
+        private final SFTPClient sftp;
+        private final AtomicBoolean released = new AtomicBoolean();
+        private volatile boolean broken;
+
+        private SFTPLease(final PooledConnection connection, final SFTPClient sftp) {
+
+            this.connection = connection;
+            this.sftp = sftp;
+        }
+
+        /**
+         * Gets the leased SFTP client.
+         *
+         * @return the leased SFTP client
+         */
+        SFTPClient getSFTPClient() {
+
+            return sftp;
+        }
+
+        /** Marks the leased SFTP client as broken, so that it is closed rather than reused once this lease is closed. */
+        void discard() {
+
+            broken = true;
+        }
+
+        /** Returns the leased SFTP client to the pool, or closes it if it is {@link #discard() broken}. */
+        @Override
+        public void close() {
+
+            if (released.compareAndSet(false, true)) {
+                release(connection, sftp, !broken);
+            }
+        }
+    }
+
+    private static final class PooledConnection {
+
+        private final SSHClient client;
+        private final Set<Session> sessions = new HashSet<Session>();
+        private final Deque<SFTPClient> idle_sftp = new ArrayDeque<SFTPClient>();
+        private int reserved;
+        private int sftp_in_use;
+
+        private PooledConnection(final SSHClient client) {
+
+            this.client = client;
+        }
+
+        private boolean isHealthy() {
+
+            return client.isConnected() && client.isAuthenticated();
+        }
+
+        private int getChannelCount() {
+
+            final Iterator<Session> iterator = sessions.iterator();
+            while (iterator.hasNext()) {
+                if (!iterator.next().isOpen()) {
+                    iterator.remove();
+                }
+            }
+            return reserved + sessions.size() + sftp_in_use + idle_sftp.size();
+        }
+
+        private boolean isIdle() {
+
+            return getChannelCount() == idle_sftp.size();
+        }
+    }
+}
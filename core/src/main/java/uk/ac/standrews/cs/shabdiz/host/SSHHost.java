@@ -3,8 +3,25 @@ package uk.ac.standrews.cs.shabdiz.host;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import net.schmizz.sshj.SSHClient;
 import net.schmizz.sshj.connection.ConnectionException;
 import net.schmizz.sshj.connection.channel.direct.Session;
@@ -13,6 +30,7 @@ import net.schmizz.sshj.transport.TransportException;
 import net.schmizz.sshj.transport.verification.PromiscuousVerifier;
 import net.schmizz.sshj.userauth.method.AuthMethod;
 import net.schmizz.sshj.xfer.FileSystemFile;
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -20,24 +38,36 @@ import uk.ac.standrews.cs.shabdiz.host.exec.Commands;
 import uk.ac.standrews.cs.shabdiz.platform.Platform;
 import uk.ac.standrews.cs.shabdiz.platform.Platforms;
 import uk.ac.standrews.cs.shabdiz.platform.SimplePlatform;
+import uk.ac.standrews.cs.shabdiz.util.FormattedNameThreadFactory;
 
 import static uk.ac.standrews.cs.shabdiz.host.exec.Bootstrap.readLine;
 
 /**
  * Presents a {@link Host} that uses SSH2 to upload, download and execute commands.
+ * Commands and transfers are multiplexed over a pool of connections to the host, each of which carries a {@link #setMaxSessionsPerConnection(int) bounded number} of concurrent sessions.
+ * SFTP clients are reused across transfers, and broken connections are transparently re-established.
+ * The files of a multi-file upload are uploaded concurrently over several SFTP channels; see {@link #setUploadParallelism(int)}.
+ * The remote directories that are made by uploads are remembered, so that repeated uploads to the same directory do not make it again; see {@link #forgetKnownDirectories()}.
  *
  * @author Masih Hajiarabderkani (mh638@st-andrews.ac.uk)
  */
 public class SSHHost extends AbstractHost {
 
+    /** The default maximum number of SFTP channels over which the files of a multi-file upload are concurrently uploaded. */
+    public static final int DEFAULT_UPLOAD_PARALLELISM = 4;
     private static final PromiscuousVerifier PROMISCUOUS_HOST_VERIFIER = new PromiscuousVerifier();
     private static final int SSH_TRANSPORT_TIMEOUT_MILLIS = 15000;
     private static final int SSH_CHANNEL_CONNECTION_TIMEOUT_MILLIS = SSH_TRANSPORT_TIMEOUT_MILLIS;
     private static final int SSH_CONNECTION_TIMEOUT = SSH_TRANSPORT_TIMEOUT_MILLIS;
     private static final Logger LOGGER = LoggerFactory.getLogger(SSHHost.class);
-    private final SSHClient ssh;
+    private static final int MAX_KNOWN_DIRECTORIES = 64;
+    private final SSHConnectionPool connection_pool;
     private final Platform platform;
     private final String username;
+    private final int ssh_port;
+    private final AuthMethod authentication;
+    private final Map<String, Boolean> known_directories = Collections.synchronizedMap(new KnownDirectories());
+    private volatile int upload_parallelism = DEFAULT_UPLOAD_PARALLELISM;
     private boolean destroy_process_forcefully;
 
     /**
@@ -69,8 +99,9 @@ public class SSHHost extends AbstractHost {
 
         super(host_name);
         this.username = username;
-        ssh = new SSHClient();
-        configureSSHClient(host_name, ssh_port, authentication);
+        this.ssh_port = ssh_port;
+        this.authentication = authentication;
+        connection_pool = new SSHConnectionPool(this::connect, connect());
         platform = Platforms.detectPlatform(this);
     }
 
@@ -87,9 +118,10 @@ public class SSHHost extends AbstractHost {
 
         super(host_name);
         this.username = username;
+        this.ssh_port = ssh_port;
+        this.authentication = authentication;
         this.platform = platform;
-        ssh = new SSHClient();
-        configureSSHClient(host_name, ssh_port, authentication);
+        connection_pool = new SSHConnectionPool(this::connect, connect());
     }
 
     @Override
@@ -103,28 +135,110 @@ public class SSHHost extends AbstractHost {
         else {
             destination_path = destination;
         }
-        final SFTPClient sftp = ssh.newSFTPClient();
-        LOGGER.debug("Uploading {} to {} on host {} ", source, destination, getName());
-        upload(sftp, source, destination_path);
+        final SSHConnectionPool.SFTPLease lease = connection_pool.openSFTP();
+        try {
+            LOGGER.debug("Uploading {} to {} on host {} ", source, destination, getName());
+            upload(lease.getSFTPClient(), source, destination_path);
+        }
+        catch (final IOException e) {
+            lease.discard();
+            throw e;
+        }
+        finally {
+            lease.close();
+        }
     }
 
+    /**
+     * {@inheritDoc}
+     * The given {@code sources} are uploaded concurrently over up to {@link #getUploadParallelism() upload parallelism} SFTP channels, largest first, so that the transfer of a large file overlaps with those of many small ones.
+     * The throughput of each file and of the whole upload is logged.
+     * If the upload of a file fails, no further files are uploaded.
+     */
     @Override
     public void upload(final Collection<File> sources, final String destination) throws IOException {
 
         final String destination_path = SimplePlatform.addTailingSeparator(platform.getSeparator(), destination);
-        final SFTPClient sftp = ssh.newSFTPClient();
+        final Queue<SizedFile> pending = new PriorityQueue<SizedFile>();
         for (final File source : sources) {
-            LOGGER.debug("Uploading {} to {} on host {} ", source, destination, getName());
-            upload(sftp, source, destination_path + source.getName());
+            pending.add(new SizedFile(source));
+        }
+        final Queue<SizedFile> ordered_pending = new ConcurrentLinkedQueue<SizedFile>();
+        while (!pending.isEmpty()) {
+            ordered_pending.add(pending.poll());
+        }
+
+        final long start_time = System.nanoTime();
+        final UploadProgress progress = new UploadProgress();
+        final SSHConnectionPool.SFTPLease lease = connection_pool.openSFTP();
+        final List<Future<?>> workers = new ArrayList<Future<?>>();
+        try {
+            try {
+                makeDirectories(lease.getSFTPClient(), destination_path);
+            }
+            catch (final IOException e) {
+                lease.discard();
+                lease.close();
+                throw e;
+            }
+
+            final int worker_count = Math.min(upload_parallelism, ordered_pending.size());
+            for (int i = 1; i < worker_count; i++) {
+                workers.add(UploadExecutorHolder.EXECUTOR.submit(() -> uploadPending(null, ordered_pending, destination_path, progress)));
+            }
+            uploadPending(lease, ordered_pending, destination_path, progress);
+            awaitWorkers(workers, progress);
+        }
+        finally {
+            for (final Future<?> worker : workers) {
+                worker.cancel(true);
+            }
         }
+
+        final IOException failure = progress.failure.get();
+        if (failure != null) { throw failure; }
+
+        final long elapsed = System.nanoTime() - start_time;
+        LOGGER.debug("uploaded {} files ({} bytes) to {} on host {} in {} ms at {}", progress.file_count.get(), progress.byte_count.get(), destination, getName(), TimeUnit.NANOSECONDS.toMillis(elapsed), formatThroughput(progress.byte_count.get(), elapsed));
+    }
+
+    /**
+     * Sets the maximum number of SFTP channels over which the files of a {@link #upload(Collection, String) multi-file upload} are concurrently uploaded.
+     *
+     * @param parallelism the maximum number of concurrent SFTP channels per upload
+     */
+    public void setUploadParallelism(final int parallelism) {
+
+        if (parallelism < 1) { throw new IllegalArgumentException("upload parallelism must be at least 1"); }
+        upload_parallelism = parallelism;
+    }
+
+    /**
+     * Gets the maximum number of SFTP channels over which the files of a multi-file upload are concurrently uploaded.
+     *
+     * @return the maximum number of concurrent SFTP channels per upload
+     * @see #setUploadParallelism(int)
+     */
+    public int getUploadParallelism() {
+
+        return upload_parallelism;
     }
 
     @Override
     public void download(final String source, final File destination) throws IOException {
 
-        final SFTPClient sftp = ssh.newSFTPClient();
-        LOGGER.debug("downloading {} from host {} to {}", source, getName(), destination);
-        sftp.get(source, new FileSystemFile(destination));
+        final SSHConnectionPool.SFTPLease lease = connection_pool.openSFTP();
+        try {
+            LOGGER.debug("downloading {} from host {} to {}", source, getName(), destination);
+            lease.getSFTPClient().get(source, new FileSystemFile(destination));
+        }
+        catch (final IOException e) {
+            lease.discard();
+            throw e;
+        }
+        finally {
+            lease.close();
+        }
     }
 
     @Override
@@ -144,12 +258,20 @@ public class SSHHost extends AbstractHost {
      */
     public Process execute(final String command, final boolean kill_process_tree) throws IOException {
 
-        final Session session = ssh.startSession();
+        final SSHConnectionPool.SessionLease lease = connection_pool.openSession();
         LOGGER.debug("executing on host {} command: {}", this, command);
 
         //FIXME determination of ppid is unix specific; generify for windows
-        final Session.Command command_exec = session.exec("echo $$;" + command);
-        final int parent_pid = readParentProcessID(command_exec);
+        final Session.Command command_exec;
+        final int parent_pid;
+        try {
+            command_exec = lease.getSession().exec("echo $$;" + command);
+            parent_pid = readParentProcessID(command_exec);
+        }
+        catch (final IOException | RuntimeException e) {
+            lease.close();
+            throw e;
+        }
         return new Process() {
 
             @Override
@@ -203,7 +325,7 @@ public class SSHHost extends AbstractHost {
                         command_exec.close();
                     }
                     finally {
-                        session.close();
+                        lease.close();
                     }
                 }
                 catch (TransportException e) {
@@ -254,7 +376,50 @@ public class SSHHost extends AbstractHost {
     public void close() throws IOException {
 
         super.close();
-        ssh.disconnect();
+        connection_pool.close();
+    }
+
+    /**
+     * Sets the maximum number of concurrent sessions, including SFTP subsystems, per connection to this host.
+     * Once all the connections to this host carry the maximum number of sessions, a new connection is established.
+     * The maximum should be below the {@code MaxSessions} limit of the SSH server, which is {@code 10} by default on OpenSSH.
+     *
+     * @param max_sessions the maximum number of concurrent sessions per connection
+     */
+    public void setMaxSessionsPerConnection(final int max_sessions) {
+
+        connection_pool.setMaxSessionsPerConnection(max_sessions);
+    }
+
+    /**
+     * Gets the maximum number of concurrent sessions per connection to this host.
+     *
+     * @return the maximum number of concurrent sessions per connection
+     * @see #setMaxSessionsPerConnection(int)
+     */
+    public int getMaxSessionsPerConnection() {
+
+        return connection_pool.getMaxSessionsPerConnection();
+    }
+
+    /**
+     * Gets the name of the user that logs into this host.
+     *
+     * @return the name of the user that logs into this host
+     */
+    public String getUsername() {
+
+        return username;
+    }
+
+    /**
+     * Gets the port on which the SSH server of this host listens.
+     *
+     * @return the SSH port of this host
+     */
+    public int getSSHPort() {
+
+        return ssh_port;
     }
 
     /**
@@ -277,12 +442,144 @@ public class SSHHost extends AbstractHost {
         this.destroy_process_forcefully = destroy_process_forcefully;
     }
 
+    /**
+     * Forgets the remote directories that are known to exist on this host, so that they are made again by subsequent uploads.
+     * This method should be called if the directories on this host are deleted by means other than this host.
+     */
+    public void forgetKnownDirectories() {
+
+        known_directories.clear();
+    }
+
+    private void uploadPending(final SSHConnectionPool.SFTPLease initial_lease, final Queue<SizedFile> pending, final String destination_path, final UploadProgress progress) {
+
+        SSHConnectionPool.SFTPLease lease = initial_lease;
+        try {
+            if (lease == null) {
+                lease = connection_pool.openSFTP();
+            }
+            SizedFile next;
+            while (progress.failure.get() == null && !Thread.currentThread().isInterrupted() && (next = pending.poll()) != null) {
+                final long start_time = System.nanoTime();
+                upload(lease.getSFTPClient(), next.file, destination_path + next.file.getName());
+                final long elapsed = System.nanoTime() - start_time;
+                progress.file_count.incrementAndGet();
+                progress.byte_count.addAndGet(next.size);
+                LOGGER.debug("uploaded {} ({} bytes) to {} on host {} in {} ms at {}", next.file, next.size, destination_path, getName(), TimeUnit.NANOSECONDS.toMillis(elapsed), formatThroughput(next.size, elapsed));
+            }
+        }
+        catch (final IOException e) {
+            if (lease != null) {
+                lease.discard();
+            }
+            progress.failure.compareAndSet(null, e);
+        }
+        finally {
+            if (lease != null) {
+                lease.close();
+            }
+        }
+    }
+
+    private static void awaitWorkers(final List<Future<?>> workers, final UploadProgress progress) throws InterruptedIOException {
+
+        for (final Future<?> worker : workers) {
+            try {
+                worker.get();
+            }
+            catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted while waiting for uploads to complete");
+            }
+            catch (final ExecutionException e) {
+                progress.failure.compareAndSet(null, new IOException("upload failed", e.getCause()));
+            }
+        }
+    }
+
+    private static String formatThroughput(final long bytes, final long elapsed_nanos) {
+
+        final double seconds = Math.max(elapsed_nanos, 1) / (double) TimeUnit.SECONDS.toNanos(1);
+        return String.format("%.2f MB/s", bytes / seconds / (1024 * 1024));
+    }
+
     private void upload(final SFTPClient sftp, final File file, final String destination) throws IOException {
 
         final String path = FilenameUtils.getFullPath(destination);
+        final boolean known = !makeDirectories(sftp, path);
+        try {
+            sftp.put(new FileSystemFile(file), destination);
+        }
+        catch (final IOException e) {
+            known_directories.remove(path);
+            if (!known) { throw e; }
+
+            LOGGER.debug("upload to known directory {} failed; making the directory again", path);
+            makeDirectories(sftp, path);
+            sftp.put(new FileSystemFile(file), destination);
+        }
+    }
+
+    private boolean makeDirectories(final SFTPClient sftp, final String path) throws IOException {
+
+        if (known_directories.get(path) != null) { return false; }
+
         LOGGER.debug("path to make on remote {}", path);
         sftp.mkdirs(path);
-        sftp.put(new FileSystemFile(file), destination);
+        known_directories.put(path, Boolean.TRUE);
+        return true;
+    }
+
+    /** Remembers the most recently used remote directories, so that the per-deployment temporary directories that are never uploaded to again do not accumulate. */
+    private static final class KnownDirectories extends LinkedHashMap<String, Boolean> {
+
+        private static final long serialVersionUID = 1L;
+
+        private KnownDirectories() {
+
+            super(16, 0.75f, true);
+        }
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, Boolean> eldest) {
+
+            return size() > MAX_KNOWN_DIRECTORIES;
+        }
+    }
+
+    private static final class SizedFile implements Comparable<SizedFile> {
+
+        private final File file;
+        private final long size;
+
+        private SizedFile(final File file) {
+
+            this.file = file;
+            size = file.exists() ? FileUtils.sizeOf(file) : 0;
+        }
+
+        @Override
+        public int compareTo(final SizedFile other) {
+
+            return Long.compare(other.size, size); // largest first
+        }
+    }
+
+    private static final class UploadProgress {
+
+        private final AtomicInteger file_count = new AtomicInteger();
+        private final AtomicLong byte_count = new AtomicLong();
+        private final AtomicReference<IOException> failure = new AtomicReference<IOException>();
+    }
+
+    private static final class UploadExecutorHolder {
+
+        private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(new FormattedNameThreadFactory("sftp_upload_%d", task -> {
+
+            final Thread thread = new Thread(task);
+            thread.setDaemon(true);
+            return thread;
+        }));
     }
 
     private int readParentProcessID(final Session.Command command_exec) throws IOException {
@@ -292,15 +589,20 @@ public class SSHHost extends AbstractHost {
         return Integer.parseInt(line);
     }
 
-    /**
-     * Configure sSH client.
-     *
-     * @param host_name the host _ name
-     * @param ssh_port the ssh _ port
-     * @param authentication the authentication
-     * @throws IOException the iO exception
-     */
-    protected void configureSSHClient(final String host_name, final int ssh_port, final AuthMethod authentication) throws IOException {
+    private SSHClient connect() throws IOException {
+
+        final SSHClient ssh = new SSHClient();
+        try {
+            configureSSHClient(ssh, getName(), ssh_port, authentication);
+        }
+        catch (final IOException e) {
+            ssh.disconnect();
+            throw e;
+        }
+        return ssh;
+    }
+
+    private void configureSSHClient(final SSHClient ssh, final String host_name, final int ssh_port, final AuthMethod authentication) throws IOException {
 
         ssh.setConnectTimeout(SSH_CONNECTION_TIMEOUT);
         ssh.getTransport().setTimeoutMs(SSH_TRANSPORT_TIMEOUT_MILLIS);
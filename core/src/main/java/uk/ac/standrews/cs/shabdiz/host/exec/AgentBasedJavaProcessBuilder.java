@@ -4,20 +4,28 @@ import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.net.URL;
+import java.util.AbstractMap;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 import org.apache.commons.io.FileUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import uk.ac.standrews.cs.shabdiz.host.Host;
+import uk.ac.standrews.cs.shabdiz.host.SSHHost;
 import uk.ac.standrews.cs.shabdiz.platform.CygwinPlatform;
 import uk.ac.standrews.cs.shabdiz.platform.Platform;
+import uk.ac.standrews.cs.shabdiz.util.Duration;
+import uk.ac.standrews.cs.shabdiz.util.ProbeCache;
 import uk.ac.standrews.cs.shabdiz.util.ProcessUtil;
 
 import static org.apache.commons.io.IOUtils.closeQuietly;
+import static uk.ac.standrews.cs.shabdiz.host.exec.Bootstrap.ARTIFACTS_HOME_NAME;
 import static uk.ac.standrews.cs.shabdiz.host.exec.Bootstrap.BOOTSTRAP_HOME_NAME;
 import static uk.ac.standrews.cs.shabdiz.host.exec.Bootstrap.BOOTSTRAP_JAR_NAME;
 import static uk.ac.standrews.cs.shabdiz.host.exec.Bootstrap.LOCAL_SHABDIZ_TMP_HOME;
@@ -32,6 +40,8 @@ import static uk.ac.standrews.cs.shabdiz.host.exec.MavenDependencyResolver.toCoo
  * By default the Maven central repository and the Maven repository at the school of computer science University of St Andrews are loaded.
  * Any additional repository may be added using {@link #addMavenRepository(URL)}.
  * Dependencies are added using {@link #addMavenDependency(String, String, String)}. Please note that any child dependency of an added dependency will be downloaded automatically.
+ * The existence of the bootstrap jar on a host is cached, so that consecutive starts on the same host do not each check for it.
+ * Local files that are {@link #addFile(File) added} to the classpath are kept in a content-addressed store on each host, and are only uploaded if their content is not already stored; see {@link #setArtifactStoreEnabled(boolean)}.
  *
  * @author Masih Hajiarabderkani (mh638@st-andrews.ac.uk)
  */
@@ -43,15 +53,21 @@ public class AgentBasedJavaProcessBuilder extends JavaProcessBuilder {
     private static final String JVM_PARAM_JAVAAGENT = "-javaagent:";
     private static final boolean FORCE_LOCAL_BOOTSTRAP_JAR_RECONSTRUCTION = false;
     private static final String SYSTEM_CLASSPATH = System.getProperty("java.class.path");
+    private static final Duration REMOTE_FILE_EXISTENCE_TIME_TO_LIVE = new Duration(1, TimeUnit.MINUTES);
+    private static final Duration REMOTE_FILE_EXISTENCE_STALE_WINDOW = new Duration(5, TimeUnit.MINUTES);
+    private static final ProbeCache<Map.Entry<Host, String>, Boolean> REMOTE_FILE_EXISTENCE = new ProbeCache<Map.Entry<Host, String>, Boolean>(REMOTE_FILE_EXISTENCE_TIME_TO_LIVE, REMOTE_FILE_EXISTENCE_STALE_WINDOW, Boolean.TRUE::equals);
     private final Bootstrap.BootstrapConfiguration configuration;
     private final Set<File> uploads;
     private boolean always_upload_bootstrap;
+    private boolean artifact_store_enabled;
+    private boolean delta_transfer_enabled;
 
     /** Initialises a new Maven managed Java process builder. */
     public AgentBasedJavaProcessBuilder() {
 
         configuration = new Bootstrap.BootstrapConfiguration();
         uploads = new HashSet<File>();
+        artifact_store_enabled = true;
     }
 
     /**
@@ -65,6 +81,10 @@ public class AgentBasedJavaProcessBuilder extends JavaProcessBuilder {
 
         final Platform platform = host.getPlatform();
         final String shabdiz_home_on_host = getShabdizHomePathByPlatform(platform);
+        REMOTE_FILE_EXISTENCE.invalidateIf(key -> host.equals(key.getKey()));
+        if (host instanceof SSHHost) {
+            ((SSHHost) host).forgetKnownDirectories();
+        }
         final Process delete_process = host.execute(Commands.DELETE_RECURSIVELY.get(platform, shabdiz_home_on_host));
         try {
             ProcessUtil.awaitNormalTerminationAndGetOutput(delete_process);
@@ -108,6 +128,17 @@ public class AgentBasedJavaProcessBuilder extends JavaProcessBuilder {
         return getBootstrapHomePathByPlatform(platform) + BOOTSTRAP_JAR_NAME;
     }
 
+    /**
+     * Gets the path to the shabdiz store of uploaded artifacts by platform.
+     *
+     * @param platform the target platform
+     * @return the path to the shabdiz store of uploaded artifacts by platform
+     */
+    public static String getArtifactStorePathByPlatform(final Platform platform) {
+
+        return getShabdizHomePathByPlatform(platform) + ARTIFACTS_HOME_NAME + platform.getSeparator();
+    }
+
     /**
      * Gets the path to shabdiz home by platform.
      *
@@ -139,15 +170,102 @@ public class AgentBasedJavaProcessBuilder extends JavaProcessBuilder {
         this.always_upload_bootstrap = always_upload_bootstrap;
     }
 
+    /**
+     * Whether the local classpath files are uploaded via the content-addressed store of artifacts on hosts.
+     *
+     * @return whether the local classpath files are uploaded via the store of artifacts
+     */
+    public boolean isArtifactStoreEnabled() {
+
+        return artifact_store_enabled;
+    }
+
+    /**
+     * Sets whether the local classpath files are uploaded via the content-addressed store of artifacts on hosts, which is enabled by default.
+     * When enabled, each {@link #addFile(File) added} file is stored on a host under the SHA-256 digest of its content and is only uploaded if no file with the same content is already stored.
+     * The working directory of a started process is then populated with links to the stored files.
+     * When disabled, the files are uploaded to the working directory of every started process.
+     *
+     * @param enabled whether to upload the local classpath files via the store of artifacts
+     * @see #getArtifactStorePathByPlatform(Platform)
+     */
+    public void setArtifactStoreEnabled(final boolean enabled) {
+
+        artifact_store_enabled = enabled;
+    }
+
+    /**
+     * Whether the changed local classpath files are transferred as block deltas against their previously stored versions.
+     *
+     * @return whether the changed local classpath files are transferred as block deltas
+     */
+    public boolean isDeltaTransferEnabled() {
+
+        return delta_transfer_enabled;
+    }
+
+    /**
+     * Sets whether the changed local classpath files are transferred as block deltas against their previously stored versions, which is disabled by default.
+     * When enabled, a file that is missing from the {@link #setArtifactStoreEnabled(boolean) store of artifacts} on a host, but of which a version with the same name was stored before, is sent as the blocks that differ from that version; the file is reconstructed on the host using the bootstrap jar.
+     * This is beneficial for large files that change little between deployments, such as a rebuilt application jar, over a slow network.
+     * Files are uploaded in full if the delta transfer fails, for example if the bootstrap jar on a host was uploaded by an older version; see {@link #setAlwaysUploadBootstrap(boolean)}.
+     * Has no effect if the store of artifacts is disabled.
+     *
+     * @param enabled whether to transfer the changed local classpath files as block deltas
+     */
+    public void setDeltaTransferEnabled(final boolean enabled) {
+
+        delta_transfer_enabled = enabled;
+    }
+
+    /**
+     * Sets the address to which the started processes periodically send their heartbeats, typically that of a {@link uk.ac.standrews.cs.shabdiz.HeartbeatReceiver}.
+     * Heartbeats are only sent by the processes that are {@link #start(Host, long, String...) started} with the identifier of their descriptor.
+     * The given {@code target} must be reachable from the hosts on which processes are started.
+     * The given {@code token} must be the {@link uk.ac.standrews.cs.shabdiz.HeartbeatReceiver#getToken() token} of the receiver at the target; heartbeats that carry any other token are ignored by the receiver.
+     *
+     * @param target the address to which to send heartbeats, or {@code null} to disable heartbeats
+     * @param token the token of the heartbeat receiver at the given {@code target}
+     * @param interval the interval at which heartbeats are sent
+     */
+    public void setHeartbeatTarget(final InetSocketAddress target, final long token, final Duration interval) {
+
+        configuration.setHeartbeatTarget(target, token, interval.getLength(TimeUnit.MILLISECONDS));
+    }
+
     @Override
     public Process start(final Host host, final String... parameters) throws IOException {
 
+        return startProcess(host, null, parameters);
+    }
+
+    /**
+     * Starts a Java process on the given {@code host} that sends heartbeats identified by the given {@code heartbeat_id} to the {@link #setHeartbeatTarget(InetSocketAddress, long, Duration) heartbeat target} of this builder.
+     *
+     * @param host the host on which to start the process
+     * @param heartbeat_id the {@link uk.ac.standrews.cs.shabdiz.ApplicationDescriptor#getId() identifier} of the descriptor of the process
+     * @param parameters the command line arguments of the process
+     * @return the started process
+     * @throws IOException if an error occurs while starting the process
+     */
+    public Process start(final Host host, final long heartbeat_id, final String... parameters) throws IOException {
+
+        return startProcess(host, heartbeat_id, parameters);
+    }
+
+    private Process startProcess(final Host host, final Long heartbeat_id, final String... parameters) throws IOException {
+
         final Platform platform = host.getPlatform();
         final String remote_tmp_dir = createTempDirPathByPlatform(platform);
-        makeRemoteDirectories(host, getBootstrapHomePathByPlatform(platform), remote_tmp_dir);
+        if (artifact_store_enabled && !uploads.isEmpty()) {
+            makeRemoteDirectories(host, getBootstrapHomePathByPlatform(platform), getArtifactStorePathByPlatform(platform), remote_tmp_dir);
+        }
+        else {
+            makeRemoteDirectories(host, getBootstrapHomePathByPlatform(platform), remote_tmp_dir);
+        }
         final String bootstrap_jar = uploadBootstrapJar(host);
-        uploadLocalClasspathFiles(host, remote_tmp_dir);
-        uploadBootstrapConfigurationFile(host, remote_tmp_dir);
+        uploadLocalClasspathFiles(host, remote_tmp_dir, bootstrap_jar);
+        uploadBootstrapConfigurationFile(host, remote_tmp_dir, heartbeat_id);
         final String command = assembleCommand(remote_tmp_dir, platform, bootstrap_jar, parameters);
         String working_directory = getWorkingDirectory();
         if (working_directory == null) {
@@ -302,27 +420,34 @@ public class AgentBasedJavaProcessBuilder extends JavaProcessBuilder {
 
     }
 
-    private void uploadLocalClasspathFiles(final Host host, final String working_directory) throws IOException {
+    private void uploadLocalClasspathFiles(final Host host, final String working_directory, final String bootstrap_jar) throws IOException {
 
-        if (!uploads.isEmpty()) {
+        if (uploads.isEmpty()) { return; }
+        if (artifact_store_enabled) {
+            final Platform platform = host.getPlatform();
+            // The JVM on Cygwin expects Windows paths, which the paths in the store are not.
+            final String block_delta_command = delta_transfer_enabled && !(platform instanceof CygwinPlatform) ? assembleBlockDeltaCommand(platform, bootstrap_jar) : null;
+            RemoteArtifactStore.upload(host, uploads, getArtifactStorePathByPlatform(platform), working_directory, block_delta_command);
+        }
+        else {
             host.upload(uploads, working_directory);
         }
     }
 
-    private void uploadBootstrapConfigurationFile(final Host host, final String working_directory) throws IOException {
+    private void uploadBootstrapConfigurationFile(final Host host, final String working_directory, final Long heartbeat_id) throws IOException {
 
-        final File config_as_file = getConfigurationAsFile();
+        final File config_as_file = getConfigurationAsFile(heartbeat_id);
         host.upload(config_as_file, working_directory);
         FileUtils.deleteQuietly(config_as_file.getParentFile());
     }
 
-    private File getConfigurationAsFile() throws IOException {
+    private File getConfigurationAsFile(final Long heartbeat_id) throws IOException {
 
         final File config_file = new File(createTempDirOnLocal(), BOOTSTRAP_CONFIG_FILE_NAME);
         BufferedOutputStream out = null;
         try {
             out = new BufferedOutputStream(new FileOutputStream(config_file));
-            configuration.write(out);
+            configuration.write(out, heartbeat_id);
         }
         finally {
             closeQuietly(out);
@@ -344,6 +469,7 @@ public class AgentBasedJavaProcessBuilder extends JavaProcessBuilder {
         final String bootstrap_jar = getBootstrapJarPathByPlatform(platform);
         if (always_upload_bootstrap || !existsOnHost(host, bootstrap_jar)) {
             host.upload(getBootstrapJar(FORCE_LOCAL_BOOTSTRAP_JAR_RECONSTRUCTION), bootstrap_home);
+            REMOTE_FILE_EXISTENCE.put(new AbstractMap.SimpleImmutableEntry<Host, String>(host, bootstrap_jar), Boolean.TRUE);
             LOGGER.debug("uploading bootstrap.jar to {} on host {}", bootstrap_jar, host);
         }
         else {
@@ -354,6 +480,11 @@ public class AgentBasedJavaProcessBuilder extends JavaProcessBuilder {
 
     private static boolean existsOnHost(final Host host, final String file) throws IOException {
 
+        return REMOTE_FILE_EXISTENCE.get(new AbstractMap.SimpleImmutableEntry<Host, String>(host, file), key -> checkExistenceOnHost(host, file));
+    }
+
+    private static boolean checkExistenceOnHost(final Host host, final String file) throws IOException {
+
         final String exists_command = Commands.EXISTS.get(host.getPlatform(), file);
         final Process exists_process = host.execute(exists_command);
         boolean already_exists;
@@ -383,6 +514,17 @@ public class AgentBasedJavaProcessBuilder extends JavaProcessBuilder {
         return command.toString();
     }
 
+    private String assembleBlockDeltaCommand(final Platform platform, final String bootstrap_jar) {
+
+        final StringBuilder command = new StringBuilder();
+        appendJavaBinPath(command, platform);
+        command.append("-cp ");
+        command.append(platform.quote(bootstrap_jar));
+        command.append(SPACE);
+        command.append(BlockDelta.class.getName());
+        return command.toString();
+    }
+
     private static void appendBootstrpAgent(final Platform platform, final StringBuilder command, final String bootstrap_jar) {
 
         final String quoted_bootstrap_jar_path = platform.quote(bootstrap_jar);
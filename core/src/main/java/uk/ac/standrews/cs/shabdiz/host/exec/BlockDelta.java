@@ -0,0 +1,383 @@
+/*
+ * Copyright 2013 University of St Andrews School of Computer Science
+ *
+ * This file is part of Shabdiz.
+ *
+ * Shabdiz is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Shabdiz is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Shabdiz.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.ac.standrews.cs.shabdiz.host.exec;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.RandomAccessFile;
+import java.io.StringReader;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Transfers the changes to a file as a delta against an older copy of the file, in the manner of rsync.
+ * The older copy, called the basis, is divided into fixed size blocks; the {@link #writeSignatures(File, int, PrintStream) signature} of each block consists of a weak rolling checksum and a strong MD5 digest.
+ * The {@link #writeDelta(File, String, OutputStream) delta} of a file against the signatures of a basis consists of references to the blocks of the basis that occur anywhere in the file, and of the literal bytes in between them.
+ * The delta is then {@link #patch(File, File, File) applied} to the basis to reconstruct the file, and the result is verified against the SHA-256 digest of the file that is carried by the delta.
+ * <p>
+ * This class is shipped in the bootstrap jar so that the signatures of a remote basis can be computed, and a delta applied, on a host by executing its {@link #main(String[]) main} method.
+ * It must therefore depend on nothing but the JDK.
+ *
+ * @author Masih Hajiarabderkani (mh638@st-andrews.ac.uk)
+ */
+public final class BlockDelta {
+
+    /** The command that prints the signatures of a basis, followed by the path to the basis and the block size. */
+    public static final String SIGNATURE_COMMAND = "signature";
+    /** The command that applies a delta to a basis and deletes the delta, followed by the path to the basis, the delta and the output file. */
+    public static final String PATCH_COMMAND = "patch";
+    static final int MIN_BLOCK_SIZE = 1024;
+    static final int MAX_BLOCK_SIZE = 64 * 1024;
+    private static final int DELTA_MAGIC = 0x53424454;
+    private static final byte END = 0;
+    private static final byte COPY = 1;
+    private static final byte DATA = 2;
+    private static final String STRONG_DIGEST_ALGORITHM = "MD5";
+    private static final String FILE_DIGEST_ALGORITHM = "SHA-256";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private BlockDelta() {
+
+    }
+
+    /**
+     * Executes the {@link #SIGNATURE_COMMAND signature} or the {@link #PATCH_COMMAND patch} command that is specified by the given arguments.
+     * Any failure is printed to the standard error, and terminates the JVM with a non-zero exit value.
+     *
+     * @param args the command followed by its arguments
+     */
+    public static void main(final String[] args) {
+
+        try {
+            if (args.length == 3 && SIGNATURE_COMMAND.equals(args[0])) {
+                final PrintStream out = new PrintStream(new BufferedOutputStream(System.out), false);
+                writeSignatures(new File(args[1]), Integer.parseInt(args[2]), out);
+                out.flush();
+            }
+            else if (args.length == 4 && PATCH_COMMAND.equals(args[0])) {
+                final File delta = new File(args[2]);
+                patch(new File(args[1]), delta, new File(args[3]));
+                if (!delta.delete()) {
+                    delta.deleteOnExit();
+                }
+            }
+            else {
+                throw new IllegalArgumentException("unknown command: " + Arrays.toString(args));
+            }
+        }
+        catch (final Exception e) {
+            System.err.println("block delta failed: " + e);
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Gets the block size to use for a file of the given {@code length}, which is the square root of the length bounded by {@link #MIN_BLOCK_SIZE} and {@link #MAX_BLOCK_SIZE}.
+     *
+     * @param length the length of the file
+     * @return the block size to use for a file of the given length
+     */
+    static int getBlockSize(final long length) {
+
+        final long block_size = (long) Math.sqrt(length);
+        return (int) Math.max(MIN_BLOCK_SIZE, Math.min(MAX_BLOCK_SIZE, block_size));
+    }
+
+    /**
+     * Writes the signatures of the given {@code basis} to the given stream.
+     * The first line contains the block size and the length of the basis; each following line contains the hex-encoded weak checksum and strong digest of a block.
+     *
+     * @param basis the file to compute the signatures of
+     * @param block_size the size of the blocks
+     * @param out the stream to write the signatures to
+     * @throws IOException if an error occurs while reading the basis
+     */
+    static void writeSignatures(final File basis, final int block_size, final PrintStream out) throws IOException {
+
+        if (block_size <= 0) { throw new IllegalArgumentException("block size must be positive"); }
+
+        final MessageDigest strong_digest = getMessageDigest(STRONG_DIGEST_ALGORITHM);
+        final InputStream in = new BufferedInputStream(new FileInputStream(basis), BUFFER_SIZE);
+        try {
+            out.println(block_size + " " + basis.length());
+            final byte[] block = new byte[block_size];
+            int length;
+            while ((length = readFully(in, block)) > 0) {
+                strong_digest.update(block, 0, length);
+                out.println(Integer.toHexString(checksum(block, 0, length)) + " " + toHex(strong_digest.digest()));
+            }
+        }
+        finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Writes the delta of the given {@code source} against the basis of the given {@code signatures} to the given stream.
+     *
+     * @param source the file to compute the delta of
+     * @param signatures the signatures of the basis, as written by {@link #writeSignatures(File, int, PrintStream)}
+     * @param out the stream to write the delta to
+     * @return the number of bytes of the source that are referenced from the basis rather than sent literally
+     * @throws IOException if an error occurs while reading the source, writing the delta, or the signatures are malformed
+     */
+    static long writeDelta(final File source, final String signatures, final OutputStream out) throws IOException {
+
+        final BufferedReader reader = new BufferedReader(new StringReader(signatures));
+        final String[] header = readSignatureLine(reader);
+        final int block_size = Integer.parseInt(header[0]);
+        final long basis_length = Long.parseLong(header[1]);
+        final int full_blocks = (int) (basis_length / block_size);
+        final Map<Integer, List<Integer>> blocks_by_checksum = new HashMap<Integer, List<Integer>>();
+        final byte[][] strong_digests = new byte[full_blocks][];
+        for (int index = 0; index < full_blocks; index++) {
+            final String[] signature = readSignatureLine(reader);
+            final int checksum = (int) Long.parseLong(signature[0], 16);
+            List<Integer> blocks = blocks_by_checksum.get(checksum);
+            if (blocks == null) {
+                blocks = new ArrayList<Integer>(1);
+                blocks_by_checksum.put(checksum, blocks);
+            }
+            blocks.add(index);
+            strong_digests[index] = fromHex(signature[1]);
+        }
+
+        final byte[] data = readAllBytes(source);
+        final MessageDigest strong_digest = getMessageDigest(STRONG_DIGEST_ALGORITHM);
+        final DataOutputStream delta = new DataOutputStream(new BufferedOutputStream(out, BUFFER_SIZE));
+        delta.writeInt(DELTA_MAGIC);
+        delta.writeInt(block_size);
+
+        long matched = 0;
+        int literal_start = 0;
+        int offset = 0;
+        int a = 0;
+        int b = 0;
+        if (data.length >= block_size) {
+            final int checksum = checksum(data, 0, block_size);
+            a = checksum & 0xFFFF;
+            b = checksum >>> 16;
+        }
+        while (offset + block_size <= data.length) {
+            final int match = findMatchingBlock(data, offset, block_size, a | b << 16, blocks_by_checksum, strong_digests, strong_digest);
+            if (match >= 0) {
+                writeData(delta, data, literal_start, offset);
+                delta.writeByte(COPY);
+                delta.writeInt(match);
+                matched += block_size;
+                offset += block_size;
+                literal_start = offset;
+                if (offset + block_size <= data.length) {
+                    final int checksum = checksum(data, offset, block_size);
+                    a = checksum & 0xFFFF;
+                    b = checksum >>> 16;
+                }
+            }
+            else {
+                if (offset + block_size < data.length) {
+                    final int removed = data[offset] & 0xFF;
+                    final int added = data[offset + block_size] & 0xFF;
+                    a = a - removed + added & 0xFFFF;
+                    b = b - block_size * removed + a & 0xFFFF;
+                }
+                offset++;
+            }
+        }
+        writeData(delta, data, literal_start, data.length);
+
+        final byte[] file_digest = getMessageDigest(FILE_DIGEST_ALGORITHM).digest(data);
+        delta.writeByte(END);
+        delta.writeInt(file_digest.length);
+        delta.write(file_digest);
+        delta.flush();
+        return matched;
+    }
+
+    /**
+     * Reconstructs a file by applying the given {@code delta} to the given {@code basis}.
+     * The output is deleted if the reconstructed file does not match the digest carried by the delta.
+     *
+     * @param basis the basis against which the delta was computed
+     * @param delta the delta, as written by {@link #writeDelta(File, String, OutputStream)}
+     * @param output the file to write the reconstructed file to
+     * @throws IOException if an error occurs while applying the delta, or the reconstructed file does not match its expected digest
+     */
+    static void patch(final File basis, final File delta, final File output) throws IOException {
+
+        final MessageDigest file_digest = getMessageDigest(FILE_DIGEST_ALGORITHM);
+        final RandomAccessFile basis_file = new RandomAccessFile(basis, "r");
+        final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(delta), BUFFER_SIZE));
+        final OutputStream out = new BufferedOutputStream(new FileOutputStream(output), BUFFER_SIZE);
+        boolean verified = false;
+        try {
+            if (in.readInt() != DELTA_MAGIC) { throw new IOException("not a delta: " + delta); }
+            final int block_size = in.readInt();
+            final byte[] block = new byte[block_size];
+            byte operation;
+            while ((operation = in.readByte()) != END) {
+                final int length;
+                if (operation == COPY) {
+                    basis_file.seek((long) in.readInt() * block_size);
+                    basis_file.readFully(block);
+                    length = block_size;
+                    write(block, length, out, file_digest);
+                }
+                else if (operation == DATA) {
+                    length = in.readInt();
+                    final byte[] literal = new byte[length];
+                    in.readFully(literal);
+                    write(literal, length, out, file_digest);
+                }
+                else {
+                    throw new IOException("unknown delta operation: " + operation);
+                }
+            }
+            final byte[] expected_digest = new byte[in.readInt()];
+            in.readFully(expected_digest);
+            if (!MessageDigest.isEqual(expected_digest, file_digest.digest())) { throw new IOException("digest of reconstructed file " + output + " does not match the expected digest"); }
+            verified = true;
+        }
+        finally {
+            basis_file.close();
+            in.close();
+            out.close();
+            if (!verified && !output.delete()) {
+                output.deleteOnExit();
+            }
+        }
+    }
+
+    static int checksum(final byte[] data, final int offset, final int length) {
+
+        int a = 0;
+        int b = 0;
+        for (int i = 0; i < length; i++) {
+            final int value = data[offset + i] & 0xFF;
+            a += value;
+            b += (length - i) * value;
+        }
+        return (a & 0xFFFF) | (b & 0xFFFF) << 16;
+    }
+
+    private static int findMatchingBlock(final byte[] data, final int offset, final int block_size, final int checksum, final Map<Integer, List<Integer>> blocks_by_checksum, final byte[][] strong_digests, final MessageDigest strong_digest) {
+
+        final List<Integer> candidates = blocks_by_checksum.get(checksum);
+        if (candidates == null) { return -1; }
+
+        strong_digest.update(data, offset, block_size);
+        final byte[] digest = strong_digest.digest();
+        for (final Integer candidate : candidates) {
+            if (Arrays.equals(digest, strong_digests[candidate])) { return candidate; }
+        }
+        return -1;
+    }
+
+    private static void writeData(final DataOutputStream delta, final byte[] data, final int from, final int to) throws IOException {
+
+        if (to > from) {
+            delta.writeByte(DATA);
+            delta.writeInt(to - from);
+            delta.write(data, from, to - from);
+        }
+    }
+
+    private static void write(final byte[] bytes, final int length, final OutputStream out, final MessageDigest file_digest) throws IOException {
+
+        out.write(bytes, 0, length);
+        file_digest.update(bytes, 0, length);
+    }
+
+    private static String[] readSignatureLine(final BufferedReader reader) throws IOException {
+
+        final String line = reader.readLine();
+        if (line == null) { throw new IOException("unexpected end of signatures"); }
+        final String[] values = line.trim().split(" ");
+        if (values.length != 2) { throw new IOException("malformed signature: " + line); }
+        return values;
+    }
+
+    private static int readFully(final InputStream in, final byte[] buffer) throws IOException {
+
+        int length = 0;
+        int read;
+        while (length < buffer.length && (read = in.read(buffer, length, buffer.length - length)) != -1) {
+            length += read;
+        }
+        return length;
+    }
+
+    private static byte[] readAllBytes(final File file) throws IOException {
+
+        if (file.length() > Integer.MAX_VALUE) { throw new IOException("file is too large to compute delta: " + file); }
+
+        final byte[] data = new byte[(int) file.length()];
+        final InputStream in = new FileInputStream(file);
+        try {
+            if (readFully(in, data) != data.length) { throw new IOException("file changed while being read: " + file); }
+        }
+        finally {
+            in.close();
+        }
+        return data;
+    }
+
+    private static MessageDigest getMessageDigest(final String algorithm) throws IOException {
+
+        try {
+            return MessageDigest.getInstance(algorithm);
+        }
+        catch (final NoSuchAlgorithmException e) {
+            throw new IOException("digest algorithm " + algorithm + " is not available", e);
+        }
+    }
+
+    private static String toHex(final byte[] bytes) {
+
+        final StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (final byte b : bytes) {
+            hex.append(Character.forDigit(b >> 4 & 0xF, 16));
+            hex.append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    private static byte[] fromHex(final String hex) {
+
+        final byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) Integer.parseInt(hex.substring(i * 2, i * 2 + 2), 16);
+        }
+        return bytes;
+    }
+}
@@ -10,11 +10,15 @@ import java.io.UnsupportedEncodingException;
 import java.lang.instrument.Instrumentation;
 import java.lang.management.ManagementFactory;
 import java.lang.management.RuntimeMXBean;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
 import java.net.MalformedURLException;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.URLDecoder;
 import java.net.URLEncoder;
+import java.nio.ByteBuffer;
 import java.nio.channels.Channels;
 import java.nio.channels.ReadableByteChannel;
 import java.util.ArrayList;
@@ -47,6 +51,7 @@ import uk.ac.standrews.cs.shabdiz.util.URLUtils;
  * Note by: this class is not designed to be used independently to resolve classpath entries.
  * To start a Java process using this bootstrap mechanism please use {@link AgentBasedJavaProcessBuilder}
  * If a sub class of this class overrides the {@code main} method, the {@link #printProperties()} method must be called at the end of main method.
+ * If the configuration specifies a heartbeat target, a daemon thread periodically sends a heartbeat datagram to the target once the application has started.
  *
  * @author Masih Hajiarabderkani (mh638@st-andrews.ac.uk)
  * @see AgentBasedJavaProcessBuilder
@@ -55,11 +60,14 @@ public abstract class Bootstrap {
 
     /** The key of PID property. */
     public static final String PID_PROPERTY_KEY = "pid";
+    /** The number that prefixes the receiver token and the descriptor identifier in a heartbeat datagram. */
+    public static final int HEARTBEAT_MAGIC = 0x5348425A;
     protected static final char NEW_LINE = '\n';
     protected static final char LINE_FEED = '\r';
     static final String SHABDIZ_HOME_NAME = "shabdiz";
     static final String BOOTSTRAP_HOME_NAME = ".bootstrap";
     static final String TEMP_HOME_NAME = "tmp";
+    static final String ARTIFACTS_HOME_NAME = "artifacts";
     static final File LOCAL_SHABDIZ_HOME = new File(System.getProperty("java.io.tmpdir"), SHABDIZ_HOME_NAME);
     static final File LOCAL_BOOTSTRAP_HOME = new File(LOCAL_SHABDIZ_HOME, BOOTSTRAP_HOME_NAME);
     static final File LOCAL_SHABDIZ_TMP_HOME = new File(LOCAL_SHABDIZ_HOME, TEMP_HOME_NAME);
@@ -77,11 +85,16 @@ public abstract class Bootstrap {
     private static final Attributes.Name BOOTSTRAP_CLASS_KEY = new Attributes.Name("Application-Bootstrap-Class");
     private static final Attributes.Name PREMAIN_CLASS = new Attributes.Name("Premain-Class");
     private static final Attributes.Name FILES_TO_DELETE_ON_EXIT = new Attributes.Name("Delete-On-Exit");
+    private static final Attributes.Name HEARTBEAT_TARGET = new Attributes.Name("Heartbeat-Target");
+    private static final Attributes.Name HEARTBEAT_INTERVAL = new Attributes.Name("Heartbeat-Interval-Millis");
+    private static final Attributes.Name HEARTBEAT_ID = new Attributes.Name("Heartbeat-ID");
+    private static final Attributes.Name HEARTBEAT_TOKEN = new Attributes.Name("Heartbeat-Token");
     private static final File WORKING_DIRECTORY = new File(System.getProperty("user.dir"));
     private static final String FILE_PROTOCOL = "file";
     private static final Pattern KEY_VALUE_PATTERN = Pattern.compile("(.?[^=]+)=(.?[^=,]+)(,\\s)?");
     private static MavenDependencyResolver maven_dependency_resolver;
     private static String application_bootstrap_class_name;
+    private static HeartbeatSender heartbeat_sender;
     private static File tmp_dir;
     private final Properties properties;
 
@@ -105,9 +118,11 @@ public abstract class Bootstrap {
 
             final Bootstrap bootstrap = (Bootstrap) application_bootstrap_class.newInstance();
             bootstrap.deploy(args);
+            startHeartbeatSender();
             bootstrap.printProperties();
         }
         else {
+            startHeartbeatSender();
             application_bootstrap_class.getMethod("main", String[].class).invoke(null, new Object[] {args});
         }
     }
@@ -120,6 +135,7 @@ public abstract class Bootstrap {
         loadClassPathUrlsAsString(instrumentation, configuration.urls);
         loadShutdownHooks(configuration);
         loadApplicationBootstrapClassName(configuration);
+        loadHeartbeatSender(configuration);
     }
 
     public static String readLine(final InputStream in) throws IOException {
@@ -178,6 +194,23 @@ public abstract class Bootstrap {
         application_bootstrap_class_name = configuration.application_bootstrap_class_name;
     }
 
+    private static void loadHeartbeatSender(final BootstrapConfiguration configuration) {
+
+        if (configuration.heartbeat_target != null && configuration.heartbeat_id != null) {
+            final int separator_index = configuration.heartbeat_target.lastIndexOf(':');
+            final String host = configuration.heartbeat_target.substring(0, separator_index);
+            final int port = Integer.parseInt(configuration.heartbeat_target.substring(separator_index + 1));
+            heartbeat_sender = new HeartbeatSender(new InetSocketAddress(host, port), configuration.heartbeat_token, configuration.heartbeat_id, configuration.heartbeat_interval_millis);
+        }
+    }
+
+    private static void startHeartbeatSender() {
+
+        if (heartbeat_sender != null) {
+            heartbeat_sender.start();
+        }
+    }
+
     private static void loadShutdownHooks(final BootstrapConfiguration configuration) {
 
         final List<File> files_to_delete = new ArrayList<File>();
@@ -345,6 +378,8 @@ public abstract class Bootstrap {
             addClassToJar(Duration.class, jar_stream);
             addClassToJar(URLUtils.class, jar_stream);
             addClassToJar(FileDeletionHook.class, jar_stream);
+            addClassToJar(HeartbeatSender.class, jar_stream);
+            addClassToJar(BlockDelta.class, jar_stream);
         }
         finally {
             jar_stream.flush();
@@ -520,19 +555,35 @@ public abstract class Bootstrap {
         private final Set<String> delete_on_exit = new HashSet<String>();
         private volatile String application_bootstrap_class_name;
         private boolean delete_working_directory_on_exit;
+        private volatile String heartbeat_target;
+        private volatile long heartbeat_interval_millis;
+        private volatile long heartbeat_token;
+        private Long heartbeat_id;
 
         void setDeleteWorkingDirectoryOnExit(final boolean enabled) {
 
             delete_working_directory_on_exit = enabled;
         }
 
+        void setHeartbeatTarget(final InetSocketAddress target, final long token, final long interval_millis) {
+
+            heartbeat_interval_millis = interval_millis;
+            heartbeat_token = token;
+            heartbeat_target = target != null ? target.getHostString() + ':' + target.getPort() : null;
+        }
+
         void write(final OutputStream out) throws IOException {
 
-            final Manifest manifest = toManifest();
+            write(out, null);
+        }
+
+        void write(final OutputStream out, final Long heartbeat_id) throws IOException {
+
+            final Manifest manifest = toManifest(heartbeat_id);
             manifest.write(out);
         }
 
-        private Manifest toManifest() {
+        private Manifest toManifest(final Long heartbeat_id) {
 
             final Manifest manifest = new Manifest();
             final Attributes attributes = new Attributes();
@@ -544,6 +595,13 @@ public abstract class Bootstrap {
             attributes.put(MAVEN_ARTIFACTS, toString(maven_artifacts));
             attributes.put(FILES_TO_DELETE_ON_EXIT, toString(delete_on_exit));
             attributes.put(DELETE_WD_ON_EXIT, String.valueOf(delete_working_directory_on_exit));
+            final String target = heartbeat_target;
+            if (target != null && heartbeat_id != null) {
+                attributes.put(HEARTBEAT_TARGET, target);
+                attributes.put(HEARTBEAT_INTERVAL, String.valueOf(heartbeat_interval_millis));
+                attributes.put(HEARTBEAT_ID, String.valueOf(heartbeat_id));
+                attributes.put(HEARTBEAT_TOKEN, String.valueOf(heartbeat_token));
+            }
             manifest.getEntries().put(CONFIG_FILE_ATTRIBUTES_NAME, attributes);
             return manifest;
         }
@@ -610,6 +668,14 @@ public abstract class Bootstrap {
             final Boolean delete_wd_on_exit = Boolean.valueOf(attributes.get(DELETE_WD_ON_EXIT).toString());
             configuration.setDeleteWorkingDirectoryOnExit(delete_wd_on_exit);
 
+            final Object heartbeat_id = attributes.get(HEARTBEAT_ID);
+            if (heartbeat_id != null) {
+                configuration.heartbeat_target = attributes.get(HEARTBEAT_TARGET).toString();
+                configuration.heartbeat_interval_millis = Long.parseLong(attributes.get(HEARTBEAT_INTERVAL).toString());
+                configuration.heartbeat_id = Long.valueOf(heartbeat_id.toString());
+                configuration.heartbeat_token = Long.parseLong(attributes.get(HEARTBEAT_TOKEN).toString());
+            }
+
             return configuration;
         }
 
@@ -654,6 +720,55 @@ public abstract class Bootstrap {
         }
     }
 
+    private static final class HeartbeatSender extends Thread {
+
+        private final InetSocketAddress target;
+        private final long token;
+        private final long id;
+        private final long interval_millis;
+
+        private HeartbeatSender(final InetSocketAddress target, final long token, final long id, final long interval_millis) {
+
+            super("heartbeat_sender");
+            this.target = target;
+            this.token = token;
+            this.id = id;
+            this.interval_millis = interval_millis;
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+
+            final byte[] heartbeat = ByteBuffer.allocate(Integer.SIZE / Byte.SIZE + 2 * Long.SIZE / Byte.SIZE).putInt(HEARTBEAT_MAGIC).putLong(token).putLong(id).array();
+            DatagramSocket socket = null;
+            try {
+                socket = new DatagramSocket();
+                final DatagramPacket packet = new DatagramPacket(heartbeat, heartbeat.length, target);
+                while (!isInterrupted()) {
+                    try {
+                        socket.send(packet);
+                    }
+                    catch (final IOException e) {
+                        System.err.println("Failed to send heartbeat to " + target + ": " + e.getMessage());
+                    }
+                    Thread.sleep(interval_millis);
+                }
+            }
+            catch (final InterruptedException e) {
+                interrupt();
+            }
+            catch (final IOException e) {
+                System.err.println("Failed to open heartbeat socket: " + e.getMessage());
+            }
+            finally {
+                if (socket != null) {
+                    socket.close();
+                }
+            }
+        }
+    }
+
     private static final class FileDeletionHook extends Thread {
 
         private final List<File> files;
@@ -153,6 +153,17 @@ public final class Commands {
             return builder.toString();
         }
     };
+    /** Joins commands so that each command is executed only if all the preceding commands succeed. */
+    public static final CommandBuilder CONJUNCTION = new CommandBuilder() {
+
+        private static final String AND_AND = " && ";
+
+        @Override
+        public String get(final Platform platform, final String... params) {
+
+            return params != null ? String.join(AND_AND, params) : "";
+        }
+    };
     /** The kill by PID command builder. */
     public static final CommandBuilder KILL_BY_PROCESS_ID = new CommandBuilder() {
 
@@ -225,6 +236,52 @@ public final class Commands {
             return String.format(Platforms.isUnixBased(platform) || platform instanceof CygwinPlatform ? MKDIR_P : MKDIR, directories);
         }
     };
+    /** Lists the names of the files that do not exist in a given directory, one per line. */
+    public static final CommandBuilder MISSING_FILES = new CommandBuilder() {
+
+        private static final String FOR_IN_IF_NOT_EXIST = "for %%f in (%s) do @if not exist \"%s%%~f\" echo %%~f";
+        private static final String FOR_IN_IF_NOT_E = "for f in %s; do [ -e \"%s$f\" ] || echo \"$f\"; done";
+
+        /** Given a directory, which is expected as the first element in {@code parameters}, followed by the names of the files to look for in it, constructs a platform-dependent command that prints the names of the files that do not exist. */
+        @Override
+        public String get(final Platform platform, final String... parameters) {
+
+            if (parameters.length < 2) { throw new IllegalArgumentException("a directory followed by at least one file name must be specified"); }
+            final String directory = parameters[0];
+            final String names = quoteAndConcatenateWithSpace(platform, Arrays.copyOfRange(parameters, 1, parameters.length)).trim();
+            return Platforms.isUnixBased(platform) || platform instanceof CygwinPlatform ? String.format(FOR_IN_IF_NOT_E, names, directory) : String.format(FOR_IN_IF_NOT_EXIST, names, directory);
+        }
+    };
+    /** The move command builder, which replaces the destination if it already exists. */
+    public static final CommandBuilder MOVE = new CommandBuilder() {
+
+        private static final String MOVE_Y = "move /y %s > nul";
+        private static final String MV_F = "mv -f %s";
+
+        /** Given a source and a destination, which are expected as the first and the second elements in {@code parameters}, constructs a platform-dependent move command. */
+        @Override
+        public String get(final Platform platform, final String... parameters) {
+
+            if (parameters.length != 2) { throw new IllegalArgumentException("a source and a destination must be specified"); }
+            final String paths = quoteAndConcatenateWithSpace(platform, parameters).trim();
+            return String.format(Platforms.isUnixBased(platform) || platform instanceof CygwinPlatform ? MV_F : MOVE_Y, paths);
+        }
+    };
+    /** The symbolic link command builder, which replaces the link if it already exists. On Windows the target is copied instead, since creating links requires elevated privileges. */
+    public static final CommandBuilder LINK = new CommandBuilder() {
+
+        private static final String COPY_Y = "copy /y %s > nul";
+        private static final String LN_SF = "ln -sf %s";
+
+        /** Given a target and a link, which are expected as the first and the second elements in {@code parameters}, constructs a platform-dependent link command. */
+        @Override
+        public String get(final Platform platform, final String... parameters) {
+
+            if (parameters.length != 2) { throw new IllegalArgumentException("a target and a link must be specified"); }
+            final String paths = quoteAndConcatenateWithSpace(platform, parameters).trim();
+            return String.format(Platforms.isUnixBased(platform) || platform instanceof CygwinPlatform ? LN_SF : COPY_Y, paths);
+        }
+    };
     private static final String SPACE = " ";
     private static final Logger LOGGER = LoggerFactory.getLogger(Commands.class);
 
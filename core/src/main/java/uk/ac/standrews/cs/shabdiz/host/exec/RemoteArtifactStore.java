@@ -0,0 +1,357 @@
+/*
+ * Copyright 2013 University of St Andrews School of Computer Science
+ *
+ * This file is part of Shabdiz.
+ *
+ * Shabdiz is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Shabdiz is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Shabdiz.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.ac.standrews.cs.shabdiz.host.exec;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.ac.standrews.cs.shabdiz.host.Host;
+import uk.ac.standrews.cs.shabdiz.platform.CygwinPlatform;
+import uk.ac.standrews.cs.shabdiz.platform.Platform;
+import uk.ac.standrews.cs.shabdiz.platform.Platforms;
+import uk.ac.standrews.cs.shabdiz.util.ProcessUtil;
+
+import static org.apache.commons.io.IOUtils.closeQuietly;
+import static uk.ac.standrews.cs.shabdiz.host.exec.Bootstrap.LOCAL_SHABDIZ_TMP_HOME;
+
+/**
+ * Uploads files to a content-addressed store of artifacts on a host, and links them into a working directory.
+ * Each file is stored under the hex-encoded SHA-256 digest of its content, so that a file is uploaded to a host at most once regardless of its name or of the number of processes that use it.
+ * The files that are missing from the store are determined by a single command, uploaded to the working directory, and then moved into the store.
+ * The working directory is populated with links to the stored files under their original names; on Windows the stored files are copied instead.
+ * The move and link commands are chained so that they stop at the first failure, and are executed in batches that fit within the command line limit of the platform.
+ * Directories are not stored and are uploaded to the working directory as they are.
+ * The digests of local files are remembered as long as their length and last modification time do not change.
+ * <p>
+ * Optionally, the store also keeps a link to the most recently stored version of each file name.
+ * A missing file whose name has such a version is transferred as a {@link BlockDelta block delta} against it, and is reconstructed on the host by the copy of {@link BlockDelta} in the bootstrap jar.
+ * If the delta transfer fails, or the delta is not smaller than the file, the file is uploaded in full.
+ *
+ * @author Masih Hajiarabderkani (mh638@st-andrews.ac.uk)
+ */
+final class RemoteArtifactStore {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RemoteArtifactStore.class);
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String LATEST_VERSION_SUFFIX = ".latest";
+    private static final String DELTA_SUFFIX = ".delta";
+    /** The minimum length of a file for it to be transferred as a delta; the overhead of computing the signatures of the basis outweighs the saving for smaller files. */
+    static final long MIN_DELTA_LENGTH = 64 * 1024;
+    /** The maximum length of a joined command on Windows, which leaves room within the 8191 character limit of cmd.exe for the prefix that a host may add. */
+    static final int MAX_WINDOWS_COMMAND_LENGTH = 8000;
+    /** The maximum length of a joined command on Unix-based platforms, which stays below the 128 KiB limit of a single argument on Linux. */
+    static final int MAX_UNIX_COMMAND_LENGTH = 120 * 1024;
+    private static final int CONJUNCTION_LENGTH = " && ".length();
+    private static final int SPACE_LENGTH = " ".length();
+    private static final Map<File, LocalDigest> LOCAL_DIGESTS = new ConcurrentHashMap<File, LocalDigest>();
+
+    private RemoteArtifactStore() {
+
+    }
+
+    /**
+     * Makes the given {@code files} available in the given {@code working_directory} on the given {@code host}, uploading only the files whose content is not already in the store at the given {@code store_directory}.
+     * Both directories are expected to exist on the host.
+     *
+     * @param host the host to upload the files to
+     * @param files the local files to make available
+     * @param store_directory the path to the store of artifacts on the host, ending with a separator
+     * @param working_directory the path to the directory on the host in which to make the files available, ending with a separator
+     * @param block_delta_command the command that executes {@link BlockDelta} on the host, or {@code null} if missing files are always uploaded in full
+     * @throws IOException if an error occurs while uploading or linking the files
+     */
+    static void upload(final Host host, final Collection<File> files, final String store_directory, final String working_directory, final String block_delta_command) throws IOException {
+
+        final Map<String, File> files_by_digest = new LinkedHashMap<String, File>();
+        final Map<File, String> digests = new LinkedHashMap<File, String>();
+        final List<File> uploads = new ArrayList<File>();
+        for (final File file : files) {
+            if (file.isFile()) {
+                final String digest = getDigest(file);
+                digests.put(file, digest);
+                if (!files_by_digest.containsKey(digest)) {
+                    files_by_digest.put(digest, file);
+                }
+            }
+            else {
+                uploads.add(file);
+            }
+        }
+
+        final boolean delta_enabled = block_delta_command != null;
+        final Set<String> names = new LinkedHashSet<String>(files_by_digest.keySet());
+        if (delta_enabled) {
+            for (final File file : files_by_digest.values()) {
+                names.add(getLatestVersionName(file));
+            }
+        }
+        final Set<String> missing = getMissingFiles(host, store_directory, names);
+        final List<String> missing_digests = new ArrayList<String>();
+        for (final Map.Entry<String, File> entry : files_by_digest.entrySet()) {
+            final String digest = entry.getKey();
+            if (missing.contains(digest)) {
+                missing_digests.add(digest);
+                final File file = entry.getValue();
+                final String latest_version_name = getLatestVersionName(file);
+                if (!delta_enabled || file.length() < MIN_DELTA_LENGTH || missing.contains(latest_version_name) || !transferDelta(host, file, store_directory + latest_version_name, working_directory, block_delta_command)) {
+                    uploads.add(file);
+                }
+            }
+        }
+        LOGGER.debug("{} of {} artifacts are missing from the store on host {}", missing_digests.size(), files_by_digest.size(), host);
+        if (!uploads.isEmpty()) {
+            host.upload(uploads, working_directory);
+        }
+        if (!digests.isEmpty()) {
+            storeAndLink(host, missing_digests, files_by_digest, digests, store_directory, working_directory, delta_enabled);
+        }
+    }
+
+    static String getDigest(final File file) throws IOException {
+
+        final long length = file.length();
+        final long last_modified = file.lastModified();
+        final LocalDigest cached = LOCAL_DIGESTS.get(file);
+        if (cached != null && cached.length == length && cached.last_modified == last_modified) { return cached.digest; }
+
+        final String digest = computeDigest(file);
+        LOCAL_DIGESTS.put(file, new LocalDigest(length, last_modified, digest));
+        return digest;
+    }
+
+    private static String computeDigest(final File file) throws IOException {
+
+        final MessageDigest message_digest;
+        try {
+            message_digest = MessageDigest.getInstance(DIGEST_ALGORITHM);
+        }
+        catch (final NoSuchAlgorithmException e) {
+            throw new IOException("digest algorithm " + DIGEST_ALGORITHM + " is not available", e);
+        }
+
+        InputStream in = null;
+        try {
+            in = new FileInputStream(file);
+            final byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                message_digest.update(buffer, 0, read);
+            }
+        }
+        finally {
+            closeQuietly(in);
+        }
+        return toHex(message_digest.digest());
+    }
+
+    private static String toHex(final byte[] bytes) {
+
+        final StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (final byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16));
+            hex.append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    private static boolean transferDelta(final Host host, final File file, final String basis, final String working_directory, final String block_delta_command) throws IOException {
+
+        final Platform platform = host.getPlatform();
+        final String delta_name = file.getName() + DELTA_SUFFIX;
+        final File local_directory = new File(LOCAL_SHABDIZ_TMP_HOME, UUID.randomUUID().toString());
+        try {
+            final int block_size = BlockDelta.getBlockSize(file.length());
+            final String signatures = execute(host, block_delta_command + Commands.quoteAndConcatenateWithSpace(platform, BlockDelta.SIGNATURE_COMMAND, basis, String.valueOf(block_size)));
+
+            FileUtils.forceMkdir(local_directory);
+            final File delta = new File(local_directory, delta_name);
+            final long matched;
+            final OutputStream out = new FileOutputStream(delta);
+            try {
+                matched = BlockDelta.writeDelta(file, signatures, out);
+            }
+            finally {
+                out.close();
+            }
+            if (delta.length() >= file.length()) {
+                LOGGER.debug("skipped delta transfer of {} to host {}; delta is not smaller than the file", file, host);
+                return false;
+            }
+
+            host.upload(delta, working_directory);
+            execute(host, block_delta_command + Commands.quoteAndConcatenateWithSpace(platform, BlockDelta.PATCH_COMMAND, basis, working_directory + delta_name, working_directory + file.getName()));
+            LOGGER.debug("transferred {} to host {} as a delta of {} bytes, reusing {} of {} bytes", file, host, delta.length(), matched, file.length());
+            return true;
+        }
+        catch (final IOException e) {
+            LOGGER.debug("delta transfer of " + file + " to host " + host + " failed; uploading the file in full", e);
+            return false;
+        }
+        finally {
+            FileUtils.deleteQuietly(local_directory);
+        }
+    }
+
+    private static String getLatestVersionName(final File file) {
+
+        return file.getName() + LATEST_VERSION_SUFFIX;
+    }
+
+    private static Set<String> getMissingFiles(final Host host, final String directory, final Collection<String> names) throws IOException {
+
+        final Set<String> missing = new HashSet<String>();
+        if (names.isEmpty()) { return missing; }
+
+        for (final String command : getMissingFilesCommands(host.getPlatform(), directory, names)) {
+            final String output = execute(host, command);
+            for (final String name : output.split("\\r?\\n")) {
+                if (names.contains(name)) {
+                    missing.add(name);
+                }
+            }
+        }
+        return missing;
+    }
+
+    static List<String> getMissingFilesCommands(final Platform platform, final String directory, final Collection<String> names) {
+
+        final int max_length = getMaxCommandLength(platform);
+        final String first_name = names.iterator().next();
+        // The length of a command is that of its template and directory, plus the quoted names separated by a space
+        final int template_length = Commands.MISSING_FILES.get(platform, directory, first_name).length() - platform.quote(first_name).length();
+        final List<String> commands = new ArrayList<String>();
+        final List<String> batch = new ArrayList<String>();
+        int batch_length = template_length;
+        for (final String name : names) {
+            final int name_length = platform.quote(name).length();
+            if (!batch.isEmpty() && batch_length + SPACE_LENGTH + name_length > max_length) {
+                commands.add(getMissingFilesCommand(platform, directory, batch));
+                batch.clear();
+                batch_length = template_length;
+            }
+            batch_length += batch.isEmpty() ? name_length : SPACE_LENGTH + name_length;
+            batch.add(name);
+        }
+        commands.add(getMissingFilesCommand(platform, directory, batch));
+        return commands;
+    }
+
+    private static String getMissingFilesCommand(final Platform platform, final String directory, final List<String> names) {
+
+        final List<String> parameters = new ArrayList<String>(names.size() + 1);
+        parameters.add(directory);
+        parameters.addAll(names);
+        return Commands.MISSING_FILES.get(platform, parameters.toArray(new String[parameters.size()]));
+    }
+
+    private static void storeAndLink(final Host host, final List<String> missing_digests, final Map<String, File> files_by_digest, final Map<File, String> digests, final String store_directory, final String working_directory, final boolean link_latest_versions) throws IOException {
+
+        final Platform platform = host.getPlatform();
+        final List<String> commands = new ArrayList<String>();
+        for (final String digest : missing_digests) {
+            final File file = files_by_digest.get(digest);
+            commands.add(Commands.MOVE.get(platform, working_directory + file.getName(), store_directory + digest));
+        }
+        for (final Map.Entry<File, String> entry : digests.entrySet()) {
+            commands.add(Commands.LINK.get(platform, store_directory + entry.getValue(), working_directory + entry.getKey().getName()));
+            if (link_latest_versions) {
+                commands.add(Commands.LINK.get(platform, store_directory + entry.getValue(), store_directory + getLatestVersionName(entry.getKey())));
+            }
+        }
+        for (final String batch : joinInBatches(platform, commands)) {
+            execute(host, batch);
+        }
+    }
+
+    static List<String> joinInBatches(final Platform platform, final List<String> commands) {
+
+        final int max_length = getMaxCommandLength(platform);
+        final List<String> batches = new ArrayList<String>();
+        final List<String> batch = new ArrayList<String>();
+        int batch_length = 0;
+        for (final String command : commands) {
+            if (!batch.isEmpty() && batch_length + CONJUNCTION_LENGTH + command.length() > max_length) {
+                batches.add(Commands.CONJUNCTION.get(platform, batch.toArray(new String[batch.size()])));
+                batch.clear();
+                batch_length = 0;
+            }
+            batch_length += batch.isEmpty() ? command.length() : CONJUNCTION_LENGTH + command.length();
+            batch.add(command);
+        }
+        if (!batch.isEmpty()) {
+            batches.add(Commands.CONJUNCTION.get(platform, batch.toArray(new String[batch.size()])));
+        }
+        return batches;
+    }
+
+    private static int getMaxCommandLength(final Platform platform) {
+
+        return Platforms.isUnixBased(platform) || platform instanceof CygwinPlatform ? MAX_UNIX_COMMAND_LENGTH : MAX_WINDOWS_COMMAND_LENGTH;
+    }
+
+    private static String execute(final Host host, final String command) throws IOException {
+
+        final Process process = host.execute(command);
+        try {
+            final String output = ProcessUtil.awaitNormalTerminationAndGetOutput(process);
+            final int exit_value = process.exitValue();
+            if (exit_value != 0) { throw new IOException("artifact store command failed on host " + host.getName() + " with exit value " + exit_value); }
+            return output;
+        }
+        catch (final InterruptedException e) {
+            throw new IOException("interrupted while executing artifact store command on host " + host.getName(), e);
+        }
+        finally {
+            process.destroy();
+        }
+    }
+
+    private static final class LocalDigest {
+
+        private final long length;
+        private final long last_modified;
+        private final String digest;
+
+        private LocalDigest(final long length, final long last_modified, final String digest) {
+
+            this.length = length;
+            this.last_modified = last_modified;
+            this.digest = digest;
+        }
+    }
+}
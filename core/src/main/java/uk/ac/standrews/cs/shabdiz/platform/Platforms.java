@@ -25,6 +25,7 @@ import java.io.IOException;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.jar.Attributes;
 import java.util.jar.JarEntry;
 import java.util.jar.JarOutputStream;
@@ -32,20 +33,29 @@ import java.util.jar.Manifest;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import uk.ac.standrews.cs.shabdiz.host.Host;
+import uk.ac.standrews.cs.shabdiz.host.SSHHost;
 import uk.ac.standrews.cs.shabdiz.host.exec.AgentBasedJavaProcessBuilder;
 import uk.ac.standrews.cs.shabdiz.host.exec.Commands;
+import uk.ac.standrews.cs.shabdiz.util.Duration;
+import uk.ac.standrews.cs.shabdiz.util.ProbeCache;
 import uk.ac.standrews.cs.shabdiz.util.ProcessUtil;
 
 /**
  * Factory for {@link Platform} and {@link SimplePlatform}, and utility methods to detect {@link Platform platform} from {@link Host host} by executing {@code uname} command or a Java-based platform detector.
+ * The platforms of remote hosts are cached per host name, user and port; see {@link #setDetectedPlatformCaching(Duration, Duration)}.
  *
  * @author Masih Hajiarabderkani (mh638@st-andrews.ac.uk)
  */
 public final class Platforms {
 
+    /** The default duration within which a detected platform is reused. */
+    public static final Duration DEFAULT_DETECTED_PLATFORM_TIME_TO_LIVE = new Duration(10, TimeUnit.MINUTES);
+    /** The default duration after the time to live within which a detected platform is reused while being re-detected in the background. */
+    public static final Duration DEFAULT_DETECTED_PLATFORM_STALE_WINDOW = new Duration(1, TimeUnit.HOURS);
     private static final String UNAME_COMMAND = "uname";
     private static final String VER_COMMAND = "ver";
     private static final String PLATFORM_DETECTOR_JAR_VERSION = "1.0";
+    private static final ProbeCache<String, Platform> DETECTED_PLATFORMS = new ProbeCache<String, Platform>(DEFAULT_DETECTED_PLATFORM_TIME_TO_LIVE, DEFAULT_DETECTED_PLATFORM_STALE_WINDOW, platform -> platform != null);
     private static File cached_platform_detector_jar;
 
     private Platforms() {
@@ -72,6 +82,7 @@ public final class Platforms {
      * If the {@code host} {@link Host#isLocal() is local}, returns an instance of {@link LocalPlatform}.
      * If the {@code use_java} flag is set to {@code true}, attempts to detect the platform by a Java-based application on the remote host.
      * Otherwise, attempts to detect the platform from the output that is produced by executing the {@code uname} command on the host.
+     * Concurrent detections of the platform of the same remote host are coalesced, and the detected platform is reused by subsequent detections.
      *
      * @param host the host to detect the platform of
      * @param use_java whether to use a Java-based platform detector
@@ -80,7 +91,29 @@ public final class Platforms {
      */
     public static Platform detectPlatform(final Host host, final boolean use_java) throws IOException {
 
-        return host.isLocal() ? LocalPlatform.getInstance() : use_java ? detectRemotePlatformUsingJava(host) : detectRemotePlatformUsingUname(host);
+        if (host.isLocal()) { return LocalPlatform.getInstance(); }
+        return DETECTED_PLATFORMS.get(getDetectedPlatformKey(host, use_java), key -> use_java ? detectRemotePlatformUsingJava(host) : detectRemotePlatformUsingUname(host));
+    }
+
+    /**
+     * Sets the durations within which the {@link #detectPlatform(Host, boolean) detected} platform of a remote host is reused, and discards the previously detected platforms.
+     * Within the {@code time_to_live} after its detection, a platform is reused as is.
+     * Within the {@code stale_window} thereafter, a platform is reused while a single background detection refreshes it.
+     * A time to live and stale window of zero only coalesce concurrent detections.
+     *
+     * @param time_to_live the duration within which a detected platform is reused
+     * @param stale_window the duration after the time to live within which a detected platform is reused while being re-detected
+     */
+    public static void setDetectedPlatformCaching(final Duration time_to_live, final Duration stale_window) {
+
+        DETECTED_PLATFORMS.setTimeToLive(time_to_live);
+        DETECTED_PLATFORMS.setStaleWindow(stale_window);
+    }
+
+    /** Discards the previously detected platforms of remote hosts. */
+    public static void clearDetectedPlatforms() {
+
+        DETECTED_PLATFORMS.clear();
     }
 
     /**
@@ -123,6 +156,19 @@ public final class Platforms {
         return target.getPathSeparator() == Platform.UNIX_PATH_SEPARATOR && target.getSeparator() == Platform.UNIX_SEPARATOR;
     }
 
+    private static String getDetectedPlatformKey(final Host host, final boolean use_java) {
+
+        final StringBuilder key = new StringBuilder();
+        if (host instanceof SSHHost) {
+            final SSHHost ssh_host = (SSHHost) host;
+            key.append(ssh_host.getUsername()).append('@').append(host.getName()).append(':').append(ssh_host.getSSHPort());
+        }
+        else {
+            key.append(host.getName());
+        }
+        return key.append(use_java ? "#java" : "#uname").toString();
+    }
+
     private static Platform detectRemotePlatformUsingJava(final Host host) throws IOException {
 
         final File platform_detector = getPlatformDetectorJar();
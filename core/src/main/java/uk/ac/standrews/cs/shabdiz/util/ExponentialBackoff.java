@@ -0,0 +1,74 @@
+/*
+ * Copyright 2013 University of St Andrews School of Computer Science
+ *
+ * This file is part of Shabdiz.
+ *
+ * Shabdiz is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Shabdiz is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Shabdiz.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.standrews.cs.shabdiz.util;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A jittered exponential backoff policy.
+ * The delay after the {@code n}<sup>th</sup> consecutive failure is chosen uniformly at random between the half and the whole of {@code min(cap, base * 2^(n-1))}.
+ * The jitter prevents the retries of entities that failed at the same time from being synchronised.
+ *
+ * @author Masih Hajiarabderkani (mh638@st-andrews.ac.uk)
+ */
+public final class ExponentialBackoff {
+
+    private final long base_nanos;
+    private final long cap_nanos;
+
+    /**
+     * Instantiates a new exponential backoff policy.
+     *
+     * @param base the delay after the first failure
+     * @param cap the maximum delay
+     */
+    public ExponentialBackoff(final Duration base, final Duration cap) {
+
+        base_nanos = Math.max(1, base.getLength(TimeUnit.NANOSECONDS));
+        cap_nanos = cap.getLength(TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Gets the jittered delay in nanoseconds after the given number of consecutive failures.
+     *
+     * @param failures the number of consecutive failures
+     * @return the jittered delay in nanoseconds, or {@code 0} if the given number of failures is less than {@code 1}
+     */
+    public long getDelayNanos(final int failures) {
+
+        if (failures < 1 || cap_nanos <= 0) { return 0; }
+
+        final int shift = Math.min(failures - 1, Long.numberOfLeadingZeros(base_nanos) - 1);
+        final long delay = Math.min(cap_nanos, base_nanos << shift);
+        final long half_delay = delay / 2;
+        return half_delay + ThreadLocalRandom.current().nextLong(delay - half_delay + 1);
+    }
+
+    /**
+     * Gets the maximum delay of this policy.
+     *
+     * @return the maximum delay of this policy
+     */
+    public Duration getCap() {
+
+        return new Duration(cap_nanos, TimeUnit.NANOSECONDS);
+    }
+}
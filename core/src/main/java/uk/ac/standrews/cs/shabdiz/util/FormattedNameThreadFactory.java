@@ -23,21 +23,42 @@ import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
+ * A {@link ThreadFactory} that names the threads it creates using a {@link String#format(String, Object...) format} and a sequence number.
+ * Optionally, the threads may be created by a delegate factory, in which case this factory only names them.
+ *
  * @author Masih Hajiarabderkani (mh638@st-andrews.ac.uk)
  */
 public class FormattedNameThreadFactory implements ThreadFactory {
 
     private final AtomicLong count = new AtomicLong();
     private final String format;
+    private final ThreadFactory delegate;
 
     public FormattedNameThreadFactory(String format) {
 
+        this(format, null);
+    }
+
+    /**
+     * Instantiates a new thread factory that names the threads created by the given {@code delegate}.
+     *
+     * @param format the format of thread names, which is given the sequence number of each thread
+     * @param delegate the factory that creates the threads, or {@code null} to create platform threads
+     */
+    public FormattedNameThreadFactory(final String format, final ThreadFactory delegate) {
+
         this.format = format;
+        this.delegate = delegate;
     }
 
     @Override
     public Thread newThread(final Runnable task) {
 
-        return new Thread(task, String.format(format, count.incrementAndGet()));
+        final String name = String.format(format, count.incrementAndGet());
+        if (delegate == null) { return new Thread(task, name); }
+
+        final Thread thread = delegate.newThread(task);
+        thread.setName(name);
+        return thread;
     }
 }
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2013 University of St Andrews School of Computer Science
+ *
+ * This file is part of Shabdiz.
+ *
+ * Shabdiz is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Shabdiz is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Shabdiz.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.standrews.cs.shabdiz.util;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import uk.ac.standrews.cs.shabdiz.host.Host;
+
+/**
+ * Limits the number of operations that may concurrently be performed on a {@link Host host}.
+ * Operations {@link #acquire(Host) acquire} a permit from the host they operate on, and {@link Permit#close() release} it once complete.
+ * Permits are handed out in the order in which they are requested.
+ * Operations that are not associated to any host are never limited.
+ * The limit may be changed at any time; permits that are held at the time of the change count against the new limit, except those that were acquired while the concurrency was {@link #UNLIMITED unlimited}.
+ * This class is thread-safe.
+ *
+ * @author Masih Hajiarabderkani (mh638@st-andrews.ac.uk)
+ */
+public final class HostConcurrencyLimiter {
+
+    /** The limit that indicates the number of concurrent operations per host is unlimited. */
+    public static final int UNLIMITED = Integer.MAX_VALUE;
+    private static final Permit NO_OP_PERMIT = new Permit(null);
+    private final ConcurrentHashMap<Host, ResizableSemaphore> host_permits;
+    private volatile int max_concurrency_per_host;
+
+    /**
+     * Instantiates a new limiter.
+     *
+     * @param max_concurrency_per_host the maximum number of concurrent operations per host
+     */
+    public HostConcurrencyLimiter(final int max_concurrency_per_host) {
+
+        host_permits = new ConcurrentHashMap<>();
+        setMaxConcurrencyPerHost(max_concurrency_per_host);
+    }
+
+    /**
+     * Acquires a permit to perform an operation on the given {@code host}, blocking until one is available.
+     * The returned permit must be {@link Permit#close() closed} once the operation is complete.
+     *
+     * @param host the host on which to perform an operation, may be {@code null}
+     * @return the acquired permit
+     * @throws InterruptedException if interrupted while waiting for a permit
+     */
+    public Permit acquire(final Host host) throws InterruptedException {
+
+        final int limit = max_concurrency_per_host;
+        if (host == null || limit == UNLIMITED) { return NO_OP_PERMIT; }
+
+        final Semaphore permits = getPermits(host);
+        permits.acquire();
+        return new Permit(permits);
+    }
+
+    /**
+     * Gets the maximum number of concurrent operations per host.
+     *
+     * @return the maximum number of concurrent operations per host
+     */
+    public int getMaxConcurrencyPerHost() {
+
+        return max_concurrency_per_host;
+    }
+
+    /**
+     * Sets the maximum number of concurrent operations per host.
+     * The permits of each host are resized rather than replaced, so that the permits that are held at the time of the change are released back to the same pool and count against the new limit.
+     *
+     * @param max_concurrency_per_host the maximum number of concurrent operations per host, or {@link #UNLIMITED}
+     * @throws IllegalArgumentException if the given limit is less than {@code 1}
+     */
+    public synchronized void setMaxConcurrencyPerHost(final int max_concurrency_per_host) {
+
+        if (max_concurrency_per_host < 1) { throw new IllegalArgumentException("maximum concurrency per host must be at least 1"); }
+        this.max_concurrency_per_host = max_concurrency_per_host;
+        for (final ResizableSemaphore permits : host_permits.values()) {
+            permits.resize(max_concurrency_per_host);
+        }
+    }
+
+    private Semaphore getPermits(final Host host) {
+
+        final Semaphore permits = host_permits.get(host);
+        if (permits != null) { return permits; }
+
+        synchronized (this) { // the permits are created with the current limit so that they are not missed by a concurrent resize
+            return host_permits.computeIfAbsent(host, key -> new ResizableSemaphore(max_concurrency_per_host));
+        }
+    }
+
+    /** A permit to perform an operation on a host, which is released on {@link #close() closure}. */
+    public static final class Permit implements AutoCloseable {
+
+        private final Semaphore permits;
+
+        private Permit(final Semaphore permits) {
+
+            this.permits = permits;
+        }
+
+        /** Releases this permit. */
+        @Override
+        public void close() {
+
+            if (permits != null) {
+                permits.release();
+            }
+        }
+    }
+}
@@ -23,16 +23,20 @@ import java.beans.PropertyChangeListener;
 import java.util.concurrent.CountDownLatch;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import uk.ac.standrews.cs.shabdiz.ApplicationDescriptor;
 import uk.ac.standrews.cs.shabdiz.ApplicationState;
+import uk.ac.standrews.cs.shabdiz.StateTransitionListener;
 
 /**
  * Given an array of {@link ApplicationState states} listens for the change of state events and {@link CountDownLatch#countDown() counts down} a latch for each state change event that matches one of the given states.
  * The user of this class may await the count down by calling {@link #await()}.
+ * A matching transition counts down the latch even if the state has changed again since, or if it is delivered after a later transition;
+ * the latch therefore records that one of the states was reached, not that it is the current state.
  * This class is thread-safe.
  *
  * @author Masih Hajiarabderkani (mh638@st-andrews.ac.uk)
  */
-public final class LatchedStateChangeListener implements PropertyChangeListener {
+public final class LatchedStateChangeListener implements PropertyChangeListener, StateTransitionListener {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(LatchedStateChangeListener.class);
     private final ApplicationState[] states;
@@ -57,7 +61,18 @@ public final class LatchedStateChangeListener implements PropertyChangeListener
         final Object source = event.getSource();
         LOGGER.trace("state changed from {} to {} on {}", old_value, new_value, source);
 
-        final ApplicationState new_state = (ApplicationState) new_value;
+        countDownIfMatches((ApplicationState) new_value);
+    }
+
+    @Override
+    public void onStateTransition(final ApplicationDescriptor descriptor, final ApplicationState old_state, final ApplicationState new_state) {
+
+        LOGGER.trace("state changed from {} to {} on {}", old_state, new_state, descriptor);
+        countDownIfMatches(new_state);
+    }
+
+    private void countDownIfMatches(final ApplicationState new_state) {
+
         if (ArrayUtil.contains(new_state, states)) {
             latch.countDown();
             LOGGER.trace("counted down latch for the matching state {}", new_state);
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2013 University of St Andrews School of Computer Science
+ *
+ * This file is part of Shabdiz.
+ *
+ * Shabdiz is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Shabdiz is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Shabdiz.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.ac.standrews.cs.shabdiz.util;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A phi accrual failure detector, as described by Hayashibara et al. in <i>The &phi; Accrual Failure Detector</i>.
+ * Rather than deciding whether a monitored entity has failed, the detector outputs a suspicion level, {@code phi}, which accrues continuously as time passes since the last heartbeat of the entity.
+ * The suspicion level is derived from the distribution of the intervals between past heartbeats, which is approximated by a normal distribution of their mean and standard deviation.
+ * A {@code phi} of {@code 1} means the likelihood of the entity being falsely suspected is about {@code 10%}, a {@code phi} of {@code 2} about {@code 1%}, and so on.
+ * <p>
+ * The intervals are kept in a fixed-size ring buffer of primitive millisecond values, so that the memory footprint of a detector is bounded and small.
+ * The buffer is seeded with two intervals around the given first interval estimate, so that the detector yields a sensible suspicion level from the first heartbeat.
+ * This class is thread-safe.
+ *
+ * @author Masih Hajiarabderkani (mh638@st-andrews.ac.uk)
+ */
+public final class PhiAccrualFailureDetector {
+
+    private static final long NO_HEARTBEAT = Long.MIN_VALUE;
+    private final int[] intervals;
+    private final double min_std_deviation_millis;
+    private final double acceptable_pause_millis;
+    private int size;
+    private int next_index;
+    private long sum;
+    private double sum_of_squares;
+    private long last_heartbeat_time = NO_HEARTBEAT;
+
+    /**
+     * Instantiates a new failure detector.
+     *
+     * @param window_size the number of most recent intervals from which the distribution of intervals is estimated
+     * @param first_interval_estimate the estimated interval between heartbeats, used before any intervals are observed
+     * @param min_std_deviation the minimum standard deviation of the intervals, which prevents the suspicion level from rising too sharply when the intervals are very regular
+     * @param acceptable_pause the duration by which heartbeats may be late before the suspicion level starts to rise
+     * @throws IllegalArgumentException if the given window size is less than {@code 2}
+     */
+    public PhiAccrualFailureDetector(final int window_size, final Duration first_interval_estimate, final Duration min_std_deviation, final Duration acceptable_pause) {
+
+        if (window_size < 2) { throw new IllegalArgumentException("window size must be at least 2"); }
+
+        intervals = new int[window_size];
+        min_std_deviation_millis = min_std_deviation.getLength(TimeUnit.MILLISECONDS);
+        acceptable_pause_millis = acceptable_pause.getLength(TimeUnit.MILLISECONDS);
+
+        final long estimate_millis = Math.max(1, first_interval_estimate.getLength(TimeUnit.MILLISECONDS));
+        final long estimate_std_deviation_millis = estimate_millis / 4;
+        record(estimate_millis - estimate_std_deviation_millis);
+        record(estimate_millis + estimate_std_deviation_millis);
+    }
+
+    /**
+     * Records a heartbeat of the monitored entity at the given time.
+     *
+     * @param now_nanos the time of the heartbeat as given by {@link System#nanoTime()}
+     */
+    public synchronized void heartbeat(final long now_nanos) {
+
+        if (last_heartbeat_time != NO_HEARTBEAT) {
+            record(TimeUnit.NANOSECONDS.toMillis(now_nanos - last_heartbeat_time));
+        }
+        last_heartbeat_time = now_nanos;
+    }
+
+    /**
+     * Records a heartbeat of the monitored entity at the given time, without recording the interval since the previous heartbeat.
+     * This is used when the entity resumes after a known period of absence, which would otherwise skew the distribution of intervals.
+     *
+     * @param now_nanos the time of the heartbeat as given by {@link System#nanoTime()}
+     */
+    public synchronized void resume(final long now_nanos) {
+
+        last_heartbeat_time = now_nanos;
+    }
+
+    /**
+     * Gets the suspicion level of the monitored entity at the given time.
+     * The suspicion level is zero if no heartbeat has been recorded.
+     *
+     * @param now_nanos the time as given by {@link System#nanoTime()}
+     * @return the suspicion level of the monitored entity at the given time
+     */
+    public synchronized double phi(final long now_nanos) {
+
+        if (last_heartbeat_time == NO_HEARTBEAT) { return 0; }
+
+        final double elapsed_millis = TimeUnit.NANOSECONDS.toMillis(now_nanos - last_heartbeat_time);
+        final double mean = (double) sum / size;
+        final double variance = Math.max(0, sum_of_squares / size - mean * mean);
+        final double std_deviation = Math.max(Math.sqrt(variance), min_std_deviation_millis);
+        return phi(elapsed_millis, mean + acceptable_pause_millis, std_deviation);
+    }
+
+    /**
+     * Gets the number of intervals from which the distribution of intervals is currently estimated.
+     *
+     * @return the number of intervals in the window of this detector
+     */
+    public synchronized int getSampleCount() {
+
+        return size;
+    }
+
+    // Uses the logistic approximation of the cumulative distribution function of the normal distribution
+    static double phi(final double elapsed, final double mean, final double std_deviation) {
+
+        final double y = (elapsed - mean) / std_deviation;
+        final double e = Math.exp(-y * (1.5976 + 0.070566 * y * y));
+        final double p_later = elapsed > mean ? e / (1.0 + e) : 1.0 - 1.0 / (1.0 + e);
+        return -Math.log10(Math.max(p_later, Double.MIN_VALUE));
+    }
+
+    private void record(final long interval_millis) {
+
+        final int interval = (int) Math.min(Integer.MAX_VALUE, Math.max(0, interval_millis));
+        if (size == intervals.length) {
+            final int evicted = intervals[next_index];
+            sum -= evicted;
+            sum_of_squares -= (double) evicted * evicted;
+        }
+        else {
+            size++;
+        }
+        intervals[next_index] = interval;
+        next_index = (next_index + 1) % intervals.length;
+        sum += interval;
+        sum_of_squares += (double) interval * interval;
+    }
+}
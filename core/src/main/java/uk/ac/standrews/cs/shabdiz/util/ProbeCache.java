@@ -0,0 +1,406 @@
+/*
+ * Copyright 2013 University of St Andrews School of Computer Science
+ *
+ * This file is part of Shabdiz.
+ *
+ * Shabdiz is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Shabdiz is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Shabdiz.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.ac.standrews.cs.shabdiz.util;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Caches the results of probes, such as the state of a host or the existence of a file on a host, with stale-while-revalidate semantics.
+ * A result is fresh within the {@link #getTimeToLive() time to live} after its probe completes, during which it is returned as is.
+ * Once it is no longer fresh, a result is stale for the duration of the {@link #getStaleWindow() stale window}, during which it is returned immediately while a single background probe refreshes it.
+ * Results that are neither fresh nor stale are probed on the calling thread, or {@link #getAsync(Object, Function) asynchronously} without holding a thread.
+ * A probe of a key that is requested while another probe of the same key is in progress waits for the result of the in-progress probe.
+ * Results that are not {@code cacheable}, and probes that fail, are never reused once completed.
+ * This class is thread-safe.
+ *
+ * @param <K> the type of keys
+ * @param <V> the type of probe results
+ * @author Masih Hajiarabderkani (mh638@st-andrews.ac.uk)
+ */
+public final class ProbeCache<K, V> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ProbeCache.class);
+    private final ConcurrentHashMap<K, Entry<V>> entries;
+    private final Predicate<? super V> cacheable;
+    private final Executor refresh_executor;
+    private volatile long time_to_live_nanos;
+    private volatile long stale_window_nanos;
+
+    /**
+     * Instantiates a new cache that refreshes stale results using a shared pool of daemon threads.
+     *
+     * @param time_to_live the duration after the completion of a probe within which its result is fresh
+     * @param stale_window the duration after the expiry of a result within which it is returned while being refreshed
+     * @param cacheable the predicate that determines whether a probe result may be reused
+     */
+    public ProbeCache(final Duration time_to_live, final Duration stale_window, final Predicate<? super V> cacheable) {
+
+        this(time_to_live, stale_window, cacheable, SharedRefreshExecutorHolder.EXECUTOR);
+    }
+
+    /**
+     * Instantiates a new cache.
+     *
+     * @param time_to_live the duration after the completion of a probe within which its result is fresh
+     * @param stale_window the duration after the expiry of a result within which it is returned while being refreshed
+     * @param cacheable the predicate that determines whether a probe result may be reused
+     * @param refresh_executor the executor that runs the probes that refresh stale results
+     */
+    public ProbeCache(final Duration time_to_live, final Duration stale_window, final Predicate<? super V> cacheable, final Executor refresh_executor) {
+
+        entries = new ConcurrentHashMap<K, Entry<V>>();
+        this.cacheable = cacheable;
+        this.refresh_executor = refresh_executor;
+        time_to_live_nanos = time_to_live.getLength(TimeUnit.NANOSECONDS);
+        stale_window_nanos = stale_window.getLength(TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Gets the result of probing the given {@code key}, either from a fresh, stale or in-progress probe of the key, or by probing the key using the given {@code prober}.
+     *
+     * @param key the key to probe
+     * @param prober the prober of the key
+     * @return the result of probing the given {@code key}
+     * @throws IOException if the probe of the given {@code key} fails
+     */
+    public V get(final K key, final Prober<? super K, ? extends V> prober) throws IOException {
+
+        while (true) {
+            final Entry<V> existing = entries.get(key);
+            if (existing != null) {
+                if (!existing.result.isDone()) {
+                    LOGGER.trace("joining the in-progress probe of {}", key);
+                    return existing.await();
+                }
+
+                final long age = System.nanoTime() - existing.completion_time;
+                if (age <= time_to_live_nanos) { return existing.await(); }
+                if (age <= time_to_live_nanos + stale_window_nanos) {
+                    refresh(key, existing, prober);
+                    return existing.await();
+                }
+            }
+
+            final Entry<V> entry = new Entry<V>();
+            if (existing == null ? entries.putIfAbsent(key, entry) == null : entries.replace(key, existing, entry)) {
+                boolean reusable = false;
+                try {
+                    final V value = entry.run(key, prober);
+                    reusable = cacheable.test(value) && time_to_live_nanos + stale_window_nanos > 0;
+                    return value;
+                }
+                finally {
+                    if (!reusable) {
+                        entries.remove(key, entry);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Asynchronously gets the result of probing the given {@code key}, either from a fresh, stale or in-progress probe of the key, or by probing the key using the given asynchronous {@code prober}.
+     * Unlike {@link #get(Object, Prober)}, no thread waits for an in-progress probe, and stale results are refreshed by the given {@code prober} rather than on the refresh executor.
+     *
+     * @param key the key to probe
+     * @param prober the function that starts an asynchronous probe of a key
+     * @return a future that completes with the result of probing the given {@code key}, or exceptionally if the probe fails
+     */
+    public CompletableFuture<V> getAsync(final K key, final Function<? super K, ? extends CompletableFuture<? extends V>> prober) {
+
+        while (true) {
+            final Entry<V> existing = entries.get(key);
+            if (existing != null) {
+                if (!existing.result.isDone()) {
+                    LOGGER.trace("joining the in-progress probe of {}", key);
+                    return existing.view();
+                }
+
+                final long age = System.nanoTime() - existing.completion_time;
+                if (age <= time_to_live_nanos) { return existing.view(); }
+                if (age <= time_to_live_nanos + stale_window_nanos) {
+                    refreshAsync(key, existing, prober);
+                    return existing.view();
+                }
+            }
+
+            final Entry<V> entry = new Entry<V>();
+            if (existing == null ? entries.putIfAbsent(key, entry) == null : entries.replace(key, existing, entry)) {
+                entry.start(key, prober).whenComplete((value, error) -> {
+                    if (error != null || !cacheable.test(value) || time_to_live_nanos + stale_window_nanos <= 0) {
+                        entries.remove(key, entry);
+                    }
+                });
+                return entry.view();
+            }
+        }
+    }
+
+    /**
+     * Caches the given {@code value} as the fresh result of probing the given {@code key}.
+     * This method is useful when the result of a probe is known to have changed, e.g. after a file is uploaded to a host.
+     *
+     * @param key the key
+     * @param value the result of probing the key
+     */
+    public void put(final K key, final V value) {
+
+        if (cacheable.test(value)) {
+            final Entry<V> entry = new Entry<V>();
+            entry.complete(value);
+            entries.put(key, entry);
+        }
+        else {
+            entries.remove(key);
+        }
+    }
+
+    /**
+     * Discards the cached result of the given {@code key}, if any.
+     * Probes that are in progress are unaffected.
+     *
+     * @param key the key of which to discard the cached result
+     */
+    public void invalidate(final K key) {
+
+        entries.remove(key);
+    }
+
+    /**
+     * Discards the cached results of the keys that match the given {@code filter}.
+     *
+     * @param filter the predicate that determines the keys of which to discard the cached results
+     */
+    public void invalidateIf(final Predicate<? super K> filter) {
+
+        entries.keySet().removeIf(filter);
+    }
+
+    /** Discards all the cached results. */
+    public void clear() {
+
+        entries.clear();
+    }
+
+    /**
+     * Gets the duration after the completion of a probe within which its result is fresh.
+     *
+     * @return the duration after the completion of a probe within which its result is fresh
+     */
+    public Duration getTimeToLive() {
+
+        return new Duration(time_to_live_nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Sets the duration after the completion of a probe within which its result is fresh, and discards all the cached results.
+     * A time to live and stale window of zero only coalesce concurrent probes.
+     *
+     * @param time_to_live the duration after the completion of a probe within which its result is fresh
+     */
+    public void setTimeToLive(final Duration time_to_live) {
+
+        time_to_live_nanos = time_to_live.getLength(TimeUnit.NANOSECONDS);
+        clear();
+    }
+
+    /**
+     * Gets the duration after the expiry of a result within which it is returned while being refreshed.
+     *
+     * @return the duration after the expiry of a result within which it is returned while being refreshed
+     */
+    public Duration getStaleWindow() {
+
+        return new Duration(stale_window_nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Sets the duration after the expiry of a result within which it is returned while being refreshed, and discards all the cached results.
+     * A stale window of zero disables background refreshes.
+     *
+     * @param stale_window the duration after the expiry of a result within which it is returned while being refreshed
+     */
+    public void setStaleWindow(final Duration stale_window) {
+
+        stale_window_nanos = stale_window.getLength(TimeUnit.NANOSECONDS);
+        clear();
+    }
+
+    private void refresh(final K key, final Entry<V> stale, final Prober<? super K, ? extends V> prober) {
+
+        if (!stale.refreshing.compareAndSet(false, true)) { return; }
+
+        LOGGER.trace("refreshing the stale probe result of {}", key);
+        try {
+            refresh_executor.execute(() -> {
+
+                final Entry<V> entry = new Entry<V>();
+                try {
+                    final V value = entry.run(key, prober);
+                    if (cacheable.test(value)) {
+                        entries.replace(key, stale, entry);
+                        return;
+                    }
+                }
+                catch (final IOException | RuntimeException e) {
+                    LOGGER.debug("failed to refresh the probe result of " + key, e);
+                }
+                entries.remove(key, stale);
+            });
+        }
+        catch (final RejectedExecutionException e) {
+            LOGGER.debug("refresh of the probe result of {} was rejected", key);
+            stale.refreshing.set(false);
+        }
+    }
+
+    private void refreshAsync(final K key, final Entry<V> stale, final Function<? super K, ? extends CompletableFuture<? extends V>> prober) {
+
+        if (!stale.refreshing.compareAndSet(false, true)) { return; }
+
+        LOGGER.trace("refreshing the stale probe result of {}", key);
+        final Entry<V> entry = new Entry<V>();
+        entry.start(key, prober).whenComplete((value, error) -> {
+            if (error == null && cacheable.test(value)) {
+                entries.replace(key, stale, entry);
+                return;
+            }
+            if (error != null) {
+                LOGGER.debug("failed to refresh the probe result of " + key, error);
+            }
+            entries.remove(key, stale);
+        });
+    }
+
+    /**
+     * Probes a key.
+     *
+     * @param <K> the type of keys
+     * @param <V> the type of probe results
+     */
+    public interface Prober<K, V> {
+
+        /**
+         * Probes the given {@code key}.
+         *
+         * @param key the key to probe
+         * @return the result of the probe
+         * @throws IOException if the probe fails
+         */
+        V probe(K key) throws IOException;
+    }
+
+    private static final class Entry<V> {
+
+        private final CompletableFuture<V> result = new CompletableFuture<V>();
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+        private volatile long completion_time;
+
+        private <K> V run(final K key, final Prober<? super K, ? extends V> prober) throws IOException {
+
+            try {
+                final V value = prober.probe(key);
+                complete(value);
+                return value;
+            }
+            catch (final IOException | RuntimeException | Error e) {
+                completion_time = System.nanoTime();
+                result.completeExceptionally(e);
+                throw e;
+            }
+        }
+
+        private <K> CompletableFuture<V> start(final K key, final Function<? super K, ? extends CompletableFuture<? extends V>> prober) {
+
+            final CompletableFuture<? extends V> probe;
+            try {
+                probe = prober.apply(key);
+            }
+            catch (final RuntimeException | Error e) {
+                completion_time = System.nanoTime();
+                result.completeExceptionally(e);
+                return result;
+            }
+            probe.whenComplete((value, error) -> {
+                if (error != null) {
+                    completion_time = System.nanoTime();
+                    result.completeExceptionally(error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+                }
+                else {
+                    complete(value);
+                }
+            });
+            return result;
+        }
+
+        /** Gets a view of the result that the callers may not complete or cancel. */
+        private CompletableFuture<V> view() {
+
+            return result.thenApply(value -> value);
+        }
+
+        private void complete(final V value) {
+
+            completion_time = System.nanoTime();
+            result.complete(value);
+        }
+
+        private V await() throws IOException {
+
+            try {
+                return result.get();
+            }
+            catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("interrupted while waiting for an in-progress probe", e);
+            }
+            catch (final ExecutionException e) {
+                final Throwable cause = e.getCause();
+                if (cause instanceof IOException) { throw (IOException) cause; }
+                if (cause instanceof RuntimeException) { throw (RuntimeException) cause; }
+                if (cause instanceof Error) { throw (Error) cause; }
+                throw new IOException(cause);
+            }
+        }
+    }
+
+    private static final class SharedRefreshExecutorHolder {
+
+        private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(new FormattedNameThreadFactory("probe_cache_refresh_%d", task -> {
+
+            final Thread thread = new Thread(task);
+            thread.setDaemon(true);
+            return thread;
+        }));
+    }
+}
@@ -0,0 +1,286 @@
+/*
+ * Copyright 2013 University of St Andrews School of Computer Science
+ *
+ * This file is part of Shabdiz.
+ *
+ * Shabdiz is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Shabdiz is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Shabdiz.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.standrews.cs.shabdiz.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Probes the reachability of hosts by attempting TCP connections, all of which are multiplexed on a single {@link Selector selector} thread.
+ * A host is considered to be reachable if a connection to the probed port is either established or actively refused by the host.
+ * Each probe has its own deadline, after which it fails with a {@link SocketTimeoutException}.
+ * Successful probes complete with the round trip time of the connection attempt.
+ * No thread is held by a probe until it completes; however, a caller that awaits the returned future still waits on its own thread.
+ * This class is thread-safe.
+ *
+ * @author Masih Hajiarabderkani (mh638@st-andrews.ac.uk)
+ */
+public final class ReachabilityProber implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReachabilityProber.class);
+    private static final AtomicInteger NEXT_ID = new AtomicInteger();
+    private final Selector selector;
+    private final Queue<Probe> pending_probes;
+    private final PriorityQueue<Probe> deadlines;
+    private final Thread selector_thread;
+    private volatile boolean closed;
+
+    /**
+     * Instantiates a new reachability prober and starts its selector thread.
+     *
+     * @throws IOException if the selector cannot be opened
+     */
+    public ReachabilityProber() throws IOException {
+
+        selector = Selector.open();
+        pending_probes = new ConcurrentLinkedQueue<Probe>();
+        deadlines = new PriorityQueue<Probe>();
+        selector_thread = new Thread(this::select, "reachability_prober_" + NEXT_ID.getAndIncrement());
+        selector_thread.setDaemon(true);
+        selector_thread.start();
+    }
+
+    /**
+     * Gets the prober that is shared within this JVM.
+     *
+     * @return the prober that is shared within this JVM
+     */
+    public static ReachabilityProber getSharedInstance() {
+
+        return SharedInstanceHolder.INSTANCE;
+    }
+
+    /**
+     * Probes the reachability of the given {@code address} by attempting a TCP connection to it.
+     *
+     * @param address the address to probe
+     * @param timeout the duration after which the probe fails if no response is received
+     * @return a future that completes with the round trip time of the connection attempt if the address is reachable, or completes exceptionally otherwise
+     */
+    public CompletableFuture<Duration> probe(final InetSocketAddress address, final Duration timeout) {
+
+        final Probe probe = new Probe(address, System.nanoTime() + timeout.getLength(TimeUnit.NANOSECONDS));
+        if (closed) {
+            probe.fail(new IOException("reachability prober is closed"));
+        }
+        else if (address.isUnresolved()) {
+            probe.fail(new UnknownHostException(address.getHostString()));
+        }
+        else {
+            try {
+                probe.channel = SocketChannel.open();
+                probe.channel.configureBlocking(false);
+                if (probe.channel.connect(address)) {
+                    probe.succeed();
+                }
+                else {
+                    pending_probes.add(probe);
+                    selector.wakeup();
+                    if (closed) {
+                        probe.fail(new IOException("reachability prober is closed"));
+                    }
+                }
+            }
+            catch (final ConnectException e) {
+                probe.succeed();
+            }
+            catch (final IOException e) {
+                probe.fail(e);
+            }
+        }
+        return probe.result;
+    }
+
+    @Override
+    public void close() throws IOException {
+
+        closed = true;
+        selector.close();
+        selector_thread.interrupt();
+    }
+
+    private void select() {
+
+        try {
+            while (!closed) {
+                selector.select(getSelectTimeoutMillis());
+                registerPendingProbes();
+                completeConnectedProbes();
+                expireOverdueProbes();
+            }
+        }
+        catch (final ClosedSelectorException e) {
+            LOGGER.debug("reachability prober selector is closed");
+        }
+        catch (final IOException e) {
+            LOGGER.error("reachability prober selector failed", e);
+        }
+        finally {
+            failRemainingProbes();
+        }
+    }
+
+    private long getSelectTimeoutMillis() {
+
+        final Probe earliest = deadlines.peek();
+        if (earliest == null) { return 0; }
+        final long remaining = TimeUnit.NANOSECONDS.toMillis(earliest.deadline - System.nanoTime());
+        return Math.max(1, remaining);
+    }
+
+    private void registerPendingProbes() {
+
+        Probe probe;
+        while ((probe = pending_probes.poll()) != null) {
+            try {
+                probe.channel.register(selector, SelectionKey.OP_CONNECT, probe);
+                deadlines.add(probe);
+            }
+            catch (final IOException e) {
+                probe.fail(e);
+            }
+        }
+    }
+
+    private void completeConnectedProbes() {
+
+        final Iterator<SelectionKey> selected_keys = selector.selectedKeys().iterator();
+        while (selected_keys.hasNext()) {
+            final SelectionKey key = selected_keys.next();
+            selected_keys.remove();
+
+            final Probe probe = (Probe) key.attachment();
+            try {
+                if (probe.channel.finishConnect()) {
+                    probe.succeed();
+                }
+            }
+            catch (final ConnectException e) {
+                probe.succeed(); // actively refused, hence reachable
+            }
+            catch (final IOException e) {
+                probe.fail(e);
+            }
+        }
+    }
+
+    private void expireOverdueProbes() {
+
+        final long now = System.nanoTime();
+        Probe probe;
+        while ((probe = deadlines.peek()) != null && (probe.result.isDone() || probe.deadline - now <= 0)) {
+            deadlines.poll();
+            if (!probe.result.isDone()) {
+                probe.fail(new SocketTimeoutException("no response from " + probe.address));
+            }
+        }
+    }
+
+    private void failRemainingProbes() {
+
+        final IOException closed_exception = new IOException("reachability prober is closed");
+        Probe probe;
+        while ((probe = pending_probes.poll()) != null) {
+            probe.fail(closed_exception);
+        }
+        while ((probe = deadlines.poll()) != null) {
+            probe.fail(closed_exception);
+        }
+    }
+
+    private static final class Probe implements Comparable<Probe> {
+
+        private final InetSocketAddress address;
+        private final long start_time;
+        private final long deadline;
+        private final CompletableFuture<Duration> result;
+        private SocketChannel channel;
+
+        private Probe(final InetSocketAddress address, final long deadline) {
+
+            this.address = address;
+            this.deadline = deadline;
+            start_time = System.nanoTime();
+            result = new CompletableFuture<Duration>();
+        }
+
+        private void succeed() {
+
+            closeChannel();
+            result.complete(Duration.elapsedNano(start_time));
+        }
+
+        private void fail(final Throwable error) {
+
+            closeChannel();
+            result.completeExceptionally(error);
+        }
+
+        private void closeChannel() {
+
+            if (channel != null) {
+                try {
+                    channel.close();
+                }
+                catch (final IOException e) {
+                    LOGGER.trace("failed to close probe channel", e);
+                }
+            }
+        }
+
+        @Override
+        public int compareTo(final Probe other) {
+
+            return Long.signum(deadline - other.deadline);
+        }
+    }
+
+    private static final class SharedInstanceHolder {
+
+        private static final ReachabilityProber INSTANCE = createSharedInstance();
+
+        private static ReachabilityProber createSharedInstance() {
+
+            try {
+                return new ReachabilityProber();
+            }
+            catch (final IOException e) {
+                throw new IllegalStateException("failed to open the selector of the shared reachability prober", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2013 University of St Andrews School of Computer Science
+ *
+ * This file is part of Shabdiz.
+ *
+ * Shabdiz is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Shabdiz is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Shabdiz.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.standrews.cs.shabdiz.util;
+
+import java.util.concurrent.Semaphore;
+
+/**
+ * A fair {@link Semaphore} of which the number of permits can be changed while permits are held.
+ * Permits that are held at the time of a {@link #resize(int) resize} are released back to the same semaphore, and count against the new size.
+ * Therefore, if more permits are held than the new size allows, the available permits go negative until enough of them are released.
+ *
+ * @author Masih Hajiarabderkani (mh638@st-andrews.ac.uk)
+ */
+public final class ResizableSemaphore extends Semaphore {
+
+    private static final long serialVersionUID = 1L;
+    private int size;
+
+    /**
+     * Instantiates a new fair semaphore with the given number of permits.
+     *
+     * @param size the number of permits
+     */
+    public ResizableSemaphore(final int size) {
+
+        super(size, true);
+        this.size = size;
+    }
+
+    /**
+     * Changes the number of permits of this semaphore to the given {@code new_size}.
+     *
+     * @param new_size the new number of permits
+     */
+    public synchronized void resize(final int new_size) {
+
+        final int delta = new_size - size;
+        if (delta > 0) {
+            release(delta);
+        }
+        else if (delta < 0) {
+            reducePermits(-delta);
+        }
+        size = new_size;
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2013 University of St Andrews School of Computer Science
+ *
+ * This file is part of Shabdiz.
+ *
+ * Shabdiz is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Shabdiz is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Shabdiz.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.ac.standrews.cs.shabdiz.util;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the rate at which operations are performed using a token bucket.
+ * Tokens are added to the bucket at a fixed rate, up to the capacity of the bucket; each operation {@link #acquire() takes} one token.
+ * The capacity bounds the number of operations that may be performed in a burst after the bucket has been idle.
+ * When the bucket is empty, tokens are reserved in the order in which they are requested, and each requester waits until its reserved token is due.
+ * This class is thread-safe.
+ *
+ * @author Masih Hajiarabderkani (mh638@st-andrews.ac.uk)
+ */
+public final class TokenBucket {
+
+    /** The rate that indicates the number of tokens is unlimited. */
+    public static final double UNLIMITED = Double.POSITIVE_INFINITY;
+    private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+    private double tokens_per_second;
+    private int capacity;
+    private double tokens;
+    private long last_refill_time;
+
+    /**
+     * Instantiates a new token bucket that is initially full.
+     *
+     * @param tokens_per_second the rate at which tokens are added to the bucket, or {@link #UNLIMITED}
+     * @param capacity the maximum number of tokens that may be held by the bucket
+     * @throws IllegalArgumentException if the given rate is not positive or the given capacity is less than {@code 1}
+     */
+    public TokenBucket(final double tokens_per_second, final int capacity) {
+
+        setRate(tokens_per_second, capacity);
+    }
+
+    /**
+     * Takes a token from this bucket, blocking until one is available.
+     * If interrupted while waiting, the reserved token is returned to the bucket.
+     *
+     * @throws InterruptedException if interrupted while waiting for a token
+     */
+    public void acquire() throws InterruptedException {
+
+        final long wait_nanos = reserve();
+        if (wait_nanos > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(wait_nanos);
+            }
+            catch (final InterruptedException e) {
+                refund();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Takes a token from this bucket if one is available, without blocking.
+     * Unlike {@link #acquire()}, no token is reserved if none is available.
+     *
+     * @return {@code 0} if a token was taken, otherwise the number of nanoseconds until a token is available
+     */
+    public synchronized long tryAcquire() {
+
+        if (tokens_per_second == UNLIMITED) { return 0; }
+
+        refill(System.nanoTime());
+        if (tokens >= 1) {
+            tokens -= 1;
+            return 0;
+        }
+        return Math.max(1, (long) Math.ceil((1 - tokens) / tokens_per_second * NANOS_PER_SECOND));
+    }
+
+    /**
+     * Sets the rate at which tokens are added to this bucket and its capacity, and fills the bucket.
+     *
+     * @param tokens_per_second the rate at which tokens are added to the bucket, or {@link #UNLIMITED}
+     * @param capacity the maximum number of tokens that may be held by the bucket
+     * @throws IllegalArgumentException if the given rate is not positive or the given capacity is less than {@code 1}
+     */
+    public synchronized void setRate(final double tokens_per_second, final int capacity) {
+
+        if (!(tokens_per_second > 0)) { throw new IllegalArgumentException("rate must be positive"); }
+        if (capacity < 1) { throw new IllegalArgumentException("capacity must be at least 1"); }
+
+        this.tokens_per_second = tokens_per_second;
+        this.capacity = capacity;
+        tokens = capacity;
+        last_refill_time = System.nanoTime();
+    }
+
+    /**
+     * Gets the rate at which tokens are added to this bucket.
+     *
+     * @return the rate at which tokens are added to this bucket, or {@link #UNLIMITED}
+     */
+    public synchronized double getRate() {
+
+        return tokens_per_second;
+    }
+
+    /**
+     * Gets the maximum number of tokens that may be held by this bucket.
+     *
+     * @return the maximum number of tokens that may be held by this bucket
+     */
+    public synchronized int getCapacity() {
+
+        return capacity;
+    }
+
+    /**
+     * Reserves a token and returns the time to wait until the reserved token is due.
+     * The number of tokens may become negative, which indicates the tokens that are reserved by the callers that are yet to be due.
+     *
+     * @return the number of nanoseconds to wait until the reserved token is due
+     */
+    synchronized long reserve() {
+
+        if (tokens_per_second == UNLIMITED) { return 0; }
+
+        refill(System.nanoTime());
+        tokens -= 1;
+        return tokens >= 0 ? 0 : (long) Math.ceil(-tokens / tokens_per_second * NANOS_PER_SECOND);
+    }
+
+    private synchronized void refund() {
+
+        tokens = Math.min(capacity, tokens + 1);
+    }
+
+    private void refill(final long now) {
+
+        final long elapsed = now - last_refill_time;
+        if (elapsed > 0) {
+            tokens = Math.min(capacity, tokens + elapsed * tokens_per_second / NANOS_PER_SECOND);
+            last_refill_time = now;
+        }
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2013 University of St Andrews School of Computer Science
+ *
+ * This file is part of Shabdiz.
+ *
+ * Shabdiz is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Shabdiz is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Shabdiz.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.standrews.cs.shabdiz.util;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A utility class for creating virtual threads when supported by the current JVM.
+ * Virtual threads are accessed reflectively, so that this class can be compiled and loaded on JVMs that do not support them.
+ *
+ * @author Masih Hajiarabderkani (mh638@st-andrews.ac.uk)
+ */
+public final class VirtualThreadUtil {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(VirtualThreadUtil.class);
+    private static final ThreadFactory VIRTUAL_THREAD_FACTORY = createVirtualThreadFactory();
+
+    private VirtualThreadUtil() {
+
+    }
+
+    /**
+     * Checks whether the current JVM supports virtual threads.
+     *
+     * @return {@code true} if the current JVM supports virtual threads
+     */
+    public static boolean isSupported() {
+
+        return VIRTUAL_THREAD_FACTORY != null;
+    }
+
+    /**
+     * Creates a new factory of virtual threads, which are named using the given {@code name_format}.
+     *
+     * @param name_format the format of thread names, which is given the sequence number of each thread
+     * @return a new factory of virtual threads
+     * @throws UnsupportedOperationException if the current JVM does not support virtual threads
+     * @see FormattedNameThreadFactory
+     */
+    public static ThreadFactory newThreadFactory(final String name_format) {
+
+        if (!isSupported()) { throw new UnsupportedOperationException("virtual threads are not supported by the current JVM"); }
+        return new FormattedNameThreadFactory(name_format, VIRTUAL_THREAD_FACTORY);
+    }
+
+    /**
+     * Creates a new executor service that starts a new virtual thread for each task.
+     *
+     * @param name_format the format of thread names, which is given the sequence number of each thread
+     * @return a new executor service that starts a new virtual thread for each task
+     * @throws UnsupportedOperationException if the current JVM does not support virtual threads
+     */
+    public static ExecutorService newThreadPerTaskExecutor(final String name_format) {
+
+        final ThreadFactory thread_factory = newThreadFactory(name_format);
+        try {
+            final Method new_thread_per_task_executor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+            return (ExecutorService) new_thread_per_task_executor.invoke(null, thread_factory);
+        }
+        catch (final NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+            LOGGER.debug("thread-per-task executor is not available; using a non-pooling executor instead", e);
+            return new ThreadPoolExecutor(0, Integer.MAX_VALUE, 0, TimeUnit.NANOSECONDS, new SynchronousQueue<>(), thread_factory);
+        }
+    }
+
+    /**
+     * Creates a new executor service that starts a new virtual thread for each task, and runs at most the given number of tasks concurrently.
+     * Tasks that exceed the limit wait for their turn on their own virtual thread, in the order in which they were submitted, rather than in a queue of a pool of threads.
+     *
+     * @param name_format the format of thread names, which is given the sequence number of each thread
+     * @param max_concurrency the maximum number of tasks that run concurrently
+     * @return a new executor service that starts a new virtual thread for each task and bounds the number of concurrently running tasks
+     * @throws UnsupportedOperationException if the current JVM does not support virtual threads
+     * @throws IllegalArgumentException if the given limit is less than {@code 1}
+     */
+    public static ExecutorService newBoundedThreadPerTaskExecutor(final String name_format, final int max_concurrency) {
+
+        if (max_concurrency < 1) { throw new IllegalArgumentException("maximum concurrency must be at least 1"); }
+        return new BoundedExecutorService(newThreadPerTaskExecutor(name_format), max_concurrency);
+    }
+
+    private static ThreadFactory createVirtualThreadFactory() {
+
+        try {
+            final Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            final Method factory = Class.forName("java.lang.Thread$Builder").getMethod("factory");
+            return (ThreadFactory) factory.invoke(builder);
+        }
+        catch (final ReflectiveOperationException | RuntimeException e) {
+            LOGGER.debug("virtual threads are not supported by the current JVM", e);
+            return null;
+        }
+    }
+
+    private static final class BoundedExecutorService extends AbstractExecutorService {
+
+        private final ExecutorService executor;
+        private final Semaphore permits;
+
+        private BoundedExecutorService(final ExecutorService executor, final int max_concurrency) {
+
+            this.executor = executor;
+            permits = new Semaphore(max_concurrency, true);
+        }
+
+        @Override
+        public void execute(final Runnable task) {
+
+            executor.execute(() -> {
+                try {
+                    permits.acquire();
+                }
+                catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                try {
+                    task.run();
+                }
+                finally {
+                    permits.release();
+                }
+            });
+        }
+
+        @Override
+        public void shutdown() {
+
+            executor.shutdown();
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+
+            return executor.shutdownNow();
+        }
+
+        @Override
+        public boolean isShutdown() {
+
+            return executor.isShutdown();
+        }
+
+        @Override
+        public boolean isTerminated() {
+
+            return executor.isTerminated();
+        }
+
+        @Override
+        public boolean awaitTermination(final long timeout, final TimeUnit unit) throws InterruptedException {
+
+            return executor.awaitTermination(timeout, unit);
+        }
+    }
+}
@@ -18,7 +18,10 @@
  */
 package uk.ac.standrews.cs.shabdiz;
 
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CountDownLatch;
@@ -87,6 +90,31 @@ public class ApplicationDescriptorTest {
         Assert.assertNull(descriptor.getAttribute(key));
     }
 
+    /** Tests {@link ApplicationDescriptor#setAttribute(AttributeKey, Object)} with multiple keys, including removal and replacement of a key among others. */
+    @Test
+    public void testMultipleAttributes() {
+
+        final AttributeKey<String> first = new AttributeKey<String>();
+        final AttributeKey<Integer> second = new AttributeKey<Integer>();
+        final AttributeKey<Boolean> third = new AttributeKey<Boolean>();
+        final ApplicationDescriptor descriptor = newApplicationDescriptor();
+        Assert.assertNull(descriptor.setAttribute(second, null));
+        Assert.assertNull(descriptor.setAttribute(first, "first"));
+        Assert.assertNull(descriptor.setAttribute(second, 2));
+        Assert.assertNull(descriptor.setAttribute(third, true));
+        Assert.assertEquals(Integer.valueOf(2), descriptor.setAttribute(second, 22));
+        Assert.assertEquals(Integer.valueOf(22), descriptor.getAttribute(second));
+
+        Assert.assertEquals(Integer.valueOf(22), descriptor.setAttribute(second, null));
+        Assert.assertNull(descriptor.getAttribute(second));
+        Assert.assertEquals("first", descriptor.getAttribute(first));
+        Assert.assertEquals(Boolean.TRUE, descriptor.getAttribute(third));
+
+        Assert.assertEquals("first", descriptor.setAttribute(first, null));
+        Assert.assertEquals(Boolean.TRUE, descriptor.setAttribute(third, null));
+        Assert.assertNull(descriptor.getAttribute(third));
+    }
+
     /**
      * Tests {@link ApplicationDescriptor#awaitAnyOfStates(ApplicationState...)} for when many concurrent state changes occur.
      *
@@ -176,4 +204,50 @@ public class ApplicationDescriptorTest {
         Assert.assertEquals(local_host, descriptor.getHost());
 
     }
+
+    /** Tests {@link ApplicationDescriptor#addStateTransitionListener(StateTransitionListener)} and {@link ApplicationDescriptor#removeStateTransitionListener(StateTransitionListener)}. */
+    @Test
+    public void testStateTransitionListener() {
+
+        final ApplicationDescriptor descriptor = newApplicationDescriptor();
+        final List<ApplicationState> transitions = new ArrayList<ApplicationState>();
+        final StateTransitionListener listener = (source, old_state, new_state) -> {
+            Assert.assertSame(descriptor, source);
+            transitions.add(old_state);
+            transitions.add(new_state);
+        };
+
+        descriptor.addStateTransitionListener(listener);
+        descriptor.addStateTransitionListener(null);
+        descriptor.setApplicationState(ApplicationState.AUTH);
+        descriptor.setApplicationState(ApplicationState.AUTH);
+        Assert.assertFalse(descriptor.compareAndSetApplicationState(ApplicationState.RUNNING, ApplicationState.KILLED));
+        Assert.assertTrue(descriptor.compareAndSetApplicationState(ApplicationState.AUTH, ApplicationState.RUNNING));
+        Assert.assertEquals(Arrays.asList(ApplicationState.UNKNOWN, ApplicationState.AUTH, ApplicationState.AUTH, ApplicationState.RUNNING), transitions);
+
+        descriptor.removeStateTransitionListener(listener);
+        descriptor.removeStateTransitionListener(listener);
+        descriptor.setApplicationState(ApplicationState.KILLED);
+        Assert.assertEquals(4, transitions.size());
+    }
+
+    /** Tests {@link ApplicationDescriptor#addStateChangeListener(PropertyChangeListener)} and {@link ApplicationDescriptor#removeStateChangeListener(PropertyChangeListener)}. */
+    @Test
+    public void testStateChangeListener() {
+
+        final ApplicationDescriptor descriptor = newApplicationDescriptor();
+        final List<PropertyChangeEvent> events = new ArrayList<PropertyChangeEvent>();
+        final PropertyChangeListener listener = events::add;
+
+        descriptor.addStateChangeListener(listener);
+        descriptor.setApplicationState(ApplicationState.DEPLOYED);
+        Assert.assertEquals(1, events.size());
+        Assert.assertSame(descriptor, events.get(0).getSource());
+        Assert.assertEquals(ApplicationState.UNKNOWN, events.get(0).getOldValue());
+        Assert.assertEquals(ApplicationState.DEPLOYED, events.get(0).getNewValue());
+
+        descriptor.removeStateChangeListener(listener);
+        descriptor.setApplicationState(ApplicationState.KILLED);
+        Assert.assertEquals(1, events.size());
+    }
 }
@@ -1,23 +1,37 @@
 package uk.ac.standrews.cs.shabdiz;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import uk.ac.standrews.cs.shabdiz.host.Host;
 import uk.ac.standrews.cs.shabdiz.host.LocalHost;
 import uk.ac.standrews.cs.shabdiz.util.Duration;
+import uk.ac.standrews.cs.shabdiz.util.VirtualThreadUtil;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * Tests {@link ApplicationNetwork}.
@@ -172,6 +186,293 @@ public class ApplicationNetworkTest {
         mock_network.awaitAnyOfStates(target_state);
     }
 
+    @Test(timeout = AWAIT_STATE_TEST_TIMEOUT)
+    public void testAwaitAnyOfStatesAsync() throws Exception {
+
+        mock_network.setStatusScannerEnabled(false);
+        for (final ApplicationDescriptor descriptor : mock_network) {
+            descriptor.setApplicationState(ApplicationState.UNKNOWN);
+        }
+        final CompletableFuture<Void> awaiting_running = mock_network.awaitAnyOfStatesAsync(ApplicationState.RUNNING, ApplicationState.DEPLOYED);
+        final ApplicationDescriptor straggler = mock_network.first();
+        for (final ApplicationDescriptor descriptor : mock_network) {
+            if (!descriptor.equals(straggler)) {
+                descriptor.setApplicationState(ApplicationState.RUNNING);
+                descriptor.setApplicationState(ApplicationState.AUTH);
+            }
+        }
+        assertFalse(awaiting_running.isDone());
+        straggler.setApplicationState(ApplicationState.DEPLOYED);
+        awaiting_running.get();
+
+        final CompletableFuture<Void> awaiting_killed = mock_network.awaitAnyOfStatesAsync(new Duration(100, TimeUnit.MILLISECONDS), ApplicationState.KILLED);
+        try {
+            awaiting_killed.get();
+            fail("expected timeout");
+        }
+        catch (final ExecutionException e) {
+            assertTrue(e.getCause() instanceof TimeoutException);
+        }
+        mock_network.awaitAnyOfStatesAsync(new Duration(100, TimeUnit.MILLISECONDS), ApplicationState.AUTH, ApplicationState.DEPLOYED).get();
+    }
+
+    @Test
+    public void testApplicationDescriptorsSnapshot() throws Exception {
+
+        final List<ApplicationDescriptor> snapshot = mock_network.getApplicationDescriptorsSnapshot();
+        assertEquals(TEST_NETWORK_SIZE, snapshot.size());
+        assertSame(snapshot, mock_network.getApplicationDescriptorsSnapshot());
+        assertEquals(new ArrayList<ApplicationDescriptor>(mock_network.application_descriptors), snapshot);
+
+        final ApplicationDescriptor added = mock_network.createApplicationDescriptor();
+        assertTrue(mock_network.add(added));
+        final List<ApplicationDescriptor> modified_snapshot = mock_network.getApplicationDescriptorsSnapshot();
+        assertNotSame(snapshot, modified_snapshot);
+        assertEquals(TEST_NETWORK_SIZE, snapshot.size());
+        assertEquals(TEST_NETWORK_SIZE + 1, modified_snapshot.size());
+        assertTrue(modified_snapshot.contains(added));
+
+        assertTrue(mock_network.remove(added));
+        assertFalse(mock_network.getApplicationDescriptorsSnapshot().contains(added));
+        assertTrue(modified_snapshot.contains(added));
+        try {
+            modified_snapshot.remove(added);
+            fail("expected snapshot to be immutable");
+        }
+        catch (final UnsupportedOperationException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testGetApplicationDescriptors() throws Exception {
+
+        final Set<ApplicationDescriptor> descriptors = mock_network.getApplicationDescriptors();
+        assertTrue(descriptors instanceof CopyOnWriteArraySet);
+        assertEquals(TEST_NETWORK_SIZE, descriptors.size());
+
+        final ApplicationDescriptor first = mock_network.first();
+        assertTrue(descriptors.remove(first));
+        assertTrue(mock_network.contains(first));
+        assertEquals(TEST_NETWORK_SIZE, mock_network.size());
+    }
+
+    @Test
+    public void testIteratorRemove() throws Exception {
+
+        final ApplicationDescriptor first = mock_network.first();
+        final Iterator<ApplicationDescriptor> iterator = mock_network.iterator();
+        try {
+            iterator.remove();
+            fail("expected remove to fail before next is called");
+        }
+        catch (final IllegalStateException e) {
+            // expected
+        }
+
+        assertSame(first, iterator.next());
+        iterator.remove();
+        assertFalse(mock_network.contains(first));
+        assertFalse(mock_network.getApplicationDescriptorsInState(first.getApplicationState()).contains(first));
+        assertEquals(TEST_NETWORK_SIZE - 1, mock_network.size());
+
+        int remaining = 0;
+        while (iterator.hasNext()) {
+            iterator.next();
+            remaining++;
+        }
+        assertEquals(TEST_NETWORK_SIZE - 1, remaining);
+    }
+
+    @Test
+    public void testBulkModifications() throws Exception {
+
+        final List<ApplicationDescriptor> snapshot = mock_network.getApplicationDescriptorsSnapshot();
+        final List<ApplicationDescriptor> added = new ArrayList<ApplicationDescriptor>();
+        for (int i = 0; i < TEST_NETWORK_SIZE; i++) {
+            added.add(mock_network.createApplicationDescriptor());
+        }
+        added.add(snapshot.get(0));
+        assertTrue(mock_network.addAll(added));
+        assertFalse(mock_network.addAll(added));
+        assertEquals(TEST_NETWORK_SIZE * 2, mock_network.size());
+        assertEquals(TEST_NETWORK_SIZE * 2, mock_network.getApplicationDescriptorsSnapshot().size());
+        assertEquals(TEST_NETWORK_SIZE * 2, mock_network.getApplicationDescriptorsInAnyOfStates(ApplicationState.values()).size());
+
+        assertTrue(mock_network.removeAll(snapshot));
+        assertFalse(mock_network.removeAll(snapshot));
+        assertEquals(TEST_NETWORK_SIZE, mock_network.getApplicationDescriptorsSnapshot().size());
+
+        final ApplicationDescriptor existing = added.get(0);
+        final ApplicationDescriptor replacement = mock_network.createApplicationDescriptor();
+        assertTrue(mock_network.replace(existing, replacement));
+        assertFalse(mock_network.replace(existing, replacement));
+        assertFalse(mock_network.contains(existing));
+        assertTrue(mock_network.getApplicationDescriptorsSnapshot().contains(replacement));
+        assertEquals(TEST_NETWORK_SIZE, mock_network.size());
+
+        assertTrue(mock_network.removeIf(descriptor -> !descriptor.equals(replacement)));
+        assertFalse(mock_network.removeIf(descriptor -> !descriptor.equals(replacement)));
+        assertEquals(Collections.singletonList(replacement), mock_network.getApplicationDescriptorsSnapshot());
+    }
+
+    @Test(timeout = AWAIT_STATE_TEST_TIMEOUT)
+    public void testRemovalWaitsForAdditionCallbacks() throws Exception {
+
+        final ApplicationDescriptor descriptor = mock_network.createApplicationDescriptor();
+        final CountDownLatch registering_latch = new CountDownLatch(1);
+        final CountDownLatch release_latch = new CountDownLatch(1);
+        final Set<ApplicationDescriptor> registered = ConcurrentHashMap.newKeySet();
+        final HeartbeatReceiver receiver = new HeartbeatReceiver() {
+
+            @Override
+            public void register(final ApplicationDescriptor registering) {
+
+                if (registering == descriptor) {
+                    registering_latch.countDown();
+                    awaitUninterruptibly(release_latch);
+                }
+                registered.add(registering);
+                super.register(registering);
+            }
+
+            @Override
+            public void unregister(final ApplicationDescriptor unregistering) {
+
+                registered.remove(unregistering);
+                super.unregister(unregistering);
+            }
+        };
+
+        try {
+            mock_network.setHeartbeatReceiver(receiver);
+            final CompletableFuture<Boolean> addition = CompletableFuture.supplyAsync(() -> mock_network.add(descriptor));
+            registering_latch.await();
+            final CompletableFuture<Boolean> removal = CompletableFuture.supplyAsync(() -> mock_network.remove(descriptor));
+            try {
+                removal.get(100, TimeUnit.MILLISECONDS);
+                fail("expected the removal to wait for the callbacks of the addition");
+            }
+            catch (final TimeoutException e) {
+                // expected
+            }
+
+            release_latch.countDown();
+            assertTrue(addition.get());
+            assertTrue(removal.get());
+            assertFalse(mock_network.contains(descriptor));
+            assertFalse(registered.contains(descriptor));
+            assertFalse(mock_network.getApplicationDescriptorsInAnyOfStates(ApplicationState.values()).contains(descriptor));
+        }
+        finally {
+            release_latch.countDown();
+            mock_network.setHeartbeatReceiver(null);
+            receiver.close();
+        }
+    }
+
+    private static void awaitUninterruptibly(final CountDownLatch latch) {
+
+        try {
+            latch.await();
+        }
+        catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Test(timeout = AWAIT_STATE_TEST_TIMEOUT)
+    public void testSingleFlightDeployment() throws Exception {
+
+        final CountDownLatch release_latch = new CountDownLatch(1);
+        final AtomicInteger deployment_count = new AtomicInteger();
+        final ApplicationDescriptor descriptor = new ApplicationDescriptor(new MockApplicationManager() {
+
+            @Override
+            public Object deploy(final ApplicationDescriptor descriptor) throws Exception {
+
+                deployment_count.incrementAndGet();
+                release_latch.await();
+                return super.deploy(descriptor);
+            }
+        });
+
+        final CompletableFuture<Void> first = CompletableFuture.runAsync(() -> deployQuietly(descriptor));
+        while (!mock_network.isOperationInFlight(descriptor)) {
+            Thread.sleep(10);
+        }
+        final CompletableFuture<Void> second = mock_network.deployAsync(descriptor);
+        assertFalse(second.isDone());
+
+        release_latch.countDown();
+        first.get();
+        second.get();
+        assertEquals(1, deployment_count.get());
+        assertFalse(mock_network.isOperationInFlight(descriptor));
+        assertEquals(ApplicationState.DEPLOYED, descriptor.getApplicationState());
+
+        mock_network.deploy(descriptor);
+        assertEquals(2, deployment_count.get());
+    }
+
+    @Test(timeout = AWAIT_STATE_TEST_TIMEOUT)
+    public void testQueuedKillRunsOnNetworkExecutor() throws Exception {
+
+        final String deployer_thread_name = "test_deployer";
+        final CountDownLatch release_latch = new CountDownLatch(1);
+        final CompletableFuture<String> kill_thread_name = new CompletableFuture<>();
+        final ApplicationDescriptor descriptor = new ApplicationDescriptor(new MockApplicationManager() {
+
+            @Override
+            public Object deploy(final ApplicationDescriptor descriptor) throws Exception {
+
+                release_latch.await();
+                return super.deploy(descriptor);
+            }
+
+            @Override
+            public void kill(final ApplicationDescriptor descriptor) throws Exception {
+
+                kill_thread_name.complete(Thread.currentThread().getName());
+                super.kill(descriptor);
+            }
+        });
+
+        final Thread deployer = new Thread(() -> deployQuietly(descriptor), deployer_thread_name);
+        deployer.start();
+        while (!mock_network.isOperationInFlight(descriptor)) {
+            Thread.sleep(10);
+        }
+
+        final CompletableFuture<Void> kill = CompletableFuture.runAsync(() -> {
+            try {
+                mock_network.kill(descriptor);
+            }
+            catch (final Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        Thread.sleep(100);
+        assertFalse(kill_thread_name.isDone());
+
+        release_latch.countDown();
+        deployer.join();
+        kill.get();
+        assertEquals(ApplicationState.KILLED, descriptor.getApplicationState());
+        assertNotEquals(deployer_thread_name, kill_thread_name.get());
+        assertTrue(kill_thread_name.get().startsWith(MockApplicationNetwork.NAME + "_network_executor_service_"));
+    }
+
+    private void deployQuietly(final ApplicationDescriptor descriptor) {
+
+        try {
+            mock_network.deploy(descriptor);
+        }
+        catch (final Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     @Test
     public void testAddScanner() throws Exception {
 
@@ -322,6 +623,63 @@ public class ApplicationNetworkTest {
         mock_network.assertAllKilled();
     }
 
+    @Test
+    public void testStateIndex() throws Exception {
+
+        mock_network.setStatusScannerEnabled(false);
+        for (final ApplicationDescriptor descriptor : mock_network) {
+            descriptor.setApplicationState(ApplicationState.AUTH);
+        }
+        assertEquals(TEST_NETWORK_SIZE, mock_network.countInState(ApplicationState.AUTH));
+        assertEquals(0, mock_network.countInState(ApplicationState.RUNNING));
+
+        final ApplicationDescriptor running = mock_network.first();
+        running.setApplicationState(ApplicationState.RUNNING);
+        assertEquals(TEST_NETWORK_SIZE - 1, mock_network.countInState(ApplicationState.AUTH));
+        assertEquals(1, mock_network.countInState(ApplicationState.RUNNING));
+        assertTrue(mock_network.getApplicationDescriptorsInState(ApplicationState.RUNNING).contains(running));
+        assertEquals(TEST_NETWORK_SIZE, mock_network.getApplicationDescriptorsInAnyOfStates(ApplicationState.AUTH, ApplicationState.RUNNING, ApplicationState.AUTH).size());
+
+        assertTrue(mock_network.remove(running));
+        assertEquals(0, mock_network.countInState(ApplicationState.RUNNING));
+        running.setApplicationState(ApplicationState.AUTH);
+        assertEquals(TEST_NETWORK_SIZE - 1, mock_network.countInState(ApplicationState.AUTH));
+
+        final ApplicationDescriptor added = mock_network.createApplicationDescriptor();
+        added.setApplicationState(ApplicationState.DEPLOYED);
+        assertTrue(mock_network.add(added));
+        assertEquals(1, mock_network.countInState(ApplicationState.DEPLOYED));
+        assertTrue(mock_network.getApplicationDescriptorsInAnyOfStates().isEmpty());
+    }
+
+    @Test
+    public void testVirtualThreads() throws Exception {
+
+        final ApplicationNetwork network = new ApplicationNetwork(MockApplicationNetwork.NAME, new Duration(1, TimeUnit.SECONDS), new Duration(10, TimeUnit.SECONDS), 1, Integer.MAX_VALUE, true);
+        try {
+            assertEquals(VirtualThreadUtil.isSupported(), network.isVirtualThreadsEnabled());
+            network.setMaxConcurrentOperationsPerHost(1);
+            assertEquals(1, network.getMaxConcurrentOperationsPerHost());
+
+            final Host local_host = new LocalHost();
+            for (int i = 0; i < TEST_NETWORK_SIZE; i++) {
+                network.add(new ApplicationDescriptor(local_host, mock_network.manager));
+            }
+
+            network.deployAll();
+            for (final ApplicationDescriptor descriptor : network) {
+                mock_network.manager.assertDeployed(descriptor);
+            }
+            network.killAll();
+            for (final ApplicationDescriptor descriptor : network) {
+                mock_network.manager.assertKilled(descriptor);
+            }
+        }
+        finally {
+            network.shutdown();
+        }
+    }
+
     private static class TestScanner extends Scanner {
 
         private static final Duration CYCLE_DELAY = new Duration(1, TimeUnit.SECONDS);
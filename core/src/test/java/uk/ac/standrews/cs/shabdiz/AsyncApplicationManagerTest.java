@@ -0,0 +1,185 @@
+package uk.ac.standrews.cs.shabdiz;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import uk.ac.standrews.cs.shabdiz.host.Host;
+import uk.ac.standrews.cs.shabdiz.host.LocalHost;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests {@link AsyncApplicationManager}, {@link AbstractAsyncApplicationManager} and {@link AsyncApplicationManagerAdapter}.
+ *
+ * @author Masih Hajiarabderkani (mh638@st-andrews.ac.uk)
+ */
+public class AsyncApplicationManagerTest {
+
+    private static final int TEST_NETWORK_SIZE = 10;
+    private static final long OPERATION_DELAY_MILLIS = 50;
+    private static final int AWAIT_STATE_TEST_TIMEOUT = 10000;
+    private static final Object APPLICATION_REFERENCE = new Object();
+    private static final String DEPLOYMENT_FAILURE = "deployment failure";
+    private ScheduledExecutorService completer;
+    private MockAsyncApplicationManager manager;
+    private ApplicationNetwork network;
+
+    @Before
+    public void setUp() throws Exception {
+
+        completer = Executors.newSingleThreadScheduledExecutor();
+        manager = new MockAsyncApplicationManager();
+        network = new ApplicationNetwork(MockApplicationNetwork.NAME);
+        for (int i = 0; i < TEST_NETWORK_SIZE; i++) {
+            network.add(new ApplicationDescriptor(manager));
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception {
+
+        network.shutdown();
+        completer.shutdownNow();
+    }
+
+    @Test(timeout = AWAIT_STATE_TEST_TIMEOUT)
+    public void testAsyncStatusScan() throws Exception {
+
+        manager.probe_state_result = ApplicationState.RUNNING;
+        network.awaitAnyOfStates(ApplicationState.RUNNING);
+        assertTrue(manager.probe_count.get() >= TEST_NETWORK_SIZE);
+        assertEquals(0, manager.sync_call_count.get());
+    }
+
+    @Test(timeout = AWAIT_STATE_TEST_TIMEOUT)
+    public void testAsyncStatusScanWithLimitedConcurrencyPerHost() throws Exception {
+
+        final int max_concurrency_per_host = 2;
+        network.shutdown();
+        network = new ApplicationNetwork(MockApplicationNetwork.NAME);
+        network.setMaxConcurrentOperationsPerHost(max_concurrency_per_host);
+        final Host host = new LocalHost();
+        for (int i = 0; i < TEST_NETWORK_SIZE; i++) {
+            network.add(new ApplicationDescriptor(host, manager));
+        }
+
+        manager.probe_state_result = ApplicationState.RUNNING;
+        network.awaitAnyOfStates(ApplicationState.RUNNING);
+        assertTrue(manager.probe_count.get() >= TEST_NETWORK_SIZE);
+        assertTrue(manager.max_concurrent_probes.get() <= max_concurrency_per_host);
+        assertEquals(0, manager.sync_call_count.get());
+    }
+
+    @Test(timeout = AWAIT_STATE_TEST_TIMEOUT)
+    public void testDeployAndKillAll() throws Exception {
+
+        network.setStatusScannerEnabled(false);
+        network.deployAll();
+        for (final ApplicationDescriptor descriptor : network) {
+            assertEquals(ApplicationState.DEPLOYED, descriptor.getApplicationState());
+            assertSame(APPLICATION_REFERENCE, descriptor.getApplicationReference());
+        }
+
+        network.killAll();
+        for (final ApplicationDescriptor descriptor : network) {
+            assertEquals(ApplicationState.KILLED, descriptor.getApplicationState());
+        }
+        assertEquals(0, manager.sync_call_count.get());
+    }
+
+    @Test(timeout = AWAIT_STATE_TEST_TIMEOUT)
+    public void testFailedAsyncDeployment() throws Exception {
+
+        network.setStatusScannerEnabled(false);
+        manager.fail_deployment = true;
+        final ApplicationDescriptor descriptor = network.first();
+        try {
+            network.deployAsync(descriptor).get();
+            fail("deployment is expected to fail");
+        }
+        catch (final ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+
+        try {
+            network.deploy(descriptor);
+            fail("deployment is expected to fail");
+        }
+        catch (final IllegalStateException e) {
+            assertEquals(DEPLOYMENT_FAILURE, e.getMessage());
+        }
+    }
+
+    @Test
+    public void testAdapter() throws Exception {
+
+        assertSame(manager, AsyncApplicationManagerAdapter.adapt(manager, completer));
+
+        final MockApplicationManager sync_manager = new MockApplicationManager();
+        sync_manager.setProbeStateResult(ApplicationState.AUTH);
+        final AsyncApplicationManager adapted = AsyncApplicationManagerAdapter.adapt(sync_manager, completer);
+        final ApplicationDescriptor descriptor = new ApplicationDescriptor(sync_manager);
+        assertEquals(ApplicationState.AUTH, adapted.probeStateAsync(descriptor).get());
+        adapted.killAsync(descriptor).get();
+        sync_manager.assertKilled(descriptor);
+    }
+
+    private class MockAsyncApplicationManager extends AbstractAsyncApplicationManager {
+
+        private final AtomicInteger probe_count = new AtomicInteger();
+        private final AtomicInteger sync_call_count = new AtomicInteger();
+        private final AtomicInteger concurrent_probes = new AtomicInteger();
+        private final AtomicInteger max_concurrent_probes = new AtomicInteger();
+        private volatile ApplicationState probe_state_result = ApplicationState.UNKNOWN;
+        private volatile boolean fail_deployment;
+
+        @Override
+        public CompletableFuture<ApplicationState> probeStateAsync(final ApplicationDescriptor descriptor) {
+
+            probe_count.incrementAndGet();
+            final int concurrency = concurrent_probes.incrementAndGet();
+            max_concurrent_probes.accumulateAndGet(concurrency, Math::max);
+            return completeLater(probe_state_result).whenComplete((state, error) -> concurrent_probes.decrementAndGet());
+        }
+
+        @Override
+        public CompletableFuture<Object> deployAsync(final ApplicationDescriptor descriptor) {
+
+            if (fail_deployment) {
+                final CompletableFuture<Object> failed = new CompletableFuture<Object>();
+                completer.schedule(() -> failed.completeExceptionally(new IllegalStateException(DEPLOYMENT_FAILURE)), OPERATION_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+                return failed;
+            }
+            return completeLater(APPLICATION_REFERENCE);
+        }
+
+        @Override
+        public CompletableFuture<Void> killAsync(final ApplicationDescriptor descriptor) {
+
+            return completeLater(null);
+        }
+
+        @Override
+        public ApplicationState probeState(final ApplicationDescriptor descriptor) {
+
+            sync_call_count.incrementAndGet();
+            return super.probeState(descriptor);
+        }
+
+        private <Result> CompletableFuture<Result> completeLater(final Result result) {
+
+            final CompletableFuture<Result> future = new CompletableFuture<Result>();
+            completer.schedule(() -> future.complete(result), OPERATION_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+            return future;
+        }
+    }
+}
@@ -1,16 +1,22 @@
 package uk.ac.standrews.cs.shabdiz;
 
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import org.junit.Assert;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import uk.ac.standrews.cs.shabdiz.util.Duration;
 import uk.ac.standrews.cs.shabdiz.util.TimeoutExecutorService;
 
 public class AutoDeployScannerTest extends ScannerFunctionalityTest {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(AutoDeployScannerTest.class);
+    private static final Duration SCANNER_DURATION = new Duration(1, TimeUnit.SECONDS);
 
     @Override
     public void setUp() throws Exception {
@@ -46,6 +52,93 @@ public class AutoDeployScannerTest extends ScannerFunctionalityTest {
         network.assertAllInState(ApplicationState.NO_AUTH);
     }
 
+    @Test
+    public void testWidenedDeployableStatesAreScanCandidates() throws Exception {
+
+        network.setScanEnabled(false);
+        final ApplicationDescriptor killed = network.first();
+        for (final ApplicationDescriptor descriptor : network) {
+            descriptor.setApplicationState(ApplicationState.AUTH);
+        }
+        killed.setApplicationState(ApplicationState.KILLED);
+
+        final AutoDeployScanner scanner = new AutoDeployScanner(SCANNER_DURATION, SCANNER_DURATION) {
+
+            @Override
+            protected Set<ApplicationState> getDeployableStates() {
+
+                return EnumSet.of(ApplicationState.AUTH, ApplicationState.KILLED);
+            }
+        };
+
+        final Set<ApplicationDescriptor> candidates = toSet(scanner.getScanCandidates(network));
+        Assert.assertTrue(candidates.contains(killed));
+        Assert.assertEquals(network.size(), candidates.size());
+        Assert.assertTrue(scanner.isDeployable(killed));
+    }
+
+    @Test
+    public void testNarrowedDeployableIsOfferedDeployableStatesOnly() throws Exception {
+
+        network.setScanEnabled(false);
+        final ApplicationDescriptor excluded = network.first();
+        for (final ApplicationDescriptor descriptor : network) {
+            descriptor.setApplicationState(ApplicationState.AUTH);
+        }
+        final ApplicationDescriptor killed = network.createApplicationDescriptor();
+        killed.setApplicationState(ApplicationState.KILLED);
+        network.add(killed);
+
+        final AutoDeployScanner scanner = new AutoDeployScanner(SCANNER_DURATION, SCANNER_DURATION) {
+
+            @Override
+            protected boolean isDeployable(final ApplicationDescriptor application_descriptor) {
+
+                return super.isDeployable(application_descriptor) && !application_descriptor.equals(excluded);
+            }
+        };
+
+        final Set<ApplicationDescriptor> candidates = toSet(scanner.getScanCandidates(network));
+        Assert.assertFalse(candidates.contains(killed));
+        Assert.assertEquals(network.size() - 1, candidates.size());
+        Assert.assertFalse(scanner.isDeployable(excluded));
+    }
+
+    @Test
+    public void testAdmissionIsNotAwaitedOnScannerThreads() throws Exception {
+
+        network.setScanEnabled(false);
+        for (final ApplicationDescriptor descriptor : network) {
+            descriptor.setApplicationState(ApplicationState.AUTH);
+        }
+
+        final DeploymentAdmissionController controller = network.getAutoDeployAdmissionController();
+        controller.setMaxInFlight(1);
+        final DeploymentAdmissionController.Permit held = controller.acquire(null);
+        try {
+            for (final ApplicationDescriptor descriptor : network) {
+                network.auto_deploy_scanner.scan(network, descriptor);
+                Assert.assertTrue(network.isOperationInFlight(descriptor));
+            }
+            network.assertAllNotDeployed();
+        }
+        finally {
+            held.close();
+        }
+
+        network.awaitAnyOfStates(ApplicationState.DEPLOYED);
+        network.assertAllDeployed();
+    }
+
+    private static Set<ApplicationDescriptor> toSet(final Iterable<ApplicationDescriptor> descriptors) {
+
+        final Set<ApplicationDescriptor> set = new HashSet<ApplicationDescriptor>();
+        for (final ApplicationDescriptor descriptor : descriptors) {
+            set.add(descriptor);
+        }
+        return set;
+    }
+
     private void assertAwaitDeployedStateTimeout() throws InterruptedException, ExecutionException {
 
         try {
@@ -0,0 +1,97 @@
+package uk.ac.standrews.cs.shabdiz;
+
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import uk.ac.standrews.cs.shabdiz.util.Duration;
+
+/**
+ * Tests {@link ConcurrentScanner}.
+ *
+ * @author Masih Hajiarabderkani (mh638@st-andrews.ac.uk)
+ */
+public class ConcurrentScannerTest {
+
+    private static final Duration SCAN_TIMEOUT = new Duration(2, TimeUnit.SECONDS);
+    private static final Duration SLOW_SCAN_THRESHOLD = new Duration(100, TimeUnit.MILLISECONDS);
+    private static final long SLOW_SCAN_DURATION_MILLIS = 500;
+    private MockApplicationNetwork network;
+    private ApplicationDescriptor stuck_descriptor;
+    private ApplicationDescriptor slow_descriptor;
+    private TestScanner scanner;
+
+    @Before
+    public void setUp() throws Exception {
+
+        network = new MockApplicationNetwork();
+        network.setStatusScannerEnabled(false);
+        network.populate();
+
+        final Iterator<ApplicationDescriptor> descriptors = network.iterator();
+        stuck_descriptor = descriptors.next();
+        slow_descriptor = descriptors.next();
+        scanner = new TestScanner();
+        scanner.setSlowScanThreshold(SLOW_SCAN_THRESHOLD);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+
+        network.shutdown();
+    }
+
+    @Test
+    public void testTimedOutAndSlowDescriptors() throws Exception {
+
+        scanner.scan(network);
+
+        Assert.assertEquals(1, scanner.getTimedOutDescriptors().size());
+        Assert.assertTrue(scanner.getTimedOutDescriptors().contains(stuck_descriptor));
+        Assert.assertEquals(1, scanner.getSlowDescriptors().size());
+        Assert.assertTrue(scanner.getSlowDescriptors().contains(slow_descriptor));
+        Assert.assertEquals(network.size() - 1, scanner.completed_scans.size());
+        Assert.assertFalse(scanner.completed_scans.contains(stuck_descriptor));
+        Assert.assertTrue(scanner.stuck_scan_interrupted.await(SCAN_TIMEOUT.getLength(), SCAN_TIMEOUT.getTimeUnit()));
+    }
+
+    @Test
+    public void testGetSlowScanThreshold() throws Exception {
+
+        Assert.assertEquals(SLOW_SCAN_THRESHOLD, scanner.getSlowScanThreshold());
+        Assert.assertEquals(SCAN_TIMEOUT.dividedBy(2), new TestScanner().getSlowScanThreshold());
+    }
+
+    private class TestScanner extends ConcurrentScanner {
+
+        private final Set<ApplicationDescriptor> completed_scans = ConcurrentHashMap.newKeySet();
+        private final CountDownLatch stuck_scan_interrupted = new CountDownLatch(1);
+
+        private TestScanner() {
+
+            super(SCAN_TIMEOUT, SCAN_TIMEOUT, true);
+        }
+
+        @Override
+        protected void scan(final ApplicationNetwork network, final ApplicationDescriptor descriptor) {
+
+            try {
+                if (descriptor.equals(stuck_descriptor)) {
+                    new CountDownLatch(1).await();
+                }
+                else if (descriptor.equals(slow_descriptor)) {
+                    Thread.sleep(SLOW_SCAN_DURATION_MILLIS);
+                }
+                completed_scans.add(descriptor);
+            }
+            catch (final InterruptedException e) {
+                stuck_scan_interrupted.countDown();
+            }
+        }
+    }
+}
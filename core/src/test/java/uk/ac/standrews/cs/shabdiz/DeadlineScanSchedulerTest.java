@@ -0,0 +1,227 @@
+package uk.ac.standrews.cs.shabdiz;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Assert;
+import org.junit.Test;
+import uk.ac.standrews.cs.shabdiz.util.Duration;
+
+/**
+ * Tests {@link DeadlineScanScheduler}.
+ *
+ * @author Masih Hajiarabderkani (mh638@st-andrews.ac.uk)
+ */
+public class DeadlineScanSchedulerTest extends ScannerFunctionalityTest {
+
+    @Override
+    public void setUp() throws Exception {
+
+        super.setUp();
+        network.setDeadlineSchedulingEnabled(true);
+    }
+
+    @Test
+    public void testStatusScan() throws Exception {
+
+        Assert.assertTrue(network.isDeadlineSchedulingEnabled());
+        network.manager.setProbeStateResult(ApplicationState.RUNNING);
+        network.awaitAnyOfStates(ApplicationState.RUNNING);
+        network.assertAllInState(ApplicationState.RUNNING);
+    }
+
+    @Test
+    public void testAutoDeploy() throws Exception {
+
+        network.setAutoDeployEnabled(true);
+        network.manager.setProbeStateResult(ApplicationState.AUTH);
+        network.awaitAnyOfStates(ApplicationState.DEPLOYED);
+        network.assertAllDeployed();
+    }
+
+    @Test
+    public void testScanOfAddedDescriptor() throws Exception {
+
+        network.manager.setProbeStateResult(ApplicationState.RUNNING);
+        network.awaitAnyOfStates(ApplicationState.RUNNING);
+
+        final ApplicationDescriptor descriptor = network.createApplicationDescriptor();
+        network.add(descriptor);
+        descriptor.awaitAnyOfStates(ApplicationState.RUNNING);
+    }
+
+    @Test
+    public void testSlowDescriptorDoesNotHoldUpOthers() throws Exception {
+
+        final CountDownLatch release_latch = new CountDownLatch(1);
+        final ApplicationDescriptor slow_descriptor = new ApplicationDescriptor(new MockApplicationManager() {
+
+            @Override
+            public ApplicationState probeState(final ApplicationDescriptor descriptor) {
+
+                try {
+                    release_latch.await();
+                }
+                catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return ApplicationState.UNKNOWN;
+            }
+        });
+
+        try {
+            network.add(slow_descriptor);
+            network.manager.setProbeStateResult(ApplicationState.RUNNING);
+            for (final ApplicationDescriptor descriptor : network) {
+                if (!descriptor.equals(slow_descriptor)) {
+                    descriptor.awaitAnyOfStates(ApplicationState.RUNNING);
+                }
+            }
+            Assert.assertEquals(ApplicationState.UNKNOWN, slow_descriptor.getApplicationState());
+        }
+        finally {
+            release_latch.countDown();
+        }
+    }
+
+    @Test
+    public void testOverdueScansDoNotOverlap() throws Exception {
+
+        final Map<ApplicationDescriptor, AtomicInteger> concurrent_scans = new ConcurrentHashMap<>();
+        final AtomicInteger max_concurrent_scans = new AtomicInteger();
+        final AtomicInteger completed_scans = new AtomicInteger();
+        final ConcurrentScanner uninterruptible_scanner = new ConcurrentScanner(new Duration(10, TimeUnit.MILLISECONDS), new Duration(50, TimeUnit.MILLISECONDS), true) {
+
+            @Override
+            protected void scan(final ApplicationNetwork network, final ApplicationDescriptor descriptor) {
+
+                final AtomicInteger concurrent_scans_of_descriptor = concurrent_scans.computeIfAbsent(descriptor, key -> new AtomicInteger());
+                max_concurrent_scans.accumulateAndGet(concurrent_scans_of_descriptor.incrementAndGet(), Math::max);
+                final long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(200);
+                while (System.nanoTime() < end) {
+                    try {
+                        Thread.sleep(10);
+                    }
+                    catch (final InterruptedException e) {
+                        // ignore interruption, as a blocking remote call would
+                    }
+                }
+                concurrent_scans_of_descriptor.decrementAndGet();
+                completed_scans.incrementAndGet();
+            }
+        };
+
+        network.addScanner(uninterruptible_scanner);
+        while (completed_scans.get() < network.size() * 3) {
+            Thread.sleep(10);
+        }
+        network.removeScanner(uninterruptible_scanner);
+        Assert.assertEquals(1, max_concurrent_scans.get());
+    }
+
+    @Test
+    public void testOverdueAsyncScansDoNotOverlap() throws Exception {
+
+        final ScheduledExecutorService completer = Executors.newSingleThreadScheduledExecutor();
+        final Map<ApplicationDescriptor, AtomicInteger> concurrent_probes = new ConcurrentHashMap<>();
+        final AtomicInteger max_concurrent_probes = new AtomicInteger();
+        final AtomicInteger completed_probes = new AtomicInteger();
+        final AsyncApplicationManager cancellation_ignoring_manager = new AbstractAsyncApplicationManager() {
+
+            @Override
+            public CompletableFuture<ApplicationState> probeStateAsync(final ApplicationDescriptor descriptor) {
+
+                final AtomicInteger concurrent_probes_of_descriptor = concurrent_probes.computeIfAbsent(descriptor, key -> new AtomicInteger());
+                max_concurrent_probes.accumulateAndGet(concurrent_probes_of_descriptor.incrementAndGet(), Math::max);
+                final CompletableFuture<ApplicationState> probe = new CompletableFuture<>();
+                // the probe carries on regardless of the cancellation of its future, as a remote call in progress would
+                completer.schedule(() -> {
+                    concurrent_probes_of_descriptor.decrementAndGet();
+                    completed_probes.incrementAndGet();
+                    probe.complete(ApplicationState.RUNNING);
+                }, 200, TimeUnit.MILLISECONDS);
+                return probe;
+            }
+
+            @Override
+            public CompletableFuture<Object> deployAsync(final ApplicationDescriptor descriptor) {
+
+                return CompletableFuture.completedFuture(null);
+            }
+
+            @Override
+            public CompletableFuture<Void> killAsync(final ApplicationDescriptor descriptor) {
+
+                return CompletableFuture.completedFuture(null);
+            }
+        };
+        final ConcurrentScanner async_scanner = new ConcurrentScanner(new Duration(10, TimeUnit.MILLISECONDS), new Duration(50, TimeUnit.MILLISECONDS), true) {
+
+            @Override
+            protected void scan(final ApplicationNetwork network, final ApplicationDescriptor descriptor) {
+
+                Assert.fail("expected asynchronous scans only");
+            }
+
+            @Override
+            protected boolean isScannedAsynchronously(final ApplicationNetwork network, final ApplicationDescriptor descriptor) {
+
+                return true;
+            }
+
+            @Override
+            protected CompletableFuture<Void> scanAsync(final ApplicationNetwork network, final ApplicationDescriptor descriptor) {
+
+                return cancellation_ignoring_manager.probeStateAsync(descriptor).thenAccept(state -> {
+                    // ignore the probed state
+                });
+            }
+        };
+
+        try {
+            network.addScanner(async_scanner);
+            while (completed_probes.get() < network.size() * 3) {
+                Thread.sleep(10);
+            }
+            network.removeScanner(async_scanner);
+            Assert.assertEquals(1, max_concurrent_probes.get());
+        }
+        finally {
+            completer.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testDisablingRemovesScheduler() throws Exception {
+
+        Assert.assertTrue(network.isDeadlineScheduled(network.status_scanner));
+        network.setStatusScannerEnabled(false);
+        Assert.assertFalse(network.isDeadlineScheduled(network.status_scanner));
+        network.setStatusScannerEnabled(true);
+        Assert.assertTrue(network.isDeadlineScheduled(network.status_scanner));
+
+        network.setAutoDeployEnabled(false);
+        network.setDeadlineSchedulingEnabled(false);
+        Assert.assertFalse(network.isDeadlineScheduled(network.status_scanner));
+        Assert.assertFalse(network.isDeadlineScheduled(network.auto_deploy_scanner));
+    }
+
+    @Test
+    public void testToggleScheduling() throws Exception {
+
+        network.setDeadlineSchedulingEnabled(false);
+        Assert.assertFalse(network.isDeadlineSchedulingEnabled());
+        network.manager.setProbeStateResult(ApplicationState.AUTH);
+        network.awaitAnyOfStates(ApplicationState.AUTH);
+
+        network.setDeadlineSchedulingEnabled(true);
+        network.manager.setProbeStateResult(ApplicationState.RUNNING);
+        network.awaitAnyOfStates(ApplicationState.RUNNING);
+        network.assertAllInState(ApplicationState.RUNNING);
+    }
+}
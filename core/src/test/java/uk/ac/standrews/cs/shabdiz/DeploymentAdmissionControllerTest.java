@@ -0,0 +1,180 @@
+package uk.ac.standrews.cs.shabdiz;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import uk.ac.standrews.cs.shabdiz.host.Host;
+import uk.ac.standrews.cs.shabdiz.host.LocalHost;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@link DeploymentAdmissionController}.
+ *
+ * @author Masih Hajiarabderkani (mh638@st-andrews.ac.uk)
+ */
+public class DeploymentAdmissionControllerTest {
+
+    private static final int DEPLOYMENTS = 20;
+    private DeploymentAdmissionController controller;
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() throws Exception {
+
+        controller = new DeploymentAdmissionController();
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+
+        executor.shutdownNow();
+    }
+
+    @Test(timeout = 10000)
+    public void testMaxInFlight() throws Exception {
+
+        controller.setMaxInFlight(3);
+        assertEquals(3, controller.getMaxInFlight());
+        assertTrue(deployConcurrently(null) <= 3);
+    }
+
+    @Test(timeout = 10000)
+    public void testMaxInFlightPerHost() throws Exception {
+
+        final Host host = new LocalHost();
+        try {
+            controller.setMaxInFlightPerHost(2);
+            assertEquals(2, controller.getMaxInFlightPerHost());
+            assertTrue(deployConcurrently(host) <= 2);
+        }
+        finally {
+            host.close();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testRate() throws Exception {
+
+        controller.setRate(100, 1);
+        final long start = System.nanoTime();
+        deployConcurrently(null);
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos((DEPLOYMENTS - 1) * 10 - 20));
+    }
+
+    @Test(timeout = 10000)
+    public void testLoweringMaxInFlightCountsHeldPermits() throws Exception {
+
+        controller.setMaxInFlight(2);
+        final DeploymentAdmissionController.Permit first = controller.acquire(null);
+        final DeploymentAdmissionController.Permit second = controller.acquire(null);
+        controller.setMaxInFlight(1);
+
+        final Future<DeploymentAdmissionController.Permit> third = executor.submit(() -> controller.acquire(null));
+        first.close();
+        TimeUnit.MILLISECONDS.sleep(100);
+        assertFalse(third.isDone());
+
+        second.close();
+        third.get().close();
+    }
+
+    @Test(timeout = 10000)
+    public void testRaisingMaxInFlightAdmitsWaitingDeployments() throws Exception {
+
+        controller.setMaxInFlight(1);
+        final DeploymentAdmissionController.Permit first = controller.acquire(null);
+        final Future<DeploymentAdmissionController.Permit> second = executor.submit(() -> controller.acquire(null));
+        TimeUnit.MILLISECONDS.sleep(100);
+        assertFalse(second.isDone());
+
+        controller.setMaxInFlight(2);
+        second.get().close();
+        first.close();
+    }
+
+    @Test(timeout = 10000)
+    public void testAsyncAdmissionsAreGrantedInOrderOnRelease() throws Exception {
+
+        controller.setMaxInFlight(1);
+        final DeploymentAdmissionController.Permit first = controller.acquireAsync(null).get();
+        final CompletableFuture<DeploymentAdmissionController.Permit> second = controller.acquireAsync(null);
+        final CompletableFuture<DeploymentAdmissionController.Permit> third = controller.acquireAsync(null);
+        assertFalse(second.isDone());
+        assertFalse(third.isDone());
+
+        first.close();
+        assertTrue(second.isDone());
+        assertFalse(third.isDone());
+
+        second.get().close();
+        assertTrue(third.isDone());
+        third.get().close();
+    }
+
+    @Test(timeout = 10000)
+    public void testAsyncAdmissionAwaitsRateTokenWithoutRelease() throws Exception {
+
+        controller.setRate(20, 1);
+        final CompletableFuture<DeploymentAdmissionController.Permit> first = controller.acquireAsync(null);
+        final CompletableFuture<DeploymentAdmissionController.Permit> second = controller.acquireAsync(null);
+        assertTrue(first.isDone());
+        assertFalse(second.isDone());
+
+        // The second admission is granted by the timer once the next token is due
+        second.get().close();
+        first.get().close();
+    }
+
+    @Test(timeout = 10000)
+    public void testCancelledAsyncAdmissionDoesNotHoldSlot() throws Exception {
+
+        controller.setMaxInFlight(1);
+        final DeploymentAdmissionController.Permit held = controller.acquire(null);
+        final CompletableFuture<DeploymentAdmissionController.Permit> cancelled = controller.acquireAsync(null);
+        cancelled.cancel(false);
+        held.close();
+
+        final CompletableFuture<DeploymentAdmissionController.Permit> next = controller.acquireAsync(null);
+        assertTrue(next.isDone());
+        next.get().close();
+    }
+
+    private int deployConcurrently(final Host host) throws Exception {
+
+        final AtomicInteger in_flight = new AtomicInteger();
+        final AtomicInteger max_in_flight = new AtomicInteger();
+        final List<Future<Void>> deployments = new ArrayList<>();
+        for (int i = 0; i < DEPLOYMENTS; i++) {
+            deployments.add(executor.submit(() -> {
+
+                final DeploymentAdmissionController.Permit permit = controller.acquire(host);
+                try {
+                    final int current = in_flight.incrementAndGet();
+                    max_in_flight.accumulateAndGet(current, Math::max);
+                    Thread.sleep(10);
+                    in_flight.decrementAndGet();
+                }
+                finally {
+                    permit.close();
+                }
+                return null;
+            }));
+        }
+        for (final Future<Void> deployment : deployments) {
+            deployment.get();
+        }
+        return max_in_flight.get();
+    }
+}
@@ -0,0 +1,75 @@
+package uk.ac.standrews.cs.shabdiz;
+
+import java.util.concurrent.TimeUnit;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests {@link FusedScanner}.
+ *
+ * @author Masih Hajiarabderkani (mh638@st-andrews.ac.uk)
+ */
+public class FusedScannerTest extends ScannerFunctionalityTest {
+
+    @Override
+    public void setUp() throws Exception {
+
+        super.setUp();
+        network.setFusedScanningEnabled(true);
+    }
+
+    @Test
+    public void testStagesAreNotScheduledIndependently() throws Exception {
+
+        Assert.assertTrue(network.isFusedScanningEnabled());
+        network.setScanEnabled(true);
+        Assert.assertNotNull(network.scheduled_scanners.get(network.fused_scanner));
+        for (final Scanner stage : network.fused_scanner.getStages()) {
+            Assert.assertTrue(stage.isEnabled());
+            Assert.assertNull(network.scheduled_scanners.get(stage));
+        }
+
+        network.setFusedScanningEnabled(false);
+        Assert.assertFalse(network.scheduled_scanners.containsKey(network.fused_scanner));
+        for (final Scanner stage : network.fused_scanner.getStages()) {
+            Assert.assertNotNull(network.scheduled_scanners.get(stage));
+        }
+    }
+
+    @Test
+    public void testAutoDeploy() throws Exception {
+
+        network.setAutoDeployEnabled(true);
+        network.manager.setProbeStateResult(ApplicationState.AUTH);
+        network.awaitAnyOfStates(ApplicationState.DEPLOYED);
+        network.assertAllDeployed();
+    }
+
+    @Test
+    public void testAutoKill() throws Exception {
+
+        network.setAutoKillEnabled(true);
+        network.manager.setProbeStateResult(ApplicationState.RUNNING);
+        network.awaitAnyOfStates(ApplicationState.KILLED);
+        network.assertAllKilled();
+    }
+
+    @Test
+    public void testAutoRemove() throws Exception {
+
+        network.setAutoRemoveEnabled(true);
+        network.manager.setProbeStateResult(ApplicationState.UNREACHABLE);
+        while (network.size() > 0) {
+            TimeUnit.MILLISECONDS.sleep(100);
+        }
+        network.assertEmptiness();
+    }
+
+    @Test
+    public void testDisabledStage() throws Exception {
+
+        network.manager.setProbeStateResult(ApplicationState.AUTH);
+        network.awaitAnyOfStates(ApplicationState.AUTH);
+        network.assertAllNotDeployed();
+    }
+}
@@ -0,0 +1,159 @@
+package uk.ac.standrews.cs.shabdiz;
+
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import uk.ac.standrews.cs.shabdiz.host.exec.Bootstrap;
+import uk.ac.standrews.cs.shabdiz.util.Duration;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@link HeartbeatReceiver}.
+ *
+ * @author Masih Hajiarabderkani (mh638@st-andrews.ac.uk)
+ */
+public class HeartbeatReceiverTest {
+
+    private static final Duration FRESHNESS_TIMEOUT = new Duration(500, TimeUnit.MILLISECONDS);
+    private static final int TEST_TIMEOUT = 10000;
+    private static final int NETWORK_TEST_TIMEOUT = 60000;
+    private HeartbeatReceiver receiver;
+    private DatagramSocket socket;
+
+    @Before
+    public void setUp() throws Exception {
+
+        receiver = new HeartbeatReceiver(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), FRESHNESS_TIMEOUT);
+        socket = new DatagramSocket();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+
+        socket.close();
+        receiver.close();
+    }
+
+    @Test(timeout = TEST_TIMEOUT)
+    public void testHeartbeatMarksDescriptorRunning() throws Exception {
+
+        final ApplicationDescriptor descriptor = new ApplicationDescriptor(new MockApplicationManager());
+        receiver.register(descriptor);
+        assertFalse(receiver.isFresh(descriptor));
+
+        sendHeartbeat(Bootstrap.HEARTBEAT_MAGIC, receiver.getToken(), descriptor.getId());
+        descriptor.awaitAnyOfStates(ApplicationState.RUNNING);
+        assertTrue(receiver.isFresh(descriptor));
+
+        Thread.sleep(FRESHNESS_TIMEOUT.getLength(TimeUnit.MILLISECONDS) * 2);
+        assertFalse(receiver.isFresh(descriptor));
+        assertEquals(ApplicationState.RUNNING, descriptor.getApplicationState());
+    }
+
+    @Test(timeout = TEST_TIMEOUT)
+    public void testUnregisteredAndMalformedHeartbeatsAreIgnored() throws Exception {
+
+        final ApplicationDescriptor unregistered = new ApplicationDescriptor(new MockApplicationManager());
+        final ApplicationDescriptor registered = new ApplicationDescriptor(new MockApplicationManager());
+        receiver.register(registered);
+
+        sendHeartbeat(Bootstrap.HEARTBEAT_MAGIC, receiver.getToken(), unregistered.getId());
+        sendHeartbeat(~Bootstrap.HEARTBEAT_MAGIC, receiver.getToken(), registered.getId());
+        sendHeartbeat(Bootstrap.HEARTBEAT_MAGIC, receiver.getToken(), registered.getId());
+        registered.awaitAnyOfStates(ApplicationState.RUNNING);
+
+        assertFalse(receiver.isFresh(unregistered));
+        assertEquals(ApplicationState.UNKNOWN, unregistered.getApplicationState());
+    }
+
+    @Test(timeout = TEST_TIMEOUT)
+    public void testHeartbeatsWithForeignTokenAreIgnored() throws Exception {
+
+        final ApplicationDescriptor spoofed = new ApplicationDescriptor(new MockApplicationManager());
+        final ApplicationDescriptor genuine = new ApplicationDescriptor(new MockApplicationManager());
+        receiver.register(spoofed);
+        receiver.register(genuine);
+
+        try (final HeartbeatReceiver other_receiver = new HeartbeatReceiver()) {
+            assertNotEquals(receiver.getToken(), other_receiver.getToken());
+            sendHeartbeat(Bootstrap.HEARTBEAT_MAGIC, other_receiver.getToken(), spoofed.getId());
+        }
+        sendHeartbeat(Bootstrap.HEARTBEAT_MAGIC, ~receiver.getToken(), spoofed.getId());
+        sendHeartbeat(Bootstrap.HEARTBEAT_MAGIC, receiver.getToken(), genuine.getId());
+        genuine.awaitAnyOfStates(ApplicationState.RUNNING);
+
+        assertFalse(receiver.isFresh(spoofed));
+        assertEquals(ApplicationState.UNKNOWN, spoofed.getApplicationState());
+    }
+
+    @Test(timeout = TEST_TIMEOUT)
+    public void testKilledDescriptorIsNotRevived() throws Exception {
+
+        final ApplicationDescriptor killed = new ApplicationDescriptor(new MockApplicationManager());
+        final ApplicationDescriptor running = new ApplicationDescriptor(new MockApplicationManager());
+        killed.setApplicationState(ApplicationState.KILLED);
+        receiver.register(killed);
+        receiver.register(running);
+
+        sendHeartbeat(Bootstrap.HEARTBEAT_MAGIC, receiver.getToken(), killed.getId());
+        sendHeartbeat(Bootstrap.HEARTBEAT_MAGIC, receiver.getToken(), running.getId());
+        running.awaitAnyOfStates(ApplicationState.RUNNING);
+        assertEquals(ApplicationState.KILLED, killed.getApplicationState());
+    }
+
+    @Test(timeout = NETWORK_TEST_TIMEOUT)
+    public void testNetworkProbesOnlyQuietDescriptors() throws Exception {
+
+        final MockApplicationNetwork network = new MockApplicationNetwork();
+        final ScheduledExecutorService heartbeat_scheduler = Executors.newSingleThreadScheduledExecutor();
+        try {
+            network.populate();
+            network.setHeartbeatReceiver(receiver);
+            final ApplicationDescriptor descriptor = network.first();
+            final ScheduledFuture<?> heartbeats = heartbeat_scheduler.scheduleWithFixedDelay(() -> {
+
+                try {
+                    sendHeartbeat(Bootstrap.HEARTBEAT_MAGIC, receiver.getToken(), descriptor.getId());
+                }
+                catch (final Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }, 0, FRESHNESS_TIMEOUT.getLength(TimeUnit.MILLISECONDS) / 5, TimeUnit.MILLISECONDS);
+
+            network.manager.setProbeStateResult(ApplicationState.AUTH);
+            for (final ApplicationDescriptor other : network) {
+                if (!other.equals(descriptor)) {
+                    other.awaitAnyOfStates(ApplicationState.AUTH);
+                }
+            }
+            assertEquals(ApplicationState.RUNNING, descriptor.getApplicationState());
+
+            heartbeats.cancel(false);
+            descriptor.awaitAnyOfStates(ApplicationState.AUTH);
+            assertFalse(receiver.isFresh(descriptor));
+        }
+        finally {
+            heartbeat_scheduler.shutdownNow();
+            network.shutdown();
+        }
+    }
+
+    private void sendHeartbeat(final int magic, final long token, final long id) throws Exception {
+
+        final byte[] heartbeat = ByteBuffer.allocate(HeartbeatReceiver.HEARTBEAT_LENGTH).putInt(magic).putLong(token).putLong(id).array();
+        socket.send(new DatagramPacket(heartbeat, heartbeat.length, receiver.getLocalAddress()));
+    }
+}
@@ -0,0 +1,107 @@
+package uk.ac.standrews.cs.shabdiz;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import uk.ac.standrews.cs.shabdiz.host.Host;
+import uk.ac.standrews.cs.shabdiz.host.LocalHost;
+import uk.ac.standrews.cs.shabdiz.util.Duration;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests {@link HostStateCoalescer}.
+ *
+ * @author Masih Hajiarabderkani (mh638@st-andrews.ac.uk)
+ */
+public class HostStateCoalescerTest {
+
+    private static final int CONCURRENT_PROBES = 10;
+    private ExecutorService executor;
+    private Host host;
+    private AtomicInteger probe_count;
+
+    @Before
+    public void setUp() throws Exception {
+
+        executor = Executors.newFixedThreadPool(CONCURRENT_PROBES);
+        host = new LocalHost();
+        probe_count = new AtomicInteger();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+
+        executor.shutdownNow();
+        host.close();
+    }
+
+    @Test(timeout = 10000)
+    public void testConcurrentProbesAreCoalesced() throws Exception {
+
+        final HostStateCoalescer coalescer = new HostStateCoalescer(Duration.ZERO);
+        final CountDownLatch release_latch = new CountDownLatch(1);
+        final List<Future<ApplicationState>> states = new ArrayList<Future<ApplicationState>>();
+        for (int i = 0; i < CONCURRENT_PROBES; i++) {
+            states.add(executor.submit(() -> coalescer.probe(host, h -> {
+                probe_count.incrementAndGet();
+                try {
+                    release_latch.await();
+                }
+                catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return ApplicationState.AUTH;
+            })));
+        }
+
+        TimeUnit.MILLISECONDS.sleep(500);
+        release_latch.countDown();
+        for (final Future<ApplicationState> state : states) {
+            assertEquals(ApplicationState.AUTH, state.get());
+        }
+        assertEquals(1, probe_count.get());
+
+        coalescer.probe(host, this::countingProbe);
+        assertEquals(2, probe_count.get());
+    }
+
+    @Test
+    public void testCompletedProbeIsReusedWithinWindow() throws Exception {
+
+        final HostStateCoalescer coalescer = new HostStateCoalescer(new Duration(1, TimeUnit.MINUTES));
+        assertEquals(ApplicationState.AUTH, coalescer.probe(host, this::countingProbe));
+        assertEquals(ApplicationState.AUTH, coalescer.probe(host, this::countingProbe));
+        assertEquals(1, probe_count.get());
+
+        coalescer.setWindow(Duration.ZERO);
+        assertEquals(ApplicationState.AUTH, coalescer.probe(host, this::countingProbe));
+        assertEquals(2, probe_count.get());
+    }
+
+    @Test
+    public void testUnknownStateIsNotReused() throws Exception {
+
+        final HostStateCoalescer coalescer = new HostStateCoalescer(new Duration(1, TimeUnit.MINUTES));
+        assertEquals(ApplicationState.UNKNOWN, coalescer.probe(host, h -> {
+            probe_count.incrementAndGet();
+            return ApplicationState.UNKNOWN;
+        }));
+        assertEquals(ApplicationState.AUTH, coalescer.probe(host, this::countingProbe));
+        assertEquals(2, probe_count.get());
+    }
+
+    private ApplicationState countingProbe(final Host host) {
+
+        probe_count.incrementAndGet();
+        return ApplicationState.AUTH;
+    }
+}
@@ -0,0 +1,53 @@
+package uk.ac.standrews.cs.shabdiz;
+
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Test;
+import uk.ac.standrews.cs.shabdiz.util.Duration;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@link PhiAccrualStatusScanner}.
+ *
+ * @author Masih Hajiarabderkani (mh638@st-andrews.ac.uk)
+ */
+public class PhiAccrualStatusScannerTest {
+
+    private static final Duration CYCLE_DELAY = new Duration(100, TimeUnit.MILLISECONDS);
+    private PhiAccrualStatusScanner scanner;
+    private ApplicationDescriptor descriptor;
+
+    @Before
+    public void setUp() throws Exception {
+
+        scanner = new PhiAccrualStatusScanner(CYCLE_DELAY);
+        descriptor = new ApplicationDescriptor(new MockApplicationManager());
+    }
+
+    @Test
+    public void testTransientFailureIsTolerated() throws Exception {
+
+        assertEquals(ApplicationState.RUNNING, scanner.resolveState(descriptor, ApplicationState.AUTH, ApplicationState.RUNNING));
+        assertEquals(ApplicationState.RUNNING, scanner.resolveState(descriptor, ApplicationState.RUNNING, ApplicationState.AUTH));
+        assertTrue(scanner.getPhi(descriptor) < scanner.getPhiThreshold());
+    }
+
+    @Test
+    public void testPersistentFailureIsDetected() throws Exception {
+
+        assertEquals(ApplicationState.RUNNING, scanner.resolveState(descriptor, ApplicationState.AUTH, ApplicationState.RUNNING));
+        Thread.sleep(CYCLE_DELAY.getLength(TimeUnit.MILLISECONDS) * 10);
+        assertTrue(scanner.getPhi(descriptor) >= scanner.getPhiThreshold());
+        assertEquals(ApplicationState.AUTH, scanner.resolveState(descriptor, ApplicationState.RUNNING, ApplicationState.AUTH));
+    }
+
+    @Test
+    public void testDescriptorNeverFoundRunning() throws Exception {
+
+        assertEquals(0, scanner.getPhi(descriptor), 0);
+        assertEquals(ApplicationState.UNREACHABLE, scanner.resolveState(descriptor, ApplicationState.RUNNING, ApplicationState.UNREACHABLE));
+        assertEquals(ApplicationState.UNREACHABLE, scanner.resolveState(descriptor, ApplicationState.AUTH, ApplicationState.UNREACHABLE));
+    }
+}
@@ -0,0 +1,198 @@
+package uk.ac.standrews.cs.shabdiz;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Assert;
+import org.junit.Test;
+import uk.ac.standrews.cs.shabdiz.host.LocalHost;
+import uk.ac.standrews.cs.shabdiz.util.Duration;
+
+/**
+ * Tests {@link StatusScanner}.
+ *
+ * @author Masih Hajiarabderkani (mh638@st-andrews.ac.uk)
+ */
+public class StatusScannerTest extends ScannerFunctionalityTest {
+
+    private static final int BATCH_SIZE = 5;
+    private static final Duration CYCLE_DELAY = new Duration(100, TimeUnit.MILLISECONDS);
+
+    @Test
+    public void testBackoffOfUnreachableDescriptor() throws Exception {
+
+        final CountingApplicationManager manager = new CountingApplicationManager();
+        final StatusScanner scanner = new StatusScanner(CYCLE_DELAY);
+        final ApplicationDescriptor descriptor = new ApplicationDescriptor(manager);
+
+        manager.setProbeStateResult(ApplicationState.UNREACHABLE);
+        scanner.scan(network, descriptor);
+        Assert.assertEquals(ApplicationState.UNREACHABLE, descriptor.getApplicationState());
+        scanner.scan(network, descriptor);
+        Assert.assertEquals(1, manager.probe_count.get());
+
+        TimeUnit.MILLISECONDS.sleep(CYCLE_DELAY.getLength(TimeUnit.MILLISECONDS));
+        scanner.scan(network, descriptor);
+        Assert.assertEquals(2, manager.probe_count.get());
+        scanner.scan(network, descriptor);
+        Assert.assertEquals(2, manager.probe_count.get());
+
+        descriptor.setApplicationState(ApplicationState.UNKNOWN);
+        manager.setProbeStateResult(ApplicationState.RUNNING);
+        scanner.scan(network, descriptor);
+        Assert.assertEquals(3, manager.probe_count.get());
+        Assert.assertEquals(ApplicationState.RUNNING, descriptor.getApplicationState());
+    }
+
+    @Test
+    public void testDisabledBackoff() throws Exception {
+
+        final CountingApplicationManager manager = new CountingApplicationManager();
+        final StatusScanner scanner = new StatusScanner(CYCLE_DELAY);
+        scanner.setMaxProbeBackoff(Duration.ZERO);
+        Assert.assertEquals(0, scanner.getMaxProbeBackoff().getLength());
+
+        final ApplicationDescriptor descriptor = new ApplicationDescriptor(manager);
+        manager.setProbeStateResult(ApplicationState.NO_AUTH);
+        scanner.scan(network, descriptor);
+        scanner.scan(network, descriptor);
+        Assert.assertEquals(2, manager.probe_count.get());
+    }
+
+    @Test
+    public void testAbstractApplicationManagerIsProbedAsynchronously() throws Exception {
+
+        final AtomicInteger synchronous_probe_count = new AtomicInteger();
+        final AbstractApplicationManager manager = new AbstractApplicationManager() {
+
+            @Override
+            public ApplicationState probeState(final ApplicationDescriptor descriptor) {
+
+                synchronous_probe_count.incrementAndGet();
+                return super.probeState(descriptor);
+            }
+
+            @Override
+            protected void attemptApplicationCall(final ApplicationDescriptor descriptor) throws Exception {
+
+                throw new IOException("application is not running");
+            }
+
+            @Override
+            public Object deploy(final ApplicationDescriptor descriptor) throws Exception {
+
+                return null;
+            }
+
+            @Override
+            public void kill(final ApplicationDescriptor descriptor) throws Exception {
+
+            }
+        };
+
+        final LocalHost host = new LocalHost();
+        try {
+            final ApplicationDescriptor descriptor = new ApplicationDescriptor(host, manager);
+            Assert.assertTrue(network.status_scanner.isScannedAsynchronously(network, descriptor));
+            network.status_scanner.scanAsync(network, descriptor).get();
+            Assert.assertEquals(ApplicationState.AUTH, descriptor.getApplicationState());
+            Assert.assertEquals(0, synchronous_probe_count.get());
+        }
+        finally {
+            host.close();
+        }
+    }
+
+    @Test
+    public void testBatchProbe() throws Exception {
+
+        assertBatchProbe();
+    }
+
+    @Test
+    public void testBatchProbeWhenFused() throws Exception {
+
+        network.setFusedScanningEnabled(true);
+        assertBatchProbe();
+    }
+
+    @Test
+    public void testGroupScanCandidates() throws Exception {
+
+        final BatchCountingApplicationManager manager = new BatchCountingApplicationManager();
+        final List<ApplicationDescriptor> candidates = new ArrayList<ApplicationDescriptor>(network.getApplicationDescriptorsSnapshot());
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            candidates.add(new ApplicationDescriptor(manager));
+        }
+
+        final List<List<ApplicationDescriptor>> groups = new StatusScanner(CYCLE_DELAY).groupScanCandidates(network, candidates);
+        Assert.assertEquals(network.size() + 1, groups.size());
+        int batches = 0;
+        for (final List<ApplicationDescriptor> group : groups) {
+            if (group.size() > 1) {
+                Assert.assertEquals(BATCH_SIZE, group.size());
+                batches++;
+            }
+        }
+        Assert.assertEquals(1, batches);
+    }
+
+    private void assertBatchProbe() throws Exception {
+
+        final BatchCountingApplicationManager manager = new BatchCountingApplicationManager();
+        final List<ApplicationDescriptor> batched_descriptors = new ArrayList<ApplicationDescriptor>();
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            final ApplicationDescriptor descriptor = new ApplicationDescriptor(manager);
+            batched_descriptors.add(descriptor);
+            network.add(descriptor);
+        }
+
+        manager.setProbeStateResult(ApplicationState.RUNNING);
+        network.manager.setProbeStateResult(ApplicationState.RUNNING);
+        for (final ApplicationDescriptor descriptor : batched_descriptors) {
+            descriptor.awaitAnyOfStates(ApplicationState.RUNNING);
+        }
+        network.awaitAnyOfStates(ApplicationState.RUNNING);
+
+        Assert.assertTrue(manager.batch_probe_count.get() > 0);
+        Assert.assertEquals(0, manager.probe_count.get());
+    }
+
+    private static class BatchCountingApplicationManager extends CountingApplicationManager implements BatchApplicationManager {
+
+        private final AtomicInteger batch_probe_count = new AtomicInteger();
+
+        @Override
+        public Map<ApplicationDescriptor, ApplicationState> probeStates(final Collection<ApplicationDescriptor> descriptors) {
+
+            batch_probe_count.incrementAndGet();
+            final Map<ApplicationDescriptor, ApplicationState> states = new HashMap<ApplicationDescriptor, ApplicationState>();
+            for (final ApplicationDescriptor descriptor : descriptors) {
+                states.put(descriptor, super.probeStateWithoutCounting(descriptor));
+            }
+            return states;
+        }
+    }
+
+    private static class CountingApplicationManager extends MockApplicationManager {
+
+        protected final AtomicInteger probe_count = new AtomicInteger();
+
+        @Override
+        public ApplicationState probeState(final ApplicationDescriptor descriptor) {
+
+            probe_count.incrementAndGet();
+            return super.probeState(descriptor);
+        }
+
+        protected ApplicationState probeStateWithoutCounting(final ApplicationDescriptor descriptor) {
+
+            return super.probeState(descriptor);
+        }
+    }
+}
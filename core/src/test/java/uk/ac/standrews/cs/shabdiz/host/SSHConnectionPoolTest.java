@@ -0,0 +1,161 @@
+package uk.ac.standrews.cs.shabdiz.host;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import net.schmizz.sshj.SSHClient;
+import net.schmizz.sshj.connection.channel.direct.Session;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests {@link SSHConnectionPool}.
+ *
+ * @author Masih Hajiarabderkani (mh638@st-andrews.ac.uk)
+ */
+public class SSHConnectionPoolTest {
+
+    private static final int MAX_SESSIONS = 3;
+    private AtomicInteger connection_count;
+    private List<MockSSHClient> clients;
+    private SSHConnectionPool pool;
+
+    @Before
+    public void setUp() throws Exception {
+
+        connection_count = new AtomicInteger();
+        clients = new ArrayList<MockSSHClient>();
+        pool = new SSHConnectionPool(this::connect, null);
+        pool.setMaxSessionsPerConnection(MAX_SESSIONS);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+
+        pool.close();
+    }
+
+    @Test
+    public void testSessionsAreSpreadAcrossConnections() throws Exception {
+
+        final List<SSHConnectionPool.SessionLease> leases = new ArrayList<SSHConnectionPool.SessionLease>();
+        for (int i = 0; i < MAX_SESSIONS * 2; i++) {
+            leases.add(pool.openSession());
+        }
+        assertEquals(2, connection_count.get());
+        assertEquals(2, pool.getConnectionCount());
+
+        for (final SSHConnectionPool.SessionLease lease : leases) {
+            lease.close();
+        }
+        assertEquals(1, pool.getConnectionCount());
+        assertTrue(clients.get(0).connected ^ clients.get(1).connected);
+    }
+
+    @Test
+    public void testChannelsOfClosedSessionsAreReclaimed() throws Exception {
+
+        for (int i = 0; i < MAX_SESSIONS * 2; i++) {
+            final SSHConnectionPool.SessionLease lease = pool.openSession();
+            ((MockSession) Proxy.getInvocationHandler(lease.getSession())).open = false; // closed by the server
+        }
+        assertEquals(1, connection_count.get());
+    }
+
+    @Test
+    public void testBrokenConnectionIsReplaced() throws Exception {
+
+        pool.openSession().close();
+        clients.get(0).connected = false;
+        pool.openSession().close();
+
+        assertEquals(2, connection_count.get());
+        assertEquals(1, pool.getConnectionCount());
+    }
+
+    @Test
+    public void testClosedPoolRejectsSessions() throws Exception {
+
+        pool.openSession();
+        pool.close();
+        assertFalse(clients.get(0).connected);
+        try {
+            pool.openSession();
+            fail("expected closed pool to reject sessions");
+        }
+        catch (final IOException e) {
+            assertEquals(1, connection_count.get());
+        }
+    }
+
+    private SSHClient connect() {
+
+        connection_count.incrementAndGet();
+        final MockSSHClient client = new MockSSHClient();
+        clients.add(client);
+        return client;
+    }
+
+    private static final class MockSSHClient extends SSHClient {
+
+        private volatile boolean connected = true;
+
+        @Override
+        public boolean isConnected() {
+
+            return connected;
+        }
+
+        @Override
+        public boolean isAuthenticated() {
+
+            return connected;
+        }
+
+        @Override
+        public Session startSession() {
+
+            final MockSession handler = new MockSession();
+            return (Session) Proxy.newProxyInstance(Session.class.getClassLoader(), new Class<?>[] {Session.class}, handler);
+        }
+
+        @Override
+        public void disconnect() {
+
+            connected = false;
+        }
+    }
+
+    private static final class MockSession implements InvocationHandler {
+
+        private volatile boolean open = true;
+
+        @Override
+        public Object invoke(final Object proxy, final Method method, final Object[] args) {
+
+            switch (method.getName()) {
+                case "isOpen":
+                    return open;
+                case "close":
+                    open = false;
+                    return null;
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+                default:
+                    return null;
+            }
+        }
+    }
+}
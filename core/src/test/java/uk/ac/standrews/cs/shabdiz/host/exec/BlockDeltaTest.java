@@ -0,0 +1,163 @@
+package uk.ac.standrews.cs.shabdiz.host.exec;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.Random;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests {@link BlockDelta}.
+ *
+ * @author Masih Hajiarabderkani (mh638@st-andrews.ac.uk)
+ */
+public class BlockDeltaTest {
+
+    private static final int BLOCK_SIZE = 1024;
+    private final Random random = new Random(13);
+    private File root;
+
+    @Before
+    public void setUp() throws Exception {
+
+        root = Files.createTempDirectory("block_delta_test").toFile();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+
+        FileUtils.deleteQuietly(root);
+    }
+
+    @Test
+    public void testRollingChecksum() throws Exception {
+
+        final byte[] data = randomBytes(4096);
+        int a = BlockDelta.checksum(data, 0, BLOCK_SIZE) & 0xFFFF;
+        int b = BlockDelta.checksum(data, 0, BLOCK_SIZE) >>> 16;
+        for (int offset = 1; offset + BLOCK_SIZE <= data.length; offset++) {
+            final int removed = data[offset - 1] & 0xFF;
+            final int added = data[offset + BLOCK_SIZE - 1] & 0xFF;
+            a = a - removed + added & 0xFFFF;
+            b = b - BLOCK_SIZE * removed + a & 0xFFFF;
+            Assert.assertEquals(BlockDelta.checksum(data, offset, BLOCK_SIZE), a | b << 16);
+        }
+    }
+
+    @Test
+    public void testUnchangedFile() throws Exception {
+
+        final byte[] basis = randomBytes(BLOCK_SIZE * 20 + 100);
+        final long matched = assertRoundTrip(basis, basis);
+        Assert.assertEquals(BLOCK_SIZE * 20, matched);
+    }
+
+    @Test
+    public void testInsertionAndDeletion() throws Exception {
+
+        final byte[] basis = randomBytes(BLOCK_SIZE * 50);
+        final byte[] target = new byte[basis.length];
+        System.arraycopy(basis, 0, target, 0, BLOCK_SIZE * 10);
+        System.arraycopy(randomBytes(77), 0, target, BLOCK_SIZE * 10, 77);
+        System.arraycopy(basis, BLOCK_SIZE * 10 + 300, target, BLOCK_SIZE * 10 + 77, basis.length - BLOCK_SIZE * 10 - 300);
+        System.arraycopy(randomBytes(223), 0, target, target.length - 223, 223);
+
+        final long matched = assertRoundTrip(basis, target);
+        Assert.assertTrue(matched >= BLOCK_SIZE * 46);
+    }
+
+    @Test
+    public void testUnrelatedAndEmptyFiles() throws Exception {
+
+        Assert.assertEquals(0, assertRoundTrip(randomBytes(BLOCK_SIZE * 5), randomBytes(BLOCK_SIZE * 3 + 1)));
+        Assert.assertEquals(0, assertRoundTrip(new byte[0], randomBytes(BLOCK_SIZE)));
+        Assert.assertEquals(0, assertRoundTrip(randomBytes(BLOCK_SIZE), new byte[0]));
+    }
+
+    @Test(expected = IOException.class)
+    public void testPatchOfDifferentBasisFails() throws Exception {
+
+        final byte[] basis = randomBytes(BLOCK_SIZE * 4);
+        final File delta = writeDelta(basis, basis);
+        final byte[] other_basis = basis.clone();
+        other_basis[0]++;
+        final File output = new File(root, "output");
+        try {
+            BlockDelta.patch(write("other_basis", other_basis), delta, output);
+        }
+        finally {
+            Assert.assertFalse(output.exists());
+        }
+    }
+
+    @Test
+    public void testBlockSize() throws Exception {
+
+        Assert.assertEquals(BlockDelta.MIN_BLOCK_SIZE, BlockDelta.getBlockSize(0));
+        Assert.assertEquals(8192, BlockDelta.getBlockSize(8192L * 8192));
+        Assert.assertEquals(BlockDelta.MAX_BLOCK_SIZE, BlockDelta.getBlockSize(Long.MAX_VALUE));
+    }
+
+    private long assertRoundTrip(final byte[] basis, final byte[] target) throws IOException {
+
+        final File basis_file = write("basis", basis);
+        final File target_file = write("target", target);
+        final File delta = new File(root, "delta");
+        final long matched;
+        final FileOutputStream out = new FileOutputStream(delta);
+        try {
+            matched = BlockDelta.writeDelta(target_file, getSignatures(basis_file), out);
+        }
+        finally {
+            out.close();
+        }
+
+        final File output = new File(root, "output");
+        BlockDelta.patch(basis_file, delta, output);
+        Assert.assertArrayEquals(target, Files.readAllBytes(output.toPath()));
+        return matched;
+    }
+
+    private File writeDelta(final byte[] basis, final byte[] target) throws IOException {
+
+        final File delta = new File(root, "delta");
+        final FileOutputStream out = new FileOutputStream(delta);
+        try {
+            BlockDelta.writeDelta(write("target", target), getSignatures(write("basis", basis)), out);
+        }
+        finally {
+            out.close();
+        }
+        return delta;
+    }
+
+    private static String getSignatures(final File basis) throws IOException {
+
+        final ByteArrayOutputStream signatures = new ByteArrayOutputStream();
+        final PrintStream out = new PrintStream(signatures);
+        BlockDelta.writeSignatures(basis, BLOCK_SIZE, out);
+        out.flush();
+        return signatures.toString();
+    }
+
+    private File write(final String name, final byte[] content) throws IOException {
+
+        final File file = new File(root, name);
+        Files.write(file.toPath(), content);
+        return file;
+    }
+
+    private byte[] randomBytes(final int length) {
+
+        final byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+}
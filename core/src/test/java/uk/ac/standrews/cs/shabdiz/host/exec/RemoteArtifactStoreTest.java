@@ -0,0 +1,243 @@
+package uk.ac.standrews.cs.shabdiz.host.exec;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import uk.ac.standrews.cs.shabdiz.host.LocalHost;
+import uk.ac.standrews.cs.shabdiz.platform.Platform;
+import uk.ac.standrews.cs.shabdiz.platform.Platforms;
+import uk.ac.standrews.cs.shabdiz.platform.SimplePlatform;
+
+/**
+ * Tests {@link RemoteArtifactStore}.
+ *
+ * @author Masih Hajiarabderkani (mh638@st-andrews.ac.uk)
+ */
+public class RemoteArtifactStoreTest {
+
+    private final List<File> uploaded = new ArrayList<File>();
+    private File root;
+    private File store;
+    private LocalHost host;
+
+    @Before
+    public void setUp() throws Exception {
+
+        root = Files.createTempDirectory("artifact_store_test").toFile();
+        store = new File(root, "store");
+        FileUtils.forceMkdir(store);
+        host = new LocalHost() {
+
+            @Override
+            public void upload(final Collection<File> sources, final String destination) throws IOException {
+
+                uploaded.addAll(sources);
+                super.upload(sources, destination);
+            }
+        };
+        Assume.assumeTrue(Platforms.isUnixBased(host.getPlatform()));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+
+        if (host != null) {
+            host.close();
+        }
+        FileUtils.deleteQuietly(root);
+    }
+
+    @Test
+    public void testOnlyMissingArtifactsAreUploaded() throws Exception {
+
+        final File first = createFile("first.jar", "first");
+        final File second = createFile("second.jar", "second");
+
+        final File first_working_directory = createWorkingDirectory("first_wd");
+        RemoteArtifactStore.upload(host, Arrays.asList(first, second), path(store), path(first_working_directory), null);
+        Assert.assertEquals(2, uploaded.size());
+        Assert.assertTrue(new File(store, RemoteArtifactStore.getDigest(first)).isFile());
+        Assert.assertTrue(new File(store, RemoteArtifactStore.getDigest(second)).isFile());
+        Assert.assertEquals("first", FileUtils.readFileToString(new File(first_working_directory, "first.jar")));
+        Assert.assertEquals("second", FileUtils.readFileToString(new File(first_working_directory, "second.jar")));
+
+        uploaded.clear();
+        final File third = createFile("third.jar", "third");
+        final File second_working_directory = createWorkingDirectory("second_wd");
+        RemoteArtifactStore.upload(host, Arrays.asList(first, second, third), path(store), path(second_working_directory), null);
+        Assert.assertEquals(Arrays.asList(third), uploaded);
+        Assert.assertEquals("first", FileUtils.readFileToString(new File(second_working_directory, "first.jar")));
+        Assert.assertEquals("third", FileUtils.readFileToString(new File(second_working_directory, "third.jar")));
+        Assert.assertEquals(3, store.list().length);
+    }
+
+    @Test
+    public void testIdenticalContentIsStoredOnce() throws Exception {
+
+        final File original = createFile("original.jar", "same");
+        final File copy = createFile("copy.jar", "same");
+        final File working_directory = createWorkingDirectory("wd");
+
+        RemoteArtifactStore.upload(host, Arrays.asList(original, copy), path(store), path(working_directory), null);
+        Assert.assertEquals(1, uploaded.size());
+        Assert.assertEquals(1, store.list().length);
+        Assert.assertEquals("same", FileUtils.readFileToString(new File(working_directory, "original.jar")));
+        Assert.assertEquals("same", FileUtils.readFileToString(new File(working_directory, "copy.jar")));
+    }
+
+    @Test
+    public void testDigestIsRecomputedOnChange() throws Exception {
+
+        final File file = createFile("file.jar", "before");
+        final String before = RemoteArtifactStore.getDigest(file);
+        Assert.assertEquals(64, before.length());
+        Assert.assertEquals(before, RemoteArtifactStore.getDigest(file));
+
+        FileUtils.writeStringToFile(file, "after and longer");
+        Assert.assertNotEquals(before, RemoteArtifactStore.getDigest(file));
+    }
+
+    @Test
+    public void testChangedArtifactIsTransferredAsDelta() throws Exception {
+
+        final byte[] content = new byte[256 * 1024];
+        new Random(42).nextBytes(content);
+        final File source_directory = new File(root, "source");
+        final File file = new File(source_directory, "application.jar");
+        FileUtils.forceMkdir(source_directory);
+        Files.write(file.toPath(), content);
+        final String block_delta_command = getBlockDeltaCommand();
+
+        RemoteArtifactStore.upload(host, Arrays.asList(file), path(store), path(createWorkingDirectory("first_wd")), block_delta_command);
+        Assert.assertEquals(Arrays.asList(file), uploaded);
+
+        uploaded.clear();
+        final byte[] changed_content = Arrays.copyOf(content, content.length + 10);
+        System.arraycopy(content, 1000, changed_content, 1010, content.length - 1000);
+        Arrays.fill(changed_content, 1000, 1010, (byte) 7);
+        Files.write(file.toPath(), changed_content);
+        final File working_directory = createWorkingDirectory("second_wd");
+        RemoteArtifactStore.upload(host, Arrays.asList(file), path(store), path(working_directory), block_delta_command);
+        Assert.assertTrue(uploaded.isEmpty());
+        Assert.assertArrayEquals(changed_content, Files.readAllBytes(new File(working_directory, "application.jar").toPath()));
+        Assert.assertFalse(new File(working_directory, "application.jar.delta").exists());
+        Assert.assertArrayEquals(changed_content, Files.readAllBytes(new File(store, "application.jar.latest").toPath()));
+        Assert.assertEquals(3, store.list().length);
+    }
+
+    @Test
+    public void testFailedDeltaTransferFallsBackToUpload() throws Exception {
+
+        final File file = createFile("application.jar", repeat('x'));
+        RemoteArtifactStore.upload(host, Arrays.asList(file), path(store), path(createWorkingDirectory("first_wd")), getBlockDeltaCommand());
+
+        uploaded.clear();
+        FileUtils.writeStringToFile(file, repeat('y'));
+        final File working_directory = createWorkingDirectory("second_wd");
+        RemoteArtifactStore.upload(host, Arrays.asList(file), path(store), path(working_directory), "false");
+        Assert.assertEquals(Arrays.asList(file), uploaded);
+        Assert.assertEquals(repeat('y'), FileUtils.readFileToString(new File(working_directory, "application.jar")));
+    }
+
+    @Test
+    public void testFailedMoveLeavesNoDanglingLinks() throws Exception {
+
+        final File file = createFile("file.jar", "content");
+        final File working_directory = createWorkingDirectory("wd");
+        try {
+            RemoteArtifactStore.upload(host, Arrays.asList(file), path(new File(root, "missing_store")), path(working_directory), null);
+            Assert.fail("expected the move into a missing store to fail");
+        }
+        catch (final IOException e) {
+            final File uploaded_file = new File(working_directory, "file.jar");
+            Assert.assertFalse(Files.isSymbolicLink(uploaded_file.toPath()));
+            Assert.assertEquals("content", FileUtils.readFileToString(uploaded_file));
+        }
+    }
+
+    @Test
+    public void testCommandsAreJoinedInBatchesWithinTheWindowsLimit() throws Exception {
+
+        final Platform windows = new SimplePlatform("Windows", Platform.WINDOWS_PATH_SEPARATOR, Platform.WINDOWS_SEPARATOR, "C:\\temp\\");
+        final List<String> commands = new ArrayList<String>();
+        for (int i = 0; i < 100; i++) {
+            commands.add(Commands.LINK.get(windows, "C:\\shabdiz\\artifacts\\" + i, "C:\\shabdiz\\tmp\\application-dependency-" + i + ".jar"));
+        }
+
+        final List<String> batches = RemoteArtifactStore.joinInBatches(windows, commands);
+        Assert.assertTrue(batches.size() > 1);
+        final List<String> joined = new ArrayList<String>();
+        for (final String batch : batches) {
+            Assert.assertTrue(batch.length() <= RemoteArtifactStore.MAX_WINDOWS_COMMAND_LENGTH);
+            joined.addAll(Arrays.asList(batch.split(" && ")));
+        }
+        Assert.assertEquals(commands, joined);
+    }
+
+    @Test
+    public void testMissingFilesAreLookedUpInBatchesWithinTheWindowsLimit() throws Exception {
+
+        final Platform windows = new SimplePlatform("Windows", Platform.WINDOWS_PATH_SEPARATOR, Platform.WINDOWS_SEPARATOR, "C:\\temp\\");
+        final List<String> names = new ArrayList<String>();
+        for (int i = 0; i < 500; i++) {
+            names.add(String.format("%064d", i));
+        }
+
+        final List<String> commands = RemoteArtifactStore.getMissingFilesCommands(windows, "C:\\shabdiz\\artifacts\\", names);
+        Assert.assertTrue(commands.size() > 1);
+        for (final String command : commands) {
+            Assert.assertTrue(command.length() <= RemoteArtifactStore.MAX_WINDOWS_COMMAND_LENGTH);
+        }
+        for (final String name : names) {
+            int occurrences = 0;
+            for (final String command : commands) {
+                occurrences += command.contains(name) ? 1 : 0;
+            }
+            Assert.assertEquals(1, occurrences);
+        }
+    }
+
+    private static String repeat(final char character) {
+
+        final char[] characters = new char[(int) RemoteArtifactStore.MIN_DELTA_LENGTH];
+        Arrays.fill(characters, character);
+        return new String(characters);
+    }
+
+    private static String getBlockDeltaCommand() {
+
+        final String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        return "\"" + java + "\" -cp \"" + System.getProperty("java.class.path") + "\" " + BlockDelta.class.getName();
+    }
+
+    private File createFile(final String name, final String content) throws IOException {
+
+        final File source_directory = new File(root, "source_" + name);
+        final File file = new File(source_directory, name);
+        FileUtils.writeStringToFile(file, content);
+        return file;
+    }
+
+    private File createWorkingDirectory(final String name) throws IOException {
+
+        final File working_directory = new File(root, name);
+        FileUtils.forceMkdir(working_directory);
+        return working_directory;
+    }
+
+    private static String path(final File directory) {
+
+        return directory.getAbsolutePath() + File.separator;
+    }
+}
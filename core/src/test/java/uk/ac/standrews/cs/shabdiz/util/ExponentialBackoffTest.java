@@ -0,0 +1,41 @@
+package uk.ac.standrews.cs.shabdiz.util;
+
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@link ExponentialBackoff}.
+ *
+ * @author Masih Hajiarabderkani (mh638@st-andrews.ac.uk)
+ */
+public class ExponentialBackoffTest {
+
+    private static final Duration BASE = new Duration(1, TimeUnit.SECONDS);
+    private static final Duration CAP = new Duration(1, TimeUnit.MINUTES);
+
+    @Test
+    public void testDelayIsJitteredAndCapped() throws Exception {
+
+        final ExponentialBackoff backoff = new ExponentialBackoff(BASE, CAP);
+        assertEquals(0, backoff.getDelayNanos(0));
+
+        final long base_nanos = BASE.getLength(TimeUnit.NANOSECONDS);
+        for (int failures = 1; failures < 100; failures++) {
+            final long expected_max = Math.min(CAP.getLength(TimeUnit.NANOSECONDS), base_nanos << Math.min(failures - 1, 30));
+            final long delay = backoff.getDelayNanos(failures);
+            assertTrue(delay >= expected_max / 2);
+            assertTrue(delay <= expected_max);
+        }
+    }
+
+    @Test
+    public void testZeroCapDisablesBackoff() throws Exception {
+
+        final ExponentialBackoff backoff = new ExponentialBackoff(BASE, Duration.ZERO);
+        assertEquals(0, backoff.getDelayNanos(10));
+        assertEquals(0, backoff.getCap().getLength());
+    }
+}
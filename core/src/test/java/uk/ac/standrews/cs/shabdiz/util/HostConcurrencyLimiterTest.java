@@ -0,0 +1,122 @@
+package uk.ac.standrews.cs.shabdiz.util;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import uk.ac.standrews.cs.shabdiz.host.Host;
+import uk.ac.standrews.cs.shabdiz.host.LocalHost;
+
+/**
+ * Tests {@link HostConcurrencyLimiter}.
+ *
+ * @author Masih Hajiarabderkani (mh638@st-andrews.ac.uk)
+ */
+public class HostConcurrencyLimiterTest {
+
+    private static final long AWAIT_PERMIT_TIMEOUT_MILLIS = 500;
+    private HostConcurrencyLimiter limiter;
+    private Host host;
+
+    @Before
+    public void setUp() throws Exception {
+
+        limiter = new HostConcurrencyLimiter(1);
+        host = new LocalHost();
+    }
+
+    @Test
+    public void testAcquireBlocksWhenLimitIsReached() throws Exception {
+
+        final HostConcurrencyLimiter.Permit permit = limiter.acquire(host);
+        final CompletableFuture<Void> second_acquisition = CompletableFuture.runAsync(() -> {
+            try {
+                limiter.acquire(host).close();
+            }
+            catch (final InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        });
+
+        try {
+            second_acquisition.get(AWAIT_PERMIT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+            Assert.fail("second permit must not be acquired while the first one is held");
+        }
+        catch (final TimeoutException e) {
+            permit.close();
+        }
+        second_acquisition.get(AWAIT_PERMIT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    @Test
+    public void testNullHostIsNotLimited() throws Exception {
+
+        try (final HostConcurrencyLimiter.Permit first = limiter.acquire(null); final HostConcurrencyLimiter.Permit second = limiter.acquire(null)) {
+            Assert.assertNotNull(first);
+            Assert.assertNotNull(second);
+        }
+    }
+
+    @Test
+    public void testSetMaxConcurrencyPerHost() throws Exception {
+
+        limiter.setMaxConcurrencyPerHost(2);
+        Assert.assertEquals(2, limiter.getMaxConcurrencyPerHost());
+        try (final HostConcurrencyLimiter.Permit first = limiter.acquire(host); final HostConcurrencyLimiter.Permit second = limiter.acquire(host)) {
+            Assert.assertNotNull(first);
+            Assert.assertNotNull(second);
+        }
+    }
+
+    @Test
+    public void testLoweringLimitCountsHeldPermits() throws Exception {
+
+        limiter.setMaxConcurrencyPerHost(2);
+        final HostConcurrencyLimiter.Permit first = limiter.acquire(host);
+        final HostConcurrencyLimiter.Permit second = limiter.acquire(host);
+        limiter.setMaxConcurrencyPerHost(1);
+        first.close();
+
+        final CompletableFuture<HostConcurrencyLimiter.Permit> third_acquisition = CompletableFuture.supplyAsync(() -> {
+            try {
+                return limiter.acquire(host);
+            }
+            catch (final InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        try {
+            third_acquisition.get(AWAIT_PERMIT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+            Assert.fail("a permit must not be acquired while as many permits as the new limit are held");
+        }
+        catch (final TimeoutException e) {
+            second.close();
+        }
+        third_acquisition.get(AWAIT_PERMIT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS).close();
+    }
+
+    @Test
+    public void testRaisingLimitReleasesWaiters() throws Exception {
+
+        final HostConcurrencyLimiter.Permit first = limiter.acquire(host);
+        final CompletableFuture<HostConcurrencyLimiter.Permit> second_acquisition = CompletableFuture.supplyAsync(() -> {
+            try {
+                return limiter.acquire(host);
+            }
+            catch (final InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        limiter.setMaxConcurrencyPerHost(2);
+        second_acquisition.get(AWAIT_PERMIT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS).close();
+        first.close();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidMaxConcurrencyPerHost() throws Exception {
+
+        limiter.setMaxConcurrencyPerHost(0);
+    }
+}
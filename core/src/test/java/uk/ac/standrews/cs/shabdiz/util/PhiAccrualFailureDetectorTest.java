@@ -0,0 +1,63 @@
+package uk.ac.standrews.cs.shabdiz.util;
+
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@link PhiAccrualFailureDetector}.
+ *
+ * @author Masih Hajiarabderkani (mh638@st-andrews.ac.uk)
+ */
+public class PhiAccrualFailureDetectorTest {
+
+    private static final Duration INTERVAL = new Duration(1, TimeUnit.SECONDS);
+    private static final long INTERVAL_NANOS = INTERVAL.getLength(TimeUnit.NANOSECONDS);
+
+    @Test
+    public void testPhiAccruesWithElapsedTime() throws Exception {
+
+        final PhiAccrualFailureDetector detector = new PhiAccrualFailureDetector(8, INTERVAL, new Duration(100, TimeUnit.MILLISECONDS), Duration.ZERO);
+        assertEquals(0, detector.phi(0), 0);
+
+        long now = 0;
+        for (int i = 0; i < 20; i++) {
+            detector.heartbeat(now);
+            now += INTERVAL_NANOS;
+        }
+        assertEquals(8, detector.getSampleCount());
+
+        final long last_heartbeat = now - INTERVAL_NANOS;
+        double previous_phi = 0;
+        for (long elapsed = 0; elapsed <= 3 * INTERVAL_NANOS; elapsed += INTERVAL_NANOS / 4) {
+            final double phi = detector.phi(last_heartbeat + elapsed);
+            assertTrue(phi >= previous_phi);
+            previous_phi = phi;
+        }
+        assertTrue(detector.phi(last_heartbeat + INTERVAL_NANOS / 2) < 1);
+        assertTrue(detector.phi(last_heartbeat + 2 * INTERVAL_NANOS) > 8);
+    }
+
+    @Test
+    public void testResumeDoesNotRecordInterval() throws Exception {
+
+        final PhiAccrualFailureDetector detector = new PhiAccrualFailureDetector(8, INTERVAL, new Duration(100, TimeUnit.MILLISECONDS), Duration.ZERO);
+        detector.heartbeat(0);
+        detector.resume(100 * INTERVAL_NANOS);
+        assertEquals(2, detector.getSampleCount());
+        assertTrue(detector.phi(100 * INTERVAL_NANOS) < 1);
+    }
+
+    @Test
+    public void testAcceptablePauseDelaysSuspicion() throws Exception {
+
+        final Duration min_std_deviation = new Duration(100, TimeUnit.MILLISECONDS);
+        final PhiAccrualFailureDetector strict = new PhiAccrualFailureDetector(8, INTERVAL, min_std_deviation, Duration.ZERO);
+        final PhiAccrualFailureDetector lenient = new PhiAccrualFailureDetector(8, INTERVAL, min_std_deviation, INTERVAL);
+        strict.heartbeat(0);
+        lenient.heartbeat(0);
+        assertTrue(lenient.phi(2 * INTERVAL_NANOS) < strict.phi(2 * INTERVAL_NANOS));
+    }
+}
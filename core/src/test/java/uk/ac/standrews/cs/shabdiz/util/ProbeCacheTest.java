@@ -0,0 +1,165 @@
+package uk.ac.standrews.cs.shabdiz.util;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests {@link ProbeCache}.
+ *
+ * @author Masih Hajiarabderkani (mh638@st-andrews.ac.uk)
+ */
+public class ProbeCacheTest {
+
+    private static final String KEY = "key";
+    private static final Duration TIME_TO_LIVE = new Duration(200, TimeUnit.MILLISECONDS);
+    private AtomicInteger probe_count;
+
+    @Before
+    public void setUp() throws Exception {
+
+        probe_count = new AtomicInteger();
+    }
+
+    @Test
+    public void testFreshResultIsReused() throws Exception {
+
+        final ProbeCache<String, Integer> cache = new ProbeCache<String, Integer>(new Duration(1, TimeUnit.MINUTES), Duration.ZERO, value -> true);
+        assertEquals(Integer.valueOf(1), cache.get(KEY, this::countingProbe));
+        assertEquals(Integer.valueOf(1), cache.get(KEY, this::countingProbe));
+        assertEquals(1, probe_count.get());
+
+        cache.invalidate(KEY);
+        assertEquals(Integer.valueOf(2), cache.get(KEY, this::countingProbe));
+    }
+
+    @Test
+    public void testExpiredResultIsProbedOnCallingThread() throws Exception {
+
+        final ProbeCache<String, Integer> cache = new ProbeCache<String, Integer>(TIME_TO_LIVE, Duration.ZERO, value -> true);
+        assertEquals(Integer.valueOf(1), cache.get(KEY, this::countingProbe));
+        Thread.sleep(TIME_TO_LIVE.getLength(TimeUnit.MILLISECONDS) * 2);
+        assertEquals(Integer.valueOf(2), cache.get(KEY, this::countingProbe));
+    }
+
+    @Test(timeout = 10000)
+    public void testAsyncProbesAreCoalescedWithoutWaiting() throws Exception {
+
+        final ProbeCache<String, Integer> cache = new ProbeCache<String, Integer>(new Duration(1, TimeUnit.MINUTES), Duration.ZERO, value -> true);
+        final CompletableFuture<Integer> probe = new CompletableFuture<Integer>();
+        final Function<String, CompletableFuture<Integer>> async_probe = key -> {
+
+            probe_count.incrementAndGet();
+            return probe;
+        };
+
+        final List<CompletableFuture<Integer>> results = new ArrayList<CompletableFuture<Integer>>();
+        for (int i = 0; i < 10; i++) {
+            results.add(cache.getAsync(KEY, async_probe));
+        }
+        for (final CompletableFuture<Integer> result : results) {
+            assertFalse(result.isDone());
+        }
+        assertEquals(1, probe_count.get());
+
+        probe.complete(42);
+        for (final CompletableFuture<Integer> result : results) {
+            assertEquals(Integer.valueOf(42), result.get());
+        }
+        assertEquals(Integer.valueOf(42), cache.get(KEY, this::countingProbe));
+        assertEquals(1, probe_count.get());
+    }
+
+    @Test(timeout = 10000)
+    public void testFailedAsyncProbeIsNotReused() throws Exception {
+
+        final ProbeCache<String, Integer> cache = new ProbeCache<String, Integer>(new Duration(1, TimeUnit.MINUTES), Duration.ZERO, value -> true);
+        final CompletableFuture<Integer> failed_probe = new CompletableFuture<Integer>();
+        failed_probe.completeExceptionally(new IOException("probe failed"));
+        try {
+            cache.getAsync(KEY, key -> failed_probe).get();
+            fail("expected the probe to fail");
+        }
+        catch (final ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+        assertEquals(Integer.valueOf(1), cache.getAsync(KEY, key -> CompletableFuture.completedFuture(countingProbe(key))).get());
+    }
+
+    @Test(timeout = 10000)
+    public void testStaleResultIsReturnedWhileRefreshing() throws Exception {
+
+        final ProbeCache<String, Integer> cache = new ProbeCache<String, Integer>(TIME_TO_LIVE, new Duration(1, TimeUnit.MINUTES), value -> true);
+        assertEquals(Integer.valueOf(1), cache.get(KEY, this::countingProbe));
+        Thread.sleep(TIME_TO_LIVE.getLength(TimeUnit.MILLISECONDS) * 2);
+
+        final CountDownLatch release_latch = new CountDownLatch(1);
+        final ProbeCache.Prober<String, Integer> blocking_probe = key -> {
+
+            try {
+                release_latch.await();
+            }
+            catch (final InterruptedException e) {
+                throw new IOException(e);
+            }
+            return countingProbe(key);
+        };
+        for (int i = 0; i < 10; i++) {
+            assertEquals(Integer.valueOf(1), cache.get(KEY, blocking_probe));
+        }
+
+        release_latch.countDown();
+        while (cache.get(KEY, this::countingProbe) == 1) {
+            Thread.sleep(10);
+        }
+        assertEquals(2, probe_count.get());
+    }
+
+    @Test
+    public void testUncacheableAndFailedResultsAreNotReused() throws Exception {
+
+        final ProbeCache<String, Integer> cache = new ProbeCache<String, Integer>(new Duration(1, TimeUnit.MINUTES), Duration.ZERO, value -> value % 2 == 0);
+        assertEquals(Integer.valueOf(1), cache.get(KEY, this::countingProbe));
+        assertEquals(Integer.valueOf(2), cache.get(KEY, this::countingProbe));
+        assertEquals(Integer.valueOf(2), cache.get(KEY, this::countingProbe));
+
+        cache.clear();
+        try {
+            cache.get(KEY, key -> {
+                throw new IOException("test failure");
+            });
+            fail("expected failure");
+        }
+        catch (final IOException e) {
+            assertEquals("test failure", e.getMessage());
+        }
+        assertEquals(Integer.valueOf(3), cache.get(KEY, this::countingProbe));
+    }
+
+    @Test
+    public void testPutResultIsReused() throws Exception {
+
+        final ProbeCache<String, Integer> cache = new ProbeCache<String, Integer>(new Duration(1, TimeUnit.MINUTES), Duration.ZERO, value -> true);
+        cache.put(KEY, 42);
+        assertEquals(Integer.valueOf(42), cache.get(KEY, this::countingProbe));
+        assertEquals(0, probe_count.get());
+    }
+
+    private Integer countingProbe(final String key) {
+
+        return probe_count.incrementAndGet();
+    }
+}
@@ -0,0 +1,81 @@
+package uk.ac.standrews.cs.shabdiz.util;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.UnknownHostException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests {@link ReachabilityProber}.
+ *
+ * @author Masih Hajiarabderkani (mh638@st-andrews.ac.uk)
+ */
+public class ReachabilityProberTest {
+
+    private static final Duration PROBE_TIMEOUT = new Duration(5, TimeUnit.SECONDS);
+    private static final int TEST_TIMEOUT = 10000;
+    private ReachabilityProber prober;
+
+    @Before
+    public void setUp() throws Exception {
+
+        prober = new ReachabilityProber();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+
+        prober.close();
+    }
+
+    @Test(timeout = TEST_TIMEOUT)
+    public void testListeningPortIsReachable() throws Exception {
+
+        try (final ServerSocket server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            final Duration round_trip_time = prober.probe(new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getLocalPort()), PROBE_TIMEOUT).get();
+            Assert.assertFalse(round_trip_time.exceeds(PROBE_TIMEOUT));
+        }
+    }
+
+    @Test(timeout = TEST_TIMEOUT)
+    public void testRefusedPortIsReachable() throws Exception {
+
+        final int closed_port;
+        try (final ServerSocket server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            closed_port = server.getLocalPort();
+        }
+        Assert.assertNotNull(prober.probe(new InetSocketAddress(InetAddress.getLoopbackAddress(), closed_port), PROBE_TIMEOUT).get());
+    }
+
+    @Test(timeout = TEST_TIMEOUT)
+    public void testUnresolvedAddress() throws Exception {
+
+        try {
+            prober.probe(InetSocketAddress.createUnresolved("unresolved.invalid", 22), PROBE_TIMEOUT).get();
+            Assert.fail("expected unknown host exception");
+        }
+        catch (final ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof UnknownHostException);
+        }
+    }
+
+    @Test(timeout = TEST_TIMEOUT)
+    public void testClosedProber() throws Exception {
+
+        prober.close();
+        try {
+            prober.probe(new InetSocketAddress(InetAddress.getLoopbackAddress(), 22), PROBE_TIMEOUT).get();
+            Assert.fail("expected failure of probe on closed prober");
+        }
+        catch (final ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof IOException);
+        }
+    }
+}
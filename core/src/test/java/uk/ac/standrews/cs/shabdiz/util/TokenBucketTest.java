@@ -0,0 +1,67 @@
+package uk.ac.standrews.cs.shabdiz.util;
+
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@link TokenBucket}.
+ *
+ * @author Masih Hajiarabderkani (mh638@st-andrews.ac.uk)
+ */
+public class TokenBucketTest {
+
+    @Test
+    public void testBurstThenRate() throws Exception {
+
+        final TokenBucket bucket = new TokenBucket(10, 3);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, bucket.reserve());
+        }
+
+        final long first_wait = bucket.reserve();
+        final long second_wait = bucket.reserve();
+        assertTrue(first_wait > 0 && first_wait <= TimeUnit.MILLISECONDS.toNanos(100));
+        assertTrue(second_wait > first_wait);
+        assertTrue(second_wait <= TimeUnit.MILLISECONDS.toNanos(200));
+    }
+
+    @Test
+    public void testAcquireWaitsForToken() throws Exception {
+
+        final TokenBucket bucket = new TokenBucket(20, 1);
+        bucket.acquire();
+        final long start = System.nanoTime();
+        bucket.acquire();
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(40));
+    }
+
+    @Test
+    public void testTryAcquireDoesNotReserve() throws Exception {
+
+        final TokenBucket bucket = new TokenBucket(10, 1);
+        assertEquals(0, bucket.tryAcquire());
+
+        final long first_wait = bucket.tryAcquire();
+        final long second_wait = bucket.tryAcquire();
+        assertTrue(first_wait > 0 && first_wait <= TimeUnit.MILLISECONDS.toNanos(100));
+        assertTrue(second_wait <= first_wait);
+    }
+
+    @Test
+    public void testUnlimited() throws Exception {
+
+        final TokenBucket bucket = new TokenBucket(TokenBucket.UNLIMITED, 1);
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(0, bucket.reserve());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNonPositiveRate() throws Exception {
+
+        new TokenBucket(0, 1);
+    }
+}
@@ -0,0 +1,57 @@
+package uk.ac.standrews.cs.shabdiz.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+/**
+ * Tests {@link VirtualThreadUtil}.
+ *
+ * @author Masih Hajiarabderkani (mh638@st-andrews.ac.uk)
+ */
+public class VirtualThreadUtilTest {
+
+    private static final int MAX_CONCURRENCY = 2;
+    private static final int TASK_COUNT = 20;
+
+    @Test
+    public void testBoundedThreadPerTaskExecutor() throws Exception {
+
+        Assume.assumeTrue(VirtualThreadUtil.isSupported());
+        final ExecutorService executor = VirtualThreadUtil.newBoundedThreadPerTaskExecutor("bounded_%d", MAX_CONCURRENCY);
+        final AtomicInteger concurrent_tasks = new AtomicInteger();
+        final AtomicInteger max_concurrent_tasks = new AtomicInteger();
+        final CountDownLatch started_tasks = new CountDownLatch(TASK_COUNT);
+        try {
+            final List<Future<?>> tasks = new ArrayList<Future<?>>();
+            for (int i = 0; i < TASK_COUNT; i++) {
+                tasks.add(executor.submit(() -> {
+                    max_concurrent_tasks.accumulateAndGet(concurrent_tasks.incrementAndGet(), Math::max);
+                    started_tasks.countDown();
+                    try {
+                        Thread.sleep(10);
+                    }
+                    catch (final InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    concurrent_tasks.decrementAndGet();
+                }));
+            }
+            for (final Future<?> task : tasks) {
+                task.get(10, TimeUnit.SECONDS);
+            }
+            Assert.assertEquals(0, started_tasks.getCount());
+            Assert.assertEquals(MAX_CONCURRENCY, max_concurrent_tasks.get());
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+}
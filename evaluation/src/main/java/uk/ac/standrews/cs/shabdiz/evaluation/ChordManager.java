@@ -68,7 +68,7 @@ public abstract class ChordManager extends ExperimentManager {
         final IKey previous_key = descriptor.getAttribute(NODE_KEY_KEY);
         final IKey node_key = previous_key == null ? nextPeerKey() : previous_key;
 
-        final Process node_process = process_builder.start(host, "-D" + Diagnostic.NONE, "-s" + host.getName() + ":" + port, "-x" + node_key.toString(Key.DEFAULT_RADIX));
+        final Process node_process = process_builder.start(host, descriptor.getId(), "-D" + Diagnostic.NONE, "-s" + host.getName() + ":" + port, "-x" + node_key.toString(Key.DEFAULT_RADIX));
         LOGGER.debug("waiting for properties of process on host {}...", host);
 
         final Properties properties = getPropertiesFromProcess(node_process);
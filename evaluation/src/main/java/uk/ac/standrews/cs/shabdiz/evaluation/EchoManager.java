@@ -67,7 +67,7 @@ abstract class EchoManager extends ExperimentManager {
         final InetSocketAddress previous_address = descriptor.getAttribute(ADDRESS_KEY);
         final int port = previous_address == null ? 0 : previous_address.getPort();
 
-        final Process echo_service_process = process_builder.start(host, String.valueOf(port));
+        final Process echo_service_process = process_builder.start(host, descriptor.getId(), String.valueOf(port));
         LOGGER.debug("waiting for properties of process on host {}...", host);
 
         final Properties properties = getPropertiesFromProcess(echo_service_process);
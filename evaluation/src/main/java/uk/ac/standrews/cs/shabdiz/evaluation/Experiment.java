@@ -6,7 +6,9 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Properties;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Supplier;
@@ -227,15 +229,17 @@ public abstract class Experiment {
 
     protected void populateNetwork() throws IOException {
 
+        final List<ApplicationDescriptor> descriptors = new ArrayList<ApplicationDescriptor>(network_size);
         for (int i = 0; i < network_size; i++) {
             final Host host = host_provider.get();
-            addHostToNetwork(host);
+            descriptors.add(newApplicationDescriptor(host));
         }
+        network.addAll(descriptors);
     }
 
-    protected void addHostToNetwork(final Host host) {
+    protected ApplicationDescriptor newApplicationDescriptor(final Host host) {
 
-        network.add(new ApplicationDescriptor(host, manager));
+        return new ApplicationDescriptor(host, manager);
     }
 
     protected void persistProperties(String comment) throws IOException {
@@ -104,7 +104,7 @@ abstract class HelloWorldManager extends ExperimentManager {
 
         final Host host = descriptor.getHost();
 
-        final Process hello_world_process = process_builder.start(host);
+        final Process hello_world_process = process_builder.start(host, descriptor.getId());
         LOGGER.debug("waiting for properties of process on host {}...", host);
 
         final Properties properties = getPropertiesFromProcess(hello_world_process);
@@ -190,7 +190,7 @@ public class ResurrectionExperiment extends Experiment {
         final int kill_count = getNumberOfKillCandidates();
         LOGGER.info("killing {} out of {}...", kill_count, network_size);
 
-        final List<ApplicationDescriptor> descriptors_list = new ArrayList<ApplicationDescriptor>(network.getApplicationDescriptors());
+        final List<ApplicationDescriptor> descriptors_list = new ArrayList<ApplicationDescriptor>(network.getApplicationDescriptorsSnapshot());
         final List<ApplicationDescriptor> killed_descriptors = new ArrayList<ApplicationDescriptor>();
         final int descriptors_count = descriptors_list.size();
 
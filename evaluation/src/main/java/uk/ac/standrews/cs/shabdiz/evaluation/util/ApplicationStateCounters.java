@@ -4,6 +4,7 @@ import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import org.mashti.gauge.Counter;
 import org.mashti.gauge.MetricRegistry;
 import uk.ac.standrews.cs.shabdiz.ApplicationDescriptor;
@@ -14,11 +15,13 @@ public class ApplicationStateCounters implements PropertyChangeListener {
 
     private final Iterable<ApplicationDescriptor> descriptors;
     private final Map<ApplicationState, Counter> counters;
+    private final ConcurrentHashMap<ApplicationDescriptor, ApplicationState> counted_states;
 
     public ApplicationStateCounters(Iterable<ApplicationDescriptor> descriptors) {
 
         this.descriptors = descriptors;
         counters = new HashMap<ApplicationState, Counter>();
+        counted_states = new ConcurrentHashMap<ApplicationDescriptor, ApplicationState>();
         initCounters();
         listenForStateChange();
     }
@@ -35,18 +38,30 @@ public class ApplicationStateCounters implements PropertyChangeListener {
     @Override
     public void propertyChange(final PropertyChangeEvent state_change_event) {
 
-        final ApplicationState new_state = (ApplicationState) state_change_event.getNewValue();
-        final ApplicationState old_state = (ApplicationState) state_change_event.getOldValue();
-        counters.get(old_state).decrement();
-        counters.get(new_state).increment();
+        // Events of concurrent transitions may arrive out of order; count the current state rather than the state carried by the event
+        recount((ApplicationDescriptor) state_change_event.getSource());
+    }
+
+    private void recount(final ApplicationDescriptor descriptor) {
+
+        counted_states.compute(descriptor, (key, counted_state) -> {
+
+            final ApplicationState current_state = descriptor.getApplicationState();
+            if (current_state != counted_state) {
+                if (counted_state != null) {
+                    counters.get(counted_state).decrement();
+                }
+                counters.get(current_state).increment();
+            }
+            return current_state;
+        });
     }
 
     private void listenForStateChange() {
 
         for (ApplicationDescriptor descriptor : descriptors) {
             descriptor.addStateChangeListener(this);
-            final ApplicationState current_state = descriptor.getApplicationState();
-            counters.get(current_state).increment();
+            recount(descriptor);
         }
     }
 
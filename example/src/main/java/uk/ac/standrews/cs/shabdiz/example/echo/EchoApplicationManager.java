@@ -68,7 +68,7 @@ class EchoApplicationManager extends AbstractApplicationManager {
     public Echo deploy(final ApplicationDescriptor descriptor) throws Exception {
 
         final Host host = descriptor.getHost();
-        final Process echo_service_process = process_builder.start(host);
+        final Process echo_service_process = process_builder.start(host, descriptor.getId());
         final Properties properties = Bootstrap.readProperties(EchoBootstrap.class, echo_service_process, DEFAULT_DEPLOYMENT_TIMEOUT);
         final Integer pid = Bootstrap.getPIDProperty(properties);
         final InetSocketAddress address = EchoBootstrap.getAddressProperty(properties);
@@ -18,7 +18,9 @@
  */
 package uk.ac.standrews.cs.shabdiz.example.echo;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import uk.ac.standrews.cs.shabdiz.ApplicationDescriptor;
@@ -58,22 +60,30 @@ public class EchoNetwork extends ApplicationNetwork {
      */
     public boolean add(final Host host) {
 
-        LOGGER.debug("adding an instance descriptor on host: {}", host);
-        final ApplicationDescriptor descriptor = new ApplicationDescriptor(host, manager);
-        descriptor.addStateChangeListener(PRINT_LISTENER);
-        return add(descriptor);
+        return add(newApplicationDescriptor(host));
     }
 
     /**
-     * Attempts to add all the {@code hosts} to this network via {@link #add(Host)}.
+     * Adds a new {@link ApplicationDescriptor} per each of the given {@code hosts} to this network as a single {@link #addAll(Collection) bulk addition}.
      *
      * @param hosts the hosts to be added to this network
+     * @return true, if any descriptor was added
      */
-    public void addAll(final Collection<? extends Host> hosts) {
+    public boolean addHosts(final Collection<? extends Host> hosts) {
 
-        for (Host host : hosts) {
-            add(host);
+        final List<ApplicationDescriptor> descriptors = new ArrayList<ApplicationDescriptor>(hosts.size());
+        for (final Host host : hosts) {
+            descriptors.add(newApplicationDescriptor(host));
         }
+        return addAll(descriptors);
+    }
+
+    private ApplicationDescriptor newApplicationDescriptor(final Host host) {
+
+        LOGGER.debug("adding an instance descriptor on host: {}", host);
+        final ApplicationDescriptor descriptor = new ApplicationDescriptor(host, manager);
+        descriptor.addStateChangeListener(PRINT_LISTENER);
+        return descriptor;
     }
 
     @Override
@@ -66,7 +66,7 @@ public class WorkerManager extends AbstractApplicationManager {
     public Worker deploy(final ApplicationDescriptor descriptor) throws Exception {
 
         final Host host = descriptor.getHost();
-        final Process worker_process = worker_process_builder.start(host, arguments);
+        final Process worker_process = worker_process_builder.start(host, descriptor.getId(), arguments);
         final Properties properties = Bootstrap.readProperties(WorkerMain.class, worker_process, worker_deployment_timeout);
         final InetSocketAddress worker_address = getWorkerAddressFromProperties(host, properties);
         final Integer pid = getProcessIDFromProperties(properties);